@@ -0,0 +1,646 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.dns;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.java.sip.communicator.service.dns.*;
+import net.java.sip.communicator.util.*;
+
+/**
+ * Implements <tt>AsyncResolver</tt> by running the blocking lookups of
+ * <tt>NetworkUtils</tt> on a bounded pool of daemon threads. The lookups
+ * still go through the default dnsjava resolver, i.e. through our
+ * <tt>CustomResolver</tt> if one is installed.
+ */
+public class AsyncResolverImpl
+    implements AsyncResolver
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>AsyncResolverImpl</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(AsyncResolverImpl.class);
+
+    /**
+     * The maximum number of lookups which run at the same time. Lookups
+     * started while all the threads are busy are queued.
+     */
+    private static final int MAX_PARALLEL_LOOKUPS = 8;
+
+    /**
+     * The pool which runs the lookups.
+     */
+    private final ThreadPoolExecutor lookupPool;
+
+    /**
+     * Creates a new instance of this class.
+     */
+    AsyncResolverImpl()
+    {
+        lookupPool = new ThreadPoolExecutor(
+            MAX_PARALLEL_LOOKUPS, MAX_PARALLEL_LOOKUPS,
+            30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r,
+                        "AsyncResolver-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        lookupPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stops the threads of this resolver. The lookups which have not started
+     * yet are cancelled, so that whoever waits for them is released, and the
+     * running ones are interrupted.
+     */
+    void stop()
+    {
+        for(Runnable lookup : lookupPool.shutdownNow())
+        {
+            if(lookup instanceof Future<?>)
+                ((Future<?>) lookup).cancel(false);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<String[][]> resolveNAPTR(final String domain)
+    {
+        return lookupPool.submit(new Callable<String[][]>()
+        {
+            public String[][] call()
+                throws Exception
+            {
+                return NetworkUtils.getNAPTRRecords(domain);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<SRVRecord[]> resolveSRV(final String domain)
+    {
+        return lookupPool.submit(new Callable<SRVRecord[]>()
+        {
+            public SRVRecord[] call()
+                throws Exception
+            {
+                return NetworkUtils.getSRVRecords(domain);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<SRVRecord[]> resolveSRV(final String service,
+        final String proto, final String domain)
+    {
+        return lookupPool.submit(new Callable<SRVRecord[]>()
+        {
+            public SRVRecord[] call()
+                throws Exception
+            {
+                return NetworkUtils.getSRVRecords(service, proto, domain);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<InetSocketAddress[]> resolveAandAAAA(String domain,
+        int port)
+    {
+        Future<InetSocketAddress[]> literal = resolveLiteral(domain, port);
+        if(literal != null)
+            return literal;
+
+        boolean preferIPv6 = Boolean.getBoolean("java.net.preferIPv6Addresses");
+
+        return new MergedAddressFuture(
+            submitAddressLookup(domain, port, preferIPv6),
+            submitAddressLookup(domain, port, !preferIPv6));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<InetSocketAddress[]> resolveFirstUsable(String domain,
+        int port)
+    {
+        Future<InetSocketAddress[]> literal = resolveLiteral(domain, port);
+        if(literal != null)
+            return literal;
+
+        boolean preferIPv6 = Boolean.getBoolean("java.net.preferIPv6Addresses");
+        BlockingQueue<Future<List<InetSocketAddress>>> completed
+            = new LinkedBlockingQueue<Future<List<InetSocketAddress>>>();
+
+        return new FirstUsableAddressFuture(
+            submitAddressLookup(domain, port, preferIPv6, completed),
+            submitAddressLookup(domain, port, !preferIPv6, completed),
+            completed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Future<InetSocketAddress[]>> resolveTargets(
+        SRVRecord[] records)
+    {
+        List<Future<InetSocketAddress[]>> targets
+            = new ArrayList<Future<InetSocketAddress[]>>(records.length);
+
+        for(SRVRecord record : records)
+            targets.add(resolveAandAAAA(record.getTarget(), record.getPort()));
+        return targets;
+    }
+
+    /**
+     * Returns an already completed lookup if <tt>domain</tt> is an IP address
+     * literal.
+     *
+     * @param domain the name of the domain we'd like to resolve.
+     * @param port the port number of the returned <tt>InetSocketAddress</tt>
+     * @return a completed lookup or <tt>null</tt> if <tt>domain</tt> is not
+     * an IP address literal.
+     */
+    private Future<InetSocketAddress[]> resolveLiteral(final String domain,
+        final int port)
+    {
+        if(!NetworkUtils.isValidIPAddress(domain))
+            return null;
+
+        FutureTask<InetSocketAddress[]> literal
+            = new FutureTask<InetSocketAddress[]>(
+                new Callable<InetSocketAddress[]>()
+                {
+                    public InetSocketAddress[] call()
+                        throws Exception
+                    {
+                        return NetworkUtils.getAandAAAARecords(domain, port);
+                    }
+                });
+
+        // no DNS query is involved, complete right away
+        literal.run();
+        return literal;
+    }
+
+    /**
+     * Submits the A or the AAAA lookup of <tt>domain</tt>.
+     *
+     * @param domain the name of the domain we'd like to resolve.
+     * @param port the port number of the returned <tt>InetSocketAddress</tt>
+     * @param v6lookup <tt>true</tt> for AAAA records, <tt>false</tt> for A.
+     * @return the pending lookup.
+     */
+    private Future<List<InetSocketAddress>> submitAddressLookup(
+        String domain, int port, boolean v6lookup)
+    {
+        return submitAddressLookup(domain, port, v6lookup, null);
+    }
+
+    /**
+     * Submits the A or the AAAA lookup of <tt>domain</tt> and adds it to a
+     * queue once it completes, including when it is cancelled before it
+     * starts, e.g. by {@link #stop()}.
+     *
+     * @param domain the name of the domain we'd like to resolve.
+     * @param port the port number of the returned <tt>InetSocketAddress</tt>
+     * @param v6lookup <tt>true</tt> for AAAA records, <tt>false</tt> for A.
+     * @param completed the queue to add the lookup to once it completes or
+     * <tt>null</tt>.
+     * @return the pending lookup.
+     */
+    private Future<List<InetSocketAddress>> submitAddressLookup(
+        String domain, int port, boolean v6lookup,
+        final BlockingQueue<Future<List<InetSocketAddress>>> completed)
+    {
+        FutureTask<List<InetSocketAddress>> lookup
+            = new FutureTask<List<InetSocketAddress>>(
+                new AddressLookup(domain, port, v6lookup))
+            {
+                @Override
+                protected void done()
+                {
+                    if(completed != null)
+                        completed.add(this);
+                }
+            };
+
+        lookupPool.execute(lookup);
+        return lookup;
+    }
+
+    /**
+     * Looks up the A or the AAAA records of a domain.
+     */
+    private static class AddressLookup
+        implements Callable<List<InetSocketAddress>>
+    {
+        /**
+         * The name of the domain we'd like to resolve.
+         */
+        private final String domain;
+
+        /**
+         * The port number of the returned <tt>InetSocketAddress</tt>es.
+         */
+        private final int port;
+
+        /**
+         * Whether AAAA rather than A records are to be looked up.
+         */
+        private final boolean v6lookup;
+
+        /**
+         * Creates a new lookup.
+         *
+         * @param domain the name of the domain we'd like to resolve.
+         * @param port the port number of the returned addresses.
+         * @param v6lookup <tt>true</tt> for AAAA records, <tt>false</tt> for A.
+         */
+        AddressLookup(String domain, int port, boolean v6lookup)
+        {
+            this.domain = domain;
+            this.port = port;
+            this.v6lookup = v6lookup;
+        }
+
+        /**
+         * Performs the lookup.
+         *
+         * @return the addresses found, possibly none.
+         * @throws Exception if the lookup failed.
+         */
+        public List<InetSocketAddress> call()
+            throws Exception
+        {
+            List<InetSocketAddress> addresses
+                = NetworkUtils.getAddressRecords(domain, port, v6lookup);
+
+            if(logger.isTraceEnabled())
+                logger.trace((v6lookup ? "AAAA" : "A") + " addresses of "
+                    + domain + ": " + addresses);
+            return addresses;
+        }
+    }
+
+    /**
+     * The result of both the A and the AAAA lookups of a domain, the
+     * addresses of the preferred family first. Fails if either lookup fails,
+     * just like <tt>NetworkUtils.getAandAAAARecords</tt>.
+     */
+    private static class MergedAddressFuture
+        implements Future<InetSocketAddress[]>
+    {
+        /**
+         * The lookup of the preferred address family.
+         */
+        private final Future<List<InetSocketAddress>> preferred;
+
+        /**
+         * The lookup of the other address family.
+         */
+        private final Future<List<InetSocketAddress>> other;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param preferred the lookup of the preferred address family.
+         * @param other the lookup of the other address family.
+         */
+        MergedAddressFuture(Future<List<InetSocketAddress>> preferred,
+            Future<List<InetSocketAddress>> other)
+        {
+            this.preferred = preferred;
+            this.other = other;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = preferred.cancel(mayInterruptIfRunning);
+            return other.cancel(mayInterruptIfRunning) || cancelled;
+        }
+
+        public boolean isCancelled()
+        {
+            return preferred.isCancelled() || other.isCancelled();
+        }
+
+        public boolean isDone()
+        {
+            return preferred.isDone() && other.isDone();
+        }
+
+        public InetSocketAddress[] get()
+            throws InterruptedException, ExecutionException
+        {
+            return merge(preferred.get(), other.get());
+        }
+
+        public InetSocketAddress[] get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            List<InetSocketAddress> p
+                = preferred.get(timeout, unit);
+            List<InetSocketAddress> o
+                = other.get(Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS);
+
+            return merge(p, o);
+        }
+
+        /**
+         * Concatenates the addresses of both families.
+         *
+         * @param p the addresses of the preferred family.
+         * @param o the addresses of the other family.
+         * @return all the addresses.
+         */
+        private static InetSocketAddress[] merge(List<InetSocketAddress> p,
+            List<InetSocketAddress> o)
+        {
+            InetSocketAddress[] addresses
+                = new InetSocketAddress[p.size() + o.size()];
+            int i = 0;
+
+            for(InetSocketAddress address : p)
+                addresses[i++] = address;
+            for(InetSocketAddress address : o)
+                addresses[i++] = address;
+            return addresses;
+        }
+    }
+
+    /**
+     * The result of the A and AAAA lookups of a domain which is known as soon
+     * as a usable address is: see
+     * {@link AsyncResolver#resolveFirstUsable(String, int)}. The decision is
+     * taken in the thread which waits for the result so that no pool thread
+     * is blocked waiting for other pool threads.
+     */
+    private static class FirstUsableAddressFuture
+        implements Future<InetSocketAddress[]>
+    {
+        /**
+         * The lookup of the preferred address family.
+         */
+        private final Future<List<InetSocketAddress>> preferred;
+
+        /**
+         * The lookup of the other address family.
+         */
+        private final Future<List<InetSocketAddress>> other;
+
+        /**
+         * The lookups in the order they complete.
+         */
+        private final BlockingQueue<Future<List<InetSocketAddress>>> completed;
+
+        /**
+         * The lookups taken from <tt>completed</tt> so far.
+         */
+        private final List<Future<List<InetSocketAddress>>> done
+            = new ArrayList<Future<List<InetSocketAddress>>>(2);
+
+        /**
+         * The result once it is known.
+         */
+        private InetSocketAddress[] result = null;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param preferred the lookup of the preferred address family.
+         * @param other the lookup of the other address family.
+         * @param completed the queue the lookups are added to when they
+         * complete.
+         */
+        FirstUsableAddressFuture(Future<List<InetSocketAddress>> preferred,
+            Future<List<InetSocketAddress>> other,
+            BlockingQueue<Future<List<InetSocketAddress>>> completed)
+        {
+            this.preferred = preferred;
+            this.other = other;
+            this.completed = completed;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = preferred.cancel(mayInterruptIfRunning);
+            return other.cancel(mayInterruptIfRunning) || cancelled;
+        }
+
+        public boolean isCancelled()
+        {
+            return preferred.isCancelled() && other.isCancelled();
+        }
+
+        public synchronized boolean isDone()
+        {
+            return result != null || (preferred.isDone() && other.isDone());
+        }
+
+        public InetSocketAddress[] get()
+            throws InterruptedException, ExecutionException
+        {
+            try
+            {
+                return resolve(false, 0);
+            }
+            catch(TimeoutException e)
+            {
+                // cannot happen without a deadline
+                throw new ExecutionException(e);
+            }
+        }
+
+        public InetSocketAddress[] get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            return resolve(true, System.nanoTime() + unit.toNanos(timeout));
+        }
+
+        /**
+         * Waits for the lookups until a usable address is known.
+         *
+         * @param timed whether to wait until <tt>deadline</tt> at most.
+         * @param deadline the <tt>System.nanoTime()</tt> to wait until if
+         * <tt>timed</tt>.
+         * @return the addresses found.
+         * @throws InterruptedException if the thread was interrupted.
+         * @throws ExecutionException if both lookups failed.
+         * @throws TimeoutException if no lookup completed until
+         * <tt>deadline</tt>.
+         */
+        private synchronized InetSocketAddress[] resolve(boolean timed,
+            long deadline)
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            if(result != null)
+                return result;
+
+            // the first lookup to complete
+            Future<List<InetSocketAddress>> first
+                = (done.size() > 0) ? done.get(0) : poll(timed, deadline);
+            if(first == null)
+                throw new TimeoutException();
+            List<InetSocketAddress> firstAddresses = getQuietly(first);
+
+            if(first == preferred && !firstAddresses.isEmpty())
+                return setResult(toArray(firstAddresses, null));
+
+            // give the preferred family a chance if the other one answered
+            // first, wait for the other one if the preferred one is empty
+            Future<List<InetSocketAddress>> second;
+
+            if(done.size() > 1)
+                second = done.get(1);
+            else if(first == other && !firstAddresses.isEmpty())
+            {
+                long delayDeadline
+                    = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(RESOLUTION_DELAY);
+
+                second
+                    = poll(true,
+                        (timed && deadline - delayDeadline < 0)
+                            ? deadline
+                            : delayDeadline);
+            }
+            else
+                second = poll(timed, deadline);
+
+            if(second == null)
+            {
+                if(firstAddresses.isEmpty())
+                    throw new TimeoutException();
+                return setResult(toArray(firstAddresses, null));
+            }
+
+            List<InetSocketAddress> secondAddresses = getQuietly(second);
+            if(firstAddresses.isEmpty() && secondAddresses.isEmpty())
+            {
+                // report the failure of the preferred lookup if any, an
+                // empty result otherwise
+                preferred.get();
+                other.get();
+            }
+
+            return result
+                = (first == preferred)
+                    ? toArray(firstAddresses, secondAddresses)
+                    : toArray(secondAddresses, firstAddresses);
+        }
+
+        /**
+         * Sets the result once a usable address is known and cancels the
+         * lookup which is still pending, if any, since its addresses are no
+         * longer needed. A lookup which has not started yet never runs; a
+         * running one is not interrupted because our <tt>CustomResolver</tt>
+         * would take the interruption for a primary DNS which does not answer
+         * and enter redundant mode.
+         *
+         * @param result the addresses found.
+         * @return <tt>result</tt>
+         */
+        private InetSocketAddress[] setResult(InetSocketAddress[] result)
+        {
+            this.result = result;
+            preferred.cancel(false);
+            other.cancel(false);
+            return result;
+        }
+
+        /**
+         * Takes the next completed lookup.
+         *
+         * @param timed whether to wait until <tt>deadline</tt> at most.
+         * @param deadline the <tt>System.nanoTime()</tt> to wait until if
+         * <tt>timed</tt>.
+         * @return the next completed lookup or <tt>null</tt> if none
+         * completed until <tt>deadline</tt>.
+         * @throws InterruptedException if the thread was interrupted.
+         */
+        private Future<List<InetSocketAddress>> poll(boolean timed,
+            long deadline)
+            throws InterruptedException
+        {
+            Future<List<InetSocketAddress>> f
+                = timed
+                    ? completed.poll(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS)
+                    : completed.take();
+
+            if(f != null)
+                done.add(f);
+            return f;
+        }
+
+        /**
+         * Returns the addresses found by a completed lookup, or none if it
+         * failed.
+         *
+         * @param f the completed lookup.
+         * @return the addresses found by <tt>f</tt>.
+         * @throws InterruptedException if the thread was interrupted.
+         */
+        private static List<InetSocketAddress> getQuietly(
+            Future<List<InetSocketAddress>> f)
+            throws InterruptedException
+        {
+            try
+            {
+                return f.get();
+            }
+            catch(ExecutionException e)
+            {
+                return Collections.emptyList();
+            }
+            catch(CancellationException e)
+            {
+                return Collections.emptyList();
+            }
+        }
+
+        /**
+         * Concatenates the addresses of both families.
+         *
+         * @param p the addresses of the preferred family.
+         * @param o the addresses of the other family, or <tt>null</tt>.
+         * @return all the addresses.
+         */
+        private static InetSocketAddress[] toArray(List<InetSocketAddress> p,
+            List<InetSocketAddress> o)
+        {
+            List<InetSocketAddress> all = new ArrayList<InetSocketAddress>(p);
+
+            if(o != null)
+                all.addAll(o);
+            return all.toArray(new InetSocketAddress[all.size()]);
+        }
+    }
+}
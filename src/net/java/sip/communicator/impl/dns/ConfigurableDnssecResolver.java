@@ -97,12 +97,7 @@ public class ConfigurableDnssecResolver
         String fqdn = msg.getQuestion().getName().toString();
         String type = Type.string(msg.getQuestion().getType());
         String propName = createPropNameUnsigned(fqdn, type);
-        SecureResolveMode defaultAction = Enum.valueOf(SecureResolveMode.class,
-            config.getString(
-                PNAME_DNSSEC_VALIDATION_MODE,
-                SecureResolveMode.WarnIfBogus.name()
-            )
-        );
+        SecureResolveMode defaultAction = getDefaultResolveMode();
         SecureResolveMode pinned = Enum.valueOf(SecureResolveMode.class,
             config.getString(
                 propName,
@@ -344,6 +339,33 @@ public class ConfigurableDnssecResolver
               );
     }
 
+    /**
+     * Gets the validation mode that applies to the answers for a domain: the
+     * mode pinned for the domain or the default mode.
+     *
+     * @param fqdn The FQDN of the domain.
+     * @return the validation mode of the domain.
+     */
+    SecureResolveMode getResolveMode(String fqdn)
+    {
+        return Enum.valueOf(SecureResolveMode.class,
+            config.getString(
+                createPropNameUnsigned(fqdn, null),
+                getDefaultResolveMode().name()
+            )
+        );
+    }
+
+    private SecureResolveMode getDefaultResolveMode()
+    {
+        return Enum.valueOf(SecureResolveMode.class,
+            config.getString(
+                PNAME_DNSSEC_VALIDATION_MODE,
+                SecureResolveMode.WarnIfBogus.name()
+            )
+        );
+    }
+
     private String createPropNameUnsigned(String fqdn, String type)
     {
         return PNAME_BASE_DNSSEC_PIN + "." + fqdn.replace(".", "__");
@@ -16,11 +16,13 @@ import net.java.sip.communicator.util.*;
 
 import net.java.sip.communicator.util.Logger;
 import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
 import org.jitsi.service.resources.*;
 import org.jitsi.util.*;
 import org.osgi.framework.*;
 import org.xbill.DNS.*;
 
+import java.io.*;
 import java.net.*;
 
 /**
@@ -48,8 +50,26 @@ public class DnsUtilActivator
     private static ConfigurationService configurationService;
     private static NotificationService notificationService;
     private static ResourceManagementService resourceService;
+    private static FileAccessService fileAccessService;
     private static BundleContext bundleContext;
 
+    /**
+     * The resolver performing lookups in the background, registered as an
+     * <tt>AsyncResolver</tt> service.
+     */
+    private static AsyncResolverImpl asyncResolver;
+
+    /**
+     * The cache which keeps the DNS answers across restarts, <tt>null</tt>
+     * if disabled.
+     */
+    private static PersistentDnsCache dnsCache;
+
+    /**
+     * The name of the file in which the DNS answers are kept across restarts.
+     */
+    private static final String DNS_CACHE_FILE = "dns.cache";
+
     /**
      * The address of the backup resolver we would use by default.
      */
@@ -111,6 +131,27 @@ public class DnsUtilActivator
         if(Logger.getLogger("org.xbill").isTraceEnabled())
             Options.set("verbose", "1");
 
+        if(getConfigurationService().getBoolean(
+            PersistentDnsCache.PNAME_PERSISTENT_CACHE_ENABLED,
+            PersistentDnsCache.PDEFAULT_PERSISTENT_CACHE_ENABLED))
+        {
+            dnsCache = new PersistentDnsCache(
+                getConfigurationService().getLong(
+                    PersistentDnsCache.PNAME_MAX_STALE,
+                    PersistentDnsCache.PDEFAULT_MAX_STALE));
+            File cacheFile = getDnsCacheFile();
+            if(cacheFile != null)
+                dnsCache.load(cacheFile);
+            dnsCache.install();
+        }
+
+        asyncResolver = new AsyncResolverImpl();
+        bundleContext.registerService(
+            AsyncResolver.class.getName(),
+            asyncResolver,
+            null);
+        logger.info("AsyncResolver ... [REGISTERED]");
+
         if(loadDNSProxyForward())
         {
             // dns is forced to go through a proxy so skip any further settings
@@ -230,6 +271,11 @@ public class DnsUtilActivator
     {
         // reread system dns configuration
         ResolverConfig.refresh();
+
+        // the cached answers may have been obtained through another network
+        if(dnsCache != null)
+            dnsCache.clearCache();
+
         if(logger.isInfoEnabled())
         {
             StringBuilder sb = new StringBuilder();
@@ -257,12 +303,43 @@ public class DnsUtilActivator
         {
             // or the default otherwise
             if(!loadDNSProxyForward())
-                Lookup.refreshDefault();
+                refreshDefaultLookup();
+        }
+    }
+
+    /**
+     * Resets the default resolver, search path and caches of <tt>Lookup</tt>
+     * and installs the persistent DNS cache again.
+     */
+    static void refreshDefaultLookup()
+    {
+        Lookup.refreshDefault();
+        if(dnsCache != null)
+            dnsCache.install();
+    }
+
+    /**
+     * Returns the file in which the DNS answers are kept across restarts.
+     *
+     * @return the file or <tt>null</tt> if it cannot be determined.
+     */
+    private static File getDnsCacheFile()
+    {
+        try
+        {
+            return getFileAccessService().getPrivatePersistentFile(
+                DNS_CACHE_FILE, FileCategory.CACHE);
+        }
+        catch(Exception e)
+        {
+            logger.warn("Cannot determine the DNS cache file", e);
+            return null;
         }
     }
 
     /**
-     * Doesn't do anything.
+     * Stops the threads of the <tt>AsyncResolver</tt> and saves the DNS
+     * answers for the next start.
      *
      * @param context The execution context of the bundle being stopped.
      * @throws Exception If this method throws an exception, the bundle is
@@ -273,6 +350,20 @@ public class DnsUtilActivator
     public void stop(BundleContext context)
         throws Exception
     {
+        if(asyncResolver != null)
+        {
+            asyncResolver.stop();
+            asyncResolver = null;
+        }
+
+        if(dnsCache != null)
+        {
+            dnsCache.stop();
+            File cacheFile = getDnsCacheFile();
+            if(cacheFile != null)
+                dnsCache.save(cacheFile);
+            dnsCache = null;
+        }
     }
 
     /**
@@ -310,6 +401,23 @@ public class DnsUtilActivator
         return notificationService;
     }
 
+    /**
+     * Returns the <tt>FileAccessService</tt> obtained from the bundle context.
+     *
+     * @return the <tt>FileAccessService</tt> obtained from the bundle context
+     */
+    public static FileAccessService getFileAccessService()
+    {
+        if (fileAccessService == null)
+        {
+            fileAccessService
+                = ServiceUtils.getService(
+                        bundleContext,
+                        FileAccessService.class);
+        }
+        return fileAccessService;
+    }
+
     /**
      * Returns the service giving access to all application resources.
      *
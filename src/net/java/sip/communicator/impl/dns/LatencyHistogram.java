@@ -0,0 +1,141 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.dns;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counts the response times of a DNS resolver in fixed, roughly logarithmic
+ * buckets along with the number of failed queries. The histogram may be
+ * updated and read concurrently.
+ */
+public class LatencyHistogram
+{
+    /**
+     * The upper bounds in milliseconds of the buckets but the last one, which
+     * counts all the slower responses.
+     */
+    private static final long[] BUCKET_BOUNDS
+        = { 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+    /**
+     * The number of responses in each bucket.
+     */
+    private final AtomicLongArray buckets
+        = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+    /**
+     * The number of queries which failed or timed out.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * The sum of all the response times in milliseconds.
+     */
+    private final AtomicLong totalTime = new AtomicLong();
+
+    /**
+     * Counts a response.
+     *
+     * @param millis the time it took for the response to arrive.
+     */
+    public void record(long millis)
+    {
+        int i = 0;
+        while(i < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[i])
+            i++;
+        buckets.incrementAndGet(i);
+        totalTime.addAndGet(millis);
+    }
+
+    /**
+     * Counts a failed query.
+     */
+    public void recordFailure()
+    {
+        failures.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of responses counted.
+     *
+     * @return the number of responses counted.
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for(int i = 0; i < buckets.length(); i++)
+            count += buckets.get(i);
+        return count;
+    }
+
+    /**
+     * Gets the number of failed queries counted.
+     *
+     * @return the number of failed queries counted.
+     */
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    /**
+     * Gets the average response time.
+     *
+     * @return the average response time in milliseconds or <tt>0</tt> if no
+     * response was counted.
+     */
+    public long getAverage()
+    {
+        long count = getCount();
+        return (count == 0) ? 0 : totalTime.get() / count;
+    }
+
+    /**
+     * Gets an upper bound of the response time of the specified fraction of
+     * the responses, e.g. <tt>0.95</tt> for the 95th percentile.
+     *
+     * @param fraction the fraction of the responses, between 0 and 1.
+     * @return the upper bound of the bucket in which the percentile falls or
+     * <tt>Long.MAX_VALUE</tt> if it falls in the last bucket.
+     */
+    public long getPercentile(double fraction)
+    {
+        long count = getCount();
+        long threshold = (long) Math.ceil(count * fraction);
+        long seen = 0;
+
+        for(int i = 0; i < BUCKET_BOUNDS.length; i++)
+        {
+            seen += buckets.get(i);
+            if(seen >= threshold)
+                return BUCKET_BOUNDS[i];
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns a printable form of the histogram, e.g.
+     * <tt>"&lt;=10ms:3 &lt;=20ms:1 ... &gt;5000ms:0 failed:2"</tt>.
+     *
+     * @return a printable form of the histogram.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < BUCKET_BOUNDS.length; i++)
+        {
+            sb.append("<=").append(BUCKET_BOUNDS[i]).append("ms:")
+                .append(buckets.get(i)).append(' ');
+        }
+        sb.append('>').append(BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1])
+            .append("ms:").append(buckets.get(BUCKET_BOUNDS.length))
+            .append(" failed:").append(failures.get());
+        return sb.toString();
+    }
+}
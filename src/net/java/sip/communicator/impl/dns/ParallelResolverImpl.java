@@ -11,6 +11,7 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import net.java.sip.communicator.service.dns.*;
 import net.java.sip.communicator.util.*;
@@ -33,6 +34,12 @@ import org.xbill.DNS.*;
  * <p>
  * We exit redundant mode after receiving <tt>DNS_REDEMPTION</tt> consecutive
  * timely and correct responses from our primary resolver.
+ * <p>
+ * Identical questions asked while a resolution is in progress are not sent
+ * again: they wait for the answer of the resolution in progress. The queries
+ * to the primary and to the backup resolvers run on separate bounded pools of
+ * threads so that a primary resolver which does not answer cannot hold back
+ * the backup queries.
  *
  * @author Emil Ivov
  */
@@ -78,6 +85,51 @@ public class ParallelResolverImpl
      */
     private final static Object redemptionLock = new Object();
 
+    /**
+     * The maximum number of queries sent at the same time to the primary
+     * resolver and, separately, to the backup resolvers. Queries beyond that
+     * wait for a thread.
+     */
+    private static final int MAX_QUERY_THREADS = 16;
+
+    /**
+     * The number of times we entered redundant mode.
+     */
+    private static int redundantModeEntries = 0;
+
+    /**
+     * The time at which we last entered redundant mode.
+     */
+    private static long redundantModeSince = 0;
+
+    /**
+     * The total number of milliseconds spent in redundant mode, not counting
+     * the current period.
+     */
+    private static long redundantModeTime = 0;
+
+    /**
+     * The resolutions in progress by question.
+     */
+    private final ConcurrentMap<String, ParallelResolution> inFlightResolutions
+        = new ConcurrentHashMap<String, ParallelResolution>();
+
+    /**
+     * The number of queries which waited for the answer of an identical
+     * resolution in progress rather than being sent.
+     */
+    private final AtomicLong coalescedQueries = new AtomicLong();
+
+    /**
+     * The response times of the primary resolver.
+     */
+    private final LatencyHistogram primaryLatencies = new LatencyHistogram();
+
+    /**
+     * The response times of the backup resolvers.
+     */
+    private final LatencyHistogram backupLatencies = new LatencyHistogram();
+
     /**
      * The default resolver that we use if everything works properly.
      */
@@ -86,23 +138,75 @@ public class ParallelResolverImpl
     /**
      * An extended resolver that would be encapsulating all backup resolvers.
      */
-    private ExtendedResolver backupResolver;
+    private Resolver backupResolver;
+
+    /** Thread pool that processes the queries to the default resolver. */
+    private final ExecutorService primaryQueriesPool
+        = createQueryPool("ParallelResolver-primary-");
 
     /** Thread pool that processes the backup queries. */
-    private ExecutorService backupQueriesPool;
+    private final ExecutorService backupQueriesPool
+        = createQueryPool("ParallelResolver-backup-");
 
     /**
      * Creates a new instance of this class.
      */
     ParallelResolverImpl()
     {
-        backupQueriesPool = Executors.newCachedThreadPool();
         DnsUtilActivator.getConfigurationService()
             .addPropertyChangeListener(this);
         initProperties();
         reset();
     }
 
+    /**
+     * Creates a new instance of this class which sends its queries to
+     * specific resolvers rather than to the configured ones.
+     *
+     * @param defaultResolver the resolver that we use if everything works
+     * properly.
+     * @param backupResolver the resolver that we use in redundant mode.
+     * @param dnsPatience the number of milliseconds that we wait for the
+     * default resolver before entering redundant mode.
+     */
+    public ParallelResolverImpl(
+            Resolver defaultResolver,
+            Resolver backupResolver,
+            long dnsPatience)
+    {
+        this.defaultResolver = defaultResolver;
+        this.backupResolver = backupResolver;
+        currentDnsPatience = dnsPatience;
+    }
+
+    /**
+     * Creates a bounded pool of daemon threads which send queries.
+     *
+     * @param namePrefix the prefix of the names of the threads.
+     * @return the pool.
+     */
+    private static ExecutorService createQueryPool(final String namePrefix)
+    {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            MAX_QUERY_THREADS, MAX_QUERY_THREADS,
+            30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r,
+                        namePrefix + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     private void initProperties()
     {
         String rslvrAddrStr
@@ -170,13 +274,15 @@ public class ParallelResolverImpl
     {
         try
         {
-            backupResolver = new ExtendedResolver(new SimpleResolver[]{});
+            ExtendedResolver resolver
+                = new ExtendedResolver(new SimpleResolver[]{});
             for(InetSocketAddress backupServer : backupServers )
             {
                 SimpleResolver sr = new SimpleResolver();
                 sr.setAddress(backupServer);
-                backupResolver.addResolver(sr);
+                resolver.addResolver(sr);
             }
+            backupResolver = resolver;
         }
         catch (UnknownHostException e)
         {
@@ -198,7 +304,46 @@ public class ParallelResolverImpl
     public Message send(Message query)
         throws IOException
     {
+        String key = getQuestionKey(query);
         ParallelResolution resolution = new ParallelResolution(query);
+        ParallelResolution inFlight
+            = (key == null)
+                ? null
+                : inFlightResolutions.putIfAbsent(key, resolution);
+
+        if(inFlight != null)
+        {
+            coalescedQueries.incrementAndGet();
+            if(logger.isTraceEnabled())
+                logger.trace("Waiting for resolution in progress of " + key);
+            return inFlight.returnSharedResponseOrThrowUp(query);
+        }
+
+        try
+        {
+            return resolve(resolution);
+        }
+        finally
+        {
+            if(key != null)
+                inFlightResolutions.remove(key, resolution);
+            resolution.complete();
+        }
+    }
+
+    /**
+     * Sends the query of a resolution, switching to redundant mode if
+     * necessary, and waits for a response.
+     *
+     * @param resolution the resolution to perform.
+     * @return The response
+     *
+     * @throws IOException An error occurred while sending or receiving.
+     */
+    private Message resolve(ParallelResolution resolution)
+        throws IOException
+    {
+        Message query = resolution.query;
         resolution.sendFirstQuery();
 
         //if we are not in redundant mode we should wait a bit and see how this
@@ -214,6 +359,11 @@ public class ParallelResolverImpl
             {
                 synchronized(redemptionLock)
                 {
+                    if(!redundantMode)
+                    {
+                        redundantModeEntries++;
+                        redundantModeSince = System.currentTimeMillis();
+                    }
                     redundantMode = true;
                     redemptionStatus = currentDnsRedemption;
                     logger.info("Primary DNS seems laggy: "
@@ -244,11 +394,14 @@ public class ParallelResolverImpl
                 redemptionStatus --;
 
                 //yup, it's now time to end DNS redundant mode;
-                if(redemptionStatus <= 0)
+                if(redemptionStatus <= 0 && redundantMode)
                 {
                     redundantMode = false;
+                    redundantModeTime
+                        += System.currentTimeMillis() - redundantModeSince;
                     logger.info("Primary DNS seems back in biz. "
-                                    + "Disabling redundant mode.");
+                                    + "Disabling redundant mode. "
+                                    + getStatistics());
                 }
             }
         }
@@ -256,6 +409,114 @@ public class ParallelResolverImpl
         return resolution.returnResponseOrThrowUp();
     }
 
+    /**
+     * Returns the key under which identical questions are coalesced.
+     *
+     * @param query the query.
+     * @return the name, type and class of the question of <tt>query</tt> or
+     * <tt>null</tt> if it has no question.
+     */
+    private static String getQuestionKey(Message query)
+    {
+        Record question = query.getQuestion();
+        if(question == null)
+            return null;
+
+        return question.getName().toString().toLowerCase()
+            + "/" + Type.string(question.getType())
+            + "/" + DClass.string(question.getDClass());
+    }
+
+    /**
+     * Gets the response times of the primary resolver.
+     *
+     * @return the response times of the primary resolver.
+     */
+    public LatencyHistogram getPrimaryLatencies()
+    {
+        return primaryLatencies;
+    }
+
+    /**
+     * Gets the response times of the backup resolvers.
+     *
+     * @return the response times of the backup resolvers.
+     */
+    public LatencyHistogram getBackupLatencies()
+    {
+        return backupLatencies;
+    }
+
+    /**
+     * Gets the number of queries which waited for the answer of an identical
+     * resolution in progress rather than being sent.
+     *
+     * @return the number of coalesced queries.
+     */
+    public long getCoalescedQueries()
+    {
+        return coalescedQueries.get();
+    }
+
+    /**
+     * Gets the number of times we entered redundant mode.
+     *
+     * @return the number of times we entered redundant mode.
+     */
+    public int getRedundantModeEntries()
+    {
+        synchronized(redemptionLock)
+        {
+            return redundantModeEntries;
+        }
+    }
+
+    /**
+     * Gets the total time spent in redundant mode.
+     *
+     * @return the number of milliseconds spent in redundant mode, including
+     * the current period if we are in redundant mode.
+     */
+    public long getRedundantModeTime()
+    {
+        synchronized(redemptionLock)
+        {
+            return redundantMode
+                ? redundantModeTime
+                    + System.currentTimeMillis() - redundantModeSince
+                : redundantModeTime;
+        }
+    }
+
+    /**
+     * Gets the number of timely responses the primary resolver still has to
+     * provide before we exit redundant mode.
+     *
+     * @return the remaining redemption count or <tt>0</tt> if we are not in
+     * redundant mode.
+     */
+    public int getRedemptionStatus()
+    {
+        synchronized(redemptionLock)
+        {
+            return redundantMode ? redemptionStatus : 0;
+        }
+    }
+
+    /**
+     * Returns a printable summary of the statistics of this resolver.
+     *
+     * @return a printable summary of the statistics of this resolver.
+     */
+    public String getStatistics()
+    {
+        return "Primary: [" + primaryLatencies + "]"
+            + " backup: [" + backupLatencies + "]"
+            + " coalesced: " + getCoalescedQueries()
+            + " redundant mode entries: " + getRedundantModeEntries()
+            + " time in redundant mode: " + getRedundantModeTime() + "ms";
+    }
+
     /**
      * Supposed to asynchronously send messages but not currently implemented.
      *
@@ -369,7 +630,7 @@ public class ParallelResolverImpl
      */
     public final void reset()
     {
-        Lookup.refreshDefault();
+        DnsUtilActivator.refreshDefaultLookup();
 
         // populate with new servers after refreshing configuration
         try
@@ -472,6 +733,12 @@ public class ParallelResolverImpl
          */
         private volatile boolean primaryResolverRespondedFirst = true;
 
+        /**
+         * Released when the thread which performs this resolution is done
+         * with it so that the identical queries waiting for it may return.
+         */
+        private final CountDownLatch completed = new CountDownLatch(1);
+
         /**
          * Creates a {@link ParallelResolution} for the specified <tt>query</tt>
          *
@@ -489,7 +756,7 @@ public class ParallelResolverImpl
          */
         public void sendFirstQuery()
         {
-            ParallelResolverImpl.this.backupQueriesPool.execute(this);
+            primaryQueriesPool.execute(this);
         }
 
         /**
@@ -499,17 +766,21 @@ public class ParallelResolverImpl
         public void run()
         {
             Message localResponse = null;
+            long start = System.currentTimeMillis();
             try
             {
                 localResponse = defaultResolver.send(query);
+                primaryLatencies.record(System.currentTimeMillis() - start);
             }
             catch (SocketTimeoutException exc)
             {
+                primaryLatencies.recordFailure();
                 logger.info("Default DNS resolver timed out.");
                 this.exception = exc;
             }
             catch (Throwable exc)
             {
+                primaryLatencies.recordFailure();
                 logger.info("Default DNS resolver failed", exc);
                 this.exception = exc;
             }
@@ -551,6 +822,7 @@ public class ParallelResolverImpl
                     }
 
                     Message localResponse = null;
+                    long start = System.currentTimeMillis();
                     try
                     {
                         logger.info("Sending query for "
@@ -558,9 +830,12 @@ public class ParallelResolverImpl
                             + Type.string(query.getQuestion().getType())
                             + " to backup resolvers");
                         localResponse = backupResolver.send(query);
+                        backupLatencies.record(
+                            System.currentTimeMillis() - start);
                     }
                     catch (Throwable exc)
                     {
+                        backupLatencies.recordFailure();
                         logger.info("Exception occurred during backup "
                                     +"DNS resolving" + exc);
 
@@ -643,6 +918,64 @@ public class ParallelResolverImpl
             if(!done)
                 waitForResponse(0);
 
+            return responseOrThrowUp();
+        }
+
+        /**
+         * Marks this resolution as completed by the thread which performed
+         * it.
+         */
+        public void complete()
+        {
+            completed.countDown();
+        }
+
+        /**
+         * Waits for the thread which performs this resolution to complete it
+         * and then returns a copy of the response bearing the ID of an
+         * identical <tt>query</tt> or throws whatever exception we saw.
+         *
+         * @param query the identical query which waited for this resolution.
+         * @return the response {@link Message} we received from the DNS.
+         *
+         * @throws IOException if this resolution ended badly because of a
+         * network IO error or if we got interrupted while waiting
+         */
+        public Message returnSharedResponseOrThrowUp(Message query)
+            throws IOException
+        {
+            try
+            {
+                completed.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                    "Interrupted while waiting for DNS resolution");
+            }
+
+            Message sharedResponse = (Message) responseOrThrowUp().clone();
+            sharedResponse.getHeader().setID(query.getHeader().getID());
+            return sharedResponse;
+        }
+
+        /**
+         * Returns the response we received or throws whatever exception we
+         * saw, without waiting.
+         *
+         * @return the response {@link Message} we received from the DNS.
+         *
+         * @throws IOException if this resolution ended badly because of a
+         * network IO error
+         * @throws RuntimeException if something unexpected happened
+         * during resolution.
+         * @throws IllegalArgumentException if something unexpected happened
+         * during resolution or if there was no response.
+         */
+        private Message responseOrThrowUp()
+            throws IOException, RuntimeException, IllegalArgumentException
+        {
             if(response != null)
             {
                 return response;
@@ -0,0 +1,618 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.dns;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.service.dns.*;
+import net.java.sip.communicator.util.*;
+
+import org.xbill.DNS.*;
+
+/**
+ * A dnsjava <tt>Cache</tt> which remembers the answers it receives beyond
+ * their TTL and across restarts. It is installed as the default cache of
+ * <tt>Lookup</tt> for the <tt>IN</tt> class.
+ * <p>
+ * The answers are saved to a file when the application shuts down and loaded
+ * when it starts. When a lookup misses the regular cache, a remembered answer
+ * is used if it has not been expired for more than the max-stale period: an
+ * answer still within its TTL is served as is, an expired one (or one which
+ * predates the last network change) is served with a short TTL while a fresh
+ * answer is requested in the background. This lets the accounts start
+ * registering before the network has answered any query.
+ * </p>
+ * <p>
+ * Remembered answers skip the validation of the DNSSEC resolver. When it is
+ * installed, an answer is therefore only served if it was validated the way
+ * the <tt>SecureResolveMode</tt> of its domain requires.
+ * </p>
+ */
+public class PersistentDnsCache
+    extends Cache
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>PersistentDnsCache</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(PersistentDnsCache.class);
+
+    /**
+     * The name of the property that enables the persistent DNS cache.
+     */
+    public static final String PNAME_PERSISTENT_CACHE_ENABLED
+        = "net.java.sip.communicator.util.dns.PERSISTENT_CACHE_ENABLED";
+
+    /**
+     * The default value of {@link #PNAME_PERSISTENT_CACHE_ENABLED}.
+     */
+    public static final boolean PDEFAULT_PERSISTENT_CACHE_ENABLED = true;
+
+    /**
+     * The name of the property that defines for how many seconds past their
+     * TTL the remembered answers may be served.
+     */
+    public static final String PNAME_MAX_STALE
+        = "net.java.sip.communicator.util.dns.MAX_STALE";
+
+    /**
+     * The default value of {@link #PNAME_MAX_STALE}: one day.
+     */
+    public static final long PDEFAULT_MAX_STALE = 24 * 60 * 60;
+
+    /**
+     * The TTL in seconds of a stale answer put in the regular cache while a
+     * fresh one is being requested.
+     */
+    private static final long STALE_TTL = 30;
+
+    /**
+     * The maximum number of remembered answers.
+     */
+    private static final int MAX_ENTRIES = 512;
+
+    /**
+     * The version of the format of the cache file.
+     */
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * The remembered answers in least recently used order.
+     */
+    private final LinkedHashMap<String, StoredRRset> store
+        = new LinkedHashMap<String, StoredRRset>(64, 0.75f, true)
+        {
+            private static final long serialVersionUID = 0L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, StoredRRset> eldest)
+            {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    /**
+     * The keys of the answers being revalidated.
+     */
+    private final Set<String> revalidating = new HashSet<String>();
+
+    /**
+     * The thread which requests fresh answers for the stale ones.
+     */
+    private final ThreadPoolExecutor revalidationPool;
+
+    /**
+     * The number of milliseconds past their TTL the remembered answers may be
+     * served.
+     */
+    private final long maxStale;
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param maxStale the number of seconds past their TTL the remembered
+     * answers may be served.
+     */
+    PersistentDnsCache(long maxStale)
+    {
+        super(DClass.IN);
+        this.maxStale = maxStale * 1000;
+
+        revalidationPool = new ThreadPoolExecutor(
+            1, 1,
+            30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "DnsCacheRevalidation");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        revalidationPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Makes this cache the default cache of <tt>Lookup</tt>. Has to be called
+     * again after <tt>Lookup.refreshDefault()</tt>, which replaces the
+     * default caches.
+     */
+    void install()
+    {
+        Lookup.setDefaultCache(this, DClass.IN);
+    }
+
+    /**
+     * Stops the revalidation of stale answers.
+     */
+    void stop()
+    {
+        revalidationPool.shutdownNow();
+    }
+
+    /**
+     * Clears the regular cache. The remembered answers are kept but have to
+     * be revalidated before they are served as fresh again, since they may
+     * have been obtained through another network.
+     */
+    @Override
+    public void clearCache()
+    {
+        super.clearCache();
+
+        synchronized(store)
+        {
+            for(StoredRRset stored : store.values())
+                stored.revalidate = true;
+        }
+    }
+
+    /**
+     * Adds the answer to a query to the regular cache and remembers the
+     * records of its answer section.
+     *
+     * @param response the answer to a query.
+     * @return the result of the addition to the regular cache.
+     */
+    @Override
+    public SetResponse addMessage(Message response)
+    {
+        SetResponse result = super.addMessage(response);
+
+        if(response.getRcode() != Rcode.NOERROR)
+            return result;
+
+        boolean secure = false;
+        boolean bogus = false;
+        if(response instanceof SecureMessage)
+        {
+            secure = ((SecureMessage) response).isSecure();
+            bogus = ((SecureMessage) response).isBogus();
+        }
+
+        long now = System.currentTimeMillis();
+        RRset[] rrsets = response.getSectionRRsets(Section.ANSWER);
+        synchronized(store)
+        {
+            for(RRset rrset : rrsets)
+            {
+                if(rrset.getDClass() != DClass.IN
+                    || rrset.getType() == Type.RRSIG)
+                    continue;
+
+                StoredRRset stored
+                    = new StoredRRset(rrset.getName(), rrset.getType(),
+                        now + rrset.getTTL() * 1000, secure, bogus);
+                Iterator<?> rrs = rrset.rrs();
+                while(rrs.hasNext())
+                {
+                    stored.rdata.add(
+                        ((Record) rrs.next()).rdataToWireCanonical());
+                }
+                store.put(getKey(stored.name, stored.type), stored);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up records in the regular cache and, if they are unknown there,
+     * serves the remembered answer, if any.
+     *
+     * @param name the name to look up.
+     * @param type the type to look up.
+     * @param minCred the minimum acceptable credibility.
+     * @return the result of the lookup.
+     */
+    @Override
+    public SetResponse lookupRecords(Name name, int type, int minCred)
+    {
+        SetResponse response = super.lookupRecords(name, type, minCred);
+        if(!response.isUnknown())
+            return response;
+
+        StoredRRset stored = getUsable(name, type);
+        if(stored == null && type != Type.CNAME)
+            stored = getUsable(name, Type.CNAME);
+        if(stored == null)
+            return response;
+
+        long now = System.currentTimeMillis();
+        boolean stale = stored.revalidate || stored.expires <= now;
+        long ttl = stale ? STALE_TTL : (stored.expires - now) / 1000;
+
+        if(logger.isTraceEnabled())
+        {
+            logger.trace("Serving " + (stale ? "stale" : "remembered")
+                + " answer for " + name + "/" + Type.string(stored.type));
+        }
+
+        super.addRRset(stored.toRRset(ttl), Credibility.NORMAL);
+        if(stale)
+            revalidate(stored.name, stored.type);
+
+        return super.lookupRecords(name, type, minCred);
+    }
+
+    /**
+     * Returns the remembered answer for a name and type if it may be served.
+     *
+     * @param name the name to look up.
+     * @param type the type to look up.
+     * @return the remembered answer or <tt>null</tt> if there is none, it is
+     * expired for longer than the max-stale period or it does not satisfy the
+     * DNSSEC validation mode of its domain.
+     */
+    private StoredRRset getUsable(Name name, int type)
+    {
+        StoredRRset stored;
+        String key = getKey(name, type);
+
+        synchronized(store)
+        {
+            stored = store.get(key);
+            if(stored == null)
+                return null;
+
+            if(System.currentTimeMillis() - stored.expires > maxStale)
+            {
+                store.remove(key);
+                return null;
+            }
+        }
+
+        return isAcceptable(stored) ? stored : null;
+    }
+
+    /**
+     * Determines whether a remembered answer satisfies the DNSSEC validation
+     * mode of its domain.
+     *
+     * @param stored the remembered answer.
+     * @return <tt>true</tt> if the answer may be served without being
+     * validated again.
+     */
+    private static boolean isAcceptable(StoredRRset stored)
+    {
+        Resolver resolver = Lookup.getDefaultResolver();
+        if(!(resolver instanceof ConfigurableDnssecResolver))
+            return true;
+
+        switch(((ConfigurableDnssecResolver) resolver)
+            .getResolveMode(stored.name.toString()))
+        {
+        case IgnoreDnssec:
+            return true;
+        case SecureOrUnsigned:
+        case WarnIfBogus:
+            return !stored.bogus;
+        default:
+            // the other modes would reject or ask about unsigned answers
+            return stored.secure;
+        }
+    }
+
+    /**
+     * Requests a fresh answer for a stale one in the background.
+     *
+     * @param name the name of the stale answer.
+     * @param type the type of the stale answer.
+     */
+    private void revalidate(final Name name, final int type)
+    {
+        final String key = getKey(name, type);
+
+        synchronized(revalidating)
+        {
+            if(!revalidating.add(key))
+                return;
+        }
+
+        try
+        {
+            revalidationPool.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Message response = Lookup.getDefaultResolver().send(
+                            Message.newQuery(
+                                Record.newRecord(name, type, DClass.IN)));
+
+                        // replace the stale answer in the regular cache
+                        flushSet(name, type);
+                        synchronized(store)
+                        {
+                            store.remove(key);
+                        }
+                        addMessage(response);
+                    }
+                    catch(DnssecRuntimeException e)
+                    {
+                        // the answer failed validation, forget it
+                        flushSet(name, type);
+                        synchronized(store)
+                        {
+                            store.remove(key);
+                        }
+                    }
+                    catch(Throwable t)
+                    {
+                        // keep serving the stale answer until max-stale
+                        if(logger.isDebugEnabled())
+                        {
+                            logger.debug("Revalidation of " + name + "/"
+                                + Type.string(type) + " failed", t);
+                        }
+                    }
+                    finally
+                    {
+                        synchronized(revalidating)
+                        {
+                            revalidating.remove(key);
+                        }
+                    }
+                }
+            });
+        }
+        catch(RejectedExecutionException e)
+        {
+            // stopped
+            synchronized(revalidating)
+            {
+                revalidating.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Loads the answers remembered by a previous run.
+     *
+     * @param file the file written by {@link #save(File)}.
+     */
+    void load(File file)
+    {
+        if(!file.exists())
+            return;
+
+        DataInputStream in = null;
+        int count = 0;
+        try
+        {
+            in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+            if(in.readInt() != FILE_VERSION)
+                return;
+
+            long now = System.currentTimeMillis();
+            int size = in.readInt();
+            synchronized(store)
+            {
+                for(int i = 0; i < size; i++)
+                {
+                    StoredRRset stored = new StoredRRset(
+                        Name.fromString(in.readUTF()),
+                        in.readInt(),
+                        in.readLong(),
+                        in.readBoolean(),
+                        in.readBoolean());
+                    int records = in.readInt();
+                    for(int j = 0; j < records; j++)
+                    {
+                        byte[] rdata = new byte[in.readUnsignedShort()];
+                        in.readFully(rdata);
+                        stored.rdata.add(rdata);
+                    }
+
+                    if(now - stored.expires <= maxStale)
+                    {
+                        store.put(getKey(stored.name, stored.type), stored);
+                        count++;
+                    }
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            logger.warn("Failed to load the DNS cache from " + file, e);
+        }
+        finally
+        {
+            if(in != null)
+            {
+                try
+                {
+                    in.close();
+                }
+                catch(IOException e)
+                {
+                }
+            }
+        }
+
+        if(logger.isInfoEnabled())
+            logger.info("Loaded " + count + " DNS answers from " + file);
+    }
+
+    /**
+     * Saves the remembered answers which are still usable.
+     *
+     * @param file the file to write.
+     */
+    void save(File file)
+    {
+        List<StoredRRset> toSave;
+        long now = System.currentTimeMillis();
+
+        synchronized(store)
+        {
+            toSave = new ArrayList<StoredRRset>(store.size());
+            for(StoredRRset stored : store.values())
+            {
+                if(now - stored.expires <= maxStale)
+                    toSave.add(stored);
+            }
+        }
+
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(FILE_VERSION);
+            out.writeInt(toSave.size());
+            for(StoredRRset stored : toSave)
+            {
+                out.writeUTF(stored.name.toString());
+                out.writeInt(stored.type);
+                out.writeLong(stored.expires);
+                out.writeBoolean(stored.secure);
+                out.writeBoolean(stored.bogus);
+                out.writeInt(stored.rdata.size());
+                for(byte[] rdata : stored.rdata)
+                {
+                    out.writeShort(rdata.length);
+                    out.write(rdata);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            logger.warn("Failed to save the DNS cache to " + file, e);
+        }
+        finally
+        {
+            if(out != null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch(IOException e)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the key of a remembered answer.
+     *
+     * @param name the name of the answer.
+     * @param type the type of the answer.
+     * @return the key of the answer.
+     */
+    private static String getKey(Name name, int type)
+    {
+        return name.toString().toLowerCase() + "/" + type;
+    }
+
+    /**
+     * The records of an answer and what is known about its validation.
+     */
+    private static class StoredRRset
+    {
+        /**
+         * The name of the records.
+         */
+        final Name name;
+
+        /**
+         * The type of the records.
+         */
+        final int type;
+
+        /**
+         * The time in milliseconds at which the TTL of the records ends.
+         */
+        final long expires;
+
+        /**
+         * Whether the answer was validated by DNSSEC.
+         */
+        final boolean secure;
+
+        /**
+         * Whether the answer failed DNSSEC validation.
+         */
+        final boolean bogus;
+
+        /**
+         * The data of the records in canonical wire format.
+         */
+        final List<byte[]> rdata = new ArrayList<byte[]>();
+
+        /**
+         * Whether the answer has to be revalidated before it is served as
+         * fresh again.
+         */
+        volatile boolean revalidate = false;
+
+        /**
+         * Creates a new instance of this class.
+         *
+         * @param name the name of the records.
+         * @param type the type of the records.
+         * @param expires the time at which the TTL of the records ends.
+         * @param secure whether the answer was validated by DNSSEC.
+         * @param bogus whether the answer failed DNSSEC validation.
+         */
+        StoredRRset(Name name, int type, long expires, boolean secure,
+            boolean bogus)
+        {
+            this.name = name;
+            this.type = type;
+            this.expires = expires;
+            this.secure = secure;
+            this.bogus = bogus;
+        }
+
+        /**
+         * Rebuilds the records with the specified TTL.
+         *
+         * @param ttl the TTL of the records in seconds.
+         * @return the records.
+         */
+        RRset toRRset(long ttl)
+        {
+            RRset rrset = new RRset();
+            for(byte[] data : rdata)
+            {
+                rrset.addRR(Record.newRecord(
+                    name, type, DClass.IN, ttl, data));
+            }
+            return rrset;
+        }
+    }
+}
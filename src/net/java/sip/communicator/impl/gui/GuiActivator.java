@@ -115,8 +115,13 @@ public class GuiActivator implements BundleActivator
     private static final Map<Object, ProtocolProviderFactory>
         providerFactoriesMap = new Hashtable<Object, ProtocolProviderFactory>();
 
-    private static final Map<String, ReplacementService>
-        replacementSourcesMap = new Hashtable<String, ReplacementService>();
+    /**
+     * The <tt>ReplacementService</tt>s mapped by their source name.
+     */
+    private static final ServiceCache<ReplacementService> replacementSources
+        = new ServiceCache<ReplacementService>(
+                ReplacementService.class,
+                ReplacementService.SOURCE_NAME);
 
     /**
      * Indicates if this bundle has been started.
@@ -142,6 +147,20 @@ public class GuiActivator implements BundleActivator
 
         ConfigurationUtils.loadGuiConfigurations();
 
+        replacementSources.addServiceCacheListener(
+            new ServiceCache.ServiceCacheListener<ReplacementService>()
+            {
+                public void servicesChanged(
+                    ServiceCache<ReplacementService> cache)
+                {
+                    // The smilies and direct image sources are replacement
+                    // sources too, look them up again.
+                    smiliesService = null;
+                    directImageService = null;
+                }
+            });
+        replacementSources.open(bContext);
+
         try
         {
             alertUIService = new AlertUIServiceImpl();
@@ -226,6 +245,7 @@ public class GuiActivator implements BundleActivator
 
         bContext.removeServiceListener(uiService);
         alertUIService.dispose();
+        replacementSources.close();
     }
 
     /**
@@ -606,33 +626,7 @@ public class GuiActivator implements BundleActivator
      */
     public static Map<String, ReplacementService> getReplacementSources()
     {
-        ServiceReference[] serRefs = null;
-        try
-        {
-            // get all registered sources
-            serRefs
-                = bundleContext.getServiceReferences(ReplacementService.class
-                    .getName(), null);
-
-        }
-        catch (InvalidSyntaxException e)
-        {
-            logger.error("Error : " + e);
-        }
-
-        if (serRefs != null)
-        {
-            for (int i = 0; i < serRefs.length; i++)
-            {
-                ReplacementService replacementSources =
-                    (ReplacementService) bundleContext.getService(serRefs[i]);
-
-                replacementSourcesMap.put((String)serRefs[i]
-                    .getProperty(ReplacementService.SOURCE_NAME),
-                    replacementSources);
-            }
-        }
-        return replacementSourcesMap;
+        return replacementSources.getServiceMap();
     }
 
     /**
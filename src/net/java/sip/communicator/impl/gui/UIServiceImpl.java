@@ -195,6 +195,10 @@ public class UIServiceImpl
             KeyboardFocusManager.getCurrentKeyboardFocusManager();
         focusManager.
             addKeyEventDispatcher(new KeyBindingsDispatching(focusManager));
+
+        // Let the deferred bundles start now that they cannot delay the main
+        // window any more.
+        StartupProfiler.mark(StartupProfiler.UI_LOADED);
     }
 
     /**
@@ -1716,6 +1716,7 @@ public class MainFrame
                         setFocusableWindowState(false);
 
                     MainFrame.super.setVisible(isVisible);
+                    StartupProfiler.mark(StartupProfiler.MAIN_WINDOW_SHOWN);
 
                     if (focusedWindow != null)
                         setFocusableWindowState(true);
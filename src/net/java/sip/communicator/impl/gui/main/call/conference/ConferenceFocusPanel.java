@@ -66,6 +66,14 @@ public class ConferenceFocusPanel
 
     private final FocusPeerListener focusPeerListener = new FocusPeerListener();
 
+    /**
+     * Dispatches the audio/sound levels of the <tt>ConferenceMember</tt>s of
+     * {@link #focusPeer} to {@link #focusPeerPanel} and
+     * {@link #conferenceMemberPanels}.
+     */
+    private final ConferenceSoundLevelDispatcher soundLevelDispatcher
+        = new ConferenceSoundLevelDispatcher();
+
     /**
      * The <tt>ConferencePeerPanel</tt> which depicts {@link #focusPeer} without
      * the <tt>ConferenceMember</tt>s which participate in the telephony
@@ -108,8 +116,11 @@ public class ConferenceFocusPanel
         this.focusPeer.addCallPeerConferenceListener(focusPeerListener);
         if (ConferencePeerPanel.isSoundLevelIndicatorEnabled())
         {
+            soundLevelDispatcher.subscribe(
+                    focusPeerPanel.getCallPeerContactAddress(),
+                    focusPeerPanel);
             this.focusPeer.addConferenceMembersSoundLevelListener(
-                    focusPeerListener);
+                    soundLevelDispatcher);
         }
 
         for (ConferenceMember conferenceMember
@@ -158,6 +169,9 @@ public class ConferenceFocusPanel
          * ConferenceMember.
          */
         conferenceMemberPanels.put(conferenceMember, conferenceMemberPanel);
+        soundLevelDispatcher.subscribe(
+                conferenceMember,
+                conferenceMemberPanel);
 
         /*
          * Add the newly-initialized ConferenceMemberPanel to the user interface
@@ -207,7 +221,9 @@ public class ConferenceFocusPanel
     public void dispose()
     {
         focusPeer.removeCallPeerConferenceListener(focusPeerListener);
-        focusPeer.removeConferenceMembersSoundLevelListener(focusPeerListener);
+        focusPeer.removeConferenceMembersSoundLevelListener(
+                soundLevelDispatcher);
+        soundLevelDispatcher.dispose();
 
         if (focusPeerPanel != null)
             focusPeerPanel.dispose();
@@ -408,6 +424,8 @@ public class ConferenceFocusPanel
         ConferenceMemberPanel conferenceMemberPanel
             = conferenceMemberPanels.remove(conferenceMember);
 
+        soundLevelDispatcher.unsubscribe(conferenceMember);
+
         if (conferenceMemberPanel != null)
         {
             remove(conferenceMemberPanel);
@@ -595,7 +613,6 @@ public class ConferenceFocusPanel
      */
     private class FocusPeerListener
         extends CallPeerConferenceAdapter
-        implements ConferenceMembersSoundLevelListener
     {
         /**
          * {@inheritDoc}
@@ -605,47 +622,5 @@ public class ConferenceFocusPanel
         {
             ConferenceFocusPanel.this.onCallPeerConferenceEvent(ev);
         }
-
-        /**
-         * {@inheritDoc}
-         *
-         * Notifies this listener about changes in the audio/sound level-related
-         * information of the <tt>ConferenceMember</tt>s of
-         * {@link ConferenceFocusPanel#focusPeer}. Updates the user interface
-         * which displays the audio/sound levels i.e.
-         * <tt>SoundLevelIndicator</tt>.
-         */
-        public void soundLevelChanged(ConferenceMembersSoundLevelEvent ev)
-        {
-            Map<ConferenceMember, Integer> levels = ev.getLevels();
-
-            // focusPeerPanel
-            String address = focusPeerPanel.getCallPeerContactAddress();
-
-            for(Map.Entry<ConferenceMember, Integer> e : levels.entrySet())
-            {
-                ConferenceMember key = e.getKey();
-                Integer value = e.getValue();
-
-                if(CallManager.addressesAreEqual(key.getAddress(), address))
-                {
-                    focusPeerPanel.updateSoundBar(value);
-                    break;
-                }
-            }
-
-            // conferenceMemberPanels
-            for (Map.Entry<ConferenceMember, ConferenceMemberPanel> entry
-                    : conferenceMemberPanels.entrySet())
-            {
-                ConferenceMember member = entry.getKey();
-                Integer memberSoundLevel = levels.get(member);
-
-                entry.getValue().updateSoundBar(
-                        (memberSoundLevel == null)
-                            ? 0
-                            : memberSoundLevel.intValue());
-            }
-        }
     }
 }
@@ -257,8 +257,6 @@ public class ConferencePeerPanel
             callPeerAdapter.dispose();
         if (callPeer != null)
         {
-            callPeer.removeConferenceMembersSoundLevelListener(
-                    soundLevelListener);
             callPeer.removeStreamSoundLevelListener(soundLevelListener);
         }
         if (call != null)
@@ -775,38 +773,16 @@ public class ConferencePeerPanel
     }
 
     /**
-     * Implements the various types of listeners which get notified about
-     * changes in the sound/audio levels of the model of this
-     * <tt>ConferencePeerPanel</tt> and updates its sound level indicator.
+     * Implements the listener which gets notified about changes in the
+     * sound/audio levels of the model of this <tt>ConferencePeerPanel</tt> and
+     * updates its sound level indicator. The levels of the
+     * <tt>ConferenceMember</tt>s of a conference focus are delivered by the
+     * <tt>ConferenceSoundLevelDispatcher</tt> of its
+     * <tt>ConferenceFocusPanel</tt>.
      */
     private class SoundLevelListenerImpl
-        implements ConferenceMembersSoundLevelListener,
-                   SoundLevelListener
+        implements SoundLevelListener
     {
-        /**
-         * {@inheritDoc}
-         */
-        public void soundLevelChanged(ConferenceMembersSoundLevelEvent ev)
-        {
-            /*
-             * If the callPeer depicted by this ConferencePeerPanel instance is
-             * represented as a ConferenceMember, update the sound level
-             * indicator of this ConferencePeerPanel instance with the specified
-             * sound level (value).
-             */
-            for (Map.Entry<ConferenceMember,Integer> e
-                    : ev.getLevels().entrySet())
-            {
-                if (CallManager.addressesAreEqual(
-                        e.getKey().getAddress(),
-                        callPeer.getAddress()))
-                {
-                    updateSoundBar(e.getValue());
-                    break;
-                }
-            }
-        }
-
         /**
          * {@inheritDoc}
          */
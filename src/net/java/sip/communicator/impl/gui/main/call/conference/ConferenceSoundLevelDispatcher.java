@@ -0,0 +1,319 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.gui.main.call.conference;
+
+import java.awt.event.*;
+import java.util.*;
+
+import javax.swing.Timer;
+
+import net.java.sip.communicator.impl.gui.main.call.*;
+import net.java.sip.communicator.service.protocol.*;
+import net.java.sip.communicator.service.protocol.event.*;
+
+/**
+ * Dispatches the audio/sound levels of the <tt>ConferenceMember</tt>s of a
+ * conference focus to the panels which depict them. Each panel subscribes for
+ * its own <tt>ConferenceMember</tt>, or for the address of the
+ * <tt>CallPeer</tt> it depicts, so that an event costs a lookup per member
+ * instead of a scan of all the levels by every panel. An address is matched
+ * against the members with {@link CallManager#addressesAreEqual(String,
+ * String)} only the first time the member is seen.
+ * <p>
+ * The levels arrive on a media thread many times a second. The dispatcher
+ * keeps the latest level of every subscriber and delivers them at most once
+ * every {@link #FRAME_INTERVAL} milliseconds, all of them in a single pass on
+ * the event dispatch thread, so that the indicators repaint together.
+ * </p>
+ */
+class ConferenceSoundLevelDispatcher
+    implements ConferenceMembersSoundLevelListener,
+               ActionListener
+{
+    /**
+     * The interval in milliseconds between two deliveries of the levels.
+     */
+    static final int FRAME_INTERVAL = 40;
+
+    /**
+     * The subscription of the members which no panel has subscribed for, so
+     * that they are not matched against the addresses again.
+     */
+    private static final Subscription NO_SUBSCRIPTION = new Subscription(null);
+
+    /**
+     * The subscriptions for addresses, by address.
+     */
+    private final Map<String, Subscription> addressSubscriptions
+        = new HashMap<String, Subscription>();
+
+    /**
+     * The subscriptions by <tt>ConferenceMember</tt>, including the members
+     * matched with an address subscription and those which matched none.
+     */
+    private final Map<ConferenceMember, Subscription> memberSubscriptions
+        = new HashMap<ConferenceMember, Subscription>();
+
+    /**
+     * The subscriptions for <tt>ConferenceMember</tt>s, which are given the
+     * minimum level when an event carries no level for their member.
+     */
+    private final Set<Subscription> explicitMemberSubscriptions
+        = new HashSet<Subscription>();
+
+    /**
+     * The subscriptions whose level has been updated since the last
+     * delivery.
+     */
+    private final Set<Subscription> dirtySubscriptions
+        = new LinkedHashSet<Subscription>();
+
+    /**
+     * The timer which paces the deliveries on the event dispatch thread.
+     */
+    private final Timer frameTimer;
+
+    /**
+     * Initializes a new dispatcher.
+     */
+    ConferenceSoundLevelDispatcher()
+    {
+        frameTimer = new Timer(FRAME_INTERVAL, this);
+        frameTimer.setRepeats(false);
+        frameTimer.setCoalesce(true);
+    }
+
+    /**
+     * Subscribes a panel for the levels of a <tt>ConferenceMember</tt>.
+     *
+     * @param member the <tt>ConferenceMember</tt>.
+     * @param panel the panel which depicts <tt>member</tt>.
+     */
+    synchronized void subscribe(
+            ConferenceMember member,
+            BasicConferenceParticipantPanel<?> panel)
+    {
+        Subscription subscription = new Subscription(panel);
+
+        memberSubscriptions.put(member, subscription);
+        explicitMemberSubscriptions.add(subscription);
+    }
+
+    /**
+     * Subscribes a panel for the levels of the <tt>ConferenceMember</tt>
+     * which has a specific address.
+     *
+     * @param address the address of the <tt>ConferenceMember</tt>.
+     * @param panel the panel which depicts the owner of <tt>address</tt>.
+     */
+    synchronized void subscribe(
+            String address,
+            BasicConferenceParticipantPanel<?> panel)
+    {
+        addressSubscriptions.put(address, new Subscription(panel));
+        forgetMatches();
+    }
+
+    /**
+     * Unsubscribes the panel which depicts a <tt>ConferenceMember</tt> and
+     * forgets the member, including the {@link #NO_SUBSCRIPTION} it has been
+     * given if no panel depicts it.
+     *
+     * @param member the <tt>ConferenceMember</tt> which has been removed.
+     */
+    synchronized void unsubscribe(ConferenceMember member)
+    {
+        Subscription subscription = memberSubscriptions.remove(member);
+
+        if ((subscription != null)
+                && explicitMemberSubscriptions.remove(subscription))
+            dirtySubscriptions.remove(subscription);
+    }
+
+    /**
+     * Unsubscribes all the panels and stops the deliveries.
+     */
+    synchronized void dispose()
+    {
+        frameTimer.stop();
+        addressSubscriptions.clear();
+        memberSubscriptions.clear();
+        explicitMemberSubscriptions.clear();
+        dirtySubscriptions.clear();
+    }
+
+    /**
+     * Forgets which members matched which address subscriptions, so that
+     * they are matched again against the current ones.
+     */
+    private void forgetMatches()
+    {
+        Iterator<Subscription> i = memberSubscriptions.values().iterator();
+
+        while (i.hasNext())
+        {
+            if (!explicitMemberSubscriptions.contains(i.next()))
+                i.remove();
+        }
+    }
+
+    /**
+     * Returns the subscription which a <tt>ConferenceMember</tt> is
+     * delivered to, matching its address against the address subscriptions
+     * the first time it is seen.
+     *
+     * @param member the <tt>ConferenceMember</tt>.
+     * @return the subscription of <tt>member</tt> or {@link #NO_SUBSCRIPTION}.
+     */
+    private Subscription getSubscription(ConferenceMember member)
+    {
+        Subscription subscription = memberSubscriptions.get(member);
+
+        if (subscription == null)
+        {
+            subscription = NO_SUBSCRIPTION;
+
+            String memberAddress = member.getAddress();
+
+            if (memberAddress != null)
+            {
+                for (Map.Entry<String, Subscription> e
+                        : addressSubscriptions.entrySet())
+                {
+                    if (CallManager.addressesAreEqual(
+                            memberAddress,
+                            e.getKey()))
+                    {
+                        subscription = e.getValue();
+                        break;
+                    }
+                }
+            }
+            memberSubscriptions.put(member, subscription);
+        }
+        return subscription;
+    }
+
+    /**
+     * Records the levels of the members of the conference and schedules
+     * their delivery.
+     *
+     * @param ev the event which carries the levels.
+     */
+    public void soundLevelChanged(ConferenceMembersSoundLevelEvent ev)
+    {
+        Map<ConferenceMember, Integer> levels = ev.getLevels();
+        boolean dirty;
+
+        synchronized (this)
+        {
+            for (Subscription subscription : explicitMemberSubscriptions)
+                subscription.seen = false;
+
+            for (Map.Entry<ConferenceMember, Integer> e : levels.entrySet())
+            {
+                Subscription subscription = getSubscription(e.getKey());
+
+                if (subscription != NO_SUBSCRIPTION)
+                {
+                    subscription.seen = true;
+                    subscription.level = e.getValue();
+                    dirtySubscriptions.add(subscription);
+                }
+            }
+
+            for (Subscription subscription : explicitMemberSubscriptions)
+            {
+                if (!subscription.seen)
+                {
+                    subscription.level = 0;
+                    dirtySubscriptions.add(subscription);
+                }
+            }
+
+            /*
+             * A member removed before the last event which carried its level
+             * has been given NO_SUBSCRIPTION again, so forget the members
+             * without a panel which the event does not carry.
+             */
+            Iterator<Map.Entry<ConferenceMember, Subscription>> i
+                = memberSubscriptions.entrySet().iterator();
+
+            while (i.hasNext())
+            {
+                Map.Entry<ConferenceMember, Subscription> e = i.next();
+
+                if ((e.getValue() == NO_SUBSCRIPTION)
+                        && !levels.containsKey(e.getKey()))
+                    i.remove();
+            }
+
+            dirty = !dirtySubscriptions.isEmpty();
+        }
+
+        if (dirty && !frameTimer.isRunning())
+            frameTimer.start();
+    }
+
+    /**
+     * Delivers the latest levels to the panels on the event dispatch thread.
+     *
+     * @param ev the event of {@link #frameTimer}.
+     */
+    public void actionPerformed(ActionEvent ev)
+    {
+        Subscription[] subscriptions;
+
+        synchronized (this)
+        {
+            subscriptions
+                = dirtySubscriptions.toArray(
+                        new Subscription[dirtySubscriptions.size()]);
+            dirtySubscriptions.clear();
+        }
+
+        /*
+         * The level may be updated by a newer event while the panels are
+         * updated, the newer level will be delivered in the next frame
+         * anyway.
+         */
+        for (Subscription subscription : subscriptions)
+            subscription.panel.updateSoundBar(subscription.level);
+    }
+
+    /**
+     * The subscription of a panel for the levels of a member.
+     */
+    private static class Subscription
+    {
+        /**
+         * The panel the levels are delivered to.
+         */
+        final BasicConferenceParticipantPanel<?> panel;
+
+        /**
+         * The latest level, read on the event dispatch thread without the
+         * lock of the dispatcher.
+         */
+        volatile int level;
+
+        /**
+         * Whether the current event carries a level for the member.
+         */
+        boolean seen;
+
+        /**
+         * Initializes a new subscription.
+         *
+         * @param panel the panel the levels are delivered to.
+         */
+        Subscription(BasicConferenceParticipantPanel<?> panel)
+        {
+            this.panel = panel;
+        }
+    }
+}
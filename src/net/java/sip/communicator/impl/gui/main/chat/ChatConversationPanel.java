@@ -64,6 +64,13 @@ public class ChatConversationPanel
     private static final Logger logger
         = Logger.getLogger(ChatConversationPanel.class);
 
+    /**
+     * The length the document is trimmed down to once it has exceeded
+     * {@link Chat#CHAT_BUFFER_SIZE}.
+     */
+    private static final int CHAT_BUFFER_TRIM_SIZE
+        = Chat.CHAT_BUFFER_SIZE * 3 / 4;
+
     /**
      * The regular expression (in the form of compiled <tt>Pattern</tt>) which
      * matches URLs for the purposed of turning them into links.
@@ -158,6 +165,12 @@ public class ChatConversationPanel
      */
     private boolean scrollToBottomIsPending = false;
 
+    /**
+     * The number of batches of messages being appended to {@link #document},
+     * during which it is detached from {@link #chatTextPane}.
+     */
+    private int batchDepth = 0;
+
     private String lastMessageUID = null;
 
     private boolean isSimpleTheme = true;
@@ -646,7 +659,8 @@ public class ChatConversationPanel
                 // Need to call explicitly scrollToBottom, because for some
                 // reason the componentResized event isn't fired every time
                 // we add text.
-                SwingUtilities.invokeLater(scrollToBottomRunnable);
+                if (batchDepth == 0)
+                    SwingUtilities.invokeLater(scrollToBottomRunnable);
             }
             catch (BadLocationException ex)
             {
@@ -783,7 +797,8 @@ public class ChatConversationPanel
                 // Need to call explicitly scrollToBottom, because for some
                 // reason the componentResized event isn't fired every time we
                 // add text.
-                SwingUtilities.invokeLater(scrollToBottomRunnable);
+                if (batchDepth == 0)
+                    SwingUtilities.invokeLater(scrollToBottomRunnable);
             }
             catch (BadLocationException e)
             {
@@ -804,6 +819,34 @@ public class ChatConversationPanel
                 contentType);
     }
 
+    /**
+     * Starts a batch of messages appended to the document, e.g. the history of
+     * a chat. The document is detached from the editor pane until the batch
+     * ends, so that the views of the messages are created and laid out once
+     * for the whole batch rather than once per message. Must be called on the
+     * event dispatch thread and followed by {@link #endBatch()}.
+     */
+    public void startBatch()
+    {
+        if (batchDepth++ == 0)
+            chatTextPane.setDocument(editorKit.createDefaultDocument());
+    }
+
+    /**
+     * Ends a batch of messages started with {@link #startBatch()}: attaches
+     * the document back to the editor pane and scrolls to its bottom.
+     */
+    public void endBatch()
+    {
+        if (--batchDepth == 0)
+        {
+            setContent(document);
+
+            // The size of the editor pane may not change.
+            SwingUtilities.invokeLater(scrollToBottomRunnable);
+        }
+    }
+
     /**
      * Performs all operations needed in order to finish the adding of the
      * message to the document.
@@ -1047,33 +1090,52 @@ public class ChatConversationPanel
     }
 
     /**
-     * Ensures that the document won't become too big. When the document reaches
-     * a certain size the first message in the page is removed.
+     * Ensures that the document won't become too big. When the document
+     * exceeds {@link Chat#CHAT_BUFFER_SIZE} the oldest messages are removed in
+     * a single chunk, down to {@link #CHAT_BUFFER_TRIM_SIZE}, so that the
+     * document is trimmed and laid out again once in a while rather than
+     * after every message.
      */
     private void ensureDocumentSize()
     {
-        if (document.getLength() > Chat.CHAT_BUFFER_SIZE)
-        {
-            String[] ids = new String[]
-                                      {ChatHtmlUtils.MESSAGE_TEXT_ID,
-                                       "statusMessage",
-                                       "systemMessage",
-                                       "actionMessage"};
+        int length = document.getLength();
 
-            Element firstMsgElement = findElement(Attribute.ID, ids);
+        if (length <= Chat.CHAT_BUFFER_SIZE)
+            return;
 
-            int startIndex = firstMsgElement.getStartOffset();
-            int endIndex = firstMsgElement.getEndOffset();
+        Element root = document.getDefaultRootElement();
+        Element body = root.getElement(root.getElementCount() - 1);
 
-            try
-            {
-                // Remove the message.
-                this.document.remove(startIndex, endIndex - startIndex);
-            }
-            catch (BadLocationException e)
-            {
-                logger.error("Error removing messages from chat: ", e);
-            }
+        /*
+         * The messages are appended as children of the body so the first of
+         * them to keep is the one which contains the offset at which the
+         * kept text starts. The children are ordered by offset so it is
+         * found without walking the element tree.
+         */
+        int keepIndex
+            = body.getElementIndex(length - CHAT_BUFFER_TRIM_SIZE);
+
+        // Keep the header of the first kept message.
+        if ((keepIndex > 0)
+                && ChatHtmlUtils.MESSAGE_HEADER_ID.equals(
+                        body.getElement(keepIndex - 1).getAttributes()
+                            .getAttribute(Attribute.ID)))
+            keepIndex--;
+
+        if (keepIndex <= 0)
+            return;
+
+        int startIndex = body.getElement(0).getStartOffset();
+        int endIndex = body.getElement(keepIndex).getStartOffset();
+
+        try
+        {
+            // Remove the messages.
+            this.document.remove(startIndex, endIndex - startIndex);
+        }
+        catch (BadLocationException e)
+        {
+            logger.error("Error removing messages from chat: ", e);
         }
     }
 
@@ -1961,20 +2023,6 @@ public class ChatConversationPanel
         clear();
     }
 
-    /**
-     *
-     * @param attribute
-     * @param matchStrings
-     * @return
-     */
-    private Element findElement(HTML.Attribute attribute,
-                                String[] matchStrings)
-    {
-        return findFirstElement(document.getDefaultRootElement(),
-                                attribute,
-                                matchStrings);
-    }
-
     /**
      * Finds the first element with <tt>name</tt>.
      * @param name the name to search for.
@@ -1985,39 +2033,6 @@ public class ChatConversationPanel
         return findFirstElement(document.getDefaultRootElement(), name);
     }
 
-    /**
-     *
-     * @param element
-     * @param attrName
-     * @param matchStrings
-     * @return
-     */
-    private Element findFirstElement(   Element element,
-                                        HTML.Attribute attrName,
-                                        String[] matchStrings)
-    {
-        String attr = (String) element.getAttributes().getAttribute(attrName);
-
-        if(attr != null)
-            for (String matchString : matchStrings)
-                if (attr.startsWith(matchString))
-                    return element;
-
-        Element resultElement = null;
-
-        // Count how many messages we have in the document.
-        for (int i = 0; i < element.getElementCount(); i++)
-        {
-            resultElement = findFirstElement(element.getElement(i),
-                                        attrName,
-                                        matchStrings);
-            if (resultElement != null)
-                return resultElement;
-        }
-
-        return null;
-    }
-
     /**
      * Finds the first element with <tt>name</tt> among the child elements of
      * <tt>element</tt>.
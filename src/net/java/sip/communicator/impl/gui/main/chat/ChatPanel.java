@@ -145,6 +145,25 @@ public class ChatPanel
 
     private boolean isHistoryLoaded;
 
+    /**
+     * The time in milliseconds during which the messages replayed by a chat
+     * room are collected before they are appended to the conversation
+     * together.
+     */
+    private static final int REPLAY_BATCH_DELAY = 100;
+
+    /**
+     * The messages replayed by the chat room, and the messages which arrived
+     * after them, which wait to be appended to the conversation.
+     */
+    private final List<ChatMessage> replayedMessages
+        = new ArrayList<ChatMessage>();
+
+    /**
+     * The timer which appends {@link #replayedMessages} to the conversation.
+     */
+    private javax.swing.Timer replayTimer;
+
     /**
      * Stores all active  file transfer requests and effective transfers with
      * the identifier of the transfer.
@@ -437,6 +456,13 @@ public class ChatPanel
      */
     public void dispose()
     {
+        synchronized (replayedMessages)
+        {
+            if (replayTimer != null)
+                replayTimer.stop();
+            replayedMessages.clear();
+        }
+
         writeMessagePanel.dispose();
         chatSession.dispose();
         conversationPanel.dispose();
@@ -788,6 +814,29 @@ public class ChatPanel
      */
     private void processHistory( Collection<Object> historyList,
                                 String escapedMessageID)
+    {
+        conversationPanel.startBatch();
+        try
+        {
+            processHistoryBatch(historyList, escapedMessageID);
+        }
+        finally
+        {
+            conversationPanel.endBatch();
+        }
+
+        fireChatHistoryChange();
+    }
+
+    /**
+     * Appends history messages to the conversation.
+     *
+     * @param historyList The collection of messages coming from history.
+     * @param escapedMessageID The incoming message needed to be ignored if
+     * contained in history.
+     */
+    private void processHistoryBatch(Collection<Object> historyList,
+                                     String escapedMessageID)
     {
         Iterator<Object> iterator = historyList.iterator();
 
@@ -901,8 +950,6 @@ public class ChatPanel
                 conversationPanel.appendMessageToEnd(
                     historyString, ChatHtmlUtils.TEXT_CONTENT_TYPE);
         }
-
-        fireChatHistoryChange();
     }
 
     /**
@@ -945,6 +992,9 @@ public class ChatPanel
                 date, messageType, null, message, contentType,
                 messageUID, correctedMessageUID);
 
+        if (queueAfterReplayedMessages(chatMessage))
+            return;
+
         this.addChatMessage(chatMessage);
 
         // A bug Fix for Previous/Next buttons .
@@ -972,9 +1022,111 @@ public class ChatPanel
         ChatMessage chatMessage = new ChatMessage(contactName, date,
             messageType, title, message, contentType);
 
+        if (queueAfterReplayedMessages(chatMessage))
+            return;
+
         this.addChatMessage(chatMessage);
     }
 
+    /**
+     * Adds a message which the chat room has replayed from its history. The
+     * messages are replayed in a burst when the chat room is joined, so they
+     * are collected for {@link #REPLAY_BATCH_DELAY} milliseconds and appended
+     * to the conversation in a single batch.
+     *
+     * @param contactName the name of the contact sending the message
+     * @param date the time at which the message was sent or received
+     * @param messageType the type of the message. One of OUTGOING_MESSAGE
+     * or INCOMING_MESSAGE
+     * @param message the message text
+     * @param contentType the content type
+     * @param messageUID the identifier of the message
+     */
+    public void addReplayedMessage(String contactName, Date date,
+            String messageType, String message, String contentType,
+            String messageUID)
+    {
+        ChatMessage chatMessage = new ChatMessage(contactName, null,
+                date, messageType, null, message, contentType,
+                messageUID, null);
+
+        synchronized (replayedMessages)
+        {
+            replayedMessages.add(chatMessage);
+
+            if (replayTimer == null)
+            {
+                replayTimer
+                    = new javax.swing.Timer(
+                            REPLAY_BATCH_DELAY,
+                            new ActionListener()
+                            {
+                                public void actionPerformed(ActionEvent e)
+                                {
+                                    addReplayedMessages();
+                                }
+                            });
+                replayTimer.setRepeats(false);
+            }
+            if (replayedMessages.size() == 1)
+                replayTimer.restart();
+        }
+    }
+
+    /**
+     * Queues a message behind the replayed messages which wait to be appended
+     * to the conversation, if any, so that it is not displayed before them.
+     *
+     * @param chatMessage the message
+     * @return <tt>true</tt> if the message has been queued; <tt>false</tt>,
+     * otherwise
+     */
+    private boolean queueAfterReplayedMessages(ChatMessage chatMessage)
+    {
+        synchronized (replayedMessages)
+        {
+            if (replayedMessages.isEmpty())
+                return false;
+
+            replayedMessages.add(chatMessage);
+            return true;
+        }
+    }
+
+    /**
+     * Appends the replayed messages, and the messages which arrived after
+     * them, to the conversation in a single batch. Called on the event
+     * dispatch thread.
+     */
+    private void addReplayedMessages()
+    {
+        ChatMessage[] messages;
+
+        synchronized (replayedMessages)
+        {
+            messages
+                = replayedMessages.toArray(
+                        new ChatMessage[replayedMessages.size()]);
+            replayedMessages.clear();
+        }
+
+        if (messages.length == 0)
+            return;
+
+        conversationPanel.startBatch();
+        try
+        {
+            for (ChatMessage message : messages)
+                addChatMessage(message);
+        }
+        finally
+        {
+            conversationPanel.endBatch();
+        }
+
+        fireChatHistoryChange();
+    }
+
     /**
      * Passes the message to the contained <code>ChatConversationPanel</code>
      * for processing and appends it at the end of the conversationPanel
@@ -2866,21 +3018,41 @@ public class ChatPanel
     {
         synchronized (incomingEventBuffer)
         {
-            Iterator<Object> eventBufferIter = incomingEventBuffer.iterator();
+            if (incomingEventBuffer.isEmpty())
+                return;
 
-            while(eventBufferIter.hasNext())
+            conversationPanel.startBatch();
+            try
             {
-                Object incomingEvent = eventBufferIter.next();
+                addIncomingEventBatch();
+            }
+            finally
+            {
+                conversationPanel.endBatch();
+            }
+        }
+    }
 
-                if (incomingEvent instanceof ChatMessage)
-                {
-                    this.displayChatMessage((ChatMessage) incomingEvent);
-                }
-                else if (incomingEvent instanceof ChatConversationComponent)
-                {
-                    this.getChatConversationPanel()
-                        .addComponent((ChatConversationComponent)incomingEvent);
-                }
+    /**
+     * Adds the events of the incoming event buffer to the chat conversation
+     * panel. Called with the lock of the buffer held.
+     */
+    private void addIncomingEventBatch()
+    {
+        Iterator<Object> eventBufferIter = incomingEventBuffer.iterator();
+
+        while(eventBufferIter.hasNext())
+        {
+            Object incomingEvent = eventBufferIter.next();
+
+            if (incomingEvent instanceof ChatMessage)
+            {
+                this.displayChatMessage((ChatMessage) incomingEvent);
+            }
+            else if (incomingEvent instanceof ChatConversationComponent)
+            {
+                this.getChatConversationPanel()
+                    .addComponent((ChatConversationComponent)incomingEvent);
             }
         }
     }
@@ -162,15 +162,28 @@ public class ConferenceChatManager
 
             Message msg = evt.getMessage();
 
-            chatPanel.addMessage(
-                sourceChatRoom.getUserNickname(),
-                null,
-                evt.getTimestamp(),
-                messageType,
-                msg.getContent(),
-                msg.getContentType(),
-                msg.getMessageUID(),
-                null);
+            if (evt.isHistoryMessage())
+            {
+                chatPanel.addReplayedMessage(
+                    sourceChatRoom.getUserNickname(),
+                    evt.getTimestamp(),
+                    messageType,
+                    msg.getContent(),
+                    msg.getContentType(),
+                    msg.getMessageUID());
+            }
+            else
+            {
+                chatPanel.addMessage(
+                    sourceChatRoom.getUserNickname(),
+                    null,
+                    evt.getTimestamp(),
+                    messageType,
+                    msg.getContent(),
+                    msg.getContentType(),
+                    msg.getMessageUID(),
+                    null);
+            }
         }
     }
 
@@ -273,17 +286,27 @@ public class ConferenceChatManager
                 if (isPresent)
                     return;
             }
-        }
 
-        chatPanel.addMessage(
-            sourceMember.getName(),
-            null,
-            evt.getTimestamp(),
-            messageType,
-            messageContent,
-            message.getContentType(),
-            message.getMessageUID(),
-            null);
+            chatPanel.addReplayedMessage(
+                sourceMember.getName(),
+                evt.getTimestamp(),
+                messageType,
+                messageContent,
+                message.getContentType(),
+                message.getMessageUID());
+        }
+        else
+        {
+            chatPanel.addMessage(
+                sourceMember.getName(),
+                null,
+                evt.getTimestamp(),
+                messageType,
+                messageContent,
+                message.getContentType(),
+                message.getMessageUID(),
+                null);
+        }
 
         chatWindowManager.openChat(chatPanel, false);
     }
@@ -85,6 +85,13 @@ public class MetaContactListSource
     private static final Logger logger
         = Logger.getLogger(MetaContactListSource.class);
 
+    /**
+     * The index of the contacts of the contact list which the queries are
+     * answered from.
+     */
+    private final MetaContactSearchIndex searchIndex
+        = new MetaContactSearchIndex();
+
     /**
      * Returns the <tt>UIContact</tt> corresponding to the given
      * <tt>MetaContact</tt>.
@@ -201,11 +208,9 @@ public class MetaContactListSource
             @Override
             public void run()
             {
-                int resultCount = 0;
                 queryMetaContactSource( filterPattern,
                         GuiActivator.getContactListService().getRoot(),
-                        query,
-                        resultCount);
+                        query);
 
                 if (!query.isCanceled())
                     query.fireQueryEvent(
@@ -220,115 +225,68 @@ public class MetaContactListSource
     }
 
     /**
-     * Filters the children in the given <tt>MetaContactGroup</tt> to match the
-     * given <tt>filterPattern</tt> and stores the result in the given
-     * <tt>treeModel</tt>.
+     * Filters the contacts of the contact list to match the given
+     * <tt>filterPattern</tt> using the search index and stores the result in
+     * the contact list.
      * @param filterPattern the pattern to filter through
-     * @param parentGroup the <tt>MetaContactGroup</tt> to filter
+     * @param root the root group of the contact list
      * @param query the object that tracks the query
-     * @param resultCount the initial result count we would insert directly to
-     * the contact list without firing events
      */
-    public void queryMetaContactSource(Pattern filterPattern,
-                                        MetaContactGroup parentGroup,
-                                        MetaContactQuery query,
-                                        int resultCount)
+    private void queryMetaContactSource(Pattern filterPattern,
+                                        MetaContactGroup root,
+                                        MetaContactQuery query)
     {
-        Iterator<MetaContact> childContacts = parentGroup.getChildContacts();
+        List<MetaContact> matches = searchIndex.match(filterPattern, root);
+        int resultCount = 0;
 
-        while (childContacts.hasNext() && !query.isCanceled())
+        for (MetaContact metaContact : matches)
         {
-            MetaContact metaContact = childContacts.next();
+            if (query.isCanceled())
+                return;
 
-            if (isMatching(filterPattern, metaContact))
-            {
-                resultCount++;
+            MetaContactGroup parentGroup
+                = metaContact.getParentMetaContactGroup();
 
-                if (resultCount <= INITIAL_CONTACT_COUNT)
-                {
-                    UIGroup uiGroup = null;
-                    if (!MetaContactListSource.isRootGroup(parentGroup))
-                    {
-                        synchronized (parentGroup)
-                        {
-                            uiGroup = MetaContactListSource
-                                .getUIGroup(parentGroup);
+            // The contact has been removed in the meantime.
+            if (parentGroup == null)
+                continue;
 
-                            if (uiGroup == null)
-                                uiGroup = MetaContactListSource
-                                    .createUIGroup(parentGroup);
-                        }
-                    }
+            resultCount++;
 
-                    UIContact newUIContact;
-                    synchronized (metaContact)
+            if (resultCount <= INITIAL_CONTACT_COUNT)
+            {
+                UIGroup uiGroup = null;
+                if (!MetaContactListSource.isRootGroup(parentGroup))
+                {
+                    synchronized (parentGroup)
                     {
-                        newUIContact
-                            = MetaContactListSource.createUIContact(metaContact);
-                    }
-
-                    GuiActivator.getContactList().addContact(
-                        newUIContact,
-                        uiGroup,
-                        true,
-                        true);
+                        uiGroup = MetaContactListSource
+                            .getUIGroup(parentGroup);
 
-                    query.setInitialResultCount(resultCount);
+                        if (uiGroup == null)
+                            uiGroup = MetaContactListSource
+                                .createUIGroup(parentGroup);
+                    }
                 }
-                else
-                    query.fireQueryEvent(metaContact);
-            }
-        }
-
-        // If in the meantime the query is canceled we return here.
-        if(query.isCanceled())
-            return;
-
-        Iterator<MetaContactGroup> subgroups = parentGroup.getSubgroups();
-        while (subgroups.hasNext() && !query.isCanceled())
-        {
-            MetaContactGroup subgroup = subgroups.next();
 
-            queryMetaContactSource(filterPattern, subgroup, query, resultCount);
-        }
-    }
-
-    /**
-     * Checks if the given <tt>metaContact</tt> is matching the given
-     * <tt>filterPattern</tt>.
-     * A <tt>MetaContact</tt> would be matching the filter if one of the
-     * following is true:<br>
-     * - its display name contains the filter string
-     * - at least one of its child protocol contacts has a display name or an
-     * address that contains the filter string.
-     * @param filterPattern the filter pattern to check for matches
-     * @param metaContact the <tt>MetaContact</tt> to check
-     * @return <tt>true</tt> to indicate that the given <tt>metaContact</tt> is
-     * matching the current filter, otherwise returns <tt>false</tt>
-     */
-    private boolean isMatching(Pattern filterPattern, MetaContact metaContact)
-    {
-        Matcher matcher = filterPattern.matcher(metaContact.getDisplayName());
-
-        if(matcher.find())
-            return true;
-
-        Iterator<Contact> contacts = metaContact.getContacts();
-        while (contacts.hasNext())
-        {
-            Contact contact = contacts.next();
-
-            matcher = filterPattern.matcher(contact.getDisplayName());
-
-            if (matcher.find())
-                return true;
+                UIContact newUIContact;
+                synchronized (metaContact)
+                {
+                    newUIContact
+                        = MetaContactListSource.createUIContact(metaContact);
+                }
 
-            matcher = filterPattern.matcher(contact.getAddress());
+                GuiActivator.getContactList().addContact(
+                    newUIContact,
+                    uiGroup,
+                    true,
+                    true);
 
-            if (matcher.find())
-                return true;
+                query.setInitialResultCount(resultCount);
+            }
+            else
+                query.fireQueryEvent(metaContact);
         }
-        return false;
     }
 
     /**
@@ -348,7 +306,9 @@ public class MetaContactListSource
         {
             MetaContact metaContact = contacts.next();
 
-            if (isMatching(filterPattern, metaContact))
+            if (MetaContactSearchIndex.isMatching(
+                    filterPattern,
+                    metaContact))
                 return true;
         }
         return false;
@@ -474,6 +434,8 @@ public class MetaContactListSource
      */
     public void metaContactAdded(final MetaContactEvent evt)
     {
+        searchIndex.update(evt.getSourceMetaContact());
+
         metaContactAdded(evt.getSourceMetaContact(),
                         evt.getParentGroup());
     }
@@ -534,6 +496,8 @@ public class MetaContactListSource
      */
     public void metaContactGroupAdded(MetaContactGroupEvent evt)
     {
+        searchIndex.invalidate();
+
         final MetaContactGroup metaGroup = evt.getSourceMetaContactGroup();
 
         UIGroup uiGroup;
@@ -607,6 +571,8 @@ public class MetaContactListSource
      */
     public void metaContactGroupRemoved(final MetaContactGroupEvent evt)
     {
+        searchIndex.invalidate();
+
         MetaContactGroup metaGroup = evt.getSourceMetaContactGroup();
 
         UIGroup uiGroup;
@@ -628,6 +594,8 @@ public class MetaContactListSource
     {
         MetaContact metaContact = evt.getSourceMetaContact();
 
+        searchIndex.update(metaContact);
+
         UIContactImpl uiContact;
         synchronized (metaContact)
         {
@@ -730,6 +698,8 @@ public class MetaContactListSource
     {
         MetaContact metaContact = evt.getSourceMetaContact();
 
+        searchIndex.remove(metaContact);
+
         UIContact uiContact;
         synchronized (metaContact)
         {
@@ -750,6 +720,8 @@ public class MetaContactListSource
     {
         MetaContact metaContact = evt.getSourceMetaContact();
 
+        searchIndex.update(metaContact);
+
         UIContactImpl uiContact;
         synchronized (metaContact)
         {
@@ -799,6 +771,8 @@ public class MetaContactListSource
     {
         final MetaContact metaContact = evt.getNewParent();
 
+        searchIndex.update(metaContact);
+
         UIContact parentUIContact;
         boolean parentUIContactCreated = false;
         synchronized (metaContact)
@@ -856,6 +830,8 @@ public class MetaContactListSource
     {
         MetaContact metaContact = evt.getNewParent();
 
+        searchIndex.update(metaContact);
+
         UIContactImpl uiContact;
         synchronized (metaContact)
         {
@@ -882,6 +858,9 @@ public class MetaContactListSource
         final MetaContact oldParent = evt.getOldParent();
         final MetaContact newParent = evt.getNewParent();
 
+        searchIndex.update(oldParent);
+        searchIndex.update(newParent);
+
         UIContact oldUIContact;
         synchronized (oldParent)
         {
@@ -954,6 +933,8 @@ public class MetaContactListSource
     {
         final MetaContact oldParent = evt.getOldParent();
 
+        searchIndex.update(oldParent);
+
         UIContactImpl oldUIContact;
         synchronized (oldParent)
         {
@@ -0,0 +1,438 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.gui.main.contactlist.contactsource;
+
+import java.util.*;
+import java.util.regex.*;
+
+import net.java.sip.communicator.service.contactlist.*;
+import net.java.sip.communicator.service.protocol.*;
+
+/**
+ * Indexes the <tt>MetaContact</tt>s of the contact list by the substrings of
+ * {@link #GRAM_LENGTH} characters of their display names and of the display
+ * names and addresses of their protocol contacts, so that a search of the
+ * contact list only checks the contacts which contain all the substrings of
+ * the searched string instead of all of them.
+ * <p>
+ * The index is built the first time it is needed and is kept up to date by
+ * the <tt>MetaContactListSource</tt> from the events of the contact list. It
+ * also remembers the result of the last search, so that a search for a string
+ * which contains the last searched one, i.e. the user has typed one more
+ * character, only checks the contacts found by the last search.
+ * </p>
+ */
+public class MetaContactSearchIndex
+{
+    /**
+     * The length of the substrings by which the contacts are indexed.
+     */
+    private static final int GRAM_LENGTH = 3;
+
+    /**
+     * The contacts by the substrings they contain.
+     */
+    private final Map<String, Set<MetaContact>> contactsByGram
+        = new HashMap<String, Set<MetaContact>>();
+
+    /**
+     * The substrings by the contacts which contain them.
+     */
+    private final Map<MetaContact, Set<String>> gramsByContact
+        = new HashMap<MetaContact, Set<String>>();
+
+    /**
+     * Whether the index has been built from the contact list.
+     */
+    private boolean built = false;
+
+    /**
+     * The number of changes of the contact list seen so far.
+     */
+    private int version = 0;
+
+    /**
+     * The folded string searched by the last search or <tt>null</tt> if the
+     * result of the last search is not known.
+     */
+    private String lastQuery;
+
+    /**
+     * The contacts found by the last search.
+     */
+    private List<MetaContact> lastMatches;
+
+    /**
+     * The value of {@link #version} when the last search was done.
+     */
+    private int lastVersion;
+
+    /**
+     * Forgets the index, e.g. because a whole group of contacts has been
+     * added or removed, so that it is built again by the next search.
+     */
+    public synchronized void invalidate()
+    {
+        version++;
+        built = false;
+        contactsByGram.clear();
+        gramsByContact.clear();
+    }
+
+    /**
+     * Indexes a contact again because it has been added or its names or
+     * protocol contacts have changed.
+     *
+     * @param metaContact the contact.
+     */
+    public synchronized void update(MetaContact metaContact)
+    {
+        version++;
+        if (built)
+        {
+            removeGrams(metaContact);
+            addGrams(metaContact);
+        }
+    }
+
+    /**
+     * Removes a contact from the index because it has been removed from the
+     * contact list.
+     *
+     * @param metaContact the contact.
+     */
+    public synchronized void remove(MetaContact metaContact)
+    {
+        version++;
+        if (built)
+            removeGrams(metaContact);
+    }
+
+    /**
+     * Finds the contacts which match a filter pattern.
+     *
+     * @param filterPattern the filter pattern, as created by
+     * <tt>SearchFilter</tt>.
+     * @param root the root group of the contact list.
+     * @return the contacts which match <tt>filterPattern</tt>.
+     */
+    public synchronized List<MetaContact> match(
+            Pattern filterPattern,
+            MetaContactGroup root)
+    {
+        String query = getQuery(filterPattern);
+        Collection<MetaContact> candidates = null;
+
+        if (query != null)
+        {
+            if ((lastQuery != null)
+                    && (lastVersion == version)
+                    && query.contains(lastQuery))
+            {
+                candidates = lastMatches;
+            }
+            else if (query.length() >= GRAM_LENGTH)
+            {
+                if (!built)
+                    build(root);
+                candidates = getCandidates(query);
+            }
+        }
+
+        List<MetaContact> matches = new ArrayList<MetaContact>();
+
+        if (candidates == null)
+        {
+            collectMatching(filterPattern, root, matches);
+        }
+        else
+        {
+            for (MetaContact metaContact : candidates)
+            {
+                if (isMatching(filterPattern, metaContact))
+                    matches.add(metaContact);
+            }
+        }
+
+        lastQuery = query;
+        lastMatches = matches;
+        lastVersion = version;
+        return matches;
+    }
+
+    /**
+     * Checks if the given <tt>metaContact</tt> is matching the given
+     * <tt>filterPattern</tt>.
+     * A <tt>MetaContact</tt> would be matching the filter if one of the
+     * following is true:<br>
+     * - its display name contains the filter string
+     * - at least one of its child protocol contacts has a display name or an
+     * address that contains the filter string.
+     * @param filterPattern the filter pattern to check for matches
+     * @param metaContact the <tt>MetaContact</tt> to check
+     * @return <tt>true</tt> to indicate that the given <tt>metaContact</tt> is
+     * matching the current filter, otherwise returns <tt>false</tt>
+     */
+    public static boolean isMatching(
+            Pattern filterPattern,
+            MetaContact metaContact)
+    {
+        Matcher matcher = filterPattern.matcher(metaContact.getDisplayName());
+
+        if(matcher.find())
+            return true;
+
+        Iterator<Contact> contacts = metaContact.getContacts();
+        while (contacts.hasNext())
+        {
+            Contact contact = contacts.next();
+
+            matcher = filterPattern.matcher(contact.getDisplayName());
+
+            if (matcher.find())
+                return true;
+
+            matcher = filterPattern.matcher(contact.getAddress());
+
+            if (matcher.find())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the contacts which contain all the substrings of a folded
+     * string, a superset of the contacts which contain the string itself.
+     *
+     * @param query the folded string.
+     * @return the contacts which contain all the substrings of
+     * <tt>query</tt>.
+     */
+    private List<MetaContact> getCandidates(String query)
+    {
+        List<Set<MetaContact>> sets = new ArrayList<Set<MetaContact>>();
+        Set<MetaContact> smallest = null;
+
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++)
+        {
+            Set<MetaContact> set
+                = contactsByGram.get(query.substring(i, i + GRAM_LENGTH));
+
+            if (set == null)
+                return new ArrayList<MetaContact>();
+            sets.add(set);
+            if ((smallest == null) || (set.size() < smallest.size()))
+                smallest = set;
+        }
+
+        List<MetaContact> candidates = new ArrayList<MetaContact>();
+
+        for (MetaContact metaContact : smallest)
+        {
+            boolean containsAll = true;
+
+            for (Set<MetaContact> set : sets)
+            {
+                if ((set != smallest) && !set.contains(metaContact))
+                {
+                    containsAll = false;
+                    break;
+                }
+            }
+            if (containsAll)
+                candidates.add(metaContact);
+        }
+        return candidates;
+    }
+
+    /**
+     * Checks all the contacts of a group and its subgroups against a filter
+     * pattern.
+     *
+     * @param filterPattern the filter pattern.
+     * @param group the group.
+     * @param matches the list to add the matching contacts to.
+     */
+    private void collectMatching(
+            Pattern filterPattern,
+            MetaContactGroup group,
+            List<MetaContact> matches)
+    {
+        Iterator<MetaContact> childContacts = group.getChildContacts();
+
+        while (childContacts.hasNext())
+        {
+            MetaContact metaContact = childContacts.next();
+
+            if (isMatching(filterPattern, metaContact))
+                matches.add(metaContact);
+        }
+
+        Iterator<MetaContactGroup> subgroups = group.getSubgroups();
+
+        while (subgroups.hasNext())
+            collectMatching(filterPattern, subgroups.next(), matches);
+    }
+
+    /**
+     * Indexes all the contacts of the contact list.
+     *
+     * @param root the root group of the contact list.
+     */
+    private void build(MetaContactGroup root)
+    {
+        contactsByGram.clear();
+        gramsByContact.clear();
+        addGroup(root);
+        built = true;
+    }
+
+    /**
+     * Indexes the contacts of a group and its subgroups.
+     *
+     * @param group the group.
+     */
+    private void addGroup(MetaContactGroup group)
+    {
+        Iterator<MetaContact> childContacts = group.getChildContacts();
+
+        while (childContacts.hasNext())
+            addGrams(childContacts.next());
+
+        Iterator<MetaContactGroup> subgroups = group.getSubgroups();
+
+        while (subgroups.hasNext())
+            addGroup(subgroups.next());
+    }
+
+    /**
+     * Indexes a contact by the substrings of its names and addresses.
+     *
+     * @param metaContact the contact.
+     */
+    private void addGrams(MetaContact metaContact)
+    {
+        Set<String> grams = new HashSet<String>();
+
+        addGrams(metaContact.getDisplayName(), grams);
+
+        Iterator<Contact> contacts = metaContact.getContacts();
+
+        while (contacts.hasNext())
+        {
+            Contact contact = contacts.next();
+
+            addGrams(contact.getDisplayName(), grams);
+            addGrams(contact.getAddress(), grams);
+        }
+
+        for (String gram : grams)
+        {
+            Set<MetaContact> set = contactsByGram.get(gram);
+
+            if (set == null)
+            {
+                set = new HashSet<MetaContact>();
+                contactsByGram.put(gram, set);
+            }
+            set.add(metaContact);
+        }
+        gramsByContact.put(metaContact, grams);
+    }
+
+    /**
+     * Adds the substrings of {@link #GRAM_LENGTH} characters of a string to
+     * a set.
+     *
+     * @param text the string.
+     * @param grams the set.
+     */
+    private static void addGrams(String text, Set<String> grams)
+    {
+        if (text == null)
+            return;
+
+        String folded = fold(text);
+
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++)
+            grams.add(folded.substring(i, i + GRAM_LENGTH));
+    }
+
+    /**
+     * Removes a contact from the index.
+     *
+     * @param metaContact the contact.
+     */
+    private void removeGrams(MetaContact metaContact)
+    {
+        Set<String> grams = gramsByContact.remove(metaContact);
+
+        if (grams == null)
+            return;
+
+        for (String gram : grams)
+        {
+            Set<MetaContact> set = contactsByGram.get(gram);
+
+            if (set != null)
+            {
+                set.remove(metaContact);
+                if (set.isEmpty())
+                    contactsByGram.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Returns the folded string searched by a filter pattern created by
+     * <tt>SearchFilter</tt>, i.e. by quoting the searched string.
+     *
+     * @param filterPattern the filter pattern.
+     * @return the folded searched string or <tt>null</tt> if
+     * <tt>filterPattern</tt> is not a quoted string.
+     */
+    private static String getQuery(Pattern filterPattern)
+    {
+        String pattern = filterPattern.pattern();
+
+        if (pattern.startsWith("\\Q")
+                && pattern.endsWith("\\E")
+                && (pattern.indexOf("\\E") == pattern.length() - 2))
+        {
+            String query = pattern.substring(2, pattern.length() - 2);
+
+            // The case of the surrogate pairs is folded differently.
+            for (int i = 0; i < query.length(); i++)
+            {
+                char c = query.charAt(i);
+
+                if (Character.isHighSurrogate(c)
+                        || Character.isLowSurrogate(c))
+                    return null;
+            }
+            return fold(query);
+        }
+        return null;
+    }
+
+    /**
+     * Folds the case of a string the way a case-insensitive Unicode pattern
+     * compares characters, so that a string matches a pattern only if its
+     * folded form contains the folded searched string.
+     *
+     * @param text the string.
+     * @return the folded string.
+     */
+    private static String fold(String text)
+    {
+        char[] chars = text.toCharArray();
+
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        return new String(chars);
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.ldap;
+
+import java.util.*;
+
+import javax.naming.*;
+import javax.naming.directory.*;
+
+import net.java.sip.communicator.util.*;
+
+/**
+ * Keeps the <tt>InitialDirContext</tt>s opened to the server of an
+ * <tt>LdapDirectoryImpl</tt> for reuse so that consecutive searches do not
+ * each pay for a new TCP connection, an SSL handshake and a bind. The JNDI
+ * provider pooling enabled in the environment does not apply to connections
+ * created through our custom SSL socket factory, hence this pool.
+ * <p>
+ * A context is only used by one thread at a time: it is taken with
+ * {@link #acquire()} and handed back with {@link #release(InitialDirContext)}
+ * or, if an error occurred while using it, with
+ * {@link #invalidate(InitialDirContext)}.
+ * </p>
+ * <p>
+ * Since the server may close a connection at any time, e.g. when it restarts,
+ * an idle context is checked with a request before it is reused and closed
+ * rather than handed out if the request fails.
+ * </p>
+ */
+public class LdapContextPool
+{
+    /**
+     * The logger for this class.
+     */
+    private static final Logger logger
+        = Logger.getLogger(LdapContextPool.class);
+
+    /**
+     * The default maximum number of idle contexts kept.
+     */
+    public static final int DEFAULT_MAX_IDLE = 4;
+
+    /**
+     * The default time in milliseconds after which an idle context is closed
+     * rather than reused (servers commonly drop idle connections).
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+    /**
+     * The attributes returned by the request checking an idle context: the
+     * special "no attributes" OID of RFC 4511.
+     */
+    private static final String[] NO_ATTRIBUTES = { "1.1" };
+
+    /**
+     * The environment used to create the contexts.
+     */
+    private final Hashtable<String, String> env;
+
+    /**
+     * The name of the directory, used for logging.
+     */
+    private final String name;
+
+    /**
+     * The maximum number of idle contexts kept.
+     */
+    private final int maxIdle;
+
+    /**
+     * The time in milliseconds after which an idle context is closed.
+     */
+    private final long idleTimeout;
+
+    /**
+     * The idle contexts, the most recently released last.
+     */
+    private final LinkedList<IdleContext> idle = new LinkedList<IdleContext>();
+
+    /**
+     * Whether this pool has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Creates a pool with the default limits.
+     *
+     * @param name the name of the directory, used for logging
+     * @param env the environment used to create the contexts
+     */
+    public LdapContextPool(String name, Hashtable<String, String> env)
+    {
+        this(name, env, DEFAULT_MAX_IDLE, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param name the name of the directory, used for logging
+     * @param env the environment used to create the contexts
+     * @param maxIdle the maximum number of idle contexts kept
+     * @param idleTimeout the time in milliseconds after which an idle context
+     * is closed
+     */
+    public LdapContextPool(String name, Hashtable<String, String> env,
+            int maxIdle, long idleTimeout)
+    {
+        this.name = name;
+        this.env = env;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns an idle context which is still connected or connects a new one.
+     *
+     * @return a context connected to the directory
+     * @throws NamingException if connecting fails
+     */
+    public InitialDirContext acquire()
+        throws NamingException
+    {
+        InitialDirContext dirContext;
+
+        while((dirContext = pollIdle()) != null)
+        {
+            if(isConnected(dirContext))
+            {
+                if(logger.isTraceEnabled())
+                    logger.trace("reusing connection to directory \"" + name
+                            + "\"");
+                return dirContext;
+            }
+            close(dirContext);
+        }
+
+        if(logger.isTraceEnabled())
+            logger.trace("connecting to directory \"" + name + "\"");
+        long time0 = System.currentTimeMillis();
+        dirContext = new InitialDirContext(env);
+        long time1 = System.currentTimeMillis();
+        if(logger.isTraceEnabled())
+            logger.trace("connection to directory \"" + name + "\" took "
+                    + (time1 - time0) + " ms");
+
+        return dirContext;
+    }
+
+    /**
+     * Takes the most recently released idle context, closing the ones which
+     * have been idle for too long.
+     *
+     * @return the most recently released idle context which has not been
+     * idle for too long or <tt>null</tt> if there is none
+     */
+    private InitialDirContext pollIdle()
+    {
+        List<InitialDirContext> expired = null;
+        InitialDirContext dirContext = null;
+        long now = System.currentTimeMillis();
+
+        synchronized(idle)
+        {
+            while(!idle.isEmpty())
+            {
+                IdleContext candidate = idle.removeLast();
+
+                if(now - candidate.since > idleTimeout)
+                {
+                    if(expired == null)
+                        expired = new ArrayList<InitialDirContext>();
+                    expired.add(candidate.dirContext);
+                }
+                else
+                {
+                    dirContext = candidate.dirContext;
+                    break;
+                }
+            }
+        }
+
+        if(expired != null)
+        {
+            for(InitialDirContext ctx : expired)
+                close(ctx);
+        }
+        return dirContext;
+    }
+
+    /**
+     * Checks that the connection of an idle context has not been closed by
+     * the server by reading the root DSE without any of its attributes, the
+     * cheapest request a directory answers.
+     *
+     * @param dirContext the idle context
+     * @return <tt>true</tt> if the directory answered the request
+     */
+    private boolean isConnected(InitialDirContext dirContext)
+    {
+        SearchControls searchCtl = new SearchControls();
+
+        searchCtl.setSearchScope(SearchControls.OBJECT_SCOPE);
+        searchCtl.setReturningAttributes(NO_ATTRIBUTES);
+        try
+        {
+            dirContext.search("", "(objectClass=*)", searchCtl).close();
+            return true;
+        }
+        catch(NamingException e)
+        {
+            if(logger.isTraceEnabled())
+                logger.trace("idle connection to directory \"" + name
+                        + "\" is no longer usable: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Hands back a context which is still usable.
+     *
+     * @param dirContext the context acquired with {@link #acquire()}
+     */
+    public void release(InitialDirContext dirContext)
+    {
+        if(dirContext == null)
+            throw new NullPointerException("dirContext is null");
+
+        synchronized(idle)
+        {
+            if(!closed && idle.size() < maxIdle)
+            {
+                idle.addLast(new IdleContext(dirContext));
+                return;
+            }
+        }
+        close(dirContext);
+    }
+
+    /**
+     * Hands back a context which failed and should not be reused.
+     *
+     * @param dirContext the context acquired with {@link #acquire()}
+     */
+    public void invalidate(InitialDirContext dirContext)
+    {
+        if(dirContext == null)
+            throw new NullPointerException("dirContext is null");
+
+        close(dirContext);
+    }
+
+    /**
+     * Closes all the idle contexts and makes sure the contexts released from
+     * now on are closed as well.
+     */
+    public void close()
+    {
+        List<IdleContext> toClose;
+
+        synchronized(idle)
+        {
+            closed = true;
+            toClose = new ArrayList<IdleContext>(idle);
+            idle.clear();
+        }
+        for(IdleContext idleContext : toClose)
+            close(idleContext.dirContext);
+    }
+
+    /**
+     * Closes a context.
+     *
+     * @param dirContext the context to close
+     */
+    private void close(InitialDirContext dirContext)
+    {
+        try
+        {
+            dirContext.close();
+        }
+        catch(NamingException e)
+        {
+            logger.trace("disconnection from directory \"" + name
+                    + "\" failed!");
+        }
+    }
+
+    /**
+     * An idle context and the time it was released.
+     */
+    private static class IdleContext
+    {
+        /**
+         * The idle context.
+         */
+        final InitialDirContext dirContext;
+
+        /**
+         * The time the context was released.
+         */
+        final long since = System.currentTimeMillis();
+
+        /**
+         * Creates an idle context.
+         *
+         * @param dirContext the idle context
+         */
+        IdleContext(InitialDirContext dirContext)
+        {
+            this.dirContext = dirContext;
+        }
+    }
+}
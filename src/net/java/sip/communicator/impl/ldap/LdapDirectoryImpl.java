@@ -125,6 +125,18 @@ public class LdapDirectoryImpl
     private final Hashtable<String, String> env =
         new Hashtable<String, String>();
 
+    /**
+     * The contexts connected to this directory which are kept for reuse.
+     */
+    private final LdapContextPool contextPool;
+
+    /**
+     * The results of the previous searches, used to answer repeated and
+     * narrowing (type-ahead) queries without contacting the server.
+     */
+    private final LdapSearchResultCache resultCache
+        = new LdapSearchResultCache();
+
     /**
      * The contructor for this class.
      * Since this element is immutable (otherwise it would be a real pain
@@ -208,6 +220,8 @@ public class LdapDirectoryImpl
         {
             searchableAttrs.add(s);
         }
+
+        this.contextPool = new LdapContextPool(this.settings.getName(), env);
     }
 
     /**
@@ -251,40 +265,30 @@ public class LdapDirectoryImpl
     }
 
     /**
-     * Connects to the remote directory
+     * Connects to the remote directory, reusing an idle connection if any.
      */
     private InitialDirContext connect()
         throws NamingException
     {
-        logger.trace("connecting to directory \"" + this + "\"");
-        long time0 = System.currentTimeMillis();
-        InitialDirContext dirContext =
-            new InitialDirContext(this.env);
-        long time1 = System.currentTimeMillis();
-        logger.trace("connection to directory \"" + this + "\" took " +
-                (time1-time0)  + " ms");
-        return dirContext;
+        return contextPool.acquire();
     }
 
     /**
-     * closes the ldap connection
+     * Hands the ldap connection back to the pool of reusable connections.
      */
     private void disconnect(InitialDirContext dirContext)
     {
-        if(dirContext == null)
-            throw new NullPointerException("dirContext is null");
-
-        try
-        {
-            dirContext.close();
-        }
-        catch(NamingException e)
-        {
-            logger.trace("disconnection from directory \"" + this +
-                    "\" failed!");
-        }
+        contextPool.release(dirContext);
+    }
 
-        logger.trace("disconnection achieved!");
+    /**
+     * Closes the ldap connections kept for reuse. Called when this directory
+     * is removed.
+     */
+    void dispose()
+    {
+        contextPool.close();
+        resultCache.clear();
     }
 
     /**
@@ -314,6 +318,27 @@ public class LdapDirectoryImpl
         if(searchSettings == null)
             searchSettings = new LdapSearchSettingsImpl();
 
+        String cacheQuery = LdapSearchResultCache.normalize(query.toString());
+        String cacheScope = String.valueOf(
+                buildSearchControls(searchSettings).getSearchScope());
+        List<LdapSearchResultCache.Record> cachedRecords
+            = resultCache.lookup(cacheScope, cacheQuery,
+                    buildIntermediateQueryStrings(cacheQuery));
+
+        if(logger.isTraceEnabled())
+            logger.trace("result cache of directory \"" + this + "\" "
+                    + ((cachedRecords == null) ? "missed" : "hit")
+                    + " for query \"" + query + "\" (" + resultCache + ")");
+
+        if(cachedRecords != null)
+        {
+            this.pendingSearches.put(query, new LdapPendingSearch(
+                    Collections.<LdapDirectory>singletonList(this), caller));
+            this.deliverCachedResults(query, cachedRecords, searchSettings,
+                    this);
+            return;
+        }
+
         // if the initial query string was "john d",
         // the intermediate query strings could be:
         // "*john d*" and "d*john"
@@ -333,15 +358,75 @@ public class LdapDirectoryImpl
         this.pendingSearches.put(query, new LdapPendingSearch(serversList,
                 caller));
 
+        // collects the results of all the intermediate query strings in
+        // order to cache them once they are all done
+        ResultCollector collector = new ResultCollector(cacheScope,
+                cacheQuery, intermediateQueryStrings.length);
+
         // really performs the search
         for(String queryString : intermediateQueryStrings)
-            this.performSearch(query, queryString, searchSettings, this);
+            this.performSearch(query, queryString, searchSettings, this,
+                    collector);
+    }
+
+    /**
+     * Sends the results of a search which was answered from the result cache
+     * in a new thread, as if they had been received from the server.
+     *
+     * @param query the query to send results for
+     * @param records the cached records matching the query
+     * @param searchSettings the settings of the search
+     * @param caller the listener to send the results to
+     */
+    private void deliverCachedResults(final LdapQuery query,
+            final List<LdapSearchResultCache.Record> records,
+            final LdapSearchSettings searchSettings,
+            final LdapListener caller)
+    {
+        Thread deliveryThread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                LdapEvent.LdapEventCause endCause
+                    = LdapEvent.LdapEventCause.SEARCH_ACHIEVED;
+                int count = 0;
+
+                for(LdapSearchResultCache.Record record : records)
+                {
+                    if(query.getState() == LdapQuery.State.CANCELLED)
+                    {
+                        endCause = LdapEvent.LdapEventCause.SEARCH_CANCELLED;
+                        break;
+                    }
+                    if(searchSettings.isMaxResultsSet()
+                            && count >= searchSettings.getMaxResults())
+                        break;
+
+                    LdapPersonFound person
+                        = buildPerson(query, record.dn, record.attributes);
+                    fireLdapEvent(new LdapEvent(LdapDirectoryImpl.this,
+                                LdapEvent.LdapEventCause.NEW_SEARCH_RESULT,
+                                person),
+                            caller);
+                    count++;
+                }
+
+                fireLdapEvent(new LdapEvent(LdapDirectoryImpl.this, endCause,
+                            query),
+                        caller);
+            }
+        };
+
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
     }
 
     private void performSearch(final LdapQuery query,
             final String realQueryString,
             final LdapSearchSettings searchSettings,
-            final LdapListener caller)
+            final LdapListener caller,
+            final ResultCollector collector)
     {
         Thread searchThread = new Thread()
         {
@@ -359,6 +444,10 @@ public class LdapDirectoryImpl
 
                 LdapEvent endEvent = null;
                 InitialDirContext dirContext = null;
+                NamingEnumeration<?> results = null;
+                boolean reusable = false;
+                List<LdapSearchResultCache.Record> records
+                    = new ArrayList<LdapSearchResultCache.Record>();
 
                 try
                 {
@@ -371,7 +460,7 @@ public class LdapDirectoryImpl
 
                     long time0 = System.currentTimeMillis();
 
-                    NamingEnumeration<?> results = dirContext.search(
+                    results = dirContext.search(
                             LdapDirectoryImpl.this.settings.getBaseDN(),
                             buildSearchFilter(realQueryString),
                             searchControls
@@ -387,6 +476,10 @@ public class LdapDirectoryImpl
                             (SearchResult) results.next();
                         Map<String, Set<String>> retrievedAttributes =
                             retrieveAttributes(searchResult);
+                        records.add(new LdapSearchResultCache.Record(
+                                searchResult.getName(),
+                                retrievedAttributes,
+                                retrieveSearchableValues(searchResult)));
                         LdapPersonFound person =
                             buildPerson(
                                 query,
@@ -408,6 +501,13 @@ public class LdapDirectoryImpl
 
                     endEvent = new LdapEvent(LdapDirectoryImpl.this,
                             LdapEvent.LdapEventCause.SEARCH_ACHIEVED, query);
+                    reusable = true;
+
+                    // reaching the count limit means entries may be missing
+                    collector.searchAchieved(records,
+                            !searchSettings.isMaxResultsSet()
+                                || records.size()
+                                    < searchSettings.getMaxResults());
                 }
                 catch(OperationNotSupportedException e)
                 {
@@ -471,9 +571,29 @@ public class LdapDirectoryImpl
                 }
                 finally
                 {
+                    if(!reusable)
+                        collector.searchFailed();
                     fireLdapEvent(endEvent, caller);
+                    if(results != null)
+                    {
+                        try
+                        {
+                            results.close();
+                        }
+                        catch(NamingException e)
+                        {
+                            reusable = false;
+                        }
+                    }
                     if(dirContext != null)
-                        disconnect(dirContext);
+                    {
+                        // a connection on which an error occurred or a
+                        // search was abandoned is not worth reusing
+                        if(reusable)
+                            disconnect(dirContext);
+                        else
+                            contextPool.invalidate(dirContext);
+                    }
                 }
             }
 
@@ -562,6 +682,44 @@ public class LdapDirectoryImpl
         return retrievedAttributes;
     }
 
+    /**
+     * Returns the lower-cased values of the attributes the search filter is
+     * applied on, so that the result cache can match entries against
+     * narrower queries.
+     *
+     * @param searchResult the results to browse for attributes
+     * @return the lower-cased values of the searchable attributes
+     */
+    private List<String> retrieveSearchableValues(SearchResult searchResult)
+        throws NamingException
+    {
+        Attributes attributes = searchResult.getAttributes();
+        List<String> values = new ArrayList<String>();
+        NamingEnumeration<String> ids = attributes.getIDs();
+
+        while(ids.hasMore())
+        {
+            String id = ids.next();
+
+            for(String searchableAttr : searchableAttrs)
+            {
+                if(searchableAttr.equalsIgnoreCase(id))
+                {
+                    NamingEnumeration<?> attrValues =
+                        attributes.get(id).getAll();
+                    while(attrValues.hasMore())
+                    {
+                        Object value = attrValues.next();
+                        if(value instanceof String)
+                            values.add(((String) value).toLowerCase());
+                    }
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
     /**
      * Builds an LdapPersonFound with the retrieved attributes
      *
@@ -916,6 +1074,11 @@ public class LdapDirectoryImpl
             catch (NamingException e)
             {
                 logger.trace("error when performing ldap search query" + e);
+                if(dirContext != null)
+                {
+                    contextPool.invalidate(dirContext);
+                    dirContext = null;
+                }
             }
             finally
             {
@@ -945,6 +1108,11 @@ public class LdapDirectoryImpl
             catch (NamingException e)
             {
                 logger.trace("error when performing ldap search query" + e);
+                if(dirContext != null)
+                {
+                    contextPool.invalidate(dirContext);
+                    dirContext = null;
+                }
                 e.printStackTrace();
             }
             finally
@@ -1005,6 +1173,11 @@ public class LdapDirectoryImpl
         catch (NamingException e)
         {
             logger.trace("error when performing photo retrieval" + e);
+            if(dirContext != null)
+            {
+                contextPool.invalidate(dirContext);
+                dirContext = null;
+            }
             e.printStackTrace();
         }
         finally
@@ -1049,6 +1222,8 @@ public class LdapDirectoryImpl
         List<String> retrievableAttrs = new ArrayList<String>();
 
         retrievableAttrs.addAll(retrievableAttributes);
+        // the result cache needs the values the search filter applies on
+        retrievableAttrs.addAll(searchableAttrs);
         for(String key : attributesMap.keySet())
         {
             List<String> attrs = attributesMap.get(key);
@@ -1148,6 +1323,99 @@ public class LdapDirectoryImpl
     public void overrideAttributesSearch(String attribute, List<String> names)
     {
         attributesMap.put(attribute, names);
+        // cached entries were retrieved with the previous attributes
+        resultCache.clear();
+    }
+
+    /**
+     * Gathers the results of the intermediate searches performed for one
+     * query and stores them in the result cache once all of them succeeded.
+     */
+    private class ResultCollector
+    {
+        /**
+         * The search scope of the query.
+         */
+        private final String scope;
+
+        /**
+         * The normalized query string.
+         */
+        private final String query;
+
+        /**
+         * The records found so far, by distinguished name since the
+         * intermediate searches may return the same entries.
+         */
+        private final Map<String, LdapSearchResultCache.Record> records
+            = new LinkedHashMap<String, LdapSearchResultCache.Record>();
+
+        /**
+         * The number of intermediate searches still running.
+         */
+        private int pending;
+
+        /**
+         * Whether all the intermediate searches returned all the entries.
+         */
+        private boolean complete = true;
+
+        /**
+         * Whether one of the intermediate searches failed.
+         */
+        private boolean failed = false;
+
+        /**
+         * Creates a collector.
+         *
+         * @param scope the search scope of the query
+         * @param query the normalized query string
+         * @param pending the number of intermediate searches
+         */
+        ResultCollector(String scope, String query, int pending)
+        {
+            this.scope = scope;
+            this.query = query;
+            this.pending = pending;
+        }
+
+        /**
+         * Records the results of an intermediate search which succeeded.
+         *
+         * @param found the records found
+         * @param complete whether all the matching entries were returned
+         */
+        synchronized void searchAchieved(
+                List<LdapSearchResultCache.Record> found, boolean complete)
+        {
+            for(LdapSearchResultCache.Record record : found)
+                records.put(record.dn, record);
+            this.complete &= complete;
+            searchDone();
+        }
+
+        /**
+         * Records that an intermediate search failed or was cancelled.
+         */
+        synchronized void searchFailed()
+        {
+            failed = true;
+            searchDone();
+        }
+
+        /**
+         * Caches the results once all the intermediate searches are done.
+         */
+        private void searchDone()
+        {
+            if(--pending == 0 && !failed)
+            {
+                resultCache.put(scope, query,
+                        new ArrayList<LdapSearchResultCache.Record>(
+                                records.values()),
+                        complete);
+            }
+        }
     }
 
     /**
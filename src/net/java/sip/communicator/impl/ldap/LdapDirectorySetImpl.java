@@ -91,6 +91,8 @@ public class LdapDirectorySetImpl
     public LdapDirectory removeServerWithName(String name)
     {
         LdapDirectory removed = this.serverMap.remove(name);
+        if(removed instanceof LdapDirectoryImpl)
+            ((LdapDirectoryImpl) removed).dispose();
 
         if(configService != null)
             removed.getSettings().persistentRemove();
@@ -0,0 +1,430 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.ldap;
+
+import java.util.*;
+
+/**
+ * Caches the raw results of the searches performed on an
+ * <tt>LdapDirectoryImpl</tt> so that the type-ahead queries of the contact
+ * source ("j", "jo", "joh", "john") do not each cost a round trip to the
+ * server.
+ * <p>
+ * Entries are keyed by the normalized query string and the search scope.
+ * A query is answered from the cache either by an exact hit or, when a
+ * complete (i.e. not truncated by the count limit) result of a shorter query
+ * which is a prefix of the new one is available, by filtering that superset
+ * in memory with the substring patterns the server would have used.
+ * </p>
+ */
+public class LdapSearchResultCache
+{
+    /**
+     * The default time in milliseconds after which a cached result expires.
+     */
+    public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+    /**
+     * The default maximum number of queries kept in the cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+
+    /**
+     * The time in milliseconds after which a cached result expires.
+     */
+    private final long ttl;
+
+    /**
+     * The maximum number of queries kept in the cache.
+     */
+    private final int maxEntries;
+
+    /**
+     * The cached entries in least recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * The number of lookups answered with the result of the very same query.
+     */
+    private long exactHits = 0;
+
+    /**
+     * The number of lookups answered by narrowing a cached superset.
+     */
+    private long narrowedHits = 0;
+
+    /**
+     * The number of lookups which had to go to the server.
+     */
+    private long misses = 0;
+
+    /**
+     * Creates a cache with the default time to live and size.
+     */
+    public LdapSearchResultCache()
+    {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttl the time in milliseconds after which a result expires
+     * @param maxEntries the maximum number of queries to keep
+     */
+    public LdapSearchResultCache(long ttl, final int maxEntries)
+    {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 0L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, LdapSearchResultCache.Entry> e)
+            {
+                return size() > LdapSearchResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Normalizes a query string so that queries which the server would answer
+     * identically share the same cache key: the string is trimmed, inner
+     * whitespace is collapsed and the result is lower-cased (the attributes
+     * we search on all use case-insensitive matching rules).
+     *
+     * @param query the query string
+     * @return the normalized query string
+     */
+    public static String normalize(String query)
+    {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * Looks up the records matching <tt>query</tt>.
+     *
+     * @param scope the search scope the query is performed with
+     * @param query the normalized query string
+     * @param patterns the substring patterns the server would be queried with
+     * for <tt>query</tt>, e.g. "*john d*" and "d*john"
+     * @return the matching records or <tt>null</tt> if the query cannot be
+     * answered from the cache
+     */
+    public synchronized List<Record> lookup(
+            String scope, String query, String[] patterns)
+    {
+        long now = System.currentTimeMillis();
+        Entry exact = entries.get(key(scope, query));
+
+        if(exact != null)
+        {
+            if(now - exact.timestamp <= ttl)
+            {
+                exactHits++;
+                return exact.records;
+            }
+            entries.remove(key(scope, query));
+        }
+
+        // look for the longest complete superset
+        Entry superset = null;
+        Iterator<Entry> iter = entries.values().iterator();
+
+        while(iter.hasNext())
+        {
+            Entry entry = iter.next();
+
+            if(now - entry.timestamp > ttl)
+            {
+                iter.remove();
+                continue;
+            }
+            if(entry.complete
+                    && entry.scope.equals(scope)
+                    && query.startsWith(entry.query)
+                    && (superset == null
+                        || entry.query.length() > superset.query.length()))
+            {
+                superset = entry;
+            }
+        }
+
+        if(superset == null)
+        {
+            misses++;
+            return null;
+        }
+
+        List<Record> narrowed = new ArrayList<Record>();
+
+        for(Record record : superset.records)
+        {
+            if(record.matches(patterns))
+                narrowed.add(record);
+        }
+        narrowedHits++;
+
+        // the narrowed result is complete as well, remember it so that the
+        // next keystroke filters the smaller set
+        Entry entry = new Entry(scope, query, narrowed, true,
+                superset.timestamp);
+        entries.put(key(scope, query), entry);
+
+        return entry.records;
+    }
+
+    /**
+     * Stores the result of a query which was performed on the server.
+     *
+     * @param scope the search scope the query was performed with
+     * @param query the normalized query string
+     * @param records the records the server returned
+     * @param complete <tt>true</tt> if the server returned all the matching
+     * entries, <tt>false</tt> if the result was truncated and thus cannot be
+     * used to answer longer queries
+     */
+    public synchronized void put(String scope, String query,
+            List<Record> records, boolean complete)
+    {
+        entries.put(key(scope, query),
+                new Entry(scope, query, Collections.unmodifiableList(
+                        new ArrayList<Record>(records)),
+                    complete, System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of lookups answered by the very same query.
+     *
+     * @return the number of exact hits
+     */
+    public synchronized long getExactHits()
+    {
+        return exactHits;
+    }
+
+    /**
+     * Returns the number of lookups answered by filtering a cached superset.
+     *
+     * @return the number of narrowed hits
+     */
+    public synchronized long getNarrowedHits()
+    {
+        return narrowedHits;
+    }
+
+    /**
+     * Returns the number of lookups which could not be answered.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the ratio of lookups answered from the cache.
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public synchronized double getHitRate()
+    {
+        long hits = exactHits + narrowedHits;
+        long total = hits + misses;
+
+        return (total == 0) ? 0 : ((double) hits) / total;
+    }
+
+    /**
+     * Returns a printable summary of the statistics of this cache.
+     *
+     * @return a printable summary of the statistics of this cache
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return "exact hits: " + exactHits
+            + ", narrowed hits: " + narrowedHits
+            + ", misses: " + misses
+            + ", entries: " + entries.size();
+    }
+
+    /**
+     * Builds the key under which a query is stored.
+     *
+     * @param scope the search scope
+     * @param query the normalized query string
+     * @return the key
+     */
+    private static String key(String scope, String query)
+    {
+        return scope + "|" + query;
+    }
+
+    /**
+     * Checks whether <tt>value</tt> matches an LDAP substring filter value
+     * such as "*john d*" or "d*john". Both arguments are expected to be lower
+     * case.
+     *
+     * @param pattern the substring pattern
+     * @param value the attribute value
+     * @return <tt>true</tt> if <tt>value</tt> matches <tt>pattern</tt>
+     */
+    public static boolean matchesSubstring(String pattern, String value)
+    {
+        String[] parts = pattern.split("\\*", -1);
+        int index = 0;
+
+        for(int i = 0; i < parts.length; i++)
+        {
+            String part = parts[i];
+
+            if(i == 0)
+            {
+                if(!value.startsWith(part))
+                    return false;
+                index = part.length();
+            }
+            else if(i == parts.length - 1)
+            {
+                return value.length() - part.length() >= index
+                    && value.endsWith(part);
+            }
+            else
+            {
+                int found = value.indexOf(part, index);
+
+                if(found < 0)
+                    return false;
+                index = found + part.length();
+            }
+        }
+        // no wildcard at all
+        return value.equals(pattern);
+    }
+
+    /**
+     * A raw entry returned by the server: its distinguished name, the
+     * retrieved attributes used to build the <tt>LdapPersonFound</tt> and the
+     * lower-cased values of the attributes the search filter is applied on.
+     */
+    public static class Record
+    {
+        /**
+         * The distinguished name of the entry.
+         */
+        public final String dn;
+
+        /**
+         * The retrieved attributes.
+         */
+        final Map<String, Set<String>> attributes;
+
+        /**
+         * The lower-cased values of the searchable attributes.
+         */
+        final List<String> searchableValues;
+
+        /**
+         * Creates a record.
+         *
+         * @param dn the distinguished name of the entry
+         * @param attributes the retrieved attributes
+         * @param searchableValues the lower-cased values of the searchable
+         * attributes
+         */
+        public Record(String dn, Map<String, Set<String>> attributes,
+                List<String> searchableValues)
+        {
+            this.dn = dn;
+            this.attributes = attributes;
+            this.searchableValues = searchableValues;
+        }
+
+        /**
+         * Checks whether one of the searchable values of this record matches
+         * one of <tt>patterns</tt>.
+         *
+         * @param patterns the lower-cased substring patterns
+         * @return <tt>true</tt> if this record would be returned by the server
+         */
+        boolean matches(String[] patterns)
+        {
+            for(String value : searchableValues)
+            {
+                for(String pattern : patterns)
+                {
+                    if(matchesSubstring(pattern, value))
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A cached query result.
+     */
+    private static class Entry
+    {
+        /**
+         * The search scope of the query.
+         */
+        final String scope;
+
+        /**
+         * The normalized query string.
+         */
+        final String query;
+
+        /**
+         * The records returned for the query.
+         */
+        final List<Record> records;
+
+        /**
+         * Whether all the matching entries were returned.
+         */
+        final boolean complete;
+
+        /**
+         * The time the result was retrieved from the server.
+         */
+        final long timestamp;
+
+        /**
+         * Creates an entry.
+         *
+         * @param scope the search scope
+         * @param query the normalized query string
+         * @param records the records
+         * @param complete whether all the matching entries were returned
+         * @param timestamp the time the result was retrieved from the server
+         */
+        Entry(String scope, String query, List<Record> records,
+                boolean complete, long timestamp)
+        {
+            this.scope = scope;
+            this.query = query;
+            this.records = records;
+            this.complete = complete;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.lang.reflect.*;
 import java.net.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.service.dns.*;
 import net.java.sip.communicator.service.netaddr.*;
@@ -46,10 +47,85 @@ public class NetworkAddressManagerServiceImpl
         Logger.getLogger(NetworkAddressManagerServiceImpl.class);
 
     /**
-     * The socket that we use for dummy connections during selection of a local
-     * address that has to be used when communicating with a specific location.
+     * The sockets that we use for dummy connections during selection of a
+     * local address that has to be used when communicating with a specific
+     * location. Each lookup borrows its own socket so that concurrent lookups
+     * do not have to wait for each other.
      */
-    DatagramSocket localHostFinderSocket = null;
+    private final Queue<DatagramSocket> localHostFinderSockets
+        = new ConcurrentLinkedQueue<DatagramSocket>();
+
+    /**
+     * The maximum number of idle sockets kept in
+     * <tt>localHostFinderSockets</tt>.
+     */
+    private static final int MAX_IDLE_LOCALHOST_FINDER_SOCKETS = 4;
+
+    /**
+     * The name of the property containing the length in bits of the prefix of
+     * IPv4 destinations which share a cached local address.
+     */
+    public static final String LOCALHOST_CACHE_IPV4_PREFIX_PROPERTY_NAME
+        = "net.java.sip.communicator.service.netaddr.LOCALHOST_CACHE_IPV4_PREFIX";
+
+    /**
+     * The name of the property containing the length in bits of the prefix of
+     * IPv6 destinations which share a cached local address.
+     */
+    public static final String LOCALHOST_CACHE_IPV6_PREFIX_PROPERTY_NAME
+        = "net.java.sip.communicator.service.netaddr.LOCALHOST_CACHE_IPV6_PREFIX";
+
+    /**
+     * The default length of the IPv4 destination prefix (a single
+     * destination, routes to individual hosts of a subnet may differ).
+     */
+    private static final int LOCALHOST_CACHE_IPV4_PREFIX_DEFAULT = 32;
+
+    /**
+     * The default length of the IPv6 destination prefix.
+     */
+    private static final int LOCALHOST_CACHE_IPV6_PREFIX_DEFAULT = 64;
+
+    /**
+     * The maximum number of destination prefixes kept in
+     * <tt>localHostCache</tt>.
+     */
+    private static final int LOCALHOST_CACHE_MAX_SIZE = 256;
+
+    /**
+     * The local addresses selected so far, by destination prefix. The cache
+     * is emptied every time the network configuration changes.
+     */
+    private final ConcurrentMap<String, InetAddress> localHostCache
+        = new ConcurrentHashMap<String, InetAddress>();
+
+    /**
+     * Incremented every time <tt>localHostCache</tt> is invalidated so that
+     * lookups started before a network change do not cache their result.
+     */
+    private volatile int localHostCacheGeneration = 0;
+
+    /**
+     * The length of the IPv4 destination prefixes used as cache keys.
+     */
+    private int localHostCacheIPv4Prefix = LOCALHOST_CACHE_IPV4_PREFIX_DEFAULT;
+
+    /**
+     * The length of the IPv6 destination prefixes used as cache keys.
+     */
+    private int localHostCacheIPv6Prefix = LOCALHOST_CACHE_IPV6_PREFIX_DEFAULT;
+
+    /**
+     * Empties the local address cache when the network configuration changes.
+     */
+    private final NetworkConfigurationChangeListener localHostCacheInvalidator
+        = new NetworkConfigurationChangeListener()
+        {
+            public void configurationChanged(ChangeEvent event)
+            {
+                invalidateLocalHostCache();
+            }
+        };
 
     /**
      * A random (unused)local port to use when trying to select a local host
@@ -93,7 +169,20 @@ public class NetworkAddressManagerServiceImpl
       */
      public void start()
      {
-         this.localHostFinderSocket = initRandomPortSocket();
+         DatagramSocket localHostFinderSocket = initRandomPortSocket();
+         if(localHostFinderSocket != null)
+             localHostFinderSockets.add(localHostFinderSocket);
+
+         ConfigurationService config
+             = NetaddrActivator.getConfigurationService();
+         localHostCacheIPv4Prefix = config.getInt(
+                 LOCALHOST_CACHE_IPV4_PREFIX_PROPERTY_NAME,
+                 LOCALHOST_CACHE_IPV4_PREFIX_DEFAULT);
+         localHostCacheIPv6Prefix = config.getInt(
+                 LOCALHOST_CACHE_IPV6_PREFIX_PROPERTY_NAME,
+                 LOCALHOST_CACHE_IPV6_PREFIX_DEFAULT);
+
+         addNetworkConfigurationChangeListener(localHostCacheInvalidator);
 
          // set packet logging to ice4j stack
          StunStack.setPacketLogger(new Ice4jPacketLogger());
@@ -108,15 +197,73 @@ public class NetworkAddressManagerServiceImpl
      {
          try
          {
+             removeNetworkConfigurationChangeListener(
+                     localHostCacheInvalidator);
              if(networkConfigurationWatcher != null)
                  networkConfigurationWatcher.stop();
          }
          finally
          {
+             invalidateLocalHostCache();
+
+             DatagramSocket localHostFinderSocket;
+             while((localHostFinderSocket = localHostFinderSockets.poll())
+                     != null)
+                 localHostFinderSocket.close();
+
              logger.logExit();
          }
      }
 
+    /**
+     * Empties the cache of the local addresses selected per destination.
+     */
+    private void invalidateLocalHostCache()
+    {
+        localHostCacheGeneration++;
+        localHostCache.clear();
+    }
+
+    /**
+     * Returns the key under which the local address selected for
+     * <tt>destination</tt> is cached, i.e. the prefix of the destination.
+     *
+     * @param destination the destination address
+     * @return the cache key for <tt>destination</tt>
+     */
+    private String getLocalHostCacheKey(InetAddress destination)
+    {
+        byte[] address = destination.getAddress();
+        int prefix
+            = (destination instanceof Inet6Address)
+                ? localHostCacheIPv6Prefix
+                : localHostCacheIPv4Prefix;
+        StringBuilder key = new StringBuilder(48);
+
+        for(int i = 0; i < address.length; i++)
+        {
+            int bits = prefix - i * 8;
+            int b;
+
+            if(bits >= 8)
+                b = address[i] & 0xFF;
+            else if(bits <= 0)
+                b = 0;
+            else
+                b = address[i] & (0xFF << (8 - bits)) & 0xFF;
+
+            key.append(Integer.toHexString(b)).append('.');
+        }
+        key.append('/').append(prefix);
+
+        // link-local destinations are only meaningful on their interface
+        if(destination instanceof Inet6Address)
+            key.append('%').append(
+                    ((Inet6Address) destination).getScopeId());
+
+        return key.toString();
+    }
+
     /**
      * Returns an InetAddress instance that represents the localhost, and that
      * a socket can bind upon or distribute to peers as a contact address.
@@ -127,8 +274,50 @@ public class NetworkAddressManagerServiceImpl
      * @return an InetAddress instance representing the local host, and that
      * a socket can bind upon or distribute to peers as a contact address.
      */
-    public synchronized InetAddress getLocalHost(
-            InetAddress intendedDestination)
+    public InetAddress getLocalHost(InetAddress intendedDestination)
+    {
+        String cacheKey = getLocalHostCacheKey(intendedDestination);
+        InetAddress localHost = localHostCache.get(cacheKey);
+
+        if(localHost != null)
+        {
+            if(logger.isTraceEnabled())
+            {
+                logger.trace(
+                        "Returning the cached localhost address '" + localHost
+                            + "' for intended destination '"
+                            + intendedDestination + "'");
+            }
+            return localHost;
+        }
+
+        int generation = localHostCacheGeneration;
+
+        localHost = findLocalHost(intendedDestination);
+
+        if(localHost != null && !localHost.isAnyLocalAddress())
+        {
+            if(localHostCache.size() >= LOCALHOST_CACHE_MAX_SIZE)
+                localHostCache.clear();
+            localHostCache.put(cacheKey, localHost);
+            // the network changed while we were looking the address up
+            if(generation != localHostCacheGeneration)
+                localHostCache.remove(cacheKey);
+        }
+        return localHost;
+    }
+
+    /**
+     * Asks the operating system for the local address it would use to reach
+     * <tt>intendedDestination</tt>, bypassing the cache.
+     *
+     * @param intendedDestination the destination that we'd like to use the
+     * localhost address with.
+     *
+     * @return an InetAddress instance representing the local host, and that
+     * a socket can bind upon or distribute to peers as a contact address.
+     */
+    private InetAddress findLocalHost(InetAddress intendedDestination)
     {
         InetAddress localHost = null;
 
@@ -178,6 +367,12 @@ public class NetworkAddressManagerServiceImpl
         }
         else
         {
+            DatagramSocket localHostFinderSocket
+                = localHostFinderSockets.poll();
+
+            if(localHostFinderSocket == null)
+                localHostFinderSocket = initRandomPortSocket();
+
             //no point in making sure that the localHostFinderSocket is
             //initialized.
             //better let it through a NullPointerException.
@@ -185,6 +380,12 @@ public class NetworkAddressManagerServiceImpl
                                           RANDOM_ADDR_DISC_PORT);
             localHost = localHostFinderSocket.getLocalAddress();
             localHostFinderSocket.disconnect();
+
+            if(localHostFinderSockets.size()
+                    < MAX_IDLE_LOCALHOST_FINDER_SOCKETS)
+                localHostFinderSockets.add(localHostFinderSocket);
+            else
+                localHostFinderSocket.close();
         }
 
         //windows socket implementations return the any address so we need to
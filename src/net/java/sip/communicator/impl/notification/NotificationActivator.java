@@ -94,6 +94,7 @@ public class NotificationActivator
             popupMessageHandler.getActionType());
         notificationService.removeActionHandler(
             soundHandler.getActionType());
+        ((SoundNotificationHandlerImpl) soundHandler).dispose();
 
         logger.info("Notification handler Service ...[STOPPED]");
     }
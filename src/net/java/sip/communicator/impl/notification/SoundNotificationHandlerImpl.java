@@ -6,6 +6,7 @@
  */
 package net.java.sip.communicator.impl.notification;
 
+import java.beans.*;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.*;
@@ -47,6 +48,40 @@ public class SoundNotificationHandlerImpl
     private static final String PROP_DISABLE_NOTIFICATION_DURING_CALL =
     "net.java.sip.communicator.impl.notification.disableNotificationDuringCall";
 
+    /**
+     * The name of the configuration property which defines the maximum number
+     * of clips kept by {@link #clipCache}. The clips are not cached if it is
+     * not positive.
+     */
+    private static final String SOUND_CLIP_CACHE_SIZE_PNAME
+        = "net.java.sip.communicator.impl.notification.SOUND_CLIP_CACHE_SIZE";
+
+    /**
+     * The default maximum number of cached clips.
+     */
+    private static final int DEFAULT_SOUND_CLIP_CACHE_SIZE = 16;
+
+    /**
+     * The prefix of the names of the configuration properties of the audio
+     * system, whose changes may make the cached clips play on a device which
+     * is no longer selected.
+     */
+    private static final String AUDIO_SYSTEM_PNAME_PREFIX
+        = "net.java.sip.communicator.impl.neomedia.audioSystem";
+
+    /**
+     * The clips of the sounds which are played once, by descriptor and
+     * device, least recently played first. Reusing them spares the creation
+     * and the decoding setup of a new clip for every notification of a
+     * burst.
+     */
+    private Map<String, SCAudioClip> clipCache;
+
+    /**
+     * Empties {@link #clipCache} when the audio devices change.
+     */
+    private PropertyChangeListener audioSystemListener;
+
     /**
      * {@inheritDoc}
      */
@@ -105,14 +140,43 @@ public class SoundNotificationHandlerImpl
 
         SCAudioClip audio = null;
 
+        @SuppressWarnings("unchecked")
+        Callable<Boolean> loopCondition
+            = (Callable<Boolean>)
+                data.getExtra(
+                        NotificationData
+                            .SOUND_NOTIFICATION_HANDLER_LOOP_CONDITION_EXTRA);
+
         switch (device)
         {
         case NOTIFICATION:
         case PLAYBACK:
-            audio
-                = audioNotifService.createAudio(
-                        action.getDescriptor(),
-                        SCAudioClipDevice.PLAYBACK.equals(device));
+            if ((action.getLoopInterval() < 0) && (loopCondition == null))
+            {
+                String key = device + ":" + action.getDescriptor();
+
+                audio = getCachedClip(key);
+                // The same sound is still being played for a previous
+                // notification, there is no point in playing it over itself.
+                if ((audio != null) && audio.isStarted())
+                    return;
+                if (audio == null)
+                {
+                    audio
+                        = audioNotifService.createAudio(
+                                action.getDescriptor(),
+                                SCAudioClipDevice.PLAYBACK.equals(device));
+                    if (audio != null)
+                        putCachedClip(key, audio);
+                }
+            }
+            else
+            {
+                audio
+                    = audioNotifService.createAudio(
+                            action.getDescriptor(),
+                            SCAudioClipDevice.PLAYBACK.equals(device));
+            }
             break;
 
         case PC_SPEAKER:
@@ -134,13 +198,6 @@ public class SoundNotificationHandlerImpl
 
         try
         {
-            @SuppressWarnings("unchecked")
-            Callable<Boolean> loopCondition
-                = (Callable<Boolean>)
-                    data.getExtra(
-                            NotificationData
-                                .SOUND_NOTIFICATION_HANDLER_LOOP_CONDITION_EXTRA);
-
             audio.play(action.getLoopInterval(), loopCondition);
             played = true;
         }
@@ -154,6 +211,100 @@ public class SoundNotificationHandlerImpl
         }
     }
 
+    /**
+     * Returns a clip from {@link #clipCache} and marks it as the most recently
+     * played one.
+     *
+     * @param key the descriptor and device of the clip.
+     * @return the cached clip or <tt>null</tt> if there is none.
+     */
+    private synchronized SCAudioClip getCachedClip(String key)
+    {
+        return (clipCache == null) ? null : clipCache.get(key);
+    }
+
+    /**
+     * Adds a clip to {@link #clipCache}, creating the cache on first use.
+     *
+     * @param key the descriptor and device of the clip.
+     * @param audio the clip.
+     */
+    private synchronized void putCachedClip(String key, SCAudioClip audio)
+    {
+        if (clipCache == null)
+        {
+            ConfigurationService cfg
+                = NotificationActivator.getConfigurationService();
+            final int maxSize
+                = (cfg == null)
+                    ? DEFAULT_SOUND_CLIP_CACHE_SIZE
+                    : cfg.getInt(
+                            SOUND_CLIP_CACHE_SIZE_PNAME,
+                            DEFAULT_SOUND_CLIP_CACHE_SIZE);
+
+            if (maxSize <= 0)
+                return;
+
+            clipCache
+                = new LinkedHashMap<String, SCAudioClip>(maxSize, 0.75f, true)
+                {
+                    private static final long serialVersionUID = 0L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, SCAudioClip> eldest)
+                    {
+                        return size() > maxSize;
+                    }
+                };
+
+            if (cfg != null)
+            {
+                audioSystemListener
+                    = new PropertyChangeListener()
+                    {
+                        public void propertyChange(PropertyChangeEvent evt)
+                        {
+                            String name = evt.getPropertyName();
+
+                            if ((name != null)
+                                    && name.startsWith(
+                                            AUDIO_SYSTEM_PNAME_PREFIX))
+                                clearClipCache();
+                        }
+                    };
+                cfg.addPropertyChangeListener(audioSystemListener);
+            }
+        }
+        clipCache.put(key, audio);
+    }
+
+    /**
+     * Empties {@link #clipCache}.
+     */
+    private synchronized void clearClipCache()
+    {
+        if (clipCache != null)
+            clipCache.clear();
+    }
+
+    /**
+     * Releases the cached clips and stops listening to the configuration.
+     */
+    synchronized void dispose()
+    {
+        clearClipCache();
+        if (audioSystemListener != null)
+        {
+            ConfigurationService cfg
+                = NotificationActivator.getConfigurationService();
+
+            if (cfg != null)
+                cfg.removePropertyChangeListener(audioSystemListener);
+            audioSystemListener = null;
+        }
+    }
+
     /**
      * Stops/Restores all currently playing sounds.
      *
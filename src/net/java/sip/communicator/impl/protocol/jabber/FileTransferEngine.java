@@ -0,0 +1,432 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jivesoftware.smackx.filetransfer.*;
+import org.jivesoftware.smackx.filetransfer.FileTransfer.Status;
+
+/**
+ * Copies the data of the Jabber file transfers between the file and the
+ * SOCKS5 or IBB bytestream and reports their progress and status to a
+ * {@link TransferListener} as it happens, so that no thread has to poll the
+ * transfers.
+ * <p>
+ * The data is copied in chunks of {@link #CHUNK_SIZE} bytes through buffers
+ * which are reused by the following transfers. Progress is reported each time
+ * about a hundredth of the file (and at least one chunk) has been copied.
+ * Transfers which make no progress for {@link #STALL_TIMEOUT_PNAME} seconds
+ * are cancelled by a scheduler shared by all the transfers. The throughput
+ * and the CPU time spent per MB of each transfer are logged when it ends.
+ * </p>
+ */
+public class FileTransferEngine
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>FileTransferEngine</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(FileTransferEngine.class);
+
+    /**
+     * The name of the property which defines the number of seconds after
+     * which a transfer that makes no progress is cancelled.
+     */
+    public static final String STALL_TIMEOUT_PNAME
+        = "net.java.sip.communicator.impl.protocol.jabber"
+            + ".FILE_TRANSFER_STALL_TIMEOUT";
+
+    /**
+     * The default value of {@link #STALL_TIMEOUT_PNAME}.
+     */
+    public static final long STALL_TIMEOUT_DEFAULT = 120;
+
+    /**
+     * The number of bytes read and written at once.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The maximum number of buffers kept for the following transfers.
+     */
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    /**
+     * The number of milliseconds we wait for the exception which explains a
+     * failure, since Smack sets it right after the status of the transfer.
+     */
+    private static final long EXCEPTION_WAIT = 100;
+
+    /**
+     * The buffers kept for the following transfers.
+     */
+    private static final List<byte[]> bufferPool = new LinkedList<byte[]>();
+
+    /**
+     * The scheduler shared by all the transfers or <tt>null</tt> if it has
+     * not been needed yet.
+     */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Returns the scheduler shared by all the transfers, creating it if
+     * necessary. Its single thread is a daemon one.
+     *
+     * @return the scheduler shared by all the transfers.
+     */
+    static synchronized ScheduledExecutorService getScheduler()
+    {
+        if(scheduler == null)
+        {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "FileTransferEngine");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Takes a buffer from the pool or creates a new one.
+     *
+     * @return a buffer of {@link #CHUNK_SIZE} bytes.
+     */
+    private static byte[] acquireBuffer()
+    {
+        synchronized(bufferPool)
+        {
+            if(!bufferPool.isEmpty())
+                return bufferPool.remove(0);
+        }
+        return new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     *
+     * @param buffer the buffer which is not used anymore.
+     */
+    private static void releaseBuffer(byte[] buffer)
+    {
+        synchronized(bufferPool)
+        {
+            if(bufferPool.size() < MAX_POOLED_BUFFERS)
+                bufferPool.add(buffer);
+        }
+    }
+
+    /**
+     * Gets the CPU time of the current thread.
+     *
+     * @return the CPU time of the current thread in nanoseconds or
+     * <tt>-1</tt> if it cannot be measured.
+     */
+    private static long getCurrentThreadCpuTime()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean.isCurrentThreadCpuTimeSupported()
+            ? bean.getCurrentThreadCpuTime()
+            : -1;
+    }
+
+    /**
+     * Receives the status and progress changes of a transfer.
+     */
+    public interface TransferListener
+    {
+        /**
+         * Indicates that the status of the transfer has changed. A failure is
+         * reported once the exception which caused it is known, if any.
+         *
+         * @param status the new status.
+         */
+        public void statusChanged(Status status);
+
+        /**
+         * Indicates that more data has been transferred.
+         *
+         * @param transferredBytes the number of bytes transferred so far.
+         */
+        public void progressChanged(long transferredBytes);
+    }
+
+    /**
+     * Counts the bytes copied by a {@link Session} into the transfer it
+     * belongs to.
+     */
+    interface ByteCounter
+    {
+        /**
+         * Adds copied bytes.
+         *
+         * @param count the number of bytes just copied.
+         */
+        public void add(int count);
+    }
+
+    /**
+     * The state the engine keeps about a transfer.
+     */
+    static class Session
+    {
+        /**
+         * The transfer.
+         */
+        private final FileTransfer transfer;
+
+        /**
+         * The listener of the transfer or <tt>null</tt>.
+         */
+        private volatile TransferListener listener;
+
+        /**
+         * The last time data was copied.
+         */
+        private volatile long lastActivity;
+
+        /**
+         * The task which cancels the transfer if it stalls.
+         */
+        private ScheduledFuture<?> watchdog;
+
+        /**
+         * The failure waiting for its exception to be reported or
+         * <tt>null</tt>.
+         */
+        private ScheduledFuture<?> pendingFailure;
+
+        /**
+         * Creates the state of <tt>transfer</tt>.
+         *
+         * @param transfer the transfer.
+         */
+        Session(FileTransfer transfer)
+        {
+            this.transfer = transfer;
+        }
+
+        /**
+         * Sets the listener of the transfer.
+         *
+         * @param listener the listener of the transfer.
+         */
+        void setListener(TransferListener listener)
+        {
+            this.listener = listener;
+        }
+
+        /**
+         * Reports a change of the status of the transfer to its listener. A
+         * failure is reported once {@link #exceptionOccurred()} is called or
+         * after {@link #EXCEPTION_WAIT} milliseconds.
+         *
+         * @param status the new status.
+         */
+        void statusChanged(final Status status)
+        {
+            final TransferListener listener = this.listener;
+            if(listener == null)
+                return;
+
+            if(status.equals(Status.error) || status.equals(Status.refused))
+            {
+                synchronized(this)
+                {
+                    if(pendingFailure != null)
+                        pendingFailure.cancel(false);
+                    pendingFailure = getScheduler().schedule(
+                        new Runnable()
+                        {
+                            public void run()
+                            {
+                                listener.statusChanged(status);
+                            }
+                        },
+                        EXCEPTION_WAIT, TimeUnit.MILLISECONDS);
+                }
+            }
+            else
+                listener.statusChanged(status);
+        }
+
+        /**
+         * Reports a failure which was waiting for its exception right away.
+         */
+        void exceptionOccurred()
+        {
+            ScheduledFuture<?> failure;
+            synchronized(this)
+            {
+                failure = pendingFailure;
+                pendingFailure = null;
+            }
+
+            TransferListener listener = this.listener;
+            if(failure != null && failure.cancel(false) && listener != null)
+                listener.statusChanged(transfer.getStatus());
+        }
+
+        /**
+         * Copies the data of the transfer until the end of <tt>in</tt> or
+         * until the transfer is cancelled.
+         *
+         * @param in the stream to read from.
+         * @param out the stream to write to.
+         * @param counter the counter of the bytes written to <tt>out</tt>.
+         * @return the number of bytes copied.
+         * @throws IOException if reading or writing fails.
+         */
+        long copy(InputStream in, OutputStream out, ByteCounter counter)
+            throws IOException
+        {
+            long threshold = Math.max(CHUNK_SIZE, transfer.getFileSize() / 100);
+            long copied = 0;
+            long notified = 0;
+            long startTime = System.nanoTime();
+            long startCpuTime = getCurrentThreadCpuTime();
+            byte[] buffer = acquireBuffer();
+
+            startWatchdog();
+            try
+            {
+                int count;
+                while((count = in.read(buffer)) != -1
+                    && !transfer.getStatus().equals(Status.cancelled))
+                {
+                    out.write(buffer, 0, count);
+                    lastActivity = System.currentTimeMillis();
+                    copied += count;
+                    counter.add(count);
+
+                    if(copied - notified >= threshold)
+                    {
+                        notified = copied;
+                        fireProgressChanged(copied);
+                    }
+                }
+                if(copied != notified)
+                    fireProgressChanged(copied);
+            }
+            finally
+            {
+                stopWatchdog();
+                releaseBuffer(buffer);
+                logStatistics(copied,
+                    System.nanoTime() - startTime,
+                    (startCpuTime == -1)
+                        ? -1
+                        : getCurrentThreadCpuTime() - startCpuTime);
+            }
+            return copied;
+        }
+
+        /**
+         * Reports progress to the listener.
+         *
+         * @param copied the number of bytes copied so far.
+         */
+        private void fireProgressChanged(long copied)
+        {
+            TransferListener listener = this.listener;
+            if(listener != null)
+                listener.progressChanged(copied);
+        }
+
+        /**
+         * Starts cancelling the transfer if it stalls.
+         */
+        private synchronized void startWatchdog()
+        {
+            final long timeout = JabberActivator.getConfigurationService()
+                .getLong(STALL_TIMEOUT_PNAME, STALL_TIMEOUT_DEFAULT) * 1000;
+            if(timeout <= 0)
+                return;
+
+            lastActivity = System.currentTimeMillis();
+            long period = Math.max(1000, timeout / 4);
+            watchdog = getScheduler().scheduleWithFixedDelay(
+                new Runnable()
+                {
+                    public void run()
+                    {
+                        if(System.currentTimeMillis() - lastActivity
+                            < timeout)
+                            return;
+
+                        logger.warn("Cancelling stalled file transfer "
+                            + transfer.getStreamID() + " with "
+                            + transfer.getPeer());
+                        stopWatchdog();
+                        transfer.cancel();
+                    }
+                },
+                period, period, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stops watching the transfer.
+         */
+        private synchronized void stopWatchdog()
+        {
+            if(watchdog != null)
+            {
+                watchdog.cancel(false);
+                watchdog = null;
+            }
+        }
+
+        /**
+         * Logs the throughput and the CPU cost of the transfer.
+         *
+         * @param bytes the number of bytes copied.
+         * @param time the time the copy took in nanoseconds.
+         * @param cpuTime the CPU time the copy took in nanoseconds or
+         * <tt>-1</tt> if unknown.
+         */
+        private void logStatistics(long bytes, long time, long cpuTime)
+        {
+            if(!logger.isInfoEnabled())
+                return;
+
+            double mb = bytes / (1024d * 1024d);
+            StringBuilder sb = new StringBuilder();
+            sb.append((transfer instanceof OutgoingFileTransfer)
+                    ? "Sent " : "Received ")
+                .append(bytes).append(" bytes ")
+                .append((transfer instanceof OutgoingFileTransfer)
+                    ? "to " : "from ")
+                .append(transfer.getPeer())
+                .append(" in ").append(time / 1000000).append(" ms");
+            if(time > 0)
+            {
+                sb.append(", ")
+                    .append(String.format("%.2f", mb * 1e9 / time))
+                    .append(" MB/s");
+            }
+            if(cpuTime >= 0 && mb > 0)
+            {
+                sb.append(", ")
+                    .append(String.format("%.2f", cpuTime / 1e6 / mb))
+                    .append(" ms CPU/MB");
+            }
+            logger.info(sb.toString());
+        }
+    }
+}
@@ -0,0 +1,510 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.service.netaddr.*;
+import net.java.sip.communicator.service.netaddr.event.*;
+import net.java.sip.communicator.service.protocol.*;
+import net.java.sip.communicator.util.*;
+
+import org.ice4j.*;
+import org.ice4j.ice.harvest.*;
+import org.ice4j.security.*;
+
+/**
+ * Keeps the results of the slow parts of setting up the ICE harvesters of an
+ * account so that <tt>IceUdpTransportManager</tt> does not repeat them for
+ * every call: the STUN/TURN server discovery (a DNS SRV lookup), the
+ * resolution of the configured and default STUN/TURN servers and the UPnP
+ * gateway discovery (which is kept by the <tt>UPNPHarvester</tt> instance
+ * shared by all the calls).
+ * <p>
+ * The results are refreshed when the network configuration changes or when
+ * they are older than {@link #HARVESTERS_TTL_PNAME} seconds. A refresh may be
+ * started ahead of a call with {@link #warmUp()}, e.g. on login or when a
+ * <tt>session-initiate</tt> arrives. The servers are discovered without
+ * holding the lock of the registry, and a call which needs the results while
+ * they are being discovered waits for that discovery instead of starting
+ * another one.
+ * </p>
+ */
+public class IceHarvesterRegistry
+    implements NetworkConfigurationChangeListener
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>IceHarvesterRegistry</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(IceHarvesterRegistry.class);
+
+    /**
+     * The name of the property which defines the number of seconds after
+     * which the discovered servers are discovered again.
+     */
+    public static final String HARVESTERS_TTL_PNAME
+        = "net.java.sip.communicator.impl.protocol.jabber.ICE_HARVESTERS_TTL";
+
+    /**
+     * The default value of {@link #HARVESTERS_TTL_PNAME}.
+     */
+    public static final long HARVESTERS_TTL_DEFAULT = 10 * 60;
+
+    /**
+     * The provider of the account the harvesters are set up for.
+     */
+    private final ProtocolProviderServiceJabberImpl provider;
+
+    /**
+     * The executor which runs the warm-ups of all the accounts.
+     */
+    private static ExecutorService warmUpExecutor;
+
+    /**
+     * The current results or <tt>null</tt> if they have to be computed.
+     */
+    private volatile HarvesterSet harvesterSet;
+
+    /**
+     * The <tt>UPNPHarvester</tt> shared by the calls of the account. It keeps
+     * the gateway it discovers during its first harvest.
+     */
+    private volatile UPNPHarvester upnpHarvester;
+
+    /**
+     * The discovery in progress or <tt>null</tt> if there is none.
+     */
+    private FutureTask<HarvesterSet> discovery;
+
+    /**
+     * The number of times the results have been forgotten, so that a
+     * discovery started before does not publish its results.
+     */
+    private int generation = 0;
+
+    /**
+     * Creates a new registry for the account of <tt>provider</tt> and starts
+     * listening for network configuration changes.
+     *
+     * @param provider the provider of the account.
+     */
+    IceHarvesterRegistry(ProtocolProviderServiceJabberImpl provider)
+    {
+        this.provider = provider;
+
+        NetworkAddressManagerService namSer
+            = JabberActivator.getNetworkAddressManagerService();
+        if(namSer != null)
+            namSer.addNetworkConfigurationChangeListener(this);
+    }
+
+    /**
+     * Stops listening for network configuration changes.
+     */
+    void dispose()
+    {
+        NetworkAddressManagerService namSer
+            = JabberActivator.getNetworkAddressManagerService();
+        if(namSer != null)
+            namSer.removeNetworkConfigurationChangeListener(this);
+        invalidate(true);
+    }
+
+    /**
+     * Forgets the results when the network configuration changes since the
+     * servers may resolve differently and the UPnP gateway may be another
+     * one.
+     *
+     * @param event the change event.
+     */
+    public void configurationChanged(ChangeEvent event)
+    {
+        if(event.isInitial())
+            return;
+
+        if(logger.isDebugEnabled())
+            logger.debug("Network changed, discarding ICE harvesters of "
+                + provider.getAccountID());
+        invalidate(true);
+    }
+
+    /**
+     * Forgets the results.
+     *
+     * @param upnp whether the UPnP gateway has to be discovered again.
+     */
+    synchronized void invalidate(boolean upnp)
+    {
+        harvesterSet = null;
+        if(upnp)
+            upnpHarvester = null;
+        discovery = null;
+        generation++;
+    }
+
+    /**
+     * Computes the results on the executor of the warm-ups if they are
+     * missing or expired, so that the next call finds them ready. Does not
+     * block, and may thus be called from the threads which process the
+     * packets of the connection.
+     */
+    public void warmUp()
+    {
+        if(!isValid(harvesterSet))
+            getDiscovery(true);
+    }
+
+    /**
+     * Returns the current results, computing them if they are missing or
+     * expired. Concurrent callers wait for the same computation.
+     *
+     * @return the current results.
+     */
+    public HarvesterSet getHarvesterSet()
+    {
+        HarvesterSet set = harvesterSet;
+
+        if(isValid(set))
+            return set;
+
+        try
+        {
+            return getDiscovery(false).get();
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException ee)
+        {
+            Throwable cause = ee.getCause();
+
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if(cause instanceof Error)
+                throw (Error) cause;
+            throw new UndeclaredThrowableException(cause);
+        }
+        return (set == null) ? new HarvesterSet() : set;
+    }
+
+    /**
+     * Returns the <tt>UPNPHarvester</tt> shared by the calls of the account.
+     *
+     * @return the shared <tt>UPNPHarvester</tt> or <tt>null</tt> if UPnP is
+     * disabled.
+     */
+    public UPNPHarvester getUPNPHarvester()
+    {
+        getHarvesterSet();
+        return upnpHarvester;
+    }
+
+    /**
+     * Returns the discovery in progress, starting one if there is none.
+     *
+     * @param background whether a discovery started by the method is to run
+     * on the executor of the warm-ups or on the calling thread.
+     * @return the discovery in progress.
+     */
+    private FutureTask<HarvesterSet> getDiscovery(boolean background)
+    {
+        FutureTask<HarvesterSet> discovery;
+        boolean start = false;
+
+        synchronized(this)
+        {
+            discovery = this.discovery;
+            if(discovery == null)
+            {
+                final int generation = this.generation;
+
+                discovery
+                    = new FutureTask<HarvesterSet>(
+                            new Callable<HarvesterSet>()
+                            {
+                                public HarvesterSet call()
+                                {
+                                    return discover(generation);
+                                }
+                            });
+                this.discovery = discovery;
+                start = true;
+            }
+        }
+
+        if(start)
+        {
+            if(background)
+                getWarmUpExecutor().execute(discovery);
+            else
+                discovery.run();
+        }
+        return discovery;
+    }
+
+    /**
+     * Discovers and resolves the servers of the account and publishes the
+     * results unless they have been forgotten in the meantime.
+     *
+     * @param generation the value of {@link #generation} when the discovery
+     * was started.
+     * @return the results.
+     */
+    private HarvesterSet discover(int generation)
+    {
+        long start = System.currentTimeMillis();
+        HarvesterSet set = null;
+
+        try
+        {
+            set = new HarvesterSet();
+        }
+        catch(RuntimeException re)
+        {
+            logger.warn("Failed to discover ICE servers of "
+                + provider.getAccountID(), re);
+            throw re;
+        }
+        finally
+        {
+            synchronized(this)
+            {
+                if(this.generation == generation)
+                {
+                    discovery = null;
+                    if(set != null)
+                    {
+                        harvesterSet = set;
+                        if(upnpHarvester == null
+                            && ((JabberAccountIDImpl) provider.getAccountID())
+                                .isUPNPEnabled())
+                        {
+                            upnpHarvester = new UPNPHarvester();
+                        }
+                    }
+                }
+            }
+        }
+
+        if(logger.isInfoEnabled())
+            logger.info("Discovered ICE servers of "
+                + provider.getAccountID() + " within "
+                + (System.currentTimeMillis() - start) + " ms");
+        return set;
+    }
+
+    /**
+     * Returns the executor which runs the warm-ups of all the accounts,
+     * creating it if necessary. Its threads are daemon ones.
+     *
+     * @return the executor which runs the warm-ups.
+     */
+    private static synchronized ExecutorService getWarmUpExecutor()
+    {
+        if(warmUpExecutor == null)
+        {
+            warmUpExecutor = Executors.newCachedThreadPool(
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t
+                            = new Thread(r, "IceHarvesterRegistry warm-up");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return warmUpExecutor;
+    }
+
+    /**
+     * Determines whether results may still be used.
+     *
+     * @param set the results.
+     * @return <tt>true</tt> if <tt>set</tt> is not <tt>null</tt> and not
+     * expired.
+     */
+    private static boolean isValid(HarvesterSet set)
+    {
+        if(set == null)
+            return false;
+
+        long ttl = JabberActivator.getConfigurationService().getLong(
+            HARVESTERS_TTL_PNAME, HARVESTERS_TTL_DEFAULT);
+        return System.currentTimeMillis() - set.timestamp < ttl * 1000;
+    }
+
+    /**
+     * The resolved STUN/TURN servers of an account. The harvesters created
+     * from them are new instances, since STUN harvesters keep state about the
+     * harvests of the agent they belong to.
+     */
+    public class HarvesterSet
+    {
+        /**
+         * The time the servers were discovered.
+         */
+        private final long timestamp = System.currentTimeMillis();
+
+        /**
+         * The address of the automatically discovered server or
+         * <tt>null</tt>.
+         */
+        private TransportAddress discoveredServer;
+
+        /**
+         * Whether the automatically discovered server supports TURN.
+         */
+        private boolean discoveredTurn;
+
+        /**
+         * The configured servers with a resolved address.
+         */
+        private final List<StunServerDescriptor> configuredServers
+            = new ArrayList<StunServerDescriptor>();
+
+        /**
+         * The resolved addresses of {@link #configuredServers}.
+         */
+        private final List<TransportAddress> configuredAddresses
+            = new ArrayList<TransportAddress>();
+
+        /**
+         * The address of the default STUN server or <tt>null</tt> if it may
+         * not be used.
+         */
+        private TransportAddress defaultServer;
+
+        /**
+         * Discovers and resolves the servers of the account.
+         */
+        private HarvesterSet()
+        {
+            JabberAccountIDImpl accID
+                = (JabberAccountIDImpl) provider.getAccountID();
+
+            if(accID.isStunServerDiscoveryEnabled())
+            {
+                // the credentials only matter to the harvesters we create
+                StunCandidateHarvester harvester
+                    = JabberActivator.getNetworkAddressManagerService()
+                        .discoverStunServer(
+                            accID.getService(), new byte[0], new byte[0]);
+
+                if(harvester != null)
+                {
+                    discoveredServer = harvester.stunServer;
+                    discoveredTurn
+                        = (harvester instanceof TurnCandidateHarvester);
+                }
+            }
+
+            for(StunServerDescriptor desc : accID.getStunServers())
+            {
+                TransportAddress addr = new TransportAddress(
+                    desc.getAddress(), desc.getPort(), Transport.UDP);
+
+                // if we get STUN server from automatic discovery, it may just
+                // be server name (i.e. stun.domain.org) and it may be
+                // possible that it cannot be resolved
+                if(addr.getAddress() == null)
+                {
+                    logger.info("Unresolved address for " + addr);
+                    continue;
+                }
+                configuredServers.add(desc);
+                configuredAddresses.add(addr);
+            }
+
+            if(discoveredServer == null
+                && configuredServers.isEmpty()
+                && accID.isUseDefaultStunServer())
+            {
+                defaultServer = new TransportAddress(
+                    IceUdpTransportManager.DEFAULT_STUN_SERVER_ADDRESS,
+                    IceUdpTransportManager.DEFAULT_STUN_SERVER_PORT,
+                    Transport.UDP);
+            }
+        }
+
+        /**
+         * Creates a harvester for the automatically discovered server.
+         *
+         * @param username the user name to use with a TURN server.
+         * @param password the password to use with a TURN server.
+         * @return a new harvester or <tt>null</tt> if no server was
+         * discovered.
+         */
+        public StunCandidateHarvester createDiscoveredHarvester(
+            byte[] username, byte[] password)
+        {
+            if(discoveredServer == null)
+                return null;
+
+            return discoveredTurn
+                ? new TurnCandidateHarvester(
+                    discoveredServer,
+                    new LongTermCredential(username, password))
+                : new StunCandidateHarvester(discoveredServer);
+        }
+
+        /**
+         * Creates harvesters for the configured servers.
+         *
+         * @return new harvesters for the configured servers which could be
+         * resolved.
+         */
+        public List<StunCandidateHarvester> createConfiguredHarvesters()
+        {
+            List<StunCandidateHarvester> harvesters
+                = new ArrayList<StunCandidateHarvester>(
+                    configuredServers.size());
+
+            for(int i = 0; i < configuredServers.size(); i++)
+            {
+                StunServerDescriptor desc = configuredServers.get(i);
+                TransportAddress addr = configuredAddresses.get(i);
+
+                if(desc.isTurnSupported())
+                {
+                    //Yay! a TURN server
+                    harvesters.add(
+                        new TurnCandidateHarvester(
+                            addr,
+                            new LongTermCredential(
+                                desc.getUsername(),
+                                desc.getPassword())));
+                }
+                else
+                {
+                    //this is a STUN only server
+                    harvesters.add(new StunCandidateHarvester(addr));
+                }
+            }
+            return harvesters;
+        }
+
+        /**
+         * Creates a harvester for the default STUN server.
+         *
+         * @return a new harvester or <tt>null</tt> if the default server is
+         * not to be used.
+         */
+        public StunCandidateHarvester createDefaultHarvester()
+        {
+            return (defaultServer == null)
+                ? null
+                : new StunCandidateHarvester(defaultServer);
+        }
+    }
+}
@@ -20,7 +20,6 @@ import net.java.sip.communicator.util.Logger;
 import org.ice4j.*;
 import org.ice4j.ice.*;
 import org.ice4j.ice.harvest.*;
-import org.ice4j.security.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.util.*;
 import org.jivesoftware.smack.packet.*;
@@ -113,6 +112,10 @@ public class IceUdpTransportManager
         //we will now create the harvesters
         JabberAccountIDImpl accID
                 = (JabberAccountIDImpl)provider.getAccountID();
+        IceHarvesterRegistry registry = provider.getIceHarvesterRegistry();
+        // the servers discovered and resolved for a previous call, if any
+        IceHarvesterRegistry.HarvesterSet harvesterSet
+            = registry.getHarvesterSet();
 
         if (accID.isStunServerDiscoveryEnabled())
         {
@@ -164,8 +167,7 @@ public class IceUdpTransportManager
             }
 
             StunCandidateHarvester autoHarvester
-                = namSer.discoverStunServer(
-                        accID.getService(),
+                = harvesterSet.createDiscoveredHarvester(
                         StringUtils.getUTF8Bytes(username),
                         StringUtils.getUTF8Bytes(password));
 
@@ -179,40 +181,11 @@ public class IceUdpTransportManager
             }
         }
 
-        //now create stun server descriptors for whatever other STUN/TURN
-        //servers the user may have set.
-        for(StunServerDescriptor desc : accID.getStunServers())
+        //now add harvesters for whatever other STUN/TURN servers the user may
+        //have set.
+        for(StunCandidateHarvester harvester
+                : harvesterSet.createConfiguredHarvesters())
         {
-            TransportAddress addr = new TransportAddress(
-                            desc.getAddress(), desc.getPort(), Transport.UDP);
-
-            // if we get STUN server from automatic discovery, it may just
-            // be server name (i.e. stun.domain.org) and it may be possible that
-            // it cannot be resolved
-            if(addr.getAddress() == null)
-            {
-                logger.info("Unresolved address for " + addr);
-                continue;
-            }
-
-            StunCandidateHarvester harvester;
-
-            if(desc.isTurnSupported())
-            {
-                //Yay! a TURN server
-                harvester
-                    = new TurnCandidateHarvester(
-                            addr,
-                            new LongTermCredential(
-                                    desc.getUsername(),
-                                    desc.getPassword()));
-            }
-            else
-            {
-                //this is a STUN only server
-                harvester = new StunCandidateHarvester(addr);
-            }
-
             if (logger.isInfoEnabled())
                 logger.info("Adding pre-configured harvester " + harvester);
 
@@ -225,19 +198,12 @@ public class IceUdpTransportManager
             /* we have no configured or discovered STUN server so takes the
              * default provided by us if user allows it
              */
-            if(accID.isUseDefaultStunServer())
-            {
-                TransportAddress addr = new TransportAddress(
-                        DEFAULT_STUN_SERVER_ADDRESS,
-                        DEFAULT_STUN_SERVER_PORT,
-                        Transport.UDP);
-                StunCandidateHarvester harvester =
-                    new StunCandidateHarvester(addr);
+            StunCandidateHarvester harvester
+                = harvesterSet.createDefaultHarvester();
 
-                if(harvester != null)
-                {
-                    agent.addCandidateHarvester(harvester);
-                }
+            if(harvester != null)
+            {
+                agent.addCandidateHarvester(harvester);
             }
         }
 
@@ -264,7 +230,9 @@ public class IceUdpTransportManager
 
         if(accID.isUPNPEnabled())
         {
-            UPNPHarvester harvester = new UPNPHarvester();
+            // shared by the calls of the account so that the gateway is only
+            // discovered once
+            UPNPHarvester harvester = registry.getUPNPHarvester();
 
             if(harvester != null)
             {
@@ -163,11 +163,20 @@ public class IncomingFileTransferRequestJabberImpl
 
             fileTransferOpSet.fireFileTransferCreated(event);
 
-            jabberTransfer.recieveFile(file);
+            // Follow the status and progress of the transfer.
+            if (jabberTransfer
+                    instanceof ScFileTransferManager.ScIncomingFileTransfer)
+            {
+                ((ScFileTransferManager.ScIncomingFileTransfer) jabberTransfer)
+                    .setTransferListener(
+                        new OperationSetFileTransferJabberImpl
+                            .FileTransferProgressMonitor(
+                                jabberTransfer,
+                                incomingTransfer,
+                                getFileSize()));
+            }
 
-            new OperationSetFileTransferJabberImpl
-                .FileTransferProgressThread(
-                jabberTransfer, incomingTransfer, getFileSize()).start();
+            jabberTransfer.recieveFile(file);
         }
         catch (XMPPException e)
         {
@@ -8,7 +8,9 @@ package net.java.sip.communicator.impl.protocol.jabber;
 
 import java.util.*;
 
+import net.java.sip.communicator.impl.protocol.jabber.extensions.caps.*;
 import net.java.sip.communicator.service.credentialsstorage.*;
+import net.java.sip.communicator.service.dns.*;
 import net.java.sip.communicator.service.googlecontacts.*;
 import net.java.sip.communicator.service.gui.*;
 import net.java.sip.communicator.service.hid.*;
@@ -143,6 +145,8 @@ public class JabberActivator
                     ProtocolProviderFactory.class.getName(),
                     jabberProviderFactory,
                     hashtable);
+
+        EntityCapsManager.moveCapsPropertiesInBackground();
     }
 
     /**
@@ -316,6 +320,20 @@ public class JabberActivator
         return networkAddressManagerService;
     }
 
+    /**
+     * Returns the <tt>AsyncResolver</tt> currently registered in the bundle
+     * context or <tt>null</tt> if the DNS bundle has not registered it (yet),
+     * in which case lookups are to be performed synchronously.
+     *
+     * @return the <tt>AsyncResolver</tt> or <tt>null</tt>
+     */
+    public static AsyncResolver getAsyncResolver()
+    {
+        if(bundleContext == null)
+            return null;
+        return ServiceUtils.getService(bundleContext, AsyncResolver.class);
+    }
+
     /**
      * Returns a reference to a CredentialsStorageService implementation
      * currently registered in the bundle context or null if no such
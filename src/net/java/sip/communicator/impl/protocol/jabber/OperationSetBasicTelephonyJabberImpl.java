@@ -1141,6 +1141,9 @@ public class OperationSetBasicTelephonyJabberImpl
 
         if(action == JingleAction.SESSION_INITIATE)
         {
+            // have the ICE servers ready by the time the offer is processed
+            protocolProvider.getIceHarvesterRegistry().warmUp();
+
             TransferPacketExtension transfer
                 = (TransferPacketExtension)
                     jingleIQ.getExtension(
@@ -33,6 +33,21 @@ public class OperationSetDesktopSharingClientJabberImpl
                 PacketListener,
                 PacketFilter
 {
+    /**
+     * Batches the input events into <tt>InputEvtIQ</tt>s.
+     */
+    private final InputEventBatcher<RemoteControlExtension> inputBatcher
+        = new InputEventBatcher<RemoteControlExtension>()
+        {
+            @Override
+            protected void send(
+                    CallPeer callPeer,
+                    List<RemoteControlExtension> events)
+            {
+                sendRemoteControlExtensions(callPeer, events);
+            }
+        };
+
     /**
      * Initializes a new <tt>OperationSetDesktopSharingClientJabberImpl</tt>.
      *
@@ -57,7 +72,7 @@ public class OperationSetDesktopSharingClientJabberImpl
     public void sendKeyboardEvent(CallPeer callPeer, KeyEvent event)
     {
         RemoteControlExtension payload = new RemoteControlExtension(event);
-        this.sendRemoteControlExtension(callPeer, payload);
+        inputBatcher.add(callPeer, payload, false);
     }
 
     /**
@@ -70,7 +85,7 @@ public class OperationSetDesktopSharingClientJabberImpl
     public void sendMouseEvent(CallPeer callPeer, MouseEvent event)
     {
         RemoteControlExtension payload = new RemoteControlExtension(event);
-        this.sendRemoteControlExtension(callPeer, payload);
+        inputBatcher.add(callPeer, payload, false);
     }
 
     /**
@@ -88,19 +103,25 @@ public class OperationSetDesktopSharingClientJabberImpl
     {
         RemoteControlExtension payload
             = new RemoteControlExtension(event, videoPanelSize);
-        this.sendRemoteControlExtension(callPeer, payload);
+        inputBatcher.add(
+                callPeer,
+                payload,
+                (event.getID() == MouseEvent.MOUSE_MOVED)
+                    || (event.getID() == MouseEvent.MOUSE_DRAGGED));
     }
 
     /**
-     * Send a mouse/keyboard/videoPanelSize notification.
+     * Send mouse/keyboard/videoPanelSize notifications in a single
+     * <tt>InputEvtIQ</tt>.
      *
      * @param callPeer <tt>CallPeer</tt> that will be notified
-     * @param payload  The packet payload containing the
-     * key/mouse/videoPanelSize event to send to remote peer
+     * @param payloads The packet payloads containing the
+     * key/mouse/videoPanelSize events to send to remote peer in the order they
+     * occurred
      */
-    private void sendRemoteControlExtension(
+    private void sendRemoteControlExtensions(
             CallPeer callPeer,
-            RemoteControlExtension payload)
+            List<RemoteControlExtension> payloads)
     {
         DiscoverInfo discoverInfo
             = ((CallPeerJabberImpl) callPeer).getDiscoveryInfo();
@@ -115,12 +136,26 @@ public class OperationSetDesktopSharingClientJabberImpl
             inputIQ.setType(IQ.Type.SET);
             inputIQ.setFrom(parentProvider.getOurJID());
             inputIQ.setTo(callPeer.getAddress());
-            inputIQ.addRemoteControl(payload);
+            for (RemoteControlExtension payload : payloads)
+                inputIQ.addRemoteControl(payload);
 
             parentProvider.getConnection().sendPacket(inputIQ);
         }
     }
 
+    /**
+     * Drops the input events queued for a <tt>CallPeer</tt> which has been
+     * disconnected or has failed.
+     *
+     * @param callPeer the <tt>CallPeer</tt> which has been disconnected or
+     * has failed
+     */
+    @Override
+    protected void callPeerEnded(CallPeer callPeer)
+    {
+        inputBatcher.remove(callPeer);
+    }
+
     /**
      * Implementation of method <tt>registrationStateChange</tt> from
      * interface RegistrationStateChangeListener for setting up (or down)
@@ -56,7 +56,7 @@ public class OperationSetFileTransferJabberImpl
     /**
      * The Jabber file transfer manager.
      */
-    private FileTransferManager manager = null;
+    private ScFileTransferManager manager = null;
 
     /**
      * The Jabber file transfer listener.
@@ -185,7 +185,7 @@ public class OperationSetFileTransferJabberImpl
                     "Contact client or server does not support file transfers.");
             }
 
-            OutgoingFileTransfer transfer
+            ScFileTransferManager.ScOutgoingFileTransfer transfer
                 = manager.createOutgoingFileTransfer(fullJid);
 
             outgoingTransfer
@@ -199,12 +199,12 @@ public class OperationSetFileTransferJabberImpl
 
             fireFileTransferCreated(event);
 
+            // Follow the status and progress of the transfer.
+            transfer.setTransferListener(
+                new FileTransferProgressMonitor(transfer, outgoingTransfer));
+
             // Send the file through the Jabber file transfer.
             transfer.sendFile(file, "Sending file");
-
-            // Start the status and progress thread.
-            new FileTransferProgressThread(
-                transfer, outgoingTransfer).start();
         }
         catch(XMPPException e)
         {
@@ -339,7 +339,7 @@ public class OperationSetFileTransferJabberImpl
                         .getOperationSet(OperationSetPersistentPresence.class);
 
                 // Create the Jabber FileTransferManager.
-                manager = new FileTransferManager(
+                manager = new ScFileTransferManager(
                             jabberProvider.getConnection());
 
                 fileTransferRequestListener = new FileTransferRequestListener();
@@ -532,9 +532,10 @@ public class OperationSetFileTransferJabberImpl
 
     /**
      * Updates file transfer progress and status while sending or receiving a
-     * file.
+     * file, as the <tt>FileTransferEngine</tt> reports them.
      */
-    protected static class FileTransferProgressThread extends Thread
+    protected static class FileTransferProgressMonitor
+        implements FileTransferEngine.TransferListener
     {
         private final org.jivesoftware.smackx.filetransfer.FileTransfer
             jabberTransfer;
@@ -542,7 +543,12 @@ public class OperationSetFileTransferJabberImpl
 
         private long initialFileSize;
 
-        public FileTransferProgressThread(
+        /**
+         * Whether the final status has been reported.
+         */
+        private boolean finished = false;
+
+        public FileTransferProgressMonitor(
             org.jivesoftware.smackx.filetransfer.FileTransfer jabberTransfer,
             AbstractFileTransfer transfer,
             long initialFileSize)
@@ -552,7 +558,7 @@ public class OperationSetFileTransferJabberImpl
             this.initialFileSize = initialFileSize;
         }
 
-        public FileTransferProgressThread(
+        public FileTransferProgressMonitor(
             org.jivesoftware.smackx.filetransfer.FileTransfer jabberTransfer,
             AbstractFileTransfer transfer)
         {
@@ -561,64 +567,78 @@ public class OperationSetFileTransferJabberImpl
         }
 
         /**
-         * Thread entry point.
+         * Fires the status changes of the Jabber transfer on the
+         * <tt>FileTransfer</tt>.
+         *
+         * @param jabberStatus the new status of the Jabber transfer
          */
-        @Override
-        public void run()
+        public void statusChanged(Status jabberStatus)
         {
-            int status;
-            long progress;
-            String statusReason = "";
+            int status = parseJabberStatus(jabberStatus);
 
-            while (true)
+            if (status == FileTransferStatusChangeEvent.FAILED
+                || status == FileTransferStatusChangeEvent.COMPLETED
+                || status == FileTransferStatusChangeEvent.CANCELED
+                || status == FileTransferStatusChangeEvent.REFUSED)
+            {
+                finish(status);
+            }
+            else
             {
-                try
+                synchronized (this)
                 {
-                    Thread.sleep(10);
+                    if (!finished)
+                        fileTransfer.fireStatusChangeEvent(
+                            status, "Status changed");
+                }
+            }
+        }
 
-                    status = parseJabberStatus(jabberTransfer.getStatus());
-                    progress = fileTransfer.getTransferedBytes();
+        /**
+         * Fires the progress of the Jabber transfer on the
+         * <tt>FileTransfer</tt>.
+         *
+         * @param transferredBytes the number of bytes transferred so far
+         */
+        public void progressChanged(long transferredBytes)
+        {
+            fileTransfer.fireProgressChangeEvent(
+                System.currentTimeMillis(), transferredBytes);
+        }
 
-                    if (status == FileTransferStatusChangeEvent.FAILED
-                        || status == FileTransferStatusChangeEvent.COMPLETED
-                        || status == FileTransferStatusChangeEvent.CANCELED
-                        || status == FileTransferStatusChangeEvent.REFUSED)
-                    {
-                        if (fileTransfer instanceof
-                                OutgoingFileTransferJabberImpl)
-                        {
-                            ((OutgoingFileTransferJabberImpl) fileTransfer)
-                                .removeThumbnailRequestListener();
-                        }
+        /**
+         * Fires the final status of the transfer, once.
+         *
+         * @param status the final status reported by the Jabber transfer
+         */
+        private synchronized void finish(int status)
+        {
+            if (finished)
+                return;
+            finished = true;
 
-                        // sometimes a filetransfer can be preparing
-                        // and than completed :
-                        // transfered in one iteration of current thread
-                        // so it won't go through intermediate state - inProgress
-                        // make sure this won't happen
-                        if(status == FileTransferStatusChangeEvent.COMPLETED
-                            && fileTransfer.getStatus()
-                                == FileTransferStatusChangeEvent.PREPARING)
-                        {
-                            fileTransfer.fireStatusChangeEvent(
-                                FileTransferStatusChangeEvent.IN_PROGRESS,
-                                "Status changed");
-                            fileTransfer.fireProgressChangeEvent(
-                                System.currentTimeMillis(), progress);
-                        }
+            long progress = fileTransfer.getTransferedBytes();
+            String statusReason = "";
 
-                        break;
-                    }
+            if (fileTransfer instanceof OutgoingFileTransferJabberImpl)
+            {
+                ((OutgoingFileTransferJabberImpl) fileTransfer)
+                    .removeThumbnailRequestListener();
+            }
 
-                    fileTransfer.fireStatusChangeEvent(status, "Status changed");
-                    fileTransfer.fireProgressChangeEvent(
-                        System.currentTimeMillis(), progress);
-                }
-                catch (InterruptedException e)
-                {
-                    if (logger.isDebugEnabled())
-                        logger.debug("Unable to sleep thread.", e);
-                }
+            // sometimes a filetransfer can be preparing
+            // and than completed :
+            // transfered without going through intermediate state - inProgress
+            // make sure this won't happen
+            if(status == FileTransferStatusChangeEvent.COMPLETED
+                && fileTransfer.getStatus()
+                    == FileTransferStatusChangeEvent.PREPARING)
+            {
+                fileTransfer.fireStatusChangeEvent(
+                    FileTransferStatusChangeEvent.IN_PROGRESS,
+                    "Status changed");
+                fileTransfer.fireProgressChangeEvent(
+                    System.currentTimeMillis(), progress);
             }
 
             if (jabberTransfer.getError() != null)
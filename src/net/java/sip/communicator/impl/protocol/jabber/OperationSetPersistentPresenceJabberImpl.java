@@ -1589,6 +1589,9 @@ public class OperationSetPersistentPresenceJabberImpl
             // as we have dispatched the contact list and Roaster is ready
             // lets start the jingle nodes discovery
             parentProvider.startJingleNodesDiscovery();
+
+            // and discover the ICE servers before the first call
+            parentProvider.getIceHarvesterRegistry().warmUp();
         }
 
         /**
@@ -12,6 +12,7 @@ import java.security.*;
 import java.security.cert.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.net.ssl.*;
 
@@ -388,6 +389,17 @@ public class ProtocolProviderServiceJabberImpl
      */
     private final Object jingleNodesSyncRoot = new Object();
 
+    /**
+     * The ICE servers discovered for the calls of this account. Created on
+     * demand.
+     */
+    private IceHarvesterRegistry iceHarvesterRegistry = null;
+
+    /**
+     * Synchronization object for the creation of the ICE harvester registry.
+     */
+    private final Object iceHarvesterRegistrySyncRoot = new Object();
+
     /**
      * Stores user credentials for local use if user hasn't stored
      * its password.
@@ -725,10 +737,23 @@ public class ProtocolProviderServiceJabberImpl
             InetSocketAddress[] addrs = null;
             try
             {
-                addrs = NetworkUtils.getAandAAAARecords(
-                    serverAddressUserSetting,
-                    serverPort
-                );
+                // connect as soon as the addresses of one family are usable
+                AsyncResolver resolver = JabberActivator.getAsyncResolver();
+
+                if(resolver == null)
+                {
+                    addrs = NetworkUtils.getAandAAAARecords(
+                        serverAddressUserSetting,
+                        serverPort
+                    );
+                }
+                else
+                {
+                    addrs = NetworkUtils.getDnsResult(
+                        resolver.resolveFirstUsable(
+                            serverAddressUserSetting,
+                            serverPort));
+                }
             }
             catch (ParseException e)
             {
@@ -837,16 +862,33 @@ public class ProtocolProviderServiceJabberImpl
 
         if(srvRecords != null)
         {
-            for(SRVRecord srv : srvRecords)
+            // resolve all the targets at once rather than one after the
+            // other as the previous ones fail
+            AsyncResolver resolver = JabberActivator.getAsyncResolver();
+            List<Future<InetSocketAddress[]>> targetLookups
+                = (resolver == null)
+                    ? null
+                    : resolver.resolveTargets(srvRecords);
+
+            for(int i = 0; i < srvRecords.length; i++)
             {
+                SRVRecord srv = srvRecords[i];
                 InetSocketAddress[] addrs = null;
                 try
                 {
-                    addrs =
-                        NetworkUtils.getAandAAAARecords(
-                            srv.getTarget(),
-                            srv.getPort()
-                        );
+                    if(targetLookups == null)
+                    {
+                        addrs =
+                            NetworkUtils.getAandAAAARecords(
+                                srv.getTarget(),
+                                srv.getPort()
+                            );
+                    }
+                    else
+                    {
+                        addrs = NetworkUtils.getDnsResult(
+                            targetLookups.get(i));
+                    }
                 }
                 catch (ParseException e)
                 {
@@ -1932,6 +1974,15 @@ public class ProtocolProviderServiceJabberImpl
 
             disconnectAndCleanConnection();
 
+            synchronized(iceHarvesterRegistrySyncRoot)
+            {
+                if(iceHarvesterRegistry != null)
+                {
+                    iceHarvesterRegistry.dispose();
+                    iceHarvesterRegistry = null;
+                }
+            }
+
             isInitialized = false;
         }
     }
@@ -2606,6 +2657,22 @@ public class ProtocolProviderServiceJabberImpl
         }
     }
 
+    /**
+     * Gets the registry of the ICE servers discovered for the calls of this
+     * account.
+     *
+     * @return the registry of the ICE servers of this account.
+     */
+    public IceHarvesterRegistry getIceHarvesterRegistry()
+    {
+        synchronized(iceHarvesterRegistrySyncRoot)
+        {
+            if(iceHarvesterRegistry == null)
+                iceHarvesterRegistry = new IceHarvesterRegistry(this);
+            return iceHarvesterRegistry;
+        }
+    }
+
     /**
      * Logs a specific message and associated <tt>Throwable</tt> cause as an
      * error using the current <tt>Logger</tt> and then throws a new
@@ -0,0 +1,260 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber;
+
+import java.io.*;
+
+import org.jivesoftware.smack.*;
+import org.jivesoftware.smackx.filetransfer.*;
+
+/**
+ * A <tt>FileTransferManager</tt> whose transfers copy their data with the
+ * {@link FileTransferEngine} and report their status and progress to a
+ * {@link FileTransferEngine.TransferListener} instead of having to be polled.
+ */
+public class ScFileTransferManager
+    extends FileTransferManager
+{
+    /**
+     * The connection the transfers are made over.
+     */
+    private final Connection connection;
+
+    /**
+     * The negotiator of the transfers.
+     */
+    private final FileTransferNegotiator negotiator;
+
+    /**
+     * Creates a file transfer manager for the given connection.
+     *
+     * @param connection the connection the transfers are made over.
+     */
+    public ScFileTransferManager(Connection connection)
+    {
+        super(connection);
+
+        this.connection = connection;
+        this.negotiator = FileTransferNegotiator.getInstanceFor(connection);
+    }
+
+    /**
+     * Creates an <tt>ScOutgoingFileTransfer</tt> to send a file to a user.
+     *
+     * @param userID the fully qualified JID of the user.
+     * @return the transfer.
+     */
+    @Override
+    public ScOutgoingFileTransfer createOutgoingFileTransfer(String userID)
+    {
+        return new ScOutgoingFileTransfer(
+            connection.getUser(),
+            userID,
+            negotiator.getNextStreamID(),
+            negotiator);
+    }
+
+    /**
+     * Creates an <tt>ScIncomingFileTransfer</tt> when a transfer request is
+     * accepted.
+     *
+     * @param request the accepted request.
+     * @return the transfer.
+     */
+    @Override
+    protected IncomingFileTransfer createIncomingFileTransfer(
+        FileTransferRequest request)
+    {
+        if (request == null)
+            throw new NullPointerException("RecieveRequest cannot be null");
+
+        return new ScIncomingFileTransfer(request, negotiator);
+    }
+
+    /**
+     * An <tt>OutgoingFileTransfer</tt> copying its data with the
+     * <tt>FileTransferEngine</tt>.
+     */
+    public static class ScOutgoingFileTransfer
+        extends OutgoingFileTransfer
+    {
+        /**
+         * The state the engine keeps about this transfer.
+         */
+        private final FileTransferEngine.Session session
+            = new FileTransferEngine.Session(this);
+
+        /**
+         * Creates an outgoing transfer.
+         *
+         * @param initiator the JID of the local user.
+         * @param target the JID of the receiver.
+         * @param streamID the ID of the stream.
+         * @param negotiator the negotiator of the stream.
+         */
+        ScOutgoingFileTransfer(String initiator, String target,
+            String streamID, FileTransferNegotiator negotiator)
+        {
+            super(initiator, target, streamID, negotiator);
+        }
+
+        /**
+         * Sets the listener notified of the status and progress of this
+         * transfer. Must be called before the transfer starts.
+         *
+         * @param listener the listener.
+         */
+        public void setTransferListener(
+            FileTransferEngine.TransferListener listener)
+        {
+            session.setListener(listener);
+        }
+
+        @Override
+        protected void writeToStream(InputStream in, OutputStream out)
+            throws XMPPException
+        {
+            amountWritten = 0;
+            try
+            {
+                session.copy(in, out, new FileTransferEngine.ByteCounter()
+                {
+                    public void add(int count)
+                    {
+                        amountWritten += count;
+                    }
+                });
+            }
+            catch (IOException e)
+            {
+                throw new XMPPException("error writing to output stream", e);
+            }
+
+            if (!getStatus().equals(Status.cancelled)
+                && getError() == Error.none
+                && amountWritten != getFileSize())
+            {
+                setStatus(Status.error);
+                setError(Error.connection);
+            }
+        }
+
+        @Override
+        protected void setStatus(Status status)
+        {
+            super.setStatus(status);
+            session.statusChanged(status);
+        }
+
+        @Override
+        protected boolean updateStatus(Status oldStatus, Status newStatus)
+        {
+            boolean updated = super.updateStatus(oldStatus, newStatus);
+            if (updated)
+                session.statusChanged(newStatus);
+            return updated;
+        }
+
+        @Override
+        protected void setException(Exception exception)
+        {
+            super.setException(exception);
+            session.exceptionOccurred();
+        }
+    }
+
+    /**
+     * An <tt>IncomingFileTransfer</tt> copying its data with the
+     * <tt>FileTransferEngine</tt>.
+     */
+    public static class ScIncomingFileTransfer
+        extends IncomingFileTransfer
+    {
+        /**
+         * The state the engine keeps about this transfer.
+         */
+        private final FileTransferEngine.Session session
+            = new FileTransferEngine.Session(this);
+
+        /**
+         * Creates an incoming transfer of the file described by a request.
+         *
+         * @param request the accepted request.
+         * @param negotiator the negotiator of the stream.
+         */
+        ScIncomingFileTransfer(FileTransferRequest request,
+            FileTransferNegotiator negotiator)
+        {
+            super(request, negotiator);
+            setFileInfo(request.getFileName(), request.getFileSize());
+        }
+
+        /**
+         * Sets the listener notified of the status and progress of this
+         * transfer. Must be called before the transfer starts.
+         *
+         * @param listener the listener.
+         */
+        public void setTransferListener(
+            FileTransferEngine.TransferListener listener)
+        {
+            session.setListener(listener);
+        }
+
+        @Override
+        protected void writeToStream(InputStream in, OutputStream out)
+            throws XMPPException
+        {
+            amountWritten = 0;
+            try
+            {
+                session.copy(in, out, new FileTransferEngine.ByteCounter()
+                {
+                    public void add(int count)
+                    {
+                        amountWritten += count;
+                    }
+                });
+            }
+            catch (IOException e)
+            {
+                throw new XMPPException("error writing to output stream", e);
+            }
+
+            if (!getStatus().equals(Status.cancelled)
+                && getError() == Error.none
+                && amountWritten != getFileSize())
+            {
+                setStatus(Status.error);
+                setError(Error.connection);
+            }
+        }
+
+        @Override
+        protected void setStatus(Status status)
+        {
+            super.setStatus(status);
+            session.statusChanged(status);
+        }
+
+        @Override
+        protected boolean updateStatus(Status oldStatus, Status newStatus)
+        {
+            boolean updated = super.updateStatus(oldStatus, newStatus);
+            if (updated)
+                session.statusChanged(newStatus);
+            return updated;
+        }
+
+        @Override
+        protected void setException(Exception exception)
+        {
+            super.setException(exception);
+            session.exceptionOccurred();
+        }
+    }
+}
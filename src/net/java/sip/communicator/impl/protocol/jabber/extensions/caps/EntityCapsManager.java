@@ -17,6 +17,7 @@ import net.java.sip.communicator.service.protocol.*;
 import net.java.sip.communicator.util.*;
 
 import org.jitsi.service.configuration.*;
+import org.jitsi.service.fileaccess.*;
 import org.jivesoftware.smack.*;
 import org.jivesoftware.smack.filter.*;
 import org.jivesoftware.smack.packet.*;
@@ -46,13 +47,48 @@ public class EntityCapsManager
         = Logger.getLogger(EntityCapsManager.class);
 
     /**
-     * The prefix of the <tt>ConfigurationService</tt> properties which persist
-     * {@link #caps2discoverInfo}.
+     * The prefix of the <tt>ConfigurationService</tt> properties which
+     * persisted the entity capabilities before {@link EntityCapsStore}. They
+     * are moved to the store when it is first used.
      */
     private static final String CAPS_PROPERTY_NAME_PREFIX
         = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
             + "EntityCapsManager.CAPS.";
 
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which defines
+     * the maximum number of <tt>DiscoverInfo</tt>s kept in memory.
+     */
+    public static final String CACHE_SIZE_PNAME
+        = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
+            + "EntityCapsManager.CACHE_SIZE";
+
+    /**
+     * The default maximum number of <tt>DiscoverInfo</tt>s kept in memory.
+     */
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which defines
+     * the maximum number of entity capabilities persisted across application
+     * instances.
+     */
+    public static final String MAX_STORED_CAPS_PNAME
+        = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
+            + "EntityCapsManager.MAX_STORED_CAPS";
+
+    /**
+     * The default maximum number of entity capabilities persisted across
+     * application instances.
+     */
+    private static final int DEFAULT_MAX_STORED_CAPS = 2000;
+
+    /**
+     * The name of the file, in the cache directory, which persists the
+     * entity capabilities across application instances.
+     */
+    private static final String CAPS_STORE_FILE_NAME = "entitycaps.bin";
+
     /**
      * An empty array of <tt>UserCapsNodeListener</tt> elements explicitly
      * defined in order to reduce unnecessary allocations.
@@ -66,17 +102,16 @@ public class EntityCapsManager
     private static String entityNode = "http://jitsi.org";
 
     /**
-     * The <tt>Map</tt> of <tt>Caps</tt> to <tt>DiscoverInfo</tt> which
-     * associates a node#ver with the entity capabilities so that they don't
-     * have to be retrieved every time their necessary. Because ver is
-     * constructed from the entity capabilities using a specific hash method,
-     * the hash method is also associated with the entity capabilities along
-     * with the node and the ver in order to disambiguate cases of equal ver
-     * values for different entity capabilities constructed using different hash
-     * methods.
+     * The store of <tt>Caps</tt> to <tt>DiscoverInfo</tt> which associates a
+     * node#ver with the entity capabilities so that they don't have to be
+     * retrieved every time their necessary. Because ver is constructed from
+     * the entity capabilities using a specific hash method, the hash method is
+     * also associated with the entity capabilities along with the node and the
+     * ver in order to disambiguate cases of equal ver values for different
+     * entity capabilities constructed using different hash methods. Created
+     * when it is first used.
      */
-    private static final Map<Caps, DiscoverInfo> caps2discoverInfo
-        = new ConcurrentHashMap<Caps, DiscoverInfo>();
+    private static EntityCapsStore capsStore;
 
     /**
      * Map of Full JID -&gt; DiscoverInfo/null. In case of c2s connection the
@@ -135,43 +170,157 @@ public class EntityCapsManager
          */
         info.setNode(caps.getNodeVer());
 
-        synchronized (caps2discoverInfo)
+        getCapsStore().put(caps, info);
+    }
+
+    /**
+     * Gets the store which persists the entity capabilities across
+     * application instances, creating it if necessary.
+     *
+     * @return the store of the entity capabilities.
+     */
+    private static synchronized EntityCapsStore getCapsStore()
+    {
+        if (capsStore == null)
         {
-            DiscoverInfo oldInfo = caps2discoverInfo.put(caps, info);
+            ConfigurationService configService
+                = JabberActivator.getConfigurationService();
+            int cacheSize = DEFAULT_CACHE_SIZE;
+            int maxStoredCaps = DEFAULT_MAX_STORED_CAPS;
+            File file = null;
 
-            /*
-             * If the specified info is a new association for the specified
-             * node, remember it across application instances in order to not
-             * query for it over the network.
-             */
-            if ((oldInfo == null) || !oldInfo.equals(info))
+            if (configService != null)
             {
-                String xml = info.getChildElementXML();
+                cacheSize
+                    = configService.getInt(CACHE_SIZE_PNAME, cacheSize);
+                maxStoredCaps
+                    = configService.getInt(
+                            MAX_STORED_CAPS_PNAME,
+                            maxStoredCaps);
+            }
+            try
+            {
+                FileAccessService fileAccessService
+                    = UtilActivator.getFileAccessService();
 
-                if ((xml != null) && (xml.length() != 0))
+                if (fileAccessService != null)
                 {
-                    JabberActivator
-                        .getConfigurationService()
-                            .setProperty(getCapsPropertyName(caps), xml);
+                    file
+                        = fileAccessService.getPrivatePersistentFile(
+                                CAPS_STORE_FILE_NAME,
+                                FileCategory.CACHE);
                 }
             }
+            catch (Exception ex)
+            {
+                logger.error(
+                        "Failed to locate the entity capabilities store, the"
+                            + " entity capabilities will not be persisted.",
+                        ex);
+            }
+
+            capsStore
+                = new EntityCapsStore(
+                        file,
+                        Math.max(1, cacheSize),
+                        Math.max(0, maxStoredCaps));
         }
+        return capsStore;
     }
 
     /**
-     * Gets the name of the property in the <tt>ConfigurationService</tt> which
-     * is or is to be associated with a specific <tt>Caps</tt> value.
+     * Moves the entity capabilities persisted in the
+     * <tt>ConfigurationService</tt> by previous versions to their store on a
+     * thread of its own, so that neither the caller nor the lookups of
+     * entity capabilities wait for it. Called once when the bundle starts.
+     */
+    public static void moveCapsPropertiesInBackground()
+    {
+        final ConfigurationService configService
+            = JabberActivator.getConfigurationService();
+
+        if ((configService == null)
+                || (UtilActivator.getFileAccessService() == null))
+            return;
+
+        Thread t
+            = new Thread("EntityCapsManager.moveCapsProperties")
+            {
+                @Override
+                public void run()
+                {
+                    moveCapsProperties(configService, getCapsStore());
+                }
+            };
+
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Moves the entity capabilities persisted in the
+     * <tt>ConfigurationService</tt> by previous versions to a specific store,
+     * verifying them on the way. The properties are removed together so that
+     * the configuration is written once, and are left in place if the store
+     * cannot persist them.
      *
-     * @param caps the <tt>Caps</tt> value for which the associated
-     * <tt>ConfigurationService</tt> property name is to be returned
-     * @return the name of the property in the <tt>ConfigurationService</tt>
-     * which is or is to be associated with a specific <tt>Caps</tt> value
+     * @param configService the <tt>ConfigurationService</tt>.
+     * @param store the store to move the entity capabilities to.
      */
-    private static String getCapsPropertyName(Caps caps)
+    public static void moveCapsProperties(
+            ConfigurationService configService,
+            EntityCapsStore store)
     {
-        return
-            CAPS_PROPERTY_NAME_PREFIX
-                + caps.node + '#' + caps.hash + '#' + caps.ver;
+        List<String> names
+            = configService.getPropertyNamesByPrefix(
+                    CAPS_PROPERTY_NAME_PREFIX,
+                    false);
+
+        if ((names == null) || names.isEmpty() || !store.isPersistent())
+            return;
+
+        Map<String, Object> removed = new HashMap<String, Object>();
+        int moved = 0;
+
+        for (String name : names)
+        {
+            String nodeHashVer
+                = name.substring(CAPS_PROPERTY_NAME_PREFIX.length());
+            int verIndex = nodeHashVer.lastIndexOf('#');
+            int hashIndex
+                = (verIndex > 0)
+                    ? nodeHashVer.lastIndexOf('#', verIndex - 1)
+                    : -1;
+
+            if (hashIndex > 0)
+            {
+                Caps caps
+                    = new Caps(
+                            nodeHashVer.substring(0, hashIndex),
+                            nodeHashVer.substring(hashIndex + 1, verIndex),
+                            nodeHashVer.substring(verIndex + 1),
+                            null);
+                DiscoverInfo info
+                    = parseDiscoverInfo(configService.getString(name));
+
+                if ((info != null) && caps.isValid(info))
+                {
+                    info.setNode(caps.getNodeVer());
+                    store.put(caps, info);
+                    moved++;
+                }
+            }
+            removed.put(name, null);
+        }
+        configService.setProperties(removed);
+
+        if (logger.isInfoEnabled())
+        {
+            logger.info(
+                    "Moved " + moved + " of " + names.size()
+                        + " entity capabilities from the configuration to"
+                        + " their store.");
+        }
     }
 
     /**
@@ -409,90 +558,43 @@ public class EntityCapsManager
      */
     public static DiscoverInfo getDiscoverInfoByCaps(Caps caps)
     {
-        synchronized (caps2discoverInfo)
-        {
-            DiscoverInfo discoverInfo = caps2discoverInfo.get(caps);
-
-            /*
-             * If we don't have the discoverInfo in the runtime cache yet, we
-             * may have it remembered in a previous application instance.
-             */
-            if (discoverInfo == null)
-            {
-                ConfigurationService configurationService
-                    = JabberActivator.getConfigurationService();
-                String capsPropertyName = getCapsPropertyName(caps);
-                String xml = configurationService.getString(capsPropertyName);
+        return getCapsStore().get(caps);
+    }
 
-                if ((xml != null) && (xml.length() != 0))
-                {
-                    IQProvider discoverInfoProvider
-                        = (IQProvider)
-                            ProviderManager.getInstance().getIQProvider(
-                                    "query",
-                                    "http://jabber.org/protocol/disco#info");
+    /**
+     * Parses the XML of a <tt>DiscoverInfo</tt>.
+     *
+     * @param xml the XML of the query element of the <tt>DiscoverInfo</tt>
+     * @return the <tt>DiscoverInfo</tt> or <tt>null</tt> if <tt>xml</tt>
+     * cannot be parsed
+     */
+    static DiscoverInfo parseDiscoverInfo(String xml)
+    {
+        if ((xml == null) || (xml.length() == 0))
+            return null;
 
-                    if (discoverInfoProvider != null)
-                    {
-                        XmlPullParser parser = new MXParser();
+        IQProvider discoverInfoProvider
+            = (IQProvider)
+                ProviderManager.getInstance().getIQProvider(
+                        "query",
+                        "http://jabber.org/protocol/disco#info");
 
-                        try
-                        {
-                            parser.setFeature(
-                                    XmlPullParser.FEATURE_PROCESS_NAMESPACES,
-                                    true);
-                            parser.setInput(new StringReader(xml));
-                            // Start the parser.
-                            parser.next();
-                        }
-                        catch (XmlPullParserException xppex)
-                        {
-                            parser = null;
-                        }
-                        catch (IOException ioex)
-                        {
-                            parser = null;
-                        }
+        if (discoverInfoProvider == null)
+            return null;
 
-                        if (parser != null)
-                        {
-                            try
-                            {
-                                discoverInfo
-                                    = (DiscoverInfo)
-                                        discoverInfoProvider.parseIQ(parser);
-                            }
-                            catch (Exception ex)
-                            {
-                            }
+        XmlPullParser parser = new MXParser();
 
-                            if (discoverInfo != null)
-                            {
-                                if (caps.isValid(discoverInfo))
-                                    caps2discoverInfo.put(caps, discoverInfo);
-                                else
-                                {
-                                    logger.error(
-                                            "Invalid DiscoverInfo for "
-                                                + caps.getNodeVer()
-                                                + ": "
-                                                + discoverInfo);
-                                    /*
-                                     * The discoverInfo doesn't seem valid
-                                     * according to the caps which means that we
-                                     * must have stored invalid information.
-                                     * Delete the invalid information in order
-                                     * to not try to validate it again.
-                                     */
-                                    configurationService.removeProperty(
-                                            capsPropertyName);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            return discoverInfo;
+        try
+        {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            parser.setInput(new StringReader(xml));
+            // Start the parser.
+            parser.next();
+            return (DiscoverInfo) discoverInfoProvider.parseIQ(parser);
+        }
+        catch (Exception ex)
+        {
+            return null;
         }
     }
 
@@ -519,7 +621,7 @@ public class EntityCapsManager
      * features of the specified <tt>discoverInfo</tt>
      */
     @SuppressWarnings("unchecked")
-    private static Iterator<DiscoverInfo.Feature> getDiscoverInfoFeatures(
+    static Iterator<DiscoverInfo.Feature> getDiscoverInfoFeatures(
             DiscoverInfo discoverInfo)
     {
         Method getFeaturesMethod;
@@ -0,0 +1,565 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.jabber.extensions.caps;
+
+import java.io.*;
+import java.util.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jivesoftware.smackx.packet.*;
+
+/**
+ * Persists the <tt>DiscoverInfo</tt>s associated with entity capabilities in
+ * a file of their own, keyed by node, hash (algorithm) and ver, and keeps a
+ * bounded number of them in memory.
+ * <p>
+ * The file is a log of records which are appended as new capabilities are
+ * discovered. A record holds the identities and the features of a
+ * <tt>DiscoverInfo</tt> in binary form, or its XML when it carries extended
+ * information such as a data form. Only the keys of the records and their
+ * offsets in the file are read when the store is first used; a record is read
+ * and decoded when its capabilities are looked up and are not in memory. The
+ * <tt>DiscoverInfo</tt>s are verified against their capabilities before they
+ * are added to the store and are trusted when they are read back.
+ * </p>
+ */
+public class EntityCapsStore
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>EntityCapsStore</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(EntityCapsStore.class);
+
+    /**
+     * The value which starts the file of the store, and identifies its
+     * format.
+     */
+    private static final int MAGIC = 0x4A435331;
+
+    /**
+     * The type of the records which hold the identities and the features of a
+     * <tt>DiscoverInfo</tt>.
+     */
+    private static final byte RECORD_BINARY = 0;
+
+    /**
+     * The type of the records which hold the XML of a <tt>DiscoverInfo</tt>.
+     */
+    private static final byte RECORD_XML = 1;
+
+    /**
+     * The <tt>DiscoverInfo</tt>s in memory, the least recently used first.
+     */
+    private final Map<EntityCapsManager.Caps, DiscoverInfo> cache;
+
+    /**
+     * The file of the store or <tt>null</tt> if the store is kept in memory
+     * only.
+     */
+    private final File file;
+
+    /**
+     * Whether {@link #file} has failed to be read or written, in which case
+     * the store is kept in memory only.
+     */
+    private boolean failed = false;
+
+    /**
+     * The offsets of the records in {@link #file}, or <tt>null</tt> if the
+     * file has not been read yet.
+     */
+    private Map<EntityCapsManager.Caps, Long> index;
+
+    /**
+     * The maximum number of records kept in {@link #file}.
+     */
+    private final int maxRecords;
+
+    /**
+     * The file of the store opened for reading and appending.
+     */
+    private RandomAccessFile raf;
+
+    /**
+     * Initializes a new store.
+     *
+     * @param file the file of the store or <tt>null</tt> to keep the store in
+     * memory only.
+     * @param cacheSize the maximum number of <tt>DiscoverInfo</tt>s kept in
+     * memory.
+     * @param maxRecords the maximum number of records kept in <tt>file</tt>;
+     * the oldest records are dropped when the store is opened with more.
+     */
+    public EntityCapsStore(File file, final int cacheSize, int maxRecords)
+    {
+        this.file = file;
+        this.maxRecords = maxRecords;
+
+        cache
+            = new LinkedHashMap<EntityCapsManager.Caps, DiscoverInfo>(
+                    16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 0L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<EntityCapsManager.Caps, DiscoverInfo> e)
+                {
+                    return size() > cacheSize;
+                }
+            };
+    }
+
+    /**
+     * Gets the <tt>DiscoverInfo</tt> associated with specific capabilities.
+     *
+     * @param caps the node, the hash and the ver of the capabilities.
+     * @return the <tt>DiscoverInfo</tt> associated with <tt>caps</tt> or
+     * <tt>null</tt> if none is known.
+     */
+    public synchronized DiscoverInfo get(EntityCapsManager.Caps caps)
+    {
+        DiscoverInfo info = cache.get(caps);
+
+        if ((info == null) && open())
+        {
+            Long offset = index.get(caps);
+
+            if (offset != null)
+            {
+                try
+                {
+                    info = decode(caps, readRecord(offset));
+                }
+                catch (IOException ioe)
+                {
+                    logger.error(
+                            "Failed to read the entity capabilities of "
+                                + caps.getNodeVer(),
+                            ioe);
+                }
+
+                if (info == null)
+                    index.remove(caps);
+                else
+                    cache.put(caps, info);
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Associates a <tt>DiscoverInfo</tt> with specific capabilities. The
+     * <tt>DiscoverInfo</tt> is trusted to be valid with respect to the
+     * capabilities.
+     *
+     * @param caps the node, the hash and the ver of the capabilities.
+     * @param info the <tt>DiscoverInfo</tt> of <tt>caps</tt>.
+     */
+    public synchronized void put(EntityCapsManager.Caps caps, DiscoverInfo info)
+    {
+        cache.put(caps, info);
+
+        if (open() && !index.containsKey(caps))
+        {
+            try
+            {
+                long offset = raf.length();
+
+                raf.seek(offset);
+                raf.write(encode(caps, info));
+                index.put(caps, offset);
+            }
+            catch (IOException ioe)
+            {
+                logger.error(
+                        "Failed to store the entity capabilities of "
+                            + caps.getNodeVer(),
+                        ioe);
+                close();
+                failed = true;
+            }
+        }
+    }
+
+    /**
+     * Determines whether the store persists the <tt>DiscoverInfo</tt>s in its
+     * file, i.e. it has a file and the file can be opened.
+     *
+     * @return <tt>true</tt> if the store persists the <tt>DiscoverInfo</tt>s.
+     */
+    synchronized boolean isPersistent()
+    {
+        return open();
+    }
+
+    /**
+     * Closes the file of the store. It is opened again when the store is used
+     * next.
+     */
+    public synchronized void close()
+    {
+        index = null;
+        if (raf != null)
+        {
+            try
+            {
+                raf.close();
+            }
+            catch (IOException ioe)
+            {
+            }
+            raf = null;
+        }
+    }
+
+    /**
+     * Opens the file of the store and reads the keys of its records, if it
+     * has not been done yet.
+     *
+     * @return <tt>true</tt> if the file of the store is open.
+     */
+    private boolean open()
+    {
+        if (raf != null)
+            return true;
+        if ((file == null) || failed)
+            return false;
+
+        index = new LinkedHashMap<EntityCapsManager.Caps, Long>();
+        try
+        {
+            raf = new RandomAccessFile(file, "rw");
+            readIndex();
+            if (index.size() > maxRecords)
+                compact();
+            return true;
+        }
+        catch (IOException ioe)
+        {
+            logger.error(
+                    "Failed to open the entity capabilities store "
+                        + file,
+                    ioe);
+            close();
+            failed = true;
+            return false;
+        }
+    }
+
+    /**
+     * Reads the keys and the offsets of the records of the file of the
+     * store. Starts a new file if it is not in the format of the store, and
+     * drops the last record if it has not been fully written.
+     *
+     * @throws IOException if reading the file fails.
+     */
+    private void readIndex()
+        throws IOException
+    {
+        long length = raf.length();
+
+        if ((length < 4) || (raf.readInt() != MAGIC))
+        {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            return;
+        }
+
+        long offset = 4;
+
+        while (offset < length)
+        {
+            EntityCapsManager.Caps caps = null;
+
+            if (offset + 4 <= length)
+            {
+                raf.seek(offset);
+
+                int recordLength = raf.readInt();
+
+                if ((recordLength > 0)
+                        && (offset + 4 + recordLength <= length))
+                {
+                    try
+                    {
+                        caps = decodeCaps(readRecord(offset));
+                    }
+                    catch (IOException ioe)
+                    {
+                        /*
+                         * A malformed record is dropped along with the
+                         * records which follow it.
+                         */
+                    }
+                }
+                if (caps != null)
+                {
+                    index.put(caps, offset);
+                    offset += 4 + recordLength;
+                }
+            }
+            if (caps == null)
+            {
+                logger.warn(
+                        "Dropping a malformed entity capabilities record of "
+                            + file);
+                raf.setLength(offset);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file of the store with its last {@link #maxRecords}
+     * records.
+     *
+     * @throws IOException if rewriting the file fails.
+     */
+    private void compact()
+        throws IOException
+    {
+        File tmp = new File(file.getPath() + ".tmp");
+        Map<EntityCapsManager.Caps, Long> newIndex
+            = new LinkedHashMap<EntityCapsManager.Caps, Long>();
+        int skip = index.size() - maxRecords;
+        DataOutputStream out
+            = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+
+        try
+        {
+            long offset = 4;
+
+            out.writeInt(MAGIC);
+            for (Map.Entry<EntityCapsManager.Caps, Long> e : index.entrySet())
+            {
+                if (skip > 0)
+                {
+                    skip--;
+                    continue;
+                }
+
+                byte[] record = readRecord(e.getValue());
+
+                out.writeInt(record.length);
+                out.write(record);
+                newIndex.put(e.getKey(), offset);
+                offset += 4 + record.length;
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        raf.close();
+        raf = null;
+        if (!file.delete() || !tmp.renameTo(file))
+            throw new IOException("Failed to replace " + file);
+        raf = new RandomAccessFile(file, "rw");
+        index = newIndex;
+
+        if (logger.isInfoEnabled())
+        {
+            logger.info(
+                    "Compacted the entity capabilities store to "
+                        + index.size() + " records.");
+        }
+    }
+
+    /**
+     * Reads the body of a record of the file of the store.
+     *
+     * @param offset the offset of the record.
+     * @return the body of the record.
+     * @throws IOException if reading the file fails.
+     */
+    private byte[] readRecord(long offset)
+        throws IOException
+    {
+        raf.seek(offset);
+
+        byte[] record = new byte[raf.readInt()];
+
+        raf.readFully(record);
+        return record;
+    }
+
+    /**
+     * Decodes the key of a record.
+     *
+     * @param record the body of the record.
+     * @return the capabilities the record is associated with.
+     * @throws IOException if the record is malformed.
+     */
+    private static EntityCapsManager.Caps decodeCaps(byte[] record)
+        throws IOException
+    {
+        return
+            readCaps(
+                    new DataInputStream(new ByteArrayInputStream(record)));
+    }
+
+    /**
+     * Reads the key of a record.
+     *
+     * @param in the body of the record.
+     * @return the capabilities the record is associated with.
+     * @throws IOException if the record is malformed.
+     */
+    private static EntityCapsManager.Caps readCaps(DataInputStream in)
+        throws IOException
+    {
+        String node = in.readUTF();
+        String hash = in.readUTF();
+        String ver = in.readUTF();
+
+        return new EntityCapsManager.Caps(node, hash, ver, null);
+    }
+
+    /**
+     * Decodes the <tt>DiscoverInfo</tt> of a record.
+     *
+     * @param caps the capabilities the record is associated with.
+     * @param record the body of the record.
+     * @return the <tt>DiscoverInfo</tt> of the record or <tt>null</tt> if it
+     * cannot be decoded.
+     * @throws IOException if the record is malformed.
+     */
+    private static DiscoverInfo decode(
+            EntityCapsManager.Caps caps,
+            byte[] record)
+        throws IOException
+    {
+        DataInputStream in
+            = new DataInputStream(new ByteArrayInputStream(record));
+
+        readCaps(in);
+
+        DiscoverInfo info;
+
+        if (in.readByte() == RECORD_XML)
+        {
+            byte[] xml = new byte[in.readInt()];
+
+            in.readFully(xml);
+            info
+                = EntityCapsManager.parseDiscoverInfo(
+                        new String(xml, "UTF-8"));
+            if (info == null)
+                return null;
+        }
+        else
+        {
+            info = new DiscoverInfo();
+            for (int i = in.readUnsignedShort(); i > 0; i--)
+            {
+                String category = in.readUTF();
+                String type = in.readUTF();
+                String name = in.readBoolean() ? in.readUTF() : null;
+                DiscoverInfo.Identity identity
+                    = new DiscoverInfo.Identity(category, name);
+
+                identity.setType(type);
+                info.addIdentity(identity);
+            }
+            for (int i = in.readUnsignedShort(); i > 0; i--)
+                info.addFeature(in.readUTF());
+        }
+        info.setNode(caps.getNodeVer());
+        return info;
+    }
+
+    /**
+     * Encodes a record, including the length of its body.
+     *
+     * @param caps the capabilities the record is associated with.
+     * @param info the <tt>DiscoverInfo</tt> of <tt>caps</tt>.
+     * @return the record.
+     * @throws IOException if <tt>info</tt> cannot be encoded.
+     */
+    private static byte[] encode(
+            EntityCapsManager.Caps caps,
+            DiscoverInfo info)
+        throws IOException
+    {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(record);
+
+        out.writeInt(0);
+        out.writeUTF(caps.node);
+        out.writeUTF(caps.hash);
+        out.writeUTF(caps.ver);
+
+        List<DiscoverInfo.Identity> identities
+            = new ArrayList<DiscoverInfo.Identity>();
+        /*
+         * The extended information, e.g. a data form, is kept as XML, and so
+         * are the identities which the binary form cannot represent.
+         */
+        boolean xml = !info.getExtensions().isEmpty();
+
+        for (Iterator<DiscoverInfo.Identity> i = info.getIdentities();
+                i.hasNext();)
+        {
+            DiscoverInfo.Identity identity = i.next();
+
+            if ((identity.getCategory() == null)
+                    || (identity.getType() == null))
+                xml = true;
+            identities.add(identity);
+        }
+
+        if (xml)
+        {
+            byte[] bytes = info.getChildElementXML().getBytes("UTF-8");
+
+            out.writeByte(RECORD_XML);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        else
+        {
+            List<String> features = new ArrayList<String>();
+
+            for (Iterator<DiscoverInfo.Feature> i
+                        = EntityCapsManager.getDiscoverInfoFeatures(info);
+                    i.hasNext();)
+                features.add(i.next().getVar());
+
+            out.writeByte(RECORD_BINARY);
+            out.writeShort(identities.size());
+            for (DiscoverInfo.Identity identity : identities)
+            {
+                String name = identity.getName();
+
+                out.writeUTF(identity.getCategory());
+                out.writeUTF(identity.getType());
+                out.writeBoolean(name != null);
+                if (name != null)
+                    out.writeUTF(name);
+            }
+            out.writeShort(features.size());
+            for (String feature : features)
+                out.writeUTF(feature);
+        }
+        out.flush();
+
+        byte[] bytes = record.toByteArray();
+        int length = bytes.length - 4;
+
+        bytes[0] = (byte) (length >>> 24);
+        bytes[1] = (byte) (length >>> 16);
+        bytes[2] = (byte) (length >>> 8);
+        bytes[3] = (byte) length;
+        return bytes;
+    }
+}
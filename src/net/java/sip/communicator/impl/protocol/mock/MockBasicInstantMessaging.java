@@ -112,10 +112,20 @@ public class MockBasicInstantMessaging
      */
     public void deliverMessage(String to, Message msg)
     {
-        Contact sourceContact = opSetPersPresence.findContactByID(to);
+        deliverMessage(opSetPersPresence.findContactByID(to), msg);
+    }
 
+    /**
+     * Methods for manipulating mock operation set as deliver(receive) messageop
+     * without looking the sender up in the contact list.
+     *
+     * @param from the contact who sent the message.
+     * @param msg the message that we are to deliver.
+     */
+    public void deliverMessage(Contact from, Message msg)
+    {
         fireMessageEvent(
             new MessageReceivedEvent(
-                    msg, sourceContact, new Date()));
+                    msg, from, new Date()));
     }
 }
@@ -32,6 +32,13 @@ public class MockChatRoom
 
     private List<ChatRoomMember> members = new Vector<ChatRoomMember>();
 
+    /**
+     * The members of this room mapped by name, so that the messages of rooms
+     * with thousands of occupants find their sender quickly.
+     */
+    private final Map<String, ChatRoomMember> membersByName
+        = new Hashtable<String, ChatRoomMember>();
+
     /**
      * Currently registered member presence listeners.
      */
@@ -165,6 +172,7 @@ public class MockChatRoom
                                     null);
 
         members.add(newMember);
+        membersByName.put(nickname, newMember);
 
         parentOpSet
             .fireLocalUserPresenceEvent(
@@ -242,6 +250,74 @@ public class MockChatRoom
         return nickname;
     }
 
+    /**
+     * Methods for manipulating mock operation set as a member joining the
+     * room.
+     *
+     * @param contact the contact of the member.
+     * @param nickname the nickname of the member in the room.
+     * @return the new member.
+     */
+    public ChatRoomMember addMember(MockContact contact, String nickname)
+    {
+        MockChatRoomMember member
+            = new MockChatRoomMember(
+                    nickname,
+                    this,
+                    ChatRoomMemberRole.MEMBER,
+                    contact,
+                    null);
+
+        members.add(member);
+        membersByName.put(nickname, member);
+
+        fireMemberPresenceEvent(
+                member,
+                ChatRoomMemberPresenceChangeEvent.MEMBER_JOINED);
+        return member;
+    }
+
+    /**
+     * Methods for manipulating mock operation set as a member leaving the
+     * room.
+     *
+     * @param nickname the nickname of the member in the room.
+     */
+    public void removeMember(String nickname)
+    {
+        ChatRoomMember member = membersByName.remove(nickname);
+
+        if (member != null)
+        {
+            members.remove(member);
+            fireMemberPresenceEvent(
+                    member,
+                    ChatRoomMemberPresenceChangeEvent.MEMBER_LEFT);
+        }
+    }
+
+    /**
+     * Notifies the member presence listeners of a member joining or leaving
+     * this room.
+     *
+     * @param member the member who joined or left.
+     * @param eventType the type of the event.
+     */
+    private void fireMemberPresenceEvent(
+            ChatRoomMember member,
+            String eventType)
+    {
+        ChatRoomMemberPresenceChangeEvent evt
+            = new ChatRoomMemberPresenceChangeEvent(
+                    this, member, eventType, null);
+        ChatRoomMemberPresenceListener[] listeners
+            = memberPresenceListeners.toArray(
+                    new ChatRoomMemberPresenceListener[0]);
+
+        for (ChatRoomMemberPresenceListener listener : listeners)
+            listener.memberPresenceChanged(evt);
+    }
+
     /**
      * Changes the the local user's nickname in the context of this chatroom.
      * If the operation is not supported by the underlying implementation, the
@@ -500,15 +576,7 @@ public class MockChatRoom
      */
     public void deliverMessage(Message msg, String from)
     {
-        ChatRoomMember fromMember = null;
-        for (ChatRoomMember elem : members)
-        {
-            if(elem.getName().equals(from))
-            {
-                fromMember = elem;
-                break;
-            }
-        }
+        ChatRoomMember fromMember = membersByName.get(from);
 
         if(fromMember == null)
             return;
@@ -0,0 +1,567 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.mock;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.java.sip.communicator.service.protocol.*;
+import net.java.sip.communicator.util.*;
+
+/**
+ * Puts a <tt>MockProvider</tt> under the load described by a
+ * <tt>MockLoadProfile</tt>, entirely in-process, so that the behaviour of
+ * the meta contact list, the history and the user interface can be measured
+ * at scale. The generator fills the contact list of the provider, joins chat
+ * rooms crowded with occupants and then, once started, generates presence
+ * changes, incoming messages, chat room messages and incoming calls at the
+ * rates of the profile.
+ * <p>
+ * The events are fired from a single thread of the generator, as the events
+ * of a real provider are fired from the thread of its stack.
+ * </p>
+ */
+public class MockLoadGenerator
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>MockLoadGenerator</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(MockLoadGenerator.class);
+
+    /**
+     * The interval in milliseconds at which the generator catches up with the
+     * rates of its profile.
+     */
+    private static final long TICK_INTERVAL = 10;
+
+    /**
+     * The words the generated messages are made of.
+     */
+    private static final String[] WORDS
+        = {
+            "hello", "meeting", "tomorrow", "call", "conference", "video",
+            "screen", "share", "file", "please", "thanks", "project",
+            "release", "review", "later", "today", "chat", "status"
+        };
+
+    /**
+     * The provider the load is generated for.
+     */
+    private final MockProvider provider;
+
+    /**
+     * The profile of the load.
+     */
+    private final MockLoadProfile profile;
+
+    /**
+     * The random choices of the generator. Only used by the thread of the
+     * generator once it is started.
+     */
+    private final Random random;
+
+    /**
+     * The presence status contacts change to.
+     */
+    private final MockStatusEnum[] statuses;
+
+    /**
+     * The contacts of the generated contact list.
+     */
+    private MockContact[] contacts = new MockContact[0];
+
+    /**
+     * The generated chat rooms.
+     */
+    private final List<MockChatRoom> chatRooms = new ArrayList<MockChatRoom>();
+
+    /**
+     * The thread which generates the load once started.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * The number of presence changes generated.
+     */
+    private final AtomicLong presenceChanges = new AtomicLong();
+
+    /**
+     * The number of instant messages generated.
+     */
+    private final AtomicLong messages = new AtomicLong();
+
+    /**
+     * The number of chat room messages generated.
+     */
+    private final AtomicLong chatRoomMessages = new AtomicLong();
+
+    /**
+     * The number of incoming calls generated.
+     */
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * Creates a generator of the load described by <tt>profile</tt> for
+     * <tt>provider</tt>.
+     *
+     * @param provider the provider to generate the load for.
+     * @param profile the profile of the load.
+     */
+    public MockLoadGenerator(MockProvider provider, MockLoadProfile profile)
+    {
+        this.provider = provider;
+        this.profile = profile;
+        this.random = new Random(profile.getSeed());
+
+        List<MockStatusEnum> statuses = new ArrayList<MockStatusEnum>();
+
+        for (Iterator<PresenceStatus> it = MockStatusEnum.supportedStatusSet();
+                it.hasNext();)
+            statuses.add((MockStatusEnum) it.next());
+        this.statuses = statuses.toArray(new MockStatusEnum[statuses.size()]);
+    }
+
+    /**
+     * Returns the address of the generated contact with index <tt>i</tt>.
+     *
+     * @param i the index of the contact.
+     * @return the address of the contact.
+     */
+    public static String getContactAddress(int i)
+    {
+        return "contact" + i + "@example.org";
+    }
+
+    /**
+     * Fills the contact list of the provider with the contacts and groups of
+     * the profile. Call before the provider is registered so that the meta
+     * contact list loads them at once, as it would load a stored contact
+     * list.
+     */
+    public void populateContactList()
+    {
+        MockPersistentPresenceOperationSet presence
+            = (MockPersistentPresenceOperationSet)
+                provider.getOperationSet(OperationSetPersistentPresence.class);
+        int groupCount = Math.max(1, profile.getGroupCount());
+        MockContactGroup[] groups = new MockContactGroup[groupCount];
+
+        for (int i = 0; i < groupCount; i++)
+        {
+            groups[i] = new MockContactGroup("group" + i, provider);
+            presence.addMockGroup(groups[i]);
+        }
+
+        contacts = new MockContact[profile.getContactCount()];
+        for (int i = 0; i < contacts.length; i++)
+        {
+            contacts[i] = new MockContact(getContactAddress(i), provider);
+            groups[i % groupCount].addContact(contacts[i]);
+        }
+
+        if (logger.isInfoEnabled())
+            logger.info("Generated " + contacts.length + " contacts in "
+                + groupCount + " groups");
+    }
+
+    /**
+     * Creates and joins the chat rooms of the profile and fills them with
+     * occupants, the contacts of the contact list first.
+     *
+     * @throws OperationFailedException if a chat room cannot be created or
+     * joined.
+     * @throws OperationNotSupportedException if chat rooms are not supported.
+     */
+    public void populateChatRooms()
+        throws OperationFailedException,
+               OperationNotSupportedException
+    {
+        MockMultiUserChat multiUserChat
+            = (MockMultiUserChat)
+                provider.getOperationSet(OperationSetMultiUserChat.class);
+
+        for (int i = 0; i < profile.getChatRoomCount(); i++)
+        {
+            MockChatRoom chatRoom
+                = (MockChatRoom)
+                    multiUserChat.createChatRoom("room" + i, null);
+
+            chatRoom.join();
+            for (int j = 0; j < profile.getChatRoomOccupantCount(); j++)
+            {
+                MockContact contact
+                    = (j < contacts.length)
+                        ? contacts[j]
+                        : new MockContact(getContactAddress(j), provider);
+
+                chatRoom.addMember(contact, getOccupantNickname(j));
+            }
+            chatRooms.add(chatRoom);
+        }
+    }
+
+    /**
+     * Returns the nickname of the generated chat room occupant with index
+     * <tt>i</tt>.
+     *
+     * @param i the index of the occupant.
+     * @return the nickname of the occupant.
+     */
+    private static String getOccupantNickname(int i)
+    {
+        return "occupant" + i;
+    }
+
+    /**
+     * Returns the generated contacts.
+     *
+     * @return the generated contacts.
+     */
+    public MockContact[] getContacts()
+    {
+        return contacts.clone();
+    }
+
+    /**
+     * Returns the generated chat rooms.
+     *
+     * @return the generated chat rooms.
+     */
+    public List<MockChatRoom> getChatRooms()
+    {
+        return Collections.unmodifiableList(chatRooms);
+    }
+
+    /**
+     * Starts generating presence changes, messages and calls at the rates of
+     * the profile.
+     */
+    public synchronized void start()
+    {
+        if (executor != null)
+            return;
+
+        executor
+            = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "MockLoadGenerator");
+
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        final List<Rate> rates = new ArrayList<Rate>();
+
+        if (contacts.length != 0)
+        {
+            if (profile.getPresenceChangesPerSecond() > 0)
+            {
+                rates.add(new Rate(profile.getPresenceChangesPerSecond())
+                {
+                    @Override
+                    void generate()
+                        throws Exception
+                    {
+                        changePresenceStatus();
+                    }
+                });
+            }
+            if (profile.getMessagesPerSecond() > 0)
+            {
+                rates.add(new Rate(profile.getMessagesPerSecond())
+                {
+                    @Override
+                    void generate()
+                    {
+                        deliverMessage();
+                    }
+                });
+            }
+            if (profile.getCallsPerSecond() > 0)
+            {
+                rates.add(new Rate(profile.getCallsPerSecond())
+                {
+                    @Override
+                    void generate()
+                        throws Exception
+                    {
+                        receiveCall();
+                    }
+                });
+            }
+        }
+        if (!chatRooms.isEmpty()
+                && profile.getChatRoomOccupantCount() > 0
+                && profile.getChatRoomMessagesPerSecond() > 0)
+        {
+            rates.add(new Rate(profile.getChatRoomMessagesPerSecond())
+            {
+                @Override
+                void generate()
+                {
+                    deliverChatRoomMessage();
+                }
+            });
+        }
+
+        if (logger.isInfoEnabled())
+            logger.info("Generating " + profile);
+
+        executor.scheduleAtFixedRate(
+                new Runnable()
+                {
+                    public void run()
+                    {
+                        long now = System.nanoTime();
+
+                        for (Rate rate : rates)
+                            rate.tick(now);
+                    }
+                },
+                0,
+                TICK_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops generating load. The calls in progress are left to end.
+     */
+    public synchronized void stop()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            executor = null;
+
+            if (logger.isInfoEnabled())
+                logger.info("Generated " + presenceChanges
+                    + " presence changes, " + messages + " messages, "
+                    + chatRoomMessages + " chat room messages and "
+                    + calls + " calls");
+        }
+    }
+
+    /**
+     * Returns the number of presence changes generated.
+     *
+     * @return the number of presence changes generated.
+     */
+    public long getPresenceChangeCount()
+    {
+        return presenceChanges.get();
+    }
+
+    /**
+     * Returns the number of instant messages generated.
+     *
+     * @return the number of instant messages generated.
+     */
+    public long getMessageCount()
+    {
+        return messages.get();
+    }
+
+    /**
+     * Returns the number of chat room messages generated.
+     *
+     * @return the number of chat room messages generated.
+     */
+    public long getChatRoomMessageCount()
+    {
+        return chatRoomMessages.get();
+    }
+
+    /**
+     * Returns the number of incoming calls generated.
+     *
+     * @return the number of incoming calls generated.
+     */
+    public long getCallCount()
+    {
+        return calls.get();
+    }
+
+    /**
+     * Changes the presence status of a random contact.
+     */
+    private void changePresenceStatus()
+    {
+        MockPersistentPresenceOperationSet presence
+            = (MockPersistentPresenceOperationSet)
+                provider.getOperationSet(OperationSetPersistentPresence.class);
+
+        presence.changePresenceStatusForContact(
+                contacts[random.nextInt(contacts.length)],
+                statuses[random.nextInt(statuses.length)]);
+        presenceChanges.incrementAndGet();
+    }
+
+    /**
+     * Delivers a message from a random contact.
+     */
+    private void deliverMessage()
+    {
+        MockBasicInstantMessaging im
+            = (MockBasicInstantMessaging)
+                provider.getOperationSet(
+                        OperationSetBasicInstantMessaging.class);
+
+        im.deliverMessage(
+                contacts[random.nextInt(contacts.length)],
+                im.createMessage(nextText()));
+        messages.incrementAndGet();
+    }
+
+    /**
+     * Delivers a message from a random occupant of a random chat room.
+     */
+    private void deliverChatRoomMessage()
+    {
+        MockChatRoom chatRoom = chatRooms.get(random.nextInt(chatRooms.size()));
+
+        chatRoom.deliverMessage(
+                chatRoom.createMessage(nextText()),
+                getOccupantNickname(
+                        random.nextInt(profile.getChatRoomOccupantCount())));
+        chatRoomMessages.incrementAndGet();
+    }
+
+    /**
+     * Receives a call from a random contact and hangs it up after the call
+     * duration of the profile.
+     *
+     * @throws Exception if the call cannot be received.
+     */
+    private void receiveCall()
+        throws Exception
+    {
+        final MockOperationSetBasicTelephony telephony
+            = (MockOperationSetBasicTelephony)
+                provider.getOperationSet(OperationSetBasicTelephony.class);
+        Call call
+            = telephony.receiveCall(
+                    contacts[random.nextInt(contacts.length)].getAddress());
+        final CallPeer peer = call.getCallPeers().next();
+
+        calls.incrementAndGet();
+
+        ScheduledExecutorService executor = this.executor;
+
+        if (executor != null)
+        {
+            executor.schedule(
+                    new Runnable()
+                    {
+                        public void run()
+                        {
+                            try
+                            {
+                                telephony.hangupCallPeer(peer);
+                            }
+                            catch (OperationFailedException ex)
+                            {
+                                logger.warn("Failed to hang up " + peer, ex);
+                            }
+                        }
+                    },
+                    profile.getCallDuration(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Generates the text of a message.
+     *
+     * @return the text of a message.
+     */
+    private String nextText()
+    {
+        int words = 3 + random.nextInt(10);
+        StringBuilder text = new StringBuilder(words * 8);
+
+        for (int i = 0; i < words; i++)
+        {
+            if (i != 0)
+                text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generates events at a given rate by generating, at each tick, as many
+     * events as have become due since the previous one.
+     */
+    private abstract static class Rate
+    {
+        /**
+         * The number of events to generate a nanosecond.
+         */
+        private final double eventsPerNano;
+
+        /**
+         * The time of the previous tick or <tt>-1</tt> before the first one.
+         */
+        private long lastTick = -1;
+
+        /**
+         * The fraction of an event due but not generated yet.
+         */
+        private double due = 0;
+
+        /**
+         * Creates a rate of events.
+         *
+         * @param eventsPerSecond the number of events to generate a second.
+         */
+        Rate(double eventsPerSecond)
+        {
+            this.eventsPerNano = eventsPerSecond / 1000000000d;
+        }
+
+        /**
+         * Generates the events which have become due since the previous tick.
+         *
+         * @param now the time of this tick in nanoseconds.
+         */
+        void tick(long now)
+        {
+            if (lastTick != -1)
+                due += (now - lastTick) * eventsPerNano;
+            lastTick = now;
+
+            while (due >= 1)
+            {
+                due--;
+                try
+                {
+                    generate();
+                }
+                catch (Throwable t)
+                {
+                    if (t instanceof ThreadDeath)
+                        throw (ThreadDeath) t;
+                    logger.error("Failed to generate a load event", t);
+                }
+            }
+        }
+
+        /**
+         * Generates an event.
+         *
+         * @throws Exception if the event cannot be generated.
+         */
+        abstract void generate()
+            throws Exception;
+    }
+}
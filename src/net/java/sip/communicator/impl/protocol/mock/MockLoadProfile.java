@@ -0,0 +1,379 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.mock;
+
+/**
+ * Describes the load a <tt>MockLoadGenerator</tt> puts on the layers above a
+ * <tt>MockProvider</tt>: the size of the contact list and of the chat rooms
+ * and the rates of the presence changes, messages and calls it generates.
+ * A rate of zero disables the corresponding load.
+ * <p>
+ * The profile is either built with its setters or read from system
+ * properties named after the setters and prefixed with
+ * {@link #PNAME_PREFIX}, e.g.
+ * <tt>net.java.sip.communicator.impl.protocol.mock.load.CONTACT_COUNT</tt>.
+ * </p>
+ */
+public class MockLoadProfile
+{
+    /**
+     * The prefix of the names of the system properties a profile is read
+     * from.
+     */
+    public static final String PNAME_PREFIX
+        = "net.java.sip.communicator.impl.protocol.mock.load.";
+
+    /**
+     * The number of contacts of the contact list.
+     */
+    private int contactCount = 1000;
+
+    /**
+     * The number of groups the contacts are spread over.
+     */
+    private int groupCount = 10;
+
+    /**
+     * The number of contact presence status changes a second.
+     */
+    private double presenceChangesPerSecond = 0;
+
+    /**
+     * The number of instant messages received a second.
+     */
+    private double messagesPerSecond = 0;
+
+    /**
+     * The number of chat rooms joined.
+     */
+    private int chatRoomCount = 0;
+
+    /**
+     * The number of occupants of each chat room.
+     */
+    private int chatRoomOccupantCount = 0;
+
+    /**
+     * The number of chat room messages received a second over all rooms.
+     */
+    private double chatRoomMessagesPerSecond = 0;
+
+    /**
+     * The number of incoming calls a second.
+     */
+    private double callsPerSecond = 0;
+
+    /**
+     * The duration of the incoming calls in milliseconds.
+     */
+    private long callDuration = 5000;
+
+    /**
+     * The seed of the random choices of the generator, so that the same
+     * profile generates the same load.
+     */
+    private long seed = 0;
+
+    /**
+     * Creates a profile read from the system properties. The properties which
+     * are not set keep their defaults.
+     *
+     * @return the profile read from the system properties.
+     */
+    public static MockLoadProfile fromSystemProperties()
+    {
+        MockLoadProfile profile = new MockLoadProfile();
+
+        profile.contactCount
+            = getInt("CONTACT_COUNT", profile.contactCount);
+        profile.groupCount
+            = getInt("GROUP_COUNT", profile.groupCount);
+        profile.presenceChangesPerSecond
+            = getDouble(
+                    "PRESENCE_CHANGES_PER_SECOND",
+                    profile.presenceChangesPerSecond);
+        profile.messagesPerSecond
+            = getDouble("MESSAGES_PER_SECOND", profile.messagesPerSecond);
+        profile.chatRoomCount
+            = getInt("CHAT_ROOM_COUNT", profile.chatRoomCount);
+        profile.chatRoomOccupantCount
+            = getInt(
+                    "CHAT_ROOM_OCCUPANT_COUNT",
+                    profile.chatRoomOccupantCount);
+        profile.chatRoomMessagesPerSecond
+            = getDouble(
+                    "CHAT_ROOM_MESSAGES_PER_SECOND",
+                    profile.chatRoomMessagesPerSecond);
+        profile.callsPerSecond
+            = getDouble("CALLS_PER_SECOND", profile.callsPerSecond);
+        profile.callDuration
+            = Long.getLong(
+                    PNAME_PREFIX + "CALL_DURATION",
+                    profile.callDuration);
+        profile.seed = Long.getLong(PNAME_PREFIX + "SEED", profile.seed);
+        return profile;
+    }
+
+    /**
+     * Reads an integer system property of a profile.
+     *
+     * @param name the name of the property without the prefix.
+     * @param defaultValue the value to return if the property is not set or
+     * is not an integer.
+     * @return the value of the property.
+     */
+    private static int getInt(String name, int defaultValue)
+    {
+        return Integer.getInteger(PNAME_PREFIX + name, defaultValue);
+    }
+
+    /**
+     * Reads a decimal system property of a profile.
+     *
+     * @param name the name of the property without the prefix.
+     * @param defaultValue the value to return if the property is not set or
+     * is not a number.
+     * @return the value of the property.
+     */
+    private static double getDouble(String name, double defaultValue)
+    {
+        String value = System.getProperty(PNAME_PREFIX + name);
+
+        if (value != null)
+        {
+            try
+            {
+                return Double.parseDouble(value);
+            }
+            catch (NumberFormatException ex)
+            {
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the number of contacts of the contact list.
+     *
+     * @return the number of contacts of the contact list.
+     */
+    public int getContactCount()
+    {
+        return contactCount;
+    }
+
+    /**
+     * Sets the number of contacts of the contact list.
+     *
+     * @param contactCount the number of contacts of the contact list.
+     */
+    public void setContactCount(int contactCount)
+    {
+        this.contactCount = contactCount;
+    }
+
+    /**
+     * Returns the number of groups the contacts are spread over.
+     *
+     * @return the number of groups the contacts are spread over.
+     */
+    public int getGroupCount()
+    {
+        return groupCount;
+    }
+
+    /**
+     * Sets the number of groups the contacts are spread over.
+     *
+     * @param groupCount the number of groups the contacts are spread over.
+     */
+    public void setGroupCount(int groupCount)
+    {
+        this.groupCount = groupCount;
+    }
+
+    /**
+     * Returns the number of contact presence status changes a second.
+     *
+     * @return the number of contact presence status changes a second.
+     */
+    public double getPresenceChangesPerSecond()
+    {
+        return presenceChangesPerSecond;
+    }
+
+    /**
+     * Sets the number of contact presence status changes a second.
+     *
+     * @param presenceChangesPerSecond the number of contact presence status
+     * changes a second.
+     */
+    public void setPresenceChangesPerSecond(double presenceChangesPerSecond)
+    {
+        this.presenceChangesPerSecond = presenceChangesPerSecond;
+    }
+
+    /**
+     * Returns the number of instant messages received a second.
+     *
+     * @return the number of instant messages received a second.
+     */
+    public double getMessagesPerSecond()
+    {
+        return messagesPerSecond;
+    }
+
+    /**
+     * Sets the number of instant messages received a second.
+     *
+     * @param messagesPerSecond the number of instant messages received a
+     * second.
+     */
+    public void setMessagesPerSecond(double messagesPerSecond)
+    {
+        this.messagesPerSecond = messagesPerSecond;
+    }
+
+    /**
+     * Returns the number of chat rooms joined.
+     *
+     * @return the number of chat rooms joined.
+     */
+    public int getChatRoomCount()
+    {
+        return chatRoomCount;
+    }
+
+    /**
+     * Sets the number of chat rooms joined.
+     *
+     * @param chatRoomCount the number of chat rooms joined.
+     */
+    public void setChatRoomCount(int chatRoomCount)
+    {
+        this.chatRoomCount = chatRoomCount;
+    }
+
+    /**
+     * Returns the number of occupants of each chat room.
+     *
+     * @return the number of occupants of each chat room.
+     */
+    public int getChatRoomOccupantCount()
+    {
+        return chatRoomOccupantCount;
+    }
+
+    /**
+     * Sets the number of occupants of each chat room.
+     *
+     * @param chatRoomOccupantCount the number of occupants of each chat room.
+     */
+    public void setChatRoomOccupantCount(int chatRoomOccupantCount)
+    {
+        this.chatRoomOccupantCount = chatRoomOccupantCount;
+    }
+
+    /**
+     * Returns the number of chat room messages received a second over all
+     * rooms.
+     *
+     * @return the number of chat room messages received a second over all
+     * rooms.
+     */
+    public double getChatRoomMessagesPerSecond()
+    {
+        return chatRoomMessagesPerSecond;
+    }
+
+    /**
+     * Sets the number of chat room messages received a second over all rooms.
+     *
+     * @param chatRoomMessagesPerSecond the number of chat room messages
+     * received a second over all rooms.
+     */
+    public void setChatRoomMessagesPerSecond(double chatRoomMessagesPerSecond)
+    {
+        this.chatRoomMessagesPerSecond = chatRoomMessagesPerSecond;
+    }
+
+    /**
+     * Returns the number of incoming calls a second.
+     *
+     * @return the number of incoming calls a second.
+     */
+    public double getCallsPerSecond()
+    {
+        return callsPerSecond;
+    }
+
+    /**
+     * Sets the number of incoming calls a second.
+     *
+     * @param callsPerSecond the number of incoming calls a second.
+     */
+    public void setCallsPerSecond(double callsPerSecond)
+    {
+        this.callsPerSecond = callsPerSecond;
+    }
+
+    /**
+     * Returns the duration of the incoming calls in milliseconds.
+     *
+     * @return the duration of the incoming calls in milliseconds.
+     */
+    public long getCallDuration()
+    {
+        return callDuration;
+    }
+
+    /**
+     * Sets the duration of the incoming calls in milliseconds.
+     *
+     * @param callDuration the duration of the incoming calls in milliseconds.
+     */
+    public void setCallDuration(long callDuration)
+    {
+        this.callDuration = callDuration;
+    }
+
+    /**
+     * Returns the seed of the random choices of the generator.
+     *
+     * @return the seed of the random choices of the generator.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the random choices of the generator.
+     *
+     * @param seed the seed of the random choices of the generator.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName()
+            + "[contacts=" + contactCount
+            + ", groups=" + groupCount
+            + ", presenceChanges/s=" + presenceChangesPerSecond
+            + ", messages/s=" + messagesPerSecond
+            + ", chatRooms=" + chatRoomCount
+            + ", occupants=" + chatRoomOccupantCount
+            + ", chatRoomMessages/s=" + chatRoomMessagesPerSecond
+            + ", calls/s=" + callsPerSecond
+            + ", callDuration=" + callDuration
+            + "]";
+    }
+}
@@ -111,164 +111,210 @@ public class DesktopSharingProtocolSipImpl
     }
 
     /**
-     * Build a remote-info key-press SIP NOTIFY message.
+     * The elements of the events in the order in which the parsers which
+     * predate the batching of the events process them, i.e. grouped by
+     * element name rather than in document order.
+     */
+    private static final String[] LEGACY_PARSE_ORDER
+        = {
+            ELEMENT_MOUSE_PRESS,
+            ELEMENT_MOUSE_RELEASE,
+            ELEMENT_MOUSE_MOVE,
+            ELEMENT_MOUSE_WHEEL,
+            ELEMENT_KEY_PRESS,
+            ELEMENT_KEY_RELEASE,
+            ELEMENT_KEY_TYPE
+        };
+
+    /**
+     * Build the remote-info SIP NOTIFY messages which carry a batch of events.
+     * The events are split into as few messages as possible such that a peer
+     * which processes the events of a message grouped by element name, as the
+     * versions before the batching do, processes them in the order they
+     * occurred.
+     *
+     * @param elements the XML elements of the events in the order they
+     * occurred
+     * @return raw XML of the messages
+     */
+    public static List<String> getBatchXML(List<String> elements)
+    {
+        List<String> messages = new ArrayList<String>();
+        StringBuffer xml = null;
+        int lastRank = Integer.MAX_VALUE;
+
+        for (String element : elements)
+        {
+            int rank = getLegacyParseRank(element);
+
+            if (rank < lastRank)
+            {
+                if (xml != null)
+                {
+                    append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
+                    messages.add(xml.toString());
+                }
+                xml = new StringBuffer();
+                xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
+                // <remote-control>
+                append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
+            }
+            xml.append(element);
+            lastRank = rank;
+        }
+        if (xml != null)
+        {
+            append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
+            messages.add(xml.toString());
+        }
+        return messages;
+    }
+
+    /**
+     * Returns the position of the element of an event in
+     * {@link #LEGACY_PARSE_ORDER}.
+     *
+     * @param element the XML element of the event
+     * @return the position of <tt>element</tt> in the legacy parse order
+     */
+    private static int getLegacyParseRank(String element)
+    {
+        for (int i = 0; i < LEGACY_PARSE_ORDER.length; i++)
+        {
+            String name = LEGACY_PARSE_ORDER[i];
+
+            if (element.startsWith(name, 1)
+                    && (element.charAt(name.length() + 1) == ' '))
+                return i;
+        }
+        return LEGACY_PARSE_ORDER.length;
+    }
+
+    /**
+     * Build a remote-info key-press XML element.
      *
      * @param keycode keyboard's code
-     * @return raw XML bytes
+     * @return raw XML element
      */
-    public static String getKeyPressedXML(int keycode)
+    public static String getKeyPressedElement(int keycode)
     {
         StringBuffer xml = new StringBuffer();
 
-        xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
-
-        // <remote-control>
-        append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
         // <key-press>
         append(xml, "<", ELEMENT_KEY_PRESS);
         append(xml, " keycode=\"", Integer.toString(keycode), "\" />");
-        append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
 
         return xml.toString();
     }
 
     /**
-     * Build a remote-info key-release SIP NOTIFY message.
+     * Build a remote-info key-release XML element.
      *
      * @param keycode keyboard's code
-     * @return raw XML bytes
+     * @return raw XML element
      */
-    public static String getKeyReleasedXML(int keycode)
+    public static String getKeyReleasedElement(int keycode)
     {
         StringBuffer xml = new StringBuffer();
 
-        xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
-
-        // <remote-control>
-        append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
         // <key-release>
         append(xml, "<", ELEMENT_KEY_RELEASE);
         append(xml, " keycode=\"", Integer.toString(keycode), "\" />");
-        append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
 
         return xml.toString();
     }
 
     /**
-     * Build a remote-info key-typed SIP NOTIFY message.
+     * Build a remote-info key-typed XML element.
      *
      * @param keycode keyboard's code
-     * @return raw XML bytes
+     * @return raw XML element
      */
-    public static String getKeyTypedXML(int keycode)
+    public static String getKeyTypedElement(int keycode)
     {
         StringBuffer xml = new StringBuffer();
 
-        xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
-
-        // <remote-control>
-        append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
         // <key-typed>
         append(xml, "<", ELEMENT_KEY_TYPE);
         append(xml, " keychar=\"", Integer.toString(keycode), "\" />");
-        append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
 
         return xml.toString();
     }
 
     /**
-     * Build a remote-info mouse-press SIP NOTIFY message.
+     * Build a remote-info mouse-press XML element.
      *
      * @param btns button mask
-     * @return raw XML bytes
+     * @return raw XML element
      */
-    public static String getMousePressedXML(int btns)
+    public static String getMousePressedElement(int btns)
     {
         StringBuffer xml = new StringBuffer();
 
-        xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
-
-        // <remote-control>
-        append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
         // <mouse-press>
         append(xml, "<", ELEMENT_MOUSE_PRESS);
         append(xml, " btns=\"", Integer.toString(btns), "\" />");
-        append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
 
         return xml.toString();
     }
 
     /**
-     * Build a remote-info mouse-release SIP NOTIFY message.
+     * Build a remote-info mouse-release XML element.
      *
      * @param btns button mask
-     * @return raw XML bytes
+     * @return raw XML element
      */
-    public static String getMouseReleasedXML(int btns)
+    public static String getMouseReleasedElement(int btns)
     {
         StringBuffer xml = new StringBuffer();
 
-        xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
-
-        // <remote-control>
-        append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
         // <mouse-release>
         append(xml, "<", ELEMENT_MOUSE_RELEASE);
         append(xml, " btns=\"", Integer.toString(btns), "\" />");
-        append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
 
         return xml.toString();
     }
 
     /**
-     * Build a remote-info mouse-move SIP NOTIFY message.
+     * Build a remote-info mouse-move XML element.
      *
      * @param x x position of the mouse
      * @param y y position of the mouse
-     * @return raw XML bytes
+     * @return raw XML element
      */
-    public static String getMouseMovedXML(double x, double y)
+    public static String getMouseMovedElement(double x, double y)
     {
         StringBuffer xml = new StringBuffer();
 
-        xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
-
-        // <remote-control>
-        append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
-        // <mouse-press>
+        // <mouse-move>
         append(xml, "<", ELEMENT_MOUSE_MOVE);
         append(xml, " x=\"", Double.toString(x), "\" y=\"", Double.toString(y),
                 "\" />");
-        append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
 
         return xml.toString();
     }
 
     /**
-     * Build a remote-info mouse-wheel SIP NOTIFY message.
+     * Build a remote-info mouse-wheel XML element.
      *
      * @param notch wheel notch
-     * @return raw XML bytes
+     * @return raw XML element
      */
-    public static String getMouseWheelXML(int notch)
+    public static String getMouseWheelElement(int notch)
     {
         StringBuffer xml = new StringBuffer();
 
-        xml.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n");
-
-        // <remote-control>
-        append(xml, "<", ELEMENT_REMOTE_CONTROL, ">");
         // <mouse-wheel>
         append(xml, "<", ELEMENT_MOUSE_WHEEL);
         append(xml, " notch=\"", Integer.toString(notch), "\" />");
-        append(xml, "</", ELEMENT_REMOTE_CONTROL, ">");
 
         return xml.toString();
     }
 
     /**
      * Parses an XML element and returns a list of all <tt>MouseEvent</tt>
-     * and <tt>KeyEvent</tt> found.
+     * and <tt>KeyEvent</tt> found, in document order so that the events of a
+     * batch are processed in the order they occurred.
      *
      * @param root XML root element
      * @param size size of the video (used to have right (x,y) for MouseMoved
@@ -280,16 +326,21 @@ public class DesktopSharingProtocolSipImpl
             Point origin)
     {
         List<ComponentEvent> events = new ArrayList<ComponentEvent>();
-        NodeList nl = null;
         int originX = origin != null ? origin.x : 0;
         int originY = origin != null ? origin.y : 0;
+        int x = -1;
+        int y = -1;
 
-        nl = root.getElementsByTagName(ELEMENT_MOUSE_PRESS);
-        if(nl != null)
+        for(Node n = root.getFirstChild() ; n != null ; n = n.getNextSibling())
         {
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            if(n.getNodeType() != Node.ELEMENT_NODE)
+                continue;
+
+            Element el = (Element)n;
+            String name = el.getTagName();
+
+            if(ELEMENT_MOUSE_PRESS.equals(name))
             {
-                Element el = (Element)nl.item(i);
                 if(el.hasAttribute("btns"))
                 {
                     MouseEvent me = new MouseEvent(component,
@@ -301,14 +352,8 @@ public class DesktopSharingProtocolSipImpl
                     events.add(me);
                 }
             }
-        }
-
-        nl = root.getElementsByTagName(ELEMENT_MOUSE_RELEASE);
-        if(nl != null)
-        {
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            else if(ELEMENT_MOUSE_RELEASE.equals(name))
             {
-                Element el = (Element)nl.item(i);
                 if(el.hasAttribute("btns"))
                 {
                     MouseEvent me = new MouseEvent(component,
@@ -319,18 +364,8 @@ public class DesktopSharingProtocolSipImpl
                     events.add(me);
                 }
             }
-        }
-
-        nl = root.getElementsByTagName(ELEMENT_MOUSE_MOVE);
-        if(nl != null)
-        {
-            int x = -1;
-            int y = -1;
-
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            else if(ELEMENT_MOUSE_MOVE.equals(name))
             {
-                Element el = (Element)nl.item(i);
-
                 if(el.hasAttribute("x"))
                 {
                     x = (int)(Double.parseDouble(
@@ -343,24 +378,15 @@ public class DesktopSharingProtocolSipImpl
                             el.getAttribute("y")) * size.height + originY);
                 }
 
-                //if(x >= 0 && y >= 0)
-                {
-                    MouseEvent me = new MouseEvent(component,
-                            MouseEvent.MOUSE_MOVED,
-                            System.currentTimeMillis(),
-                            0, x, y, 0, false, 0);
+                MouseEvent me = new MouseEvent(component,
+                        MouseEvent.MOUSE_MOVED,
+                        System.currentTimeMillis(),
+                        0, x, y, 0, false, 0);
 
-                    events.add(me);
-                }
+                events.add(me);
             }
-        }
-
-        nl = root.getElementsByTagName(ELEMENT_MOUSE_WHEEL);
-        if(nl != null)
-        {
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            else if(ELEMENT_MOUSE_WHEEL.equals(name))
             {
-                Element el = (Element)nl.item(i);
                 if(el.hasAttribute("notch"))
                 {
                     MouseWheelEvent me = new MouseWheelEvent(
@@ -372,14 +398,8 @@ public class DesktopSharingProtocolSipImpl
                     events.add(me);
                 }
             }
-        }
-
-        nl = root.getElementsByTagName(ELEMENT_KEY_PRESS);
-        if(nl != null)
-        {
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            else if(ELEMENT_KEY_PRESS.equals(name))
             {
-                Element el = (Element)nl.item(i);
                 if(el.hasAttribute("keycode"))
                 {
                     KeyEvent ke = new KeyEvent(component,
@@ -392,14 +412,8 @@ public class DesktopSharingProtocolSipImpl
                     events.add(ke);
                 }
             }
-        }
-
-        nl = root.getElementsByTagName(ELEMENT_KEY_RELEASE);
-        if(nl != null)
-        {
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            else if(ELEMENT_KEY_RELEASE.equals(name))
             {
-                Element el = (Element)nl.item(i);
                 if(el.hasAttribute("keycode"))
                 {
                     KeyEvent ke = new KeyEvent(component,
@@ -412,14 +426,8 @@ public class DesktopSharingProtocolSipImpl
                     events.add(ke);
                 }
             }
-        }
-
-        nl = root.getElementsByTagName(ELEMENT_KEY_TYPE);
-        if(nl != null)
-        {
-            for(int i = 0 ; i < nl.getLength() ; i++)
+            else if(ELEMENT_KEY_TYPE.equals(name))
             {
-                Element el = (Element)nl.item(i);
                 if(el.hasAttribute("keychar"))
                 {
                     KeyEvent ke = new KeyEvent(component,
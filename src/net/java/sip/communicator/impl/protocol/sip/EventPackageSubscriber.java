@@ -359,17 +359,23 @@ public class EventPackageSubscriber
      * of subscriptions managed by this instance if there is no other
      * <tt>Subscription</tt> in the list which has the same subscription
      * <tt>Address</tt>/Request URI and id tag of its Event header
+     * @return <tt>true</tt> if <tt>subscription</tt> has been added and a
+     * SUBSCRIBE request has been sent for it
      * @throws OperationFailedException if we fail constructing or sending the
      * subscription request
      */
-    public void poll(Subscription subscription)
+    public boolean poll(Subscription subscription)
         throws OperationFailedException
     {
         if (getSubscription(
                     subscription.getAddress(),
                     subscription.getEventId())
                 == null)
+        {
             subscribe(subscription);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -0,0 +1,491 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.sip;
+
+import java.util.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Polls the contacts of the presence operation set which we have no
+ * subscription with, i.e. the offline ones, by sending them a SUBSCRIBE.
+ * <p>
+ * Rather than polling all of them at once every period, each contact is
+ * given its own random phase within the period so that the polls are spread
+ * evenly, and the period of every contact is jittered so that they do not
+ * line up again. A contact whose poll fails is polled again after twice as
+ * long as the previous time, up to {@link #MAX_BACKOFF}. No more than
+ * {@link #MAX_PENDING_POLLS_PNAME} polls wait for their response at any time,
+ * the others wait for one of them to complete.
+ * </p>
+ */
+class OfflineContactPoller
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>OfflineContactPoller</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(OfflineContactPoller.class);
+
+    /**
+     * The name of the configuration property which defines the maximum
+     * number of polls waiting for their response at any time.
+     */
+    static final String MAX_PENDING_POLLS_PNAME
+        = "net.java.sip.communicator.impl.protocol.sip.MAX_PENDING_POLLS";
+
+    /**
+     * The default maximum number of polls waiting for their response.
+     */
+    private static final int DEFAULT_MAX_PENDING_POLLS = 10;
+
+    /**
+     * The maximum time in milliseconds a failing contact is left alone.
+     */
+    static final long MAX_BACKOFF = 60 * 60 * 1000;
+
+    /**
+     * The time in milliseconds after which a poll which has not received a
+     * response is considered failed, a little more than the timeout of a
+     * SIP transaction.
+     */
+    private static final long PENDING_TIMEOUT = 40 * 1000;
+
+    /**
+     * The interval in milliseconds at which the polls which are due are sent.
+     */
+    private static final long TICK_INTERVAL = 1000;
+
+    /**
+     * The fraction of the period by which the period of a contact is
+     * randomly shortened or lengthened.
+     */
+    private static final double JITTER = 0.1;
+
+    /**
+     * The presence operation set the contacts of which are polled.
+     */
+    private final OperationSetPresenceSipImpl presence;
+
+    /**
+     * The interval in milliseconds between two polls of a contact.
+     */
+    private final long period;
+
+    /**
+     * The maximum number of polls waiting for their response.
+     */
+    private final int maxPendingPolls;
+
+    /**
+     * The timer which sends the polls.
+     */
+    private final TimerScheduler timer;
+
+    /**
+     * The poll states of the contacts by contact.
+     */
+    private final Map<ContactSipImpl, PollState> states
+        = new HashMap<ContactSipImpl, PollState>();
+
+    /**
+     * The poll states of the contacts, the one to be polled next first.
+     */
+    private final PriorityQueue<PollState> queue
+        = new PriorityQueue<PollState>();
+
+    /**
+     * The poll states of the contacts whose poll waits for its response.
+     */
+    private final Set<PollState> pending = new HashSet<PollState>();
+
+    /**
+     * The random generator of the phases and the jitter.
+     */
+    private final Random random = new Random();
+
+    /**
+     * The time at which the contacts are next read from the contact list.
+     */
+    private long nextRefresh;
+
+    /**
+     * The task which sends the polls which are due.
+     */
+    private TimerTask tickTask;
+
+    /**
+     * Initializes a new poller of the contacts of a presence operation set.
+     *
+     * @param presence the presence operation set.
+     * @param period the interval in milliseconds between two polls of a
+     * contact.
+     * @param timer the timer which sends the polls.
+     */
+    OfflineContactPoller(
+            OperationSetPresenceSipImpl presence,
+            long period,
+            TimerScheduler timer)
+    {
+        this.presence = presence;
+        this.period = period;
+        this.timer = timer;
+
+        ConfigurationService cfg = SipActivator.getConfigurationService();
+
+        maxPendingPolls
+            = Math.max(
+                    1,
+                    (cfg == null)
+                        ? DEFAULT_MAX_PENDING_POLLS
+                        : cfg.getInt(
+                                MAX_PENDING_POLLS_PNAME,
+                                DEFAULT_MAX_PENDING_POLLS));
+    }
+
+    /**
+     * Starts polling: polls all the contacts as soon as the limit of pending
+     * polls allows and then each of them once a period.
+     */
+    void start()
+    {
+        synchronized (this)
+        {
+            long now = System.currentTimeMillis();
+
+            for (ContactSipImpl contact : presence.getPolledContacts())
+            {
+                PollState state = new PollState(contact);
+
+                state.initial = true;
+                state.nextPoll = now;
+                states.put(contact, state);
+                queue.add(state);
+            }
+            nextRefresh = now + period;
+
+            tickTask
+                = new TimerTask()
+                {
+                    @Override
+                    public void run()
+                    {
+                        tick();
+                    }
+                };
+            timer.schedule(tickTask, TICK_INTERVAL, TICK_INTERVAL);
+        }
+        pollDueContacts();
+    }
+
+    /**
+     * Stops polling and forgets the state of the contacts.
+     */
+    synchronized void stop()
+    {
+        if (tickTask != null)
+        {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        states.clear();
+        queue.clear();
+        pending.clear();
+    }
+
+    /**
+     * Notifies this poller that the poll of a contact has succeeded.
+     *
+     * @param contact the contact.
+     */
+    void pollSucceeded(ContactSipImpl contact)
+    {
+        synchronized (this)
+        {
+            PollState state = states.get(contact);
+
+            if (state == null)
+                return;
+            state.failures = 0;
+            if (!pending.remove(state))
+                return;
+        }
+        schedulePollDueContacts();
+    }
+
+    /**
+     * Notifies this poller that the poll of a contact has failed, so that it
+     * backs off from the contact.
+     *
+     * @param contact the contact.
+     */
+    void pollFailed(ContactSipImpl contact)
+    {
+        boolean wasPending;
+
+        synchronized (this)
+        {
+            PollState state = states.get(contact);
+
+            if (state == null)
+                return;
+            wasPending = pending.remove(state);
+            fail(state, System.currentTimeMillis());
+        }
+        if (wasPending)
+            schedulePollDueContacts();
+    }
+
+    /**
+     * Reschedules the poll of a contact whose poll has failed, backing off
+     * exponentially.
+     *
+     * @param state the poll state of the contact.
+     * @param now the current time in milliseconds.
+     */
+    private void fail(PollState state, long now)
+    {
+        state.failures++;
+
+        long backoff = period;
+
+        for (int i = 0; (i < state.failures) && (backoff < MAX_BACKOFF); i++)
+            backoff *= 2;
+        backoff = Math.min(backoff, MAX_BACKOFF);
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "Polling " + state.contact + " failed " + state.failures
+                        + " times, backing off for " + backoff + " ms");
+        }
+
+        queue.remove(state);
+        state.initial = false;
+        state.nextPoll = now + jitter(backoff);
+        queue.add(state);
+    }
+
+    /**
+     * Randomly shortens or lengthens an interval by up to {@link #JITTER}.
+     *
+     * @param interval the interval in milliseconds.
+     * @return the jittered interval in milliseconds.
+     */
+    private long jitter(long interval)
+    {
+        double jitter = JITTER * (2 * random.nextDouble() - 1);
+
+        return interval + (long) (interval * jitter);
+    }
+
+    /**
+     * Reads the contacts from the contact list once a period, expires the
+     * polls which have waited too long for their response and sends the
+     * polls which are due.
+     */
+    private void tick()
+    {
+        synchronized (this)
+        {
+            if (tickTask == null)
+                return;
+
+            long now = System.currentTimeMillis();
+
+            if (now >= nextRefresh)
+            {
+                refresh(now);
+                nextRefresh = now + period;
+            }
+
+            Iterator<PollState> i = pending.iterator();
+
+            while (i.hasNext())
+            {
+                PollState state = i.next();
+
+                if (now - state.lastPoll >= PENDING_TIMEOUT)
+                {
+                    i.remove();
+                    fail(state, now);
+                }
+            }
+        }
+        pollDueContacts();
+    }
+
+    /**
+     * Updates the contacts polled after the contact list has changed. A new
+     * contact is given a random phase within the period.
+     *
+     * @param now the current time in milliseconds.
+     */
+    private void refresh(long now)
+    {
+        Set<ContactSipImpl> removed
+            = new HashSet<ContactSipImpl>(states.keySet());
+
+        for (ContactSipImpl contact : presence.getPolledContacts())
+        {
+            if (removed.remove(contact))
+                continue;
+
+            PollState state = new PollState(contact);
+
+            state.nextPoll = now + (long) (random.nextDouble() * period);
+            states.put(contact, state);
+            queue.add(state);
+        }
+
+        for (ContactSipImpl contact : removed)
+        {
+            PollState state = states.remove(contact);
+
+            queue.remove(state);
+            pending.remove(state);
+        }
+    }
+
+    /**
+     * Sends the polls which are due on the thread of the timer.
+     */
+    private void schedulePollDueContacts()
+    {
+        timer.schedule(
+                new TimerTask()
+                {
+                    @Override
+                    public void run()
+                    {
+                        pollDueContacts();
+                    }
+                },
+                0);
+    }
+
+    /**
+     * Sends the polls which are due, as many as the limit of pending polls
+     * allows.
+     */
+    private void pollDueContacts()
+    {
+        List<PollState> due = new ArrayList<PollState>();
+
+        do
+        {
+            due.clear();
+            synchronized (this)
+            {
+                long now = System.currentTimeMillis();
+
+                while ((pending.size() < maxPendingPolls)
+                        && !queue.isEmpty()
+                        && (queue.peek().nextPoll <= now))
+                {
+                    PollState state = queue.poll();
+
+                    /*
+                     * The initial poll is followed by the first periodic poll
+                     * at a random phase within the period, so that the
+                     * contacts are spread evenly across it. The jitter keeps
+                     * them spread.
+                     */
+                    state.nextPoll
+                        = now
+                            + (state.initial
+                                ? (long) (random.nextDouble() * period)
+                                : jitter(period));
+                    state.initial = false;
+                    state.lastPoll = now;
+                    queue.add(state);
+                    if (pending.add(state))
+                        due.add(state);
+                }
+            }
+
+            /*
+             * The SUBSCRIBE requests are sent without holding the lock
+             * because the responses are delivered to this poller from another
+             * thread. The contacts we are already subscribed to are not
+             * polled and free their place for other contacts right away.
+             */
+            Iterator<PollState> i = due.iterator();
+
+            while (i.hasNext())
+            {
+                PollState state = i.next();
+
+                if (presence.pollContact(state.contact))
+                {
+                    i.remove();
+                }
+                else
+                {
+                    synchronized (this)
+                    {
+                        pending.remove(state);
+                    }
+                }
+            }
+        }
+        while (!due.isEmpty());
+    }
+
+    /**
+     * The poll state of a contact.
+     */
+    private static class PollState
+        implements Comparable<PollState>
+    {
+        /**
+         * The contact.
+         */
+        final ContactSipImpl contact;
+
+        /**
+         * The number of consecutive failed polls of the contact.
+         */
+        int failures;
+
+        /**
+         * Whether the contact has not been polled yet.
+         */
+        boolean initial;
+
+        /**
+         * The time in milliseconds at which the contact was last polled.
+         */
+        long lastPoll;
+
+        /**
+         * The time in milliseconds at which the contact is next polled.
+         */
+        long nextPoll;
+
+        /**
+         * Initializes the poll state of a contact.
+         *
+         * @param contact the contact.
+         */
+        PollState(ContactSipImpl contact)
+        {
+            this.contact = contact;
+        }
+
+        public int compareTo(PollState other)
+        {
+            return
+                (nextPoll < other.nextPoll)
+                    ? -1
+                    : ((nextPoll == other.nextPoll) ? 0 : 1);
+        }
+    }
+}
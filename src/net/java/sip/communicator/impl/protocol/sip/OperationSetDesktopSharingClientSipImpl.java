@@ -11,6 +11,7 @@ import java.awt.event.*;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.List;
 import java.util.Queue;
 
 import javax.sip.*;
@@ -62,6 +63,8 @@ public class OperationSetDesktopSharingClientSipImpl
             if (CallPeerState.DISCONNECTED.equals(state)
                     || CallPeerState.FAILED.equals(state))
             {
+                inputBatcher.remove(peer);
+
                 /* if the peer is disconnected or call has failed, remove
                  * corresponding subscription.
                  */
@@ -91,7 +94,8 @@ public class OperationSetDesktopSharingClientSipImpl
     private final TimerScheduler timer = new TimerScheduler();
 
     /**
-     * List of SIP NOTIFY messages.
+     * List of SIP NOTIFY messages, each of which carries a batch of input
+     * events.
      */
     private final Queue<String> inputEvents = new LinkedList<String>();
 
@@ -100,6 +104,28 @@ public class OperationSetDesktopSharingClientSipImpl
      */
     private final Object inputSync = new Object();
 
+    /**
+     * Batches the XML elements of the input events into NOTIFY messages.
+     */
+    private final InputEventBatcher<String> inputBatcher
+        = new InputEventBatcher<String>()
+        {
+            @Override
+            protected void send(CallPeer callPeer, List<String> events)
+            {
+                synchronized(inputSync)
+                {
+                    for (String xml
+                            : DesktopSharingProtocolSipImpl.getBatchXML(
+                                    events))
+                    {
+                        inputEvents.add(xml);
+                        notifySubscriptions(callPeer);
+                    }
+                }
+            }
+        };
+
     /**
      * Initializes a new <tt>OperationSetDesktopSharingClientSipImpl</tt>.
      *
@@ -225,8 +251,8 @@ public class OperationSetDesktopSharingClientSipImpl
      */
     public void sendKeyboardEvent(CallPeer callPeer, KeyEvent event)
     {
-        /* build a SIP NOTIFY with the corresponding keyboard event
-         * and send it
+        /* queue the corresponding keyboard event, it is sent with the next
+         * batch in a SIP NOTIFY
          */
         int keyChar = event.getKeyChar();
         int keyCode
@@ -242,24 +268,20 @@ public class OperationSetDesktopSharingClientSipImpl
         switch(event.getID())
         {
         case KeyEvent.KEY_TYPED:
-            msg = DesktopSharingProtocolSipImpl.getKeyTypedXML(keyCode);
+            msg = DesktopSharingProtocolSipImpl.getKeyTypedElement(keyCode);
             break;
         case KeyEvent.KEY_PRESSED:
-            msg = DesktopSharingProtocolSipImpl.getKeyPressedXML(keyCode);
+            msg = DesktopSharingProtocolSipImpl.getKeyPressedElement(keyCode);
             break;
         case KeyEvent.KEY_RELEASED:
-            msg = DesktopSharingProtocolSipImpl.getKeyReleasedXML(keyCode);
+            msg = DesktopSharingProtocolSipImpl.getKeyReleasedElement(keyCode);
             break;
         default:
             /* ignore */
             return;
         }
 
-        synchronized(inputSync)
-        {
-            inputEvents.add(msg);
-            notifySubscriptions(callPeer);
-        }
+        inputBatcher.add(callPeer, msg, false);
     }
 
     /**
@@ -275,8 +297,8 @@ public class OperationSetDesktopSharingClientSipImpl
     public void sendMouseEvent(CallPeer callPeer, MouseEvent event,
             Dimension videoPanelSize)
     {
-        /* build a SIP NOTIFY with the corresponding mouse event
-         * and send it
+        /* queue the corresponding mouse event, it is sent with the next
+         * batch in a SIP NOTIFY
          */
         String msg = null;
 
@@ -291,13 +313,9 @@ public class OperationSetDesktopSharingClientSipImpl
         double x = (p.getX() / videoPanelSize.width);
         double y = (p.getY() / videoPanelSize.height);
 
-        msg = DesktopSharingProtocolSipImpl.getMouseMovedXML(x, y);
+        msg = DesktopSharingProtocolSipImpl.getMouseMovedElement(x, y);
 
-        synchronized(inputSync)
-        {
-            inputEvents.add(msg);
-            notifySubscriptions(callPeer);
-        }
+        inputBatcher.add(callPeer, msg, true);
     }
 
     /**
@@ -309,8 +327,8 @@ public class OperationSetDesktopSharingClientSipImpl
      */
     public void sendMouseEvent(CallPeer callPeer, MouseEvent event)
     {
-        /* build a SIP NOTIFY with the corresponding mouse event
-         * and send it
+        /* queue the corresponding mouse event, it is sent with the next
+         * batch in a SIP NOTIFY
          */
         String msg = null;
 
@@ -320,16 +338,16 @@ public class OperationSetDesktopSharingClientSipImpl
         switch(event.getID())
         {
         case MouseEvent.MOUSE_PRESSED:
-            msg = DesktopSharingProtocolSipImpl.getMousePressedXML(
+            msg = DesktopSharingProtocolSipImpl.getMousePressedElement(
                     event.getModifiers());
             break;
         case MouseEvent.MOUSE_RELEASED:
-            msg = DesktopSharingProtocolSipImpl.getMouseReleasedXML(
+            msg = DesktopSharingProtocolSipImpl.getMouseReleasedElement(
                     event.getModifiers());
             break;
         case MouseEvent.MOUSE_WHEEL:
             MouseWheelEvent evt = (MouseWheelEvent)event;
-            msg = DesktopSharingProtocolSipImpl.getMouseWheelXML(
+            msg = DesktopSharingProtocolSipImpl.getMouseWheelElement(
                     evt.getWheelRotation());
             break;
         default:
@@ -337,11 +355,7 @@ public class OperationSetDesktopSharingClientSipImpl
             return;
         }
 
-        synchronized(inputSync)
-        {
-            inputEvents.add(msg);
-            notifySubscriptions(callPeer);
-        }
+        inputBatcher.add(callPeer, msg, false);
     }
 
     /**
@@ -416,6 +416,13 @@ public class OperationSetDesktopSharingServerSipImpl
          */
         private final CallPeerSipImpl callPeer;
 
+        /**
+         * The <tt>DocumentBuilder</tt> which parses the remote-info XML of the
+         * NOTIFY requests, reused from one request to the next because its
+         * creation costs more than the parsing of a batch of input events.
+         */
+        private DocumentBuilder documentBuilder;
+
         /**
          * Initializes a new <tt>RemoteControlSubscriberSubscription</tt>
          * instance which is to represent the subscription of the local peer to
@@ -489,10 +496,18 @@ public class OperationSetDesktopSharingServerSipImpl
 
                 try
                 {
-                    document
-                        = DocumentBuilderFactory.newInstance()
-                            .newDocumentBuilder()
-                                .parse(new ByteArrayInputStream(rawContent));
+                    synchronized (this)
+                    {
+                        if (documentBuilder == null)
+                        {
+                            documentBuilder
+                                = DocumentBuilderFactory.newInstance()
+                                    .newDocumentBuilder();
+                        }
+                        document
+                            = documentBuilder.parse(
+                                    new ByteArrayInputStream(rawContent));
+                    }
                 }
                 catch (IOException ioe)
                 {
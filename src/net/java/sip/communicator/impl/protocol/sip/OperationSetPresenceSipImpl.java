@@ -112,9 +112,9 @@ public class OperationSetPresenceSipImpl
     private final int pollingTaskPeriod;
 
     /**
-     * The task in charge of polling offline contacts
+     * The poller in charge of polling offline contacts
      */
-    private PollOfflineContactsTask pollingTask = null;
+    private volatile OfflineContactPoller poller = null;
 
     /**
      * If we should be totally silenced, just doing local operations
@@ -2848,23 +2848,48 @@ public class OperationSetPresenceSipImpl
       * @param contact the contact to poll
       */
      public void forcePollContact(ContactSipImpl contact)
+     {
+         pollContact(contact);
+     }
+
+     /**
+      * Sends a subscription request for this contact if we are not already
+      * subscribed to it.
+      *
+      * @param contact the contact to poll
+      * @return <tt>true</tt> if a subscription request has been sent
+      */
+     boolean pollContact(ContactSipImpl contact)
      {
          if (this.presenceEnabled == false
              || !contact.isResolvable()
              || !contact.isPersistent())
-             return;
+             return false;
 
          // Attempt to subscribe.
          try
          {
-             subscriber.poll(new PresenceSubscriberSubscription(contact));
+             return
+                 subscriber.poll(new PresenceSubscriberSubscription(contact));
          }
          catch (OperationFailedException ex)
          {
              logger.error("Failed to create and send the subcription", ex);
+             return false;
          }
      }
 
+     /**
+      * Returns the contacts which are to be polled, each of them once even if
+      * it is in several groups.
+      *
+      * @return the contacts which are to be polled
+      */
+     List<ContactSipImpl> getPolledContacts()
+     {
+         return ssContactList.getUniqueContacts(ssContactList.getRootGroup());
+     }
+
     /**
      * Unsubscribe to every contact.
      */
@@ -2957,8 +2982,11 @@ public class OperationSetPresenceSipImpl
           */
          if (republishTask != null)
              republishTask = null;
-         if (pollingTask != null)
-             pollingTask = null;
+         if (poller != null)
+         {
+             poller.stop();
+             poller = null;
+         }
 
          timer.cancel();
      }
@@ -3018,50 +3046,6 @@ public class OperationSetPresenceSipImpl
          }
      }
 
-     /**
-      * A task handling polling of offline contacts.
-      */
-     private class PollOfflineContactsTask extends TimerTask
-     {
-         /**
-          * Check if we can't subscribe to this contact now
-          */
-         @Override
-        public void run()
-         {
-             // send a subscription for every contact
-             Iterator<Contact> rootContactsIter
-                = getServerStoredContactListRoot().contacts();
-
-            while (rootContactsIter.hasNext())
-            {
-                ContactSipImpl contact =
-                    (ContactSipImpl) rootContactsIter.next();
-
-                 // poll this contact
-                 forcePollContact(contact);
-             }
-
-             Iterator<ContactGroup> groupsIter
-                 = getServerStoredContactListRoot().subgroups();
-
-             while (groupsIter.hasNext())
-             {
-                 ContactGroup group = groupsIter.next();
-                 Iterator<Contact> contactsIter = group.contacts();
-
-                 while (contactsIter.hasNext())
-                 {
-                     ContactSipImpl contact
-                         = (ContactSipImpl) contactsIter.next();
-
-                     // poll this contact
-                     forcePollContact(contact);
-                 }
-             }
-         }
-     }
-
      /**
      * Will wait for every SUBSCRIBE, NOTIFY and PUBLISH transaction
      * to finish before continuing the unsubscription
@@ -3146,23 +3130,15 @@ public class OperationSetPresenceSipImpl
             * anything because we've already set it up in response to
             * the first REGISTERED.
             */
-            if ((!presenceEnabled) || (pollingTask != null))
+            if ((!presenceEnabled) || (poller != null))
             {
                 return;
             }
 
-            // Subcribe to each contact in the list
-            for (ContactSipImpl contact : ssContactList
-                    .getAllContacts(ssContactList.getRootGroup()))
-            {
-                forcePollContact(contact);
-            }
-
-            // create the new polling task
-            pollingTask = new PollOfflineContactsTask();
-
-            // start polling the offline contacts
-            timer.schedule(pollingTask, pollingTaskPeriod, pollingTaskPeriod);
+            // Subcribe to each contact in the list and then poll the offline
+            // ones
+            poller = new OfflineContactPoller(this, pollingTaskPeriod, timer);
+            poller.start();
 
             if(this.useDistantPA)
             {
@@ -3489,6 +3465,12 @@ public class OperationSetPresenceSipImpl
             ResponseEvent responseEvent,
             int statusCode)
         {
+            OfflineContactPoller poller
+                = OperationSetPresenceSipImpl.this.poller;
+
+            if (poller != null)
+                poller.pollFailed(contact);
+
             // we probably won't be able to communicate with the contact
             changePresenceStatusForContact(
                 contact, sipStatusEnum.getStatus(
@@ -3512,6 +3494,12 @@ public class OperationSetPresenceSipImpl
             ResponseEvent responseEvent,
             int statusCode)
         {
+            OfflineContactPoller poller
+                = OperationSetPresenceSipImpl.this.poller;
+
+            if (poller != null)
+                poller.pollSucceeded(contact);
+
             switch (statusCode)
             {
             case Response.OK:
@@ -9,6 +9,7 @@ package net.java.sip.communicator.impl.protocol.sip;
 import java.util.*;
 
 import net.java.sip.communicator.service.certificate.*;
+import net.java.sip.communicator.service.dns.*;
 import net.java.sip.communicator.service.gui.*;
 import net.java.sip.communicator.service.hid.*;
 import net.java.sip.communicator.service.netaddr.*;
@@ -321,6 +322,20 @@ public class SipActivator
         return fileService;
     }
 
+    /**
+     * Returns the <tt>AsyncResolver</tt> currently registered in the bundle
+     * context or <tt>null</tt> if the DNS bundle has not registered it (yet),
+     * in which case lookups are to be performed synchronously.
+     *
+     * @return the <tt>AsyncResolver</tt> or <tt>null</tt>
+     */
+    public static AsyncResolver getAsyncResolver()
+    {
+        if(bundleContext == null)
+            return null;
+        return ServiceUtils.getService(bundleContext, AsyncResolver.class);
+    }
+
     /**
      * Called when this bundle is stopped so the Framework can perform the
      * bundle-specific activities necessary to stop the bundle.
@@ -81,6 +81,48 @@ public class SipStackSharing
     private final Set<ProtocolProviderServiceSipImpl> listeners
         = new HashSet<ProtocolProviderServiceSipImpl>();
 
+    /**
+     * A read-only copy of <tt>listeners</tt>, replaced whenever it changes so
+     * that dispatching does not have to copy it.
+     */
+    private volatile Set<ProtocolProviderServiceSipImpl> listenersSnapshot
+        = Collections.emptySet();
+
+    /**
+     * The candidate recipients by the user ID of their accounts, replaced
+     * whenever <tt>listeners</tt> changes. The lists are never modified once
+     * they have been published.
+     */
+    private volatile Map<String, List<ProtocolProviderServiceSipImpl>>
+        listenersByUserID
+            = Collections.emptyMap();
+
+    /**
+     * The maximum number of Call-IDs remembered in
+     * <tt>targetsByCallID</tt>.
+     */
+    private static final int MAX_TARGETS_BY_CALL_ID = 512;
+
+    /**
+     * The recipients which out-of-dialog requests have been dispatched to, by
+     * Call-ID, so that the requests which follow with the same Call-ID before
+     * a dialog is marked are dispatched without looking at their addresses.
+     * The least recently used Call-IDs are forgotten first.
+     */
+    private final Map<String, ProtocolProviderServiceSipImpl> targetsByCallID
+        = new LinkedHashMap<String, ProtocolProviderServiceSipImpl>(
+                16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 0L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, ProtocolProviderServiceSipImpl> eldest)
+            {
+                return size() > MAX_TARGETS_BY_CALL_ID;
+            }
+        };
+
     /**
      * The property indicating the preferred UDP and TCP
      * port to bind to for clear communications.
@@ -160,6 +202,7 @@ public class SipStackSharing
             if(this.listeners.size() == 0)
                 startListening();
             this.listeners.add(listener);
+            indexSipListeners();
             if (logger.isTraceEnabled())
                 logger.trace(this.listeners.size() + " listeners now");
         }
@@ -177,6 +220,7 @@ public class SipStackSharing
         synchronized(this.listeners)
         {
             this.listeners.remove(listener);
+            indexSipListeners();
 
             int listenerCount = listeners.size();
             if (logger.isTraceEnabled())
@@ -184,19 +228,53 @@ public class SipStackSharing
             if(listenerCount == 0)
                 stopListening();
         }
+
+        synchronized (targetsByCallID)
+        {
+            targetsByCallID.values().removeAll(
+                    Collections.singleton(listener));
+        }
     }
 
     /**
-     * Returns a copy of the <tt>listeners</tt> (= candidate recipients) set.
-     *
-     * @return a copy of the <tt>listeners</tt> set.
+     * Rebuilds the indexes of the <tt>listeners</tt> after they have changed.
+     * Must be called with the lock of <tt>listeners</tt> held.
      */
-    private Set<ProtocolProviderServiceSipImpl> getSipListeners()
+    private void indexSipListeners()
     {
-        synchronized(this.listeners)
+        Map<String, List<ProtocolProviderServiceSipImpl>> byUserID
+            = new HashMap<String, List<ProtocolProviderServiceSipImpl>>();
+
+        for (ProtocolProviderServiceSipImpl listener : listeners)
         {
-            return new HashSet<ProtocolProviderServiceSipImpl>(this.listeners);
+            String userID = listener.getAccountID().getUserID();
+            List<ProtocolProviderServiceSipImpl> userListeners
+                = byUserID.get(userID);
+
+            if (userListeners == null)
+            {
+                userListeners
+                    = new ArrayList<ProtocolProviderServiceSipImpl>(1);
+                byUserID.put(userID, userListeners);
+            }
+            userListeners.add(listener);
         }
+
+        listenersByUserID = byUserID;
+        listenersSnapshot
+            = Collections.unmodifiableSet(
+                    new HashSet<ProtocolProviderServiceSipImpl>(listeners));
+    }
+
+    /**
+     * Returns a read-only copy of the <tt>listeners</tt> (= candidate
+     * recipients) set.
+     *
+     * @return a read-only copy of the <tt>listeners</tt> set.
+     */
+    private Set<ProtocolProviderServiceSipImpl> getSipListeners()
+    {
+        return listenersSnapshot;
     }
 
     /**
@@ -516,6 +594,16 @@ public class SipStackSharing
     {
         try
         {
+            CallIdHeader callIdHeader = event.getDialog().getCallId();
+
+            if (callIdHeader != null)
+            {
+                synchronized (targetsByCallID)
+                {
+                    targetsByCallID.remove(callIdHeader.getCallId());
+                }
+            }
+
             ProtocolProviderServiceSipImpl recipient
                 = (ProtocolProviderServiceSipImpl) SipApplicationData
                     .getApplicationData(event.getDialog(),
@@ -815,8 +903,11 @@ public class SipStackSharing
     /**
      * Find the <tt>ProtocolProviderServiceSipImpl</tt> (one of our
      * "candidate recipient" listeners) which this <tt>request</tt> should be
-     * dispatched to. The strategy is to look first at the request URI, and
-     * then at the To field to find a matching candidate for dispatching.
+     * dispatched to. The strategy is to look first at the Call-ID, which maps
+     * to the candidate an earlier request of the same call was dispatched to
+     * if the user of the request URI is still the one of that candidate, then
+     * at the request URI, and then at the To field to find a matching
+     * candidate for dispatching.
      * Note that this method takes a <tt>Request</tt> as param, and not a
      * <tt>ServerTransaction</tt>, because sometimes <tt>RequestEvent</tt>s
      * have no associated <tt>ServerTransaction</tt>.
@@ -832,44 +923,99 @@ public class SipStackSharing
             return null;
         }
 
-        List<ProtocolProviderServiceSipImpl> currentListenersCopy
-            = new ArrayList<ProtocolProviderServiceSipImpl>(
-                                this.getSipListeners());
+        CallIdHeader callIdHeader
+            = (CallIdHeader) request.getHeader(CallIdHeader.NAME);
+        String callID
+            = (callIdHeader == null) ? null : callIdHeader.getCallId();
 
-        // Let's first narrow down candidate choice by comparing
-        // addresses and ports (no point in delivering to a provider with a
-        // non matching IP address  since they will reject it anyway).
-        filterByAddress(currentListenersCopy, request);
+        if (callID != null)
+        {
+            ProtocolProviderServiceSipImpl target;
 
-        if(currentListenersCopy.size() == 0)
+            synchronized (targetsByCallID)
+            {
+                target = targetsByCallID.get(callID);
+            }
+            /*
+             * The Call-ID is chosen by the sender, so it is trusted only if
+             * the request is still addressed to the account of the candidate
+             * and comes from its connection.
+             */
+            if ((target != null)
+                    && request.getRequestURI().isSipURI()
+                    && getSipListeners(
+                                ((SipURI) request.getRequestURI()).getUser(),
+                                request)
+                            .contains(target))
+            {
+                if (logger.isTraceEnabled())
+                    logger.trace("Will dispatch to \""
+                            + target.getAccountID() + "\" because of the "
+                            + "Call-ID");
+                return target;
+            }
+        }
+
+        ProtocolProviderServiceSipImpl target = findTargetForUser(request);
+
+        if ((target != null) && (callID != null))
         {
-            logger.error("no listeners");
-            return null;
+            synchronized (targetsByCallID)
+            {
+                targetsByCallID.put(callID, target);
+            }
         }
+        return target;
+    }
+
+    /**
+     * Returns the candidate recipients whose accounts have a specific user ID
+     * and which may receive a specific request.
+     *
+     * @param userID the user ID.
+     * @param request the <tt>Request</tt> to find a recipient for.
+     * @return a modifiable list of the candidate recipients.
+     */
+    private List<ProtocolProviderServiceSipImpl> getSipListeners(
+            String userID,
+            Request request)
+    {
+        List<ProtocolProviderServiceSipImpl> userListeners
+            = (userID == null) ? null : listenersByUserID.get(userID);
+
+        if (userListeners == null)
+            return new ArrayList<ProtocolProviderServiceSipImpl>(0);
+
+        List<ProtocolProviderServiceSipImpl> candidates
+            = new ArrayList<ProtocolProviderServiceSipImpl>(userListeners);
+
+        // No point in delivering to a provider with a non matching IP
+        // address since it will reject it anyway.
+        filterByAddress(candidates, request);
+        return candidates;
+    }
 
+    /**
+     * Find the <tt>ProtocolProviderServiceSipImpl</tt> which a request should
+     * be dispatched to by looking at the user of its request URI, and then at
+     * its To field. The candidates are looked up by user ID in
+     * <tt>listenersByUserID</tt>.
+     *
+     * @param request the <tt>Request</tt> to find a recipient for.
+     * @return a suitable <tt>ProtocolProviderServiceSipImpl</tt>.
+     */
+    private ProtocolProviderServiceSipImpl findTargetForUser(Request request)
+    {
         URI requestURI = request.getRequestURI();
 
         if(requestURI.isSipURI())
         {
             String requestUser = ((SipURI) requestURI).getUser();
 
-            List<ProtocolProviderServiceSipImpl> candidates =
-                new ArrayList<ProtocolProviderServiceSipImpl>();
-
             // check if the Request-URI username is
             // one of ours usernames
-            for(ProtocolProviderServiceSipImpl listener : currentListenersCopy)
-            {
-                String ourUserID = listener.getAccountID().getUserID();
-                //logger.trace(ourUserID + " *** " + requestUser);
-                if(ourUserID.equals(requestUser))
-                {
-                    if (logger.isTraceEnabled())
-                        logger.trace("suitable candidate found: "
-                                + listener.getAccountID());
-                    candidates.add(listener);
-                }
-            }
+            List<ProtocolProviderServiceSipImpl> candidates
+                = getSipListeners(requestUser, request);
 
             // the perfect match
             // every other case is approximation
@@ -949,6 +1095,38 @@ public class SipStackSharing
                 return target;
             }
 
+            // the Request-URI may carry another username than our AOR, e.g.
+            // when a proxy has rewritten it, so check the To header field
+            URI toURI = ((ToHeader) request
+                    .getHeader(ToHeader.NAME)).getAddress().getURI();
+
+            if (toURI.isSipURI())
+            {
+                candidates
+                    = getSipListeners(((SipURI) toURI).getUser(), request);
+                if (!candidates.isEmpty())
+                {
+                    ProtocolProviderServiceSipImpl target = candidates.get(0);
+
+                    if (logger.isDebugEnabled())
+                        logger.debug("Will dispatch to \""
+                                + target.getAccountID() + "\" because "
+                                + "the username in the To header is ours");
+                    return target;
+                }
+            }
+
+            List<ProtocolProviderServiceSipImpl> currentListenersCopy
+                = new ArrayList<ProtocolProviderServiceSipImpl>(
+                        getSipListeners());
+
+            filterByAddress(currentListenersCopy, request);
+            if(currentListenersCopy.size() == 0)
+            {
+                logger.error("no listeners");
+                return null;
+            }
+
             // fallback on any account
             ProtocolProviderServiceSipImpl target =
                 currentListenersCopy.iterator().next();
@@ -1,399 +1,617 @@
-/*
- * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
- *
- * Distributable under LGPL license.
- * See terms of license at gnu.org.
- */
-package net.java.sip.communicator.impl.protocol.sip.net;
-
-import static javax.sip.ListeningPoint.TCP;
-import static javax.sip.ListeningPoint.TLS;
-import static javax.sip.ListeningPoint.UDP;
-import static net.java.sip.communicator.service.protocol.ProtocolProviderFactory.SERVER_ADDRESS;
-import static net.java.sip.communicator.service.protocol.ProtocolProviderFactory.USER_ID;
-
-import java.net.*;
-import java.text.*;
-
-import javax.sip.*;
-
-import net.java.sip.communicator.impl.protocol.sip.*;
-import net.java.sip.communicator.service.dns.*;
-import net.java.sip.communicator.util.*;
-
-/**
- * Implementation of the autodetect proxy connection. Tries to resolve a SIP-
- * server by querying DNS in this order: NAPTR-SRV-A; SRV-A; A.
- *
- * @author Ingo Bauersachs
- */
-public class AutoProxyConnection
-    extends ProxyConnection
-{
-    private enum State
-    {
-        New,
-        Naptr,
-        NaptrSrv,
-        NaptrSrvHosts,
-        NaptrSrvHostIPs,
-        Srv,
-        SrvHosts,
-        SrvHostIPs,
-        Hosts,
-        IP
-    }
-
-    /**
-     * Wrapper around {@link NetworkUtils} to support Unit Tests.
-     */
-    protected static class LocalNetworkUtils
-    {
-        public InetAddress getInetAddress(String address)
-            throws UnknownHostException
-        {
-            return NetworkUtils.getInetAddress(address);
-        }
-
-        public String[][] getNAPTRRecords(String address)
-            throws ParseException, DnssecException
-        {
-            return NetworkUtils.getNAPTRRecords(address);
-        }
-
-        public SRVRecord[] getSRVRecords(String service, String proto,
-            String address) throws ParseException, DnssecException
-        {
-            return NetworkUtils.getSRVRecords(service, proto, address);
-        }
-
-        public InetSocketAddress[] getAandAAAARecords(String target, int port)
-            throws ParseException, DnssecException
-        {
-            return NetworkUtils.getAandAAAARecords(target, port);
-        }
-
-        public boolean isValidIPAddress(String address)
-        {
-            return NetworkUtils.isValidIPAddress(address);
-        }
-
-        public SRVRecord[] getSRVRecords(String domain)
-            throws ParseException, DnssecException
-        {
-            return NetworkUtils.getSRVRecords(domain);
-        }
-    }
-
-    private final static Logger logger
-        = Logger.getLogger(AutoProxyConnection.class);
-
-    private State state;
-    private String address;
-    private final String defaultTransport;
-    private LocalNetworkUtils nu = new LocalNetworkUtils();
-
-    private final static String[] transports = new String[]
-    {
-        ListeningPoint.TLS,
-        ListeningPoint.TCP,
-        ListeningPoint.UDP
-    };
-    private boolean hadSrvResults;
-    private String[][] naptrRecords;
-    private int naptrIndex;
-    private SRVRecord[] srvRecords;
-    private int srvRecordsIndex;
-    private int srvTransportIndex;
-    private InetSocketAddress socketAddresses[];
-    private int socketAddressIndex;
-
-    /**
-     * Creates a new instance of this class. Uses the server from the account.
-     *
-     * @param account the account of this SIP protocol instance
-     * @param defaultTransport the default transport to use when DNS does not
-     *            provide a protocol through NAPTR or SRV
-     */
-    public AutoProxyConnection( SipAccountIDImpl account,
-                                String defaultTransport )
-    {
-        super(account);
-        this.defaultTransport = defaultTransport;
-        reset();
-    }
-
-    /**
-     * Creates a new instance of this class. Uses the supplied address instead
-     * of the server address from the account.
-     *
-     * @param account the account of this SIP protocol instance
-     * @param address the domain on which to perform autodetection
-     * @param defaultTransport the default transport to use when DNS does not
-     *            provide a protocol through NAPTR or SRV
-     */
-    public AutoProxyConnection( SipAccountIDImpl account, String address,
-                                String defaultTransport )
-    {
-        super(account);
-        this.defaultTransport = defaultTransport;
-        reset();
-        this.address = address;
-    }
-
-    /**
-     * Sets the NetworkUtils wrapper. Used for Unit-Testing.
-     * @param nu the the NetworkUtils wrapper.
-     */
-    protected void setNetworkUtils(LocalNetworkUtils nu)
-    {
-        this.nu = nu;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see net.java.sip.communicator.impl.protocol.sip.net.ProxyConnection#
-     * getNextAddressFromDns()
-     */
-    @Override
-    protected boolean getNextAddressFromDns()
-        throws DnssecException
-    {
-        try
-        {
-            return getNextAddressInternal();
-        }
-        catch(ParseException ex)
-        {
-            logger.error("Unable to get DNS data for <" + address
-                + "> in state" + state, ex);
-        }
-        return false;
-    }
-
-    /**
-     * Gets the next address from DNS.
-     *
-     * @throws DnssecException When a DNSSEC failure occured during the lookup.
-     * @throws ParseException When a domain name (possibly returned from DNS
-     *             itself) is invalid.
-     */
-    private boolean getNextAddressInternal()
-        throws DnssecException, ParseException
-    {
-        switch(state)
-        {
-            case New:
-                state = State.Naptr;
-                return getNextAddressFromDns();
-            case IP:
-                if(socketAddressIndex == 0)
-                {
-                    socketAddressIndex++;
-                    try
-                    {
-                        socketAddress = new InetSocketAddress(
-                            nu.getInetAddress(address),
-                            ListeningPoint.TLS.equalsIgnoreCase(transport)
-                                ? ListeningPoint.PORT_5061
-                                : ListeningPoint.PORT_5060
-                        );
-                    }
-                    catch (UnknownHostException e)
-                    {
-                        //this is not supposed to happen
-                        logger.error("invalid IP address: " + address, e);
-                        return false;
-                    }
-                    transport = defaultTransport;
-                    return true;
-                }
-                return false;
-            case Naptr:
-                naptrRecords = nu.getNAPTRRecords(address);
-                if(naptrRecords != null && naptrRecords.length > 0)
-                {
-                    state = State.NaptrSrv;
-                    naptrIndex = 0;
-                }
-                else
-                {
-                    hadSrvResults = false;
-                    state = State.Srv;
-                    srvTransportIndex = 0;
-                }
-
-                return getNextAddressFromDns();
-            case NaptrSrv:
-                for(; naptrIndex < naptrRecords.length; naptrIndex++)
-                {
-                    srvRecords = nu.getSRVRecords(
-                        naptrRecords[naptrIndex][2]);
-                    if(srvRecords != null && srvRecords.length > 0)
-                    {
-                        state = State.NaptrSrvHosts;
-                        if(TLS.equalsIgnoreCase(naptrRecords[naptrIndex][1]))
-                            transport = TLS;
-                        else if(TCP.equalsIgnoreCase(naptrRecords[naptrIndex][1]))
-                            transport = TCP;
-                        else
-                            transport = UDP;
-                        srvRecordsIndex = 0;
-                        if(getNextAddressFromDns())
-                        {
-                            naptrIndex++;
-                            return true;
-                        }
-                    }
-                }
-                return false; //no more naptr's
-            case NaptrSrvHosts:
-                for(; srvRecordsIndex < srvRecords.length; srvRecordsIndex++)
-                {
-                    socketAddresses = nu.getAandAAAARecords(
-                        srvRecords[srvRecordsIndex].getTarget(),
-                        srvRecords[srvRecordsIndex].getPort());
-                    if(socketAddresses != null && socketAddresses.length > 0)
-                    {
-                        state = State.NaptrSrvHostIPs;
-                        socketAddressIndex = 0;
-                        if(getNextAddressFromDns())
-                        {
-                            srvRecordsIndex++;
-                            return true;
-                        }
-                    }
-                }
-                state = State.NaptrSrv;
-                return getNextAddressFromDns(); //backtrack to next naptr
-            case NaptrSrvHostIPs:
-                if(socketAddressIndex >= socketAddresses.length)
-                {
-                    state = State.NaptrSrvHosts;
-                    return getNextAddressFromDns(); //backtrack to next srv
-                }
-                socketAddress = socketAddresses[socketAddressIndex];
-                socketAddressIndex++;
-                return true;
-            case Srv:
-                for(;srvTransportIndex < transports.length; srvTransportIndex++)
-                {
-                    srvRecords = nu.getSRVRecords(
-                        (TLS.equals(transports[srvTransportIndex])
-                            ? "sips"
-                            : "sip"),
-                        (UDP.equalsIgnoreCase(transports[srvTransportIndex])
-                            ? UDP
-                            : TCP),
-                        address);
-                    if(srvRecords != null && srvRecords.length > 0)
-                    {
-                        hadSrvResults = true;
-                        state = State.SrvHosts;
-                        srvRecordsIndex = 0;
-                        transport = transports[srvTransportIndex];
-                        if(getNextAddressFromDns())
-                        {
-                            srvTransportIndex++;
-                            return true;
-                        }
-                    }
-                }
-                if(!hadSrvResults)
-                {
-                    state = State.Hosts;
-                    socketAddressIndex = 0;
-                    return getNextAddressFromDns();
-                }
-                return false;
-            case SrvHosts:
-                if(srvRecordsIndex >= srvRecords.length)
-                {
-                    state = State.Srv;
-                    return getNextAddressFromDns(); //backtrack to next srv record
-                }
-                for(; srvRecordsIndex < srvRecords.length; srvRecordsIndex++)
-                {
-                    socketAddresses = nu.getAandAAAARecords(
-                        srvRecords[srvRecordsIndex].getTarget(),
-                        srvRecords[srvRecordsIndex].getPort());
-                    if(socketAddresses != null && socketAddresses.length > 0)
-                    {
-                        state = State.SrvHostIPs;
-                        socketAddressIndex = 0;
-                        if(getNextAddressFromDns())
-                        {
-                            srvRecordsIndex++;
-                            return true;
-                        }
-                    }
-                }
-                return false;
-            case SrvHostIPs:
-                if(socketAddressIndex >= socketAddresses.length)
-                {
-                    state = State.SrvHosts;
-                    return getNextAddressFromDns();
-                }
-                socketAddress = socketAddresses[socketAddressIndex];
-                socketAddressIndex++;
-                return true;
-            case Hosts:
-                transport = defaultTransport;
-
-                if(socketAddresses == null)
-                {
-                    socketAddresses = nu.getAandAAAARecords(
-                        address,
-                        ListeningPoint.PORT_5060);
-                }
-
-                if(socketAddresses != null && socketAddresses.length > 0
-                    && socketAddressIndex < socketAddresses.length)
-                {
-                    socketAddress = socketAddresses[socketAddressIndex++];
-                    return true;
-                }
-                return false;
-        }
-        return false;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see
-     * net.java.sip.communicator.impl.protocol.sip.net.ProxyConnection#reset()
-     */
-    @Override
-    public void reset()
-    {
-        super.reset();
-        state = State.New;
-
-        //determine the hostname of the proxy for autodetection:
-        //1) server part of the user ID
-        //2) name of the registrar when the user ID contains no domain
-        String userID =  account.getAccountPropertyString(USER_ID);
-        int domainIx = userID.indexOf("@");
-        if(domainIx > 0)
-        {
-            address = userID.substring(domainIx + 1);
-        }
-        else
-        {
-            address = account.getAccountPropertyString(SERVER_ADDRESS);
-            if(address == null || address.trim().length() == 0)
-            {
-                //registrarless account
-                return;
-            }
-        }
-        if(nu.isValidIPAddress(address))
-        {
-            state = State.IP;
-            socketAddressIndex = 0;
-        }
-    }
-}
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.impl.protocol.sip.net;
+
+import static javax.sip.ListeningPoint.TCP;
+import static javax.sip.ListeningPoint.TLS;
+import static javax.sip.ListeningPoint.UDP;
+import static net.java.sip.communicator.service.protocol.ProtocolProviderFactory.SERVER_ADDRESS;
+import static net.java.sip.communicator.service.protocol.ProtocolProviderFactory.USER_ID;
+
+import java.net.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.sip.*;
+
+import net.java.sip.communicator.impl.protocol.sip.*;
+import net.java.sip.communicator.service.dns.*;
+import net.java.sip.communicator.util.*;
+
+/**
+ * Implementation of the autodetect proxy connection. Tries to resolve a SIP-
+ * server by querying DNS in this order: NAPTR-SRV-A; SRV-A; A.
+ *
+ * @author Ingo Bauersachs
+ */
+public class AutoProxyConnection
+    extends ProxyConnection
+{
+    private enum State
+    {
+        New,
+        Naptr,
+        NaptrSrv,
+        NaptrSrvHosts,
+        NaptrSrvHostIPs,
+        Srv,
+        SrvHosts,
+        SrvHostIPs,
+        Hosts,
+        IP
+    }
+
+    /**
+     * Wrapper around {@link NetworkUtils} to support Unit Tests.
+     * <p>
+     * When an {@link AsyncResolver} is available, the lookups which are likely
+     * to follow a lookup are started in parallel as soon as possible (the SRV
+     * records of every transport and the addresses of the domain along with
+     * its NAPTR records, the addresses of all the targets of SRV records) and
+     * picked up when the state machine asks for them. The addresses of a
+     * host looked up for itself rather than as a SRV target are used as soon
+     * as those of one address family are usable.
+     * </p>
+     */
+    protected static class LocalNetworkUtils
+    {
+        /**
+         * The number of milliseconds during which the result of a lookup
+         * started ahead of time may be used.
+         */
+        private static final long PREFETCH_VALIDITY = 30000;
+
+        /**
+         * The lookups started ahead of time, by query.
+         */
+        private final Map<String, Prefetch> prefetched
+            = new HashMap<String, Prefetch>();
+
+        public InetAddress getInetAddress(String address)
+            throws UnknownHostException
+        {
+            return NetworkUtils.getInetAddress(address);
+        }
+
+        public String[][] getNAPTRRecords(String address)
+            throws ParseException, DnssecException
+        {
+            AsyncResolver resolver = SipActivator.getAsyncResolver();
+            if(resolver != null)
+            {
+                // most domains have no NAPTR records, in which case the SRV
+                // records of every transport and then the addresses of the
+                // domain itself are needed
+                for(String transport : transports)
+                {
+                    String service = getSrvService(transport);
+                    String proto = getSrvProto(transport);
+
+                    prefetch(
+                        getSrvKey("_" + service + "._" + proto + "." + address),
+                        resolver.resolveSRV(service, proto, address));
+                }
+                prefetch(
+                    getAddressKey(address, ListeningPoint.PORT_5060),
+                    resolver.resolveFirstUsable(
+                        address, ListeningPoint.PORT_5060));
+            }
+
+            String[][] naptrRecords = NetworkUtils.getNAPTRRecords(address);
+
+            if(resolver != null && naptrRecords != null)
+            {
+                for(String[] naptrRecord : naptrRecords)
+                {
+                    prefetch(getSrvKey(naptrRecord[2]),
+                        resolver.resolveSRV(naptrRecord[2]));
+                }
+            }
+            return naptrRecords;
+        }
+
+        @SuppressWarnings("unchecked")
+        public SRVRecord[] getSRVRecords(String service, String proto,
+            String address) throws ParseException, DnssecException
+        {
+            Future<?> lookup = take(
+                getSrvKey("_" + service + "._" + proto + "." + address));
+            SRVRecord[] srvRecords
+                = (lookup == null)
+                    ? NetworkUtils.getSRVRecords(service, proto, address)
+                    : NetworkUtils.getDnsResult(
+                        (Future<SRVRecord[]>) lookup);
+
+            prefetchTargets(srvRecords);
+            return srvRecords;
+        }
+
+        @SuppressWarnings("unchecked")
+        public InetSocketAddress[] getAandAAAARecords(String target, int port)
+            throws ParseException, DnssecException
+        {
+            Future<?> lookup = take(getAddressKey(target, port));
+            if(lookup == null)
+            {
+                AsyncResolver resolver = SipActivator.getAsyncResolver();
+                if(resolver == null)
+                    return NetworkUtils.getAandAAAARecords(target, port);
+
+                // A and AAAA in parallel, done as soon as one is usable
+                lookup = resolver.resolveFirstUsable(target, port);
+            }
+            return NetworkUtils.getDnsResult(
+                (Future<InetSocketAddress[]>) lookup);
+        }
+
+        public boolean isValidIPAddress(String address)
+        {
+            return NetworkUtils.isValidIPAddress(address);
+        }
+
+        @SuppressWarnings("unchecked")
+        public SRVRecord[] getSRVRecords(String domain)
+            throws ParseException, DnssecException
+        {
+            Future<?> lookup = take(getSrvKey(domain));
+            SRVRecord[] srvRecords
+                = (lookup == null)
+                    ? NetworkUtils.getSRVRecords(domain)
+                    : NetworkUtils.getDnsResult(
+                        (Future<SRVRecord[]>) lookup);
+
+            prefetchTargets(srvRecords);
+            return srvRecords;
+        }
+
+        /**
+         * Starts the A and AAAA lookups of all the targets of
+         * <tt>srvRecords</tt>.
+         *
+         * @param srvRecords the SRV records whose targets will be needed.
+         */
+        private void prefetchTargets(SRVRecord[] srvRecords)
+        {
+            AsyncResolver resolver;
+            if(srvRecords == null
+                || (resolver = SipActivator.getAsyncResolver()) == null)
+                return;
+
+            List<Future<InetSocketAddress[]>> lookups
+                = resolver.resolveTargets(srvRecords);
+            for(int i = 0; i < srvRecords.length; i++)
+            {
+                prefetch(
+                    getAddressKey(
+                        srvRecords[i].getTarget(), srvRecords[i].getPort()),
+                    lookups.get(i));
+            }
+        }
+
+        /**
+         * Remembers a lookup started ahead of time.
+         *
+         * @param key the query of the lookup.
+         * @param lookup the pending result of the lookup.
+         */
+        private void prefetch(String key, Future<?> lookup)
+        {
+            Prefetch previous;
+            synchronized(prefetched)
+            {
+                previous = prefetched.put(key, new Prefetch(lookup));
+            }
+            if(previous != null)
+                previous.lookup.cancel(false);
+        }
+
+        /**
+         * Returns and forgets a lookup started ahead of time.
+         *
+         * @param key the query of the lookup.
+         * @return the pending result of the lookup or <tt>null</tt> if no
+         * recent lookup for <tt>key</tt> was started.
+         */
+        private Future<?> take(String key)
+        {
+            Prefetch prefetch;
+            synchronized(prefetched)
+            {
+                prefetch = prefetched.remove(key);
+            }
+            if(prefetch == null)
+                return null;
+            if(System.currentTimeMillis() - prefetch.timestamp
+                > PREFETCH_VALIDITY)
+            {
+                prefetch.lookup.cancel(false);
+                return null;
+            }
+            return prefetch.lookup;
+        }
+
+        /**
+         * Returns the key of a SRV lookup.
+         *
+         * @param domain the name of the SRV records.
+         * @return the key of the lookup.
+         */
+        private static String getSrvKey(String domain)
+        {
+            return "SRV " + domain.toLowerCase();
+        }
+
+        /**
+         * Returns the key of an A/AAAA lookup.
+         *
+         * @param target the name of the host.
+         * @param port the port of the returned addresses.
+         * @return the key of the lookup.
+         */
+        private static String getAddressKey(String target, int port)
+        {
+            return "A/AAAA " + target.toLowerCase() + ":" + port;
+        }
+
+        /**
+         * A lookup started ahead of time.
+         */
+        private static class Prefetch
+        {
+            /**
+             * The pending result of the lookup.
+             */
+            final Future<?> lookup;
+
+            /**
+             * The time the lookup was started.
+             */
+            final long timestamp = System.currentTimeMillis();
+
+            /**
+             * Creates a new instance.
+             *
+             * @param lookup the pending result of the lookup.
+             */
+            Prefetch(Future<?> lookup)
+            {
+                this.lookup = lookup;
+            }
+        }
+    }
+
+    /**
+     * Returns the SRV service to query for a transport.
+     *
+     * @param transport the transport (UDP, TCP or TLS).
+     * @return "sips" for TLS, "sip" otherwise.
+     */
+    private static String getSrvService(String transport)
+    {
+        return TLS.equals(transport) ? "sips" : "sip";
+    }
+
+    /**
+     * Returns the SRV protocol to query for a transport.
+     *
+     * @param transport the transport (UDP, TCP or TLS).
+     * @return UDP for UDP, TCP otherwise.
+     */
+    private static String getSrvProto(String transport)
+    {
+        return UDP.equalsIgnoreCase(transport) ? UDP : TCP;
+    }
+
+    private final static Logger logger
+        = Logger.getLogger(AutoProxyConnection.class);
+
+    private State state;
+    private String address;
+    private final String defaultTransport;
+    private LocalNetworkUtils nu = new LocalNetworkUtils();
+
+    private final static String[] transports = new String[]
+    {
+        ListeningPoint.TLS,
+        ListeningPoint.TCP,
+        ListeningPoint.UDP
+    };
+    private boolean hadSrvResults;
+    private String[][] naptrRecords;
+    private int naptrIndex;
+    private SRVRecord[] srvRecords;
+    private int srvRecordsIndex;
+    private int srvTransportIndex;
+    private InetSocketAddress socketAddresses[];
+    private int socketAddressIndex;
+
+    /**
+     * Creates a new instance of this class. Uses the server from the account.
+     *
+     * @param account the account of this SIP protocol instance
+     * @param defaultTransport the default transport to use when DNS does not
+     *            provide a protocol through NAPTR or SRV
+     */
+    public AutoProxyConnection( SipAccountIDImpl account,
+                                String defaultTransport )
+    {
+        super(account);
+        this.defaultTransport = defaultTransport;
+        reset();
+    }
+
+    /**
+     * Creates a new instance of this class. Uses the supplied address instead
+     * of the server address from the account.
+     *
+     * @param account the account of this SIP protocol instance
+     * @param address the domain on which to perform autodetection
+     * @param defaultTransport the default transport to use when DNS does not
+     *            provide a protocol through NAPTR or SRV
+     */
+    public AutoProxyConnection( SipAccountIDImpl account, String address,
+                                String defaultTransport )
+    {
+        super(account);
+        this.defaultTransport = defaultTransport;
+        reset();
+        this.address = address;
+    }
+
+    /**
+     * Sets the NetworkUtils wrapper. Used for Unit-Testing.
+     * @param nu the the NetworkUtils wrapper.
+     */
+    protected void setNetworkUtils(LocalNetworkUtils nu)
+    {
+        this.nu = nu;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see net.java.sip.communicator.impl.protocol.sip.net.ProxyConnection#
+     * getNextAddressFromDns()
+     */
+    @Override
+    protected boolean getNextAddressFromDns()
+        throws DnssecException
+    {
+        try
+        {
+            return getNextAddressInternal();
+        }
+        catch(ParseException ex)
+        {
+            logger.error("Unable to get DNS data for <" + address
+                + "> in state" + state, ex);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the next address from DNS.
+     *
+     * @throws DnssecException When a DNSSEC failure occured during the lookup.
+     * @throws ParseException When a domain name (possibly returned from DNS
+     *             itself) is invalid.
+     */
+    private boolean getNextAddressInternal()
+        throws DnssecException, ParseException
+    {
+        switch(state)
+        {
+            case New:
+                state = State.Naptr;
+                return getNextAddressFromDns();
+            case IP:
+                if(socketAddressIndex == 0)
+                {
+                    socketAddressIndex++;
+                    try
+                    {
+                        socketAddress = new InetSocketAddress(
+                            nu.getInetAddress(address),
+                            ListeningPoint.TLS.equalsIgnoreCase(transport)
+                                ? ListeningPoint.PORT_5061
+                                : ListeningPoint.PORT_5060
+                        );
+                    }
+                    catch (UnknownHostException e)
+                    {
+                        //this is not supposed to happen
+                        logger.error("invalid IP address: " + address, e);
+                        return false;
+                    }
+                    transport = defaultTransport;
+                    return true;
+                }
+                return false;
+            case Naptr:
+                naptrRecords = nu.getNAPTRRecords(address);
+                if(naptrRecords != null && naptrRecords.length > 0)
+                {
+                    state = State.NaptrSrv;
+                    naptrIndex = 0;
+                }
+                else
+                {
+                    hadSrvResults = false;
+                    state = State.Srv;
+                    srvTransportIndex = 0;
+                }
+
+                return getNextAddressFromDns();
+            case NaptrSrv:
+                for(; naptrIndex < naptrRecords.length; naptrIndex++)
+                {
+                    srvRecords = nu.getSRVRecords(
+                        naptrRecords[naptrIndex][2]);
+                    if(srvRecords != null && srvRecords.length > 0)
+                    {
+                        state = State.NaptrSrvHosts;
+                        if(TLS.equalsIgnoreCase(naptrRecords[naptrIndex][1]))
+                            transport = TLS;
+                        else if(TCP.equalsIgnoreCase(naptrRecords[naptrIndex][1]))
+                            transport = TCP;
+                        else
+                            transport = UDP;
+                        srvRecordsIndex = 0;
+                        if(getNextAddressFromDns())
+                        {
+                            naptrIndex++;
+                            return true;
+                        }
+                    }
+                }
+                return false; //no more naptr's
+            case NaptrSrvHosts:
+                for(; srvRecordsIndex < srvRecords.length; srvRecordsIndex++)
+                {
+                    socketAddresses = nu.getAandAAAARecords(
+                        srvRecords[srvRecordsIndex].getTarget(),
+                        srvRecords[srvRecordsIndex].getPort());
+                    if(socketAddresses != null && socketAddresses.length > 0)
+                    {
+                        state = State.NaptrSrvHostIPs;
+                        socketAddressIndex = 0;
+                        if(getNextAddressFromDns())
+                        {
+                            srvRecordsIndex++;
+                            return true;
+                        }
+                    }
+                }
+                state = State.NaptrSrv;
+                return getNextAddressFromDns(); //backtrack to next naptr
+            case NaptrSrvHostIPs:
+                if(socketAddressIndex >= socketAddresses.length)
+                {
+                    state = State.NaptrSrvHosts;
+                    return getNextAddressFromDns(); //backtrack to next srv
+                }
+                socketAddress = socketAddresses[socketAddressIndex];
+                socketAddressIndex++;
+                return true;
+            case Srv:
+                for(;srvTransportIndex < transports.length; srvTransportIndex++)
+                {
+                    srvRecords = nu.getSRVRecords(
+                        getSrvService(transports[srvTransportIndex]),
+                        getSrvProto(transports[srvTransportIndex]),
+                        address);
+                    if(srvRecords != null && srvRecords.length > 0)
+                    {
+                        hadSrvResults = true;
+                        state = State.SrvHosts;
+                        srvRecordsIndex = 0;
+                        transport = transports[srvTransportIndex];
+                        if(getNextAddressFromDns())
+                        {
+                            srvTransportIndex++;
+                            return true;
+                        }
+                    }
+                }
+                if(!hadSrvResults)
+                {
+                    state = State.Hosts;
+                    socketAddressIndex = 0;
+                    return getNextAddressFromDns();
+                }
+                return false;
+            case SrvHosts:
+                if(srvRecordsIndex >= srvRecords.length)
+                {
+                    state = State.Srv;
+                    return getNextAddressFromDns(); //backtrack to next srv record
+                }
+                for(; srvRecordsIndex < srvRecords.length; srvRecordsIndex++)
+                {
+                    socketAddresses = nu.getAandAAAARecords(
+                        srvRecords[srvRecordsIndex].getTarget(),
+                        srvRecords[srvRecordsIndex].getPort());
+                    if(socketAddresses != null && socketAddresses.length > 0)
+                    {
+                        state = State.SrvHostIPs;
+                        socketAddressIndex = 0;
+                        if(getNextAddressFromDns())
+                        {
+                            srvRecordsIndex++;
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            case SrvHostIPs:
+                if(socketAddressIndex >= socketAddresses.length)
+                {
+                    state = State.SrvHosts;
+                    return getNextAddressFromDns();
+                }
+                socketAddress = socketAddresses[socketAddressIndex];
+                socketAddressIndex++;
+                return true;
+            case Hosts:
+                transport = defaultTransport;
+
+                if(socketAddresses == null)
+                {
+                    socketAddresses = nu.getAandAAAARecords(
+                        address,
+                        ListeningPoint.PORT_5060);
+                }
+
+                if(socketAddresses != null && socketAddresses.length > 0
+                    && socketAddressIndex < socketAddresses.length)
+                {
+                    socketAddress = socketAddresses[socketAddressIndex++];
+                    return true;
+                }
+                return false;
+        }
+        return false;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * net.java.sip.communicator.impl.protocol.sip.net.ProxyConnection#reset()
+     */
+    @Override
+    public void reset()
+    {
+        super.reset();
+        state = State.New;
+
+        //determine the hostname of the proxy for autodetection:
+        //1) server part of the user ID
+        //2) name of the registrar when the user ID contains no domain
+        String userID =  account.getAccountPropertyString(USER_ID);
+        int domainIx = userID.indexOf("@");
+        if(domainIx > 0)
+        {
+            address = userID.substring(domainIx + 1);
+        }
+        else
+        {
+            address = account.getAccountPropertyString(SERVER_ADDRESS);
+            if(address == null || address.trim().length() == 0)
+            {
+                //registrarless account
+                return;
+            }
+        }
+        if(nu.isValidIPAddress(address))
+        {
+            state = State.IP;
+            socketAddressIndex = 0;
+        }
+    }
+}
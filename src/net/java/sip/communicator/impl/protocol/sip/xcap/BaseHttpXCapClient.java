@@ -9,6 +9,7 @@ package net.java.sip.communicator.impl.protocol.sip.xcap;
 import java.io.*;
 import java.net.*;
 import java.net.URI;
+import java.util.*;
 
 import javax.sip.address.*;
 
@@ -27,12 +28,20 @@ import org.apache.http.client.*;
 import org.apache.http.client.methods.*;
 import org.apache.http.entity.*;
 import org.apache.http.impl.client.*;
+import org.apache.http.util.*;
 import org.osgi.framework.*;
 
 /**
  * Base HTTP XCAP client implementation.
  * <p/>
  * Compliant with rfc4825
+ * <p/>
+ * The requests to the server share an HTTP client and its persistent
+ * connection for as long as the client is connected. The documents fetched
+ * from the server are remembered along with their ETags, so that they are
+ * fetched again with conditional GETs which the server answers with 304 Not
+ * Modified when they have not changed, and so that they are put and deleted
+ * with If-Match and do not overwrite the changes made by another client.
  *
  * @author Grigorii Balutsel
  */
@@ -59,12 +68,23 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
 
+    /**
+     * HTTP If-Match header.
+     */
+    public static final String HEADER_IF_MATCH = "If-Match";
+
     /**
      * XCap-error content type.
      */
     public static final String XCAP_ERROR_CONTENT_TYPE
             = "application/xcap-error+xml";
 
+    /**
+     * The maximum number of times a document is put again after the server
+     * has answered that it has been modified by another client.
+     */
+    private static final int MAX_PRECONDITION_RETRIES = 2;
+
     /**
      * Current server uri.
      */
@@ -95,6 +115,25 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
      */
     private CertificateService certificateVerification;
 
+    /**
+     * The HTTP client shared by the requests to the server, created with the
+     * first request after the user has been connected.
+     */
+    private DefaultHttpClient httpClient;
+
+    /**
+     * Serializes the requests to the server, which share the connection of
+     * {@link #httpClient}.
+     */
+    private final Object requestSyncRoot = new Object();
+
+    /**
+     * The documents fetched from or put to the server, by URI, along with
+     * their ETags.
+     */
+    private final Map<String, XCapHttpResponse> documents
+        = new HashMap<String, XCapHttpResponse>();
+
     /**
      * Creates an instance of this XCAP client.
      */
@@ -130,6 +169,7 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
         this.userAddress = (Address) userAddress.clone();
         this.username = username;
         this.password = password == null ? "" : password;
+        releaseHttpClient();
         connected = true;
     }
 
@@ -152,6 +192,134 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
         this.userAddress = null;
         this.password = null;
         connected = false;
+        releaseHttpClient();
+    }
+
+    /**
+     * Shuts down the HTTP client shared by the requests, closing its
+     * connection, and forgets the documents fetched from the server.
+     */
+    private void releaseHttpClient()
+    {
+        DefaultHttpClient httpClient;
+
+        synchronized (this)
+        {
+            httpClient = this.httpClient;
+            this.httpClient = null;
+        }
+        if (httpClient != null)
+            httpClient.getConnectionManager().shutdown();
+
+        synchronized (documents)
+        {
+            documents.clear();
+        }
+    }
+
+    /**
+     * Gets the HTTP client shared by the requests, creating it if necessary.
+     *
+     * @return the HTTP client.
+     * @throws IOException if the HTTP client cannot be created.
+     */
+    private synchronized DefaultHttpClient getHttpClient()
+        throws IOException
+    {
+        if (httpClient == null)
+            httpClient = createHttpClient();
+        return httpClient;
+    }
+
+    /**
+     * Executes a request with the shared HTTP client. The content of the
+     * response is fully consumed, so that the connection can be reused.
+     *
+     * @param request the request.
+     * @return the XCAP response.
+     * @throws IOException if executing the request fails.
+     */
+    private XCapHttpResponse execute(HttpUriRequest request)
+        throws IOException
+    {
+        synchronized (requestSyncRoot)
+        {
+            DefaultHttpClient httpClient = getHttpClient();
+
+            try
+            {
+                HttpResponse response = httpClient.execute(request);
+
+                try
+                {
+                    return createResponse(response);
+                }
+                finally
+                {
+                    EntityUtils.consume(response.getEntity());
+                }
+            }
+            catch (IOException ioe)
+            {
+                /*
+                 * The connection may be in an unknown state so the next
+                 * request will start over with a new one.
+                 */
+                synchronized (this)
+                {
+                    if (this.httpClient == httpClient)
+                        this.httpClient = null;
+                }
+                httpClient.getConnectionManager().shutdown();
+                throw ioe;
+            }
+        }
+    }
+
+    /**
+     * Gets the document fetched from or put to the server at a specific URI.
+     *
+     * @param uri the URI of the document.
+     * @return the document or <tt>null</tt> if there is no such document or
+     * its ETag is not known.
+     */
+    private XCapHttpResponse getDocument(URI uri)
+    {
+        synchronized (documents)
+        {
+            return documents.get(uri.toString());
+        }
+    }
+
+    /**
+     * Remembers or forgets the document fetched from or put to the server at
+     * a specific URI.
+     *
+     * @param uri the URI of the document.
+     * @param document the document or <tt>null</tt> to forget it. It is
+     * forgotten as well if its ETag is not known.
+     */
+    private void setDocument(URI uri, XCapHttpResponse document)
+    {
+        synchronized (documents)
+        {
+            if ((document == null) || (document.getETag() == null))
+                documents.remove(uri.toString());
+            else
+                documents.put(uri.toString(), document);
+        }
+    }
+
+    /**
+     * Gets the URI of the document which a resource is part of.
+     *
+     * @param resourceId the resource identifier.
+     * @return the URI of the document of the resource.
+     */
+    private URI getDocumentURI(XCapResourceId resourceId)
+    {
+        return
+            getResourceURI(new XCapResourceId(resourceId.getDocument()));
     }
 
     /**
@@ -179,16 +347,27 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     protected XCapHttpResponse get(URI uri)
             throws XCapException
     {
-        DefaultHttpClient httpClient = null;
         try
         {
-            httpClient = createHttpClient();
-
             HttpGet getMethod = new HttpGet(uri);
-            getMethod.setHeader("Connection", "close");
+            XCapHttpResponse document = getDocument(uri);
+
+            if (document != null)
+                getMethod.setHeader(HEADER_IF_NONE_MATCH, document.getETag());
+
+            XCapHttpResponse result = execute(getMethod);
+
+            if ((result.getHttpCode() == HttpStatus.SC_NOT_MODIFIED)
+                    && (document != null))
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Resource " + uri + " has not been modified");
+                return document;
+            }
+            setDocument(
+                    uri,
+                    (result.getHttpCode() == HttpStatus.SC_OK) ? result : null);
 
-            HttpResponse response = httpClient.execute(getMethod);
-            XCapHttpResponse result = createResponse(response);
             if (logger.isDebugEnabled())
             {
                 byte[] contentBytes = result.getContent();
@@ -227,11 +406,6 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
             showError(e, null, errorMessage);
             throw new XCapException(errorMessage, e);
         }
-        finally
-        {
-            if(httpClient != null)
-                httpClient.getConnectionManager().shutdown();
-        }
     }
 
     /**
@@ -276,18 +450,19 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
     public XCapHttpResponse put(XCapResource resource)
             throws XCapException
     {
-        DefaultHttpClient httpClient = null;
         try
         {
-            httpClient = createHttpClient();
-
             URI resourceUri = getResourceURI(resource.getId());
-            HttpPut putMethod = new HttpPut(resourceUri);
-            putMethod.setHeader("Connection", "close");
-            StringEntity stringEntity = new StringEntity(resource.getContent());
-            stringEntity.setContentType(resource.getContentType());
-            stringEntity.setContentEncoding("UTF-8");
-            putMethod.setEntity(stringEntity);
+            URI documentUri = getDocumentURI(resource.getId());
+            boolean document = resourceUri.equals(documentUri);
+            XCapHttpResponse oldDocument = getDocument(documentUri);
+            HttpPut putMethod
+                = createPut(
+                        resourceUri,
+                        resource,
+                        (document && (oldDocument != null))
+                            ? oldDocument.getETag()
+                            : null);
 
             if (logger.isDebugEnabled())
             {
@@ -298,8 +473,86 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                 );
                 logger.debug(logMessage);
             }
-            HttpResponse response = httpClient.execute(putMethod);
-            return createResponse(response);
+            XCapHttpResponse response = execute(putMethod);
+            int httpCode = response.getHttpCode();
+            byte[] content = resource.getContent().getBytes("UTF-8");
+
+            /*
+             * The document has been modified since it was fetched. The change
+             * is put again over the current document only if the latter has
+             * the content the change was made to, i.e. only its ETag has
+             * changed, since the whole document is replaced.
+             */
+            for (int retry = 0;
+                    document
+                        && (httpCode == HttpStatus.SC_PRECONDITION_FAILED)
+                        && (retry < MAX_PRECONDITION_RETRIES);
+                    retry++)
+            {
+                XCapHttpResponse currentDocument = get(documentUri);
+
+                if ((currentDocument.getHttpCode() != HttpStatus.SC_OK)
+                        || (currentDocument.getETag() == null))
+                    break;
+                if (Arrays.equals(content, currentDocument.getContent()))
+                {
+                    // The other client has made the same change.
+                    response = currentDocument;
+                    httpCode = HttpStatus.SC_OK;
+                    break;
+                }
+                if (!Arrays.equals(
+                        oldDocument.getContent(),
+                        currentDocument.getContent()))
+                    break;
+
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug(
+                            "Putting resource " + resourceUri
+                                + " again with ETag "
+                                + currentDocument.getETag());
+                }
+                response
+                    = execute(
+                            createPut(
+                                    resourceUri,
+                                    resource,
+                                    currentDocument.getETag()));
+                httpCode = response.getHttpCode();
+            }
+
+            XCapHttpResponse newDocument = null;
+
+            /*
+             * The document which has been put is what a GET would return so
+             * it is remembered with its new ETag. The document a node has
+             * been put to is fetched in full again.
+             */
+            if (document
+                    && ((httpCode == HttpStatus.SC_OK)
+                            || (httpCode == HttpStatus.SC_CREATED)))
+            {
+                newDocument = new XCapHttpResponse();
+                newDocument.setHttpCode(HttpStatus.SC_OK);
+                newDocument.setContentType(resource.getContentType());
+                newDocument.setContent(content);
+                newDocument.setETag(response.getETag());
+            }
+            else if (httpCode == HttpStatus.SC_PRECONDITION_FAILED)
+            {
+                logger.warn(
+                        "Resource " + resourceUri
+                            + " has been modified by another client");
+                /*
+                 * The stale ETag is kept so that putting the same change
+                 * again fails as well instead of overwriting the document
+                 * until it is fetched again.
+                 */
+                newDocument = oldDocument;
+            }
+            setDocument(documentUri, newDocument);
+            return response;
         }
         catch (IOException e)
         {
@@ -308,11 +561,35 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                     resource.getId().toString());
             throw new XCapException(errorMessage, e);
         }
-        finally
-        {
-            if(httpClient != null)
-                httpClient.getConnectionManager().shutdown();
-        }
+    }
+
+    /**
+     * Creates a PUT request of a resource.
+     *
+     * @param resourceUri the URI of the resource.
+     * @param resource the resource to be put.
+     * @param eTag the ETag the document of the resource is to match or
+     * <tt>null</tt> if the request is not conditional.
+     * @return the PUT request.
+     * @throws UnsupportedEncodingException if the content of the resource
+     * cannot be encoded.
+     */
+    private static HttpPut createPut(
+            URI resourceUri,
+            XCapResource resource,
+            String eTag)
+        throws UnsupportedEncodingException
+    {
+        HttpPut putMethod = new HttpPut(resourceUri);
+
+        if (eTag != null)
+            putMethod.setHeader(HEADER_IF_MATCH, eTag);
+
+        StringEntity stringEntity = new StringEntity(resource.getContent());
+        stringEntity.setContentType(resource.getContentType());
+        stringEntity.setContentEncoding("UTF-8");
+        putMethod.setEntity(stringEntity);
+        return putMethod;
     }
 
     /**
@@ -327,14 +604,15 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
             throws XCapException
     {
         assertConnected();
-        DefaultHttpClient httpClient = null;
         try
         {
-            httpClient = createHttpClient();
-
             URI resourceUri = getResourceURI(resourceId);
+            URI documentUri = getDocumentURI(resourceId);
             HttpDelete deleteMethod = new HttpDelete(resourceUri);
-            deleteMethod.setHeader("Connection", "close");
+            XCapHttpResponse document = getDocument(documentUri);
+
+            if (resourceUri.equals(documentUri) && (document != null))
+                deleteMethod.setHeader(HEADER_IF_MATCH, document.getETag());
 
             if (logger.isDebugEnabled())
             {
@@ -344,8 +622,10 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                 );
                 logger.debug(logMessage);
             }
-            HttpResponse response = httpClient.execute(deleteMethod);
-            return createResponse(response);
+            XCapHttpResponse response = execute(deleteMethod);
+
+            setDocument(documentUri, null);
+            return response;
         }
         catch (IOException e)
         {
@@ -354,11 +634,6 @@ public abstract class BaseHttpXCapClient implements HttpXCapClient
                     resourceId.toString());
             throw new XCapException(errorMessage, e);
         }
-        finally
-        {
-            if(httpClient != null)
-                httpClient.getConnectionManager().shutdown();
-        }
     }
 
     /**
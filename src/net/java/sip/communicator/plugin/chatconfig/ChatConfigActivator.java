@@ -50,10 +50,12 @@ public class ChatConfigActivator
     private static ResourceManagementService resourceService;
 
     /**
-     * The Replacement sources map.
+     * The Replacement sources mapped by their source name.
      */
-    private static final Map<String, ReplacementService>
-    replacementSourcesMap = new Hashtable<String, ReplacementService>();
+    private static final ServiceCache<ReplacementService> replacementSources
+        = new ServiceCache<ReplacementService>(
+                ReplacementService.class,
+                ReplacementService.SOURCE_NAME);
 
     /**
      * Indicates if the chat configuration form should be disabled, i.e.
@@ -77,6 +79,8 @@ public class ChatConfigActivator
         if (getConfigurationService().getBoolean(DISABLED_PROP, false))
             return;
 
+        replacementSources.open(bc);
+
         Dictionary<String, String> properties = new Hashtable<String, String>();
         properties.put(ConfigurationForm.FORM_TYPE,
             ConfigurationForm.GENERAL_TYPE);
@@ -96,7 +100,10 @@ public class ChatConfigActivator
      * @param bc the bundle context
      * @throws Exception if something goes wrong
      */
-    public void stop(BundleContext bc) throws Exception {}
+    public void stop(BundleContext bc) throws Exception
+    {
+        replacementSources.close();
+    }
 
     /**
      * Gets the service giving access to all application resources.
@@ -163,33 +170,7 @@ public class ChatConfigActivator
      */
     public static Map<String, ReplacementService> getReplacementSources()
     {
-        ServiceReference[] serRefs = null;
-        try
-        {
-            // get all registered sources
-            serRefs =
-                bundleContext.getServiceReferences(ReplacementService.class
-                    .getName(), null);
-
-        }
-        catch (InvalidSyntaxException e)
-        {
-            logger.error("Error : " + e);
-        }
-
-        if (serRefs != null)
-        {
-            for (int i = 0; i < serRefs.length; i++)
-            {
-                ReplacementService replacementSources =
-                    (ReplacementService) bundleContext.getService(serRefs[i]);
-
-                replacementSourcesMap.put((String)serRefs[i]
-                    .getProperty(ReplacementService.SOURCE_NAME),
-                    replacementSources);
-            }
-        }
-        return replacementSourcesMap;
+        return replacementSources.getServiceMap();
     }
 
 }
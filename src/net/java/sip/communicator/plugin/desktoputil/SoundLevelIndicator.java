@@ -279,6 +279,17 @@ public class SoundLevelIndicator
      */
     public void updateSoundLevel(int soundLevel)
     {
+        /*
+         * The levels delivered on the event dispatch thread, e.g. by a
+         * dispatcher which updates many indicators in a single pass, need not
+         * be deferred.
+         */
+        if (SwingUtilities.isEventDispatchThread())
+        {
+            updateSoundLevelInternal(soundLevel);
+            return;
+        }
+
         levelUpdate.setSoundLevel(soundLevel);
 
         Runnable levelUpdateScheduler;
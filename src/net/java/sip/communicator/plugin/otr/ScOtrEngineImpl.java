@@ -51,12 +51,24 @@ public class ScOtrEngineImpl
 
         public OtrPolicy getSessionPolicy(SessionID sessionID)
         {
-            return getContactPolicy(getContact(sessionID));
+            Contact contact = getContact(sessionID);
+
+            return
+                (contact == null)
+                    ? getGlobalPolicy()
+                    : getContactPolicy(contact);
         }
 
         public void injectMessage(SessionID sessionID, String messageText)
         {
             Contact contact = getContact(sessionID);
+            if (contact == null)
+            {
+                logger.warn("Cannot inject an OTR message, the contact of "
+                    + sessionID + " is unknown");
+                return;
+            }
+
             OperationSetBasicInstantMessaging imOpSet
                 = contact
                     .getProtocolProvider()
@@ -64,7 +76,7 @@ public class ScOtrEngineImpl
                                 OperationSetBasicInstantMessaging.class);
             Message message = imOpSet.createMessage(messageText);
 
-            injectedMessageUIDs.add(message.getMessageUID());
+            addInjectedMessageUID(message.getMessageUID());
             imOpSet.sendInstantMessage(contact, message);
         }
 
@@ -314,15 +326,59 @@ public class ScOtrEngineImpl
         }
     }
 
-    private static final Map<ScSessionID, Contact> contactsMap =
-        new Hashtable<ScSessionID, Contact>();
+    /**
+     * The maximum number of sessions whose contact is remembered. The least
+     * recently used sessions are forgotten first, except the encrypted ones
+     * which are never forgotten.
+     */
+    private static final int MAX_SESSIONS = 1000;
+
+    /**
+     * The number of milliseconds after which an unused session which is not
+     * encrypted is forgotten. Its contact is remembered again as soon as a
+     * message is exchanged with it.
+     */
+    private static final long SESSION_EXPIRY = 60 * 60 * 1000;
+
+    /**
+     * The maximum number of injected message UIDs remembered.
+     */
+    private static final int MAX_INJECTED_MESSAGE_UIDS = 1000;
+
+    /**
+     * The number of milliseconds after which an injected message UID is
+     * forgotten. The delivery events we check the UIDs for arrive well before.
+     */
+    private static final long INJECTED_MESSAGE_UID_EXPIRY = 5 * 60 * 1000;
+
+    /**
+     * The sessions whose contact is remembered, in access order (the least
+     * recently used first). Also the lock of {@link #guidMap}.
+     */
+    private static final Map<SessionID, SessionEntry> contactsMap =
+        new LinkedHashMap<SessionID, SessionEntry>(16, 0.75f, true);
+
+    /**
+     * The sessions of {@link #contactsMap} by the GUID of their
+     * <tt>ScSessionID</tt>.
+     */
+    private static final Map<UUID, SessionEntry> guidMap =
+        new HashMap<UUID, SessionEntry>();
 
     private static final Map<Contact, SmpProgressDialog> progressDialogMap =
         new ConcurrentHashMap<Contact, SmpProgressDialog>();
 
     public static Contact getContact(SessionID sessionID)
     {
-        return contactsMap.get(new ScSessionID(sessionID));
+        synchronized (contactsMap)
+        {
+            SessionEntry entry = contactsMap.get(sessionID);
+            if (entry == null)
+                return null;
+
+            entry.lastUsed = System.currentTimeMillis();
+            return entry.contact;
+        }
     }
 
     /**
@@ -333,14 +389,27 @@ public class ScOtrEngineImpl
      */
     public static ScSessionID getScSessionForGuid(UUID guid)
     {
-        for(ScSessionID scSessionID : contactsMap.keySet())
+        synchronized (contactsMap)
         {
-            if(scSessionID.getGUID().equals(guid))
-            {
-                return scSessionID;
-            }
+            SessionEntry entry = guidMap.get(guid);
+            return (entry == null) ? null : entry.scSessionID;
+        }
+    }
+
+    /**
+     * Returns the <tt>ScSessionID</tt> for given <tt>SessionID</tt>.
+     * @param sessionID the <tt>SessionID</tt> identifying
+     *        <tt>ScSessionID</tt>.
+     * @return the <tt>ScSessionID</tt> for given <tt>SessionID</tt> or
+     *         <tt>null</tt> if no matching session found.
+     */
+    private static ScSessionID getScSessionID(SessionID sessionID)
+    {
+        synchronized (contactsMap)
+        {
+            SessionEntry entry = contactsMap.get(sessionID);
+            return (entry == null) ? null : entry.scSessionID;
         }
-        return null;
     }
 
     public static SessionID getSessionID(Contact contact)
@@ -354,20 +423,71 @@ public class ScOtrEngineImpl
 
         synchronized (contactsMap)
         {
-            if(contactsMap.containsKey(new ScSessionID(sessionID)))
+            long now = System.currentTimeMillis();
+            SessionEntry entry = contactsMap.get(sessionID);
+
+            if (entry != null)
+            {
+                entry.lastUsed = now;
                 return sessionID;
+            }
+
+            entry = new SessionEntry(new ScSessionID(sessionID), contact, now);
+            contactsMap.put(sessionID, entry);
+            guidMap.put(entry.scSessionID.getGUID(), entry);
 
-            ScSessionID scSessionID = new ScSessionID(sessionID);
+            // Forget the least recently used sessions which are either too
+            // many or expired. The encrypted ones are kept since the OTR
+            // engine calls back with their SessionID.
+            Iterator<SessionEntry> i = contactsMap.values().iterator();
 
-            contactsMap.put(scSessionID, contact);
+            while (i.hasNext())
+            {
+                SessionEntry eldest = i.next();
+
+                if (eldest.encrypted)
+                    continue;
+                if (contactsMap.size() <= MAX_SESSIONS
+                        && now - eldest.lastUsed < SESSION_EXPIRY)
+                    break;
+
+                i.remove();
+                guidMap.remove(eldest.scSessionID.getGUID());
+            }
         }
 
         return sessionID;
     }
 
+    /**
+     * Records whether a session is encrypted, so that it is not forgotten
+     * while it is.
+     *
+     * @param sessionID the <tt>SessionID</tt> of the session.
+     * @param encrypted whether the session is encrypted.
+     */
+    private static void setEncrypted(SessionID sessionID, boolean encrypted)
+    {
+        synchronized (contactsMap)
+        {
+            SessionEntry entry = contactsMap.get(sessionID);
+
+            if (entry != null)
+            {
+                entry.encrypted = encrypted;
+                entry.lastUsed = System.currentTimeMillis();
+            }
+        }
+    }
+
     private final OtrConfigurator configurator = new OtrConfigurator();
 
-    private final List<String> injectedMessageUIDs = new Vector<String>();
+    /**
+     * The UIDs of the messages injected by OTR and the time they were
+     * injected at, the oldest first.
+     */
+    private final Map<String, Long> injectedMessageUIDs =
+        new LinkedHashMap<String, Long>();
 
     private final List<ScOtrEngineListener> listeners =
         new Vector<ScOtrEngineListener>();
@@ -387,18 +507,26 @@ public class ScOtrEngineImpl
 
         // Clears the map after previous instance
         // This is required because of OSGi restarts in the same VM on Android
-        contactsMap.clear();
+        synchronized (contactsMap)
+        {
+            contactsMap.clear();
+            guidMap.clear();
+        }
 
         this.otrEngine.addOtrEngineListener(new OtrEngineListener()
         {
             public void sessionStatusChanged(SessionID sessionID)
             {
+                SessionStatus status = otrEngine.getSessionStatus(sessionID);
+
+                setEncrypted(sessionID, status == SessionStatus.ENCRYPTED);
+
                 Contact contact = getContact(sessionID);
                 if (contact == null)
                     return;
 
                 String message = "";
-                switch (otrEngine.getSessionStatus(sessionID))
+                switch (status)
                 {
                 case ENCRYPTED:
                     PublicKey remotePubKey =
@@ -411,17 +539,12 @@ public class ScOtrEngineImpl
                         OtrActivator.scOtrKeyManager.savePublicKey(contact,
                             remotePubKey);
 
-                    if (!OtrActivator.scOtrKeyManager.isVerified(contact))
+                    ScSessionID scSessionID = getScSessionID(sessionID);
+
+                    if (!OtrActivator.scOtrKeyManager.isVerified(contact)
+                            && (scSessionID != null))
                     {
-                        UUID sessionGuid = null;
-                        for(ScSessionID scSessionID : contactsMap.keySet())
-                        {
-                            if(scSessionID.getSessionID().equals(sessionID))
-                            {
-                                sessionGuid = scSessionID.getGUID();
-                                break;
-                            }
-                        }
+                        UUID sessionGuid = scSessionID.getGUID();
 
                         OtrActivator.uiService.getChat(contact)
                             .addChatLinkClickedListener(ScOtrEngineImpl.this);
@@ -622,9 +745,41 @@ public class ScOtrEngineImpl
         return otrEngine.getSessionStatus(getSessionID(contact));
     }
 
+    /**
+     * Remembers the UID of a message injected by OTR and forgets the UIDs
+     * which are too many or expired.
+     *
+     * @param mUID the UID of the injected message
+     */
+    private void addInjectedMessageUID(String mUID)
+    {
+        synchronized (injectedMessageUIDs)
+        {
+            long now = System.currentTimeMillis();
+
+            injectedMessageUIDs.put(mUID, now);
+
+            Iterator<Long> i = injectedMessageUIDs.values().iterator();
+
+            while (i.hasNext())
+            {
+                long injected = i.next();
+
+                if (injectedMessageUIDs.size() <= MAX_INJECTED_MESSAGE_UIDS
+                        && now - injected < INJECTED_MESSAGE_UID_EXPIRY)
+                    break;
+
+                i.remove();
+            }
+        }
+    }
+
     public boolean isMessageUIDInjected(String mUID)
     {
-        return injectedMessageUIDs.contains(mUID);
+        synchronized (injectedMessageUIDs)
+        {
+            return injectedMessageUIDs.containsKey(mUID);
+        }
     }
 
     public void launchHelp()
@@ -694,12 +849,17 @@ public class ScOtrEngineImpl
 
             synchronized(contactsMap)
             {
-                Iterator<Contact> i = contactsMap.values().iterator();
+                Iterator<SessionEntry> i = contactsMap.values().iterator();
 
                 while (i.hasNext())
                 {
-                    if (provider.equals(i.next().getProtocolProvider()))
+                    SessionEntry entry = i.next();
+
+                    if (provider.equals(entry.contact.getProtocolProvider()))
+                    {
                         i.remove();
+                        guidMap.remove(entry.scSessionID.getGUID());
+                    }
                 }
             }
 
@@ -876,4 +1036,37 @@ public class ScOtrEngineImpl
         }
         
     }
+
+    /**
+     * A session whose contact is remembered.
+     */
+    private static class SessionEntry
+    {
+        /**
+         * The <tt>ScSessionID</tt> of the session.
+         */
+        final ScSessionID scSessionID;
+
+        /**
+         * The contact of the session.
+         */
+        final Contact contact;
+
+        /**
+         * The last time the session was used.
+         */
+        long lastUsed;
+
+        /**
+         * Whether the session is encrypted.
+         */
+        boolean encrypted;
+
+        SessionEntry(ScSessionID scSessionID, Contact contact, long lastUsed)
+        {
+            this.scSessionID = scSessionID;
+            this.contact = contact;
+            this.lastUsed = lastUsed;
+        }
+    }
 }
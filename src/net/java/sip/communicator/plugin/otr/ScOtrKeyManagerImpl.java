@@ -9,6 +9,7 @@ package net.java.sip.communicator.plugin.otr;
 import java.security.*;
 import java.security.spec.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.otr4j.crypto.*;
 import net.java.sip.communicator.service.protocol.*;
@@ -26,6 +27,22 @@ public class ScOtrKeyManagerImpl
     private final List<ScOtrKeyManagerListener> listeners =
         new Vector<ScOtrKeyManagerListener>();
 
+    /**
+     * The key pairs and fingerprints of the accounts by account unique ID, so
+     * that they are not decoded and hashed again for every AKE and every
+     * refresh of the UI. An entry is dropped when the key pair of its account
+     * is generated again.
+     */
+    private final Map<String, LocalKeys> localKeysCache =
+        new ConcurrentHashMap<String, LocalKeys>();
+
+    /**
+     * The public keys of the contacts by address. An entry is dropped when
+     * the public key of its contact is saved again.
+     */
+    private final Map<String, PublicKey> publicKeyCache =
+        new ConcurrentHashMap<String, PublicKey>();
+
     public void addListener(ScOtrKeyManagerListener l)
     {
         synchronized (listeners)
@@ -113,42 +130,21 @@ public class ScOtrKeyManagerImpl
 
     public String getLocalFingerprint(AccountID account)
     {
-        KeyPair keyPair = loadKeyPair(account);
-
-        if (keyPair == null)
-            return null;
+        LocalKeys localKeys = getLocalKeys(account);
 
-        PublicKey pubKey = keyPair.getPublic();
-
-        try
-        {
-            return new OtrCryptoEngineImpl().getFingerprint(pubKey);
-        }
-        catch (OtrCryptoException e)
-        {
-            e.printStackTrace();
-            return null;
-        }
+        return (localKeys == null) ? null : localKeys.getFingerprint();
     }
 
     public byte[] getLocalFingerprintRaw(AccountID account)
     {
-        KeyPair keyPair = loadKeyPair(account);
+        LocalKeys localKeys = getLocalKeys(account);
 
-        if (keyPair == null)
+        if (localKeys == null)
             return null;
 
-        PublicKey pubKey = keyPair.getPublic();
+        byte[] fingerprintRaw = localKeys.getFingerprintRaw();
 
-        try
-        {
-            return new OtrCryptoEngineImpl().getFingerprintRaw(pubKey);
-        }
-        catch (OtrCryptoException e)
-        {
-            e.printStackTrace();
-            return null;
-        }
+        return (fingerprintRaw == null) ? null : fingerprintRaw.clone();
     }
 
     public void savePublicKey(Contact contact, PublicKey pubKey)
@@ -161,6 +157,7 @@ public class ScOtrKeyManagerImpl
 
         this.configurator.setProperty(contact.getAddress() + ".publicKey",
             x509EncodedKeySpec.getEncoded());
+        publicKeyCache.remove(contact.getAddress());
 
         this.configurator.removeProperty(contact.getAddress()
             + ".publicKey.verified");
@@ -173,6 +170,10 @@ public class ScOtrKeyManagerImpl
 
         String userID = contact.getAddress();
 
+        PublicKey publicKey = publicKeyCache.get(userID);
+        if (publicKey != null)
+            return publicKey;
+
         byte[] b64PubKey =
             this.configurator.getPropertyBytes(userID + ".publicKey");
         if (b64PubKey == null)
@@ -185,7 +186,7 @@ public class ScOtrKeyManagerImpl
         try
         {
             keyFactory = KeyFactory.getInstance("DSA");
-            return keyFactory.generatePublic(publicKeySpec);
+            publicKey = keyFactory.generatePublic(publicKeySpec);
         }
         catch (NoSuchAlgorithmException e)
         {
@@ -197,14 +198,56 @@ public class ScOtrKeyManagerImpl
             e.printStackTrace();
             return null;
         }
+
+        publicKeyCache.put(userID, publicKey);
+        return publicKey;
     }
 
     public KeyPair loadKeyPair(AccountID account)
+    {
+        LocalKeys localKeys = getLocalKeys(account);
+
+        return (localKeys == null) ? null : localKeys.keyPair;
+    }
+
+    /**
+     * Gets the key pair and fingerprints of an account from the cache or
+     * loads them from the configuration.
+     *
+     * @param account the account
+     * @return the key pair and fingerprints of <tt>account</tt> or
+     * <tt>null</tt> if it has no key pair
+     */
+    private LocalKeys getLocalKeys(AccountID account)
     {
         if (account == null)
             return null;
 
         String accountID = account.getAccountUniqueID();
+        LocalKeys localKeys = localKeysCache.get(accountID);
+
+        if (localKeys == null)
+        {
+            KeyPair keyPair = readKeyPair(accountID);
+
+            if (keyPair == null)
+                return null;
+
+            localKeys = new LocalKeys(keyPair);
+            localKeysCache.put(accountID, localKeys);
+        }
+        return localKeys;
+    }
+
+    /**
+     * Decodes the key pair of an account from the configuration.
+     *
+     * @param accountID the unique ID of the account
+     * @return the key pair of the account or <tt>null</tt> if it has none or
+     * it cannot be decoded
+     */
+    private KeyPair readKeyPair(String accountID)
+    {
         // Load Private Key.
         byte[] b64PrivKey =
             this.configurator.getPropertyBytes(accountID + ".privateKey");
@@ -279,5 +322,61 @@ public class ScOtrKeyManagerImpl
 
         this.configurator.setProperty(accountID + ".privateKey",
             pkcs8EncodedKeySpec.getEncoded());
+
+        localKeysCache.remove(accountID);
+    }
+
+    /**
+     * The key pair of an account along with its fingerprints, which are
+     * computed the first time they are asked for.
+     */
+    private static class LocalKeys
+    {
+        final KeyPair keyPair;
+
+        private byte[] fingerprintRaw;
+
+        private String fingerprint;
+
+        LocalKeys(KeyPair keyPair)
+        {
+            this.keyPair = keyPair;
+        }
+
+        synchronized byte[] getFingerprintRaw()
+        {
+            if (fingerprintRaw == null)
+            {
+                try
+                {
+                    fingerprintRaw
+                        = new OtrCryptoEngineImpl().getFingerprintRaw(
+                                keyPair.getPublic());
+                }
+                catch (OtrCryptoException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+            return fingerprintRaw;
+        }
+
+        synchronized String getFingerprint()
+        {
+            if (fingerprint == null)
+            {
+                try
+                {
+                    fingerprint
+                        = new OtrCryptoEngineImpl().getFingerprint(
+                                keyPair.getPublic());
+                }
+                catch (OtrCryptoException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+            return fingerprint;
+        }
     }
 }
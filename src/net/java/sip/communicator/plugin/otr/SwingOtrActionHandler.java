@@ -24,10 +24,17 @@ public class SwingOtrActionHandler
 {
     public void onAuthenticateLinkClicked(UUID uuid)
     {
+        ScSessionID scSessionID = ScOtrEngineImpl.getScSessionForGuid(uuid);
+
+        // the session may have expired since the link was shown
+        if (scSessionID == null)
+            return;
+
         Contact contact = ScOtrEngineImpl.getContact(
-                    ScOtrEngineImpl.getScSessionForGuid(uuid).getSessionID());
+                    scSessionID.getSessionID());
 
-        openAuthDialog(contact);
+        if (contact != null)
+            openAuthDialog(contact);
     }
 
     public static void openAuthDialog(Contact contact)
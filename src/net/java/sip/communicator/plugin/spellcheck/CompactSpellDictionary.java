@@ -0,0 +1,1241 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license. See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.plugin.spellcheck;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.dts.spell.dictionary.*;
+
+/**
+ * A <tt>SpellDictionary</tt> reading its words from a compact file which is
+ * memory-mapped rather than loaded in the heap, so that neither the time it
+ * takes to open it nor the memory it takes depend on the size of the
+ * dictionary.
+ * <p>
+ * The file is generated once by {@link #generate(File, File)} from a
+ * MySpell dictionary zip (the same ones <tt>OpenOfficeSpellDictionary</tt>
+ * reads) by expanding the prefixes and suffixes of each word of the
+ * <tt>.dic</tt> file as described in the <tt>.aff</tt> file. It holds all the
+ * expanded words sorted by their UTF-8 bytes along with their offsets, so that
+ * a word is looked up with a binary search, and the <tt>TRY</tt> and
+ * <tt>REP</tt> tables the suggestions are computed from. Dictionaries relying
+ * on compounding are not supported since their words cannot be listed.
+ * </p>
+ * <p>
+ * The suggestions are computed the way <tt>MySpell</tt> does. When none of
+ * its near misses is a word, <tt>MySpell</tt> scores all the roots of the
+ * dictionary by their common substrings with the misspelled word. The
+ * compact file does not hold the roots, so the mapped words of about the
+ * same length are scored instead, keeping only the best ones.
+ * </p>
+ */
+public class CompactSpellDictionary
+    implements SpellDictionary
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>CompactSpellDictionary</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(CompactSpellDictionary.class);
+
+    /**
+     * The first bytes of a compact dictionary file, also identifying the
+     * version of its format.
+     */
+    private static final int MAGIC = 0x4A434431; // "JCD1"
+
+    /**
+     * The maximum number of suggestions returned by
+     * {@link #getSuggestions(String)}.
+     */
+    private static final int MAX_SUGGESTIONS = 15;
+
+    /**
+     * The length of the longest common substrings the words are scored by
+     * when a misspelled word has no near miss.
+     */
+    private static final int NGRAM = 3;
+
+    /**
+     * The maximum difference between the length in bytes of a misspelled
+     * word and of the words scored by their common substrings with it.
+     */
+    private static final int MAX_NGRAM_LENGTH_DIFF = 2;
+
+    /**
+     * The characters tried in suggestions if the dictionary does not define
+     * any.
+     */
+    private static final String DEFAULT_TRY = "etaoinshrdlucmfwypvbgkqjxz";
+
+    /**
+     * The <tt>.aff</tt> keywords of the features which cannot be represented
+     * by a list of words.
+     */
+    private static final List<String> UNSUPPORTED_AFFIX_FEATURES
+        = Arrays.asList(new String[]
+            {
+                "AF", "CIRCUMFIX", "COMPOUNDBEGIN", "COMPOUNDEND",
+                "COMPOUNDFLAG", "COMPOUNDMIDDLE", "FLAG", "NEEDAFFIX",
+                "PSEUDOROOT"
+            });
+
+    private static final int NOCAP = 0;
+
+    private static final int INITCAP = 1;
+
+    private static final int ALLCAP = 2;
+
+    private static final int HUHCAP = 3;
+
+    /**
+     * The UTF-8 charset the words are stored in.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The mapped words and offsets.
+     */
+    private final ByteBuffer words;
+
+    /**
+     * The number of words.
+     */
+    private final int wordCount;
+
+    /**
+     * The position in {@link #words} of the first byte of the first word.
+     */
+    private final int dataStart;
+
+    /**
+     * The characters tried in suggestions.
+     */
+    private final String tryChars;
+
+    /**
+     * The replacement table, as pairs of patterns and replacements.
+     */
+    private final String[] rep;
+
+    /**
+     * The file the words added by the user are saved in.
+     */
+    private final File personalDict;
+
+    /**
+     * The encoding of {@link #personalDict}.
+     */
+    private final String encoding;
+
+    /**
+     * The words added by the user.
+     */
+    private final Set<String> personalWords = new HashSet<String>();
+
+    /**
+     * Opens a compact dictionary file.
+     *
+     * @param file the file generated by {@link #generate(File, File)}.
+     * @param personalDict the file holding the words added by the user, one
+     * per line, or <tt>null</tt>.
+     * @throws IOException if the file cannot be read or is not a compact
+     * dictionary.
+     */
+    public CompactSpellDictionary(File file, File personalDict)
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            if (raf.readInt() != MAGIC)
+                throw new IOException("Not a compact dictionary: " + file);
+
+            byte[] header = new byte[raf.readInt()];
+            raf.readFully(header);
+
+            DataInputStream in
+                = new DataInputStream(new ByteArrayInputStream(header));
+            encoding = in.readUTF();
+            tryChars = in.readUTF();
+            rep = new String[2 * in.readInt()];
+            for (int i = 0; i < rep.length; i++)
+                rep[i] = in.readUTF();
+
+            wordCount = raf.readInt();
+
+            long start = raf.getFilePointer();
+            words = raf.getChannel().map(
+                FileChannel.MapMode.READ_ONLY,
+                start,
+                raf.length() - start);
+            dataStart = 4 * (wordCount + 1);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        this.personalDict = personalDict;
+        if (personalDict != null && personalDict.exists())
+            readPersonalWords();
+    }
+
+    /**
+     * Reads the words added by the user.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    private void readPersonalWords()
+        throws IOException
+    {
+        BufferedReader reader
+            = new BufferedReader(
+                new InputStreamReader(
+                    new FileInputStream(personalDict), encoding));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() != 0)
+                    personalWords.add(line);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Adds a word to the words of the user.
+     *
+     * @param word the word to add.
+     * @throws SpellDictionaryException if the word cannot be saved.
+     */
+    public void addWord(String word)
+        throws SpellDictionaryException
+    {
+        word = word.trim();
+
+        synchronized (personalWords)
+        {
+            if (personalDict != null)
+            {
+                try
+                {
+                    PrintWriter writer
+                        = new PrintWriter(
+                            new OutputStreamWriter(
+                                new FileOutputStream(personalDict, true),
+                                encoding));
+                    try
+                    {
+                        writer.println(word);
+                    }
+                    finally
+                    {
+                        writer.close();
+                    }
+                }
+                catch (IOException e)
+                {
+                    throw new SpellDictionaryException(e);
+                }
+            }
+            personalWords.add(word);
+        }
+    }
+
+    /**
+     * Determines whether a word is spelled correctly, trying its lower case
+     * forms if it is capitalized.
+     *
+     * @param word the word to check.
+     * @return <tt>true</tt> if the word is spelled correctly or is not a
+     * word (e.g. a number).
+     */
+    public boolean isCorrect(String word)
+    {
+        word = word.trim();
+        if (!hasLetter(word) || isKnown(word))
+            return true;
+
+        switch (getCapType(word))
+        {
+        case ALLCAP:
+            String lowerCase = word.toLowerCase();
+            return isKnown(lowerCase) || isKnown(capitalize(lowerCase));
+        case INITCAP:
+            return isKnown(word.toLowerCase());
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns suggestions for a misspelled word.
+     *
+     * @param word the misspelled word.
+     * @return at most {@link #MAX_SUGGESTIONS} words.
+     */
+    public List<String> getSuggestions(String word)
+    {
+        return getSuggestions(word, MAX_SUGGESTIONS);
+    }
+
+    /**
+     * Returns suggestions for a misspelled word: the words of the dictionary
+     * obtained by capitalizing it, applying the replacement table, inserting,
+     * swapping, removing or replacing a character, or splitting the word in
+     * two. A capitalized word is tried both in lower case and as is. If none
+     * of them is a word, the suggestions are the words sharing the most
+     * substrings with it.
+     *
+     * @param word the misspelled word.
+     * @param max the maximum number of suggestions.
+     * @return at most <tt>max</tt> words.
+     */
+    public List<String> getSuggestions(String word, int max)
+    {
+        List<String> suggestions = new ArrayList<String>();
+
+        word = word.trim();
+        if (word.length() == 0)
+            return suggestions;
+
+        int capType = getCapType(word);
+
+        switch (capType)
+        {
+        case INITCAP:
+        case ALLCAP:
+            suggest(word.toLowerCase(), capType, suggestions, max);
+            suggest(word, NOCAP, suggestions, max);
+            break;
+        case HUHCAP:
+            suggest(word, NOCAP, suggestions, max);
+            suggest(word.toLowerCase(), NOCAP, suggestions, max);
+            break;
+        default:
+            suggest(word, NOCAP, suggestions, max);
+            break;
+        }
+
+        if (suggestions.isEmpty())
+        {
+            suggestByNgram(
+                (capType == HUHCAP) ? word : word.toLowerCase(),
+                capType,
+                suggestions,
+                max);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Adds the words of the dictionary obtained by capitalizing a word,
+     * applying the replacement table, inserting, swapping, removing or
+     * replacing a character, or splitting the word in two to suggestions.
+     *
+     * @param w the word.
+     * @param capType the capitalization to give to the suggestions.
+     * @param suggestions the suggestions.
+     * @param max the maximum number of suggestions.
+     */
+    private void suggest(String w, int capType, List<String> suggestions,
+        int max)
+    {
+        int len = w.length();
+        Set<String> candidates = new LinkedHashSet<String>();
+
+        candidates.add(capitalize(w));
+        for (int i = 0; i < rep.length; i += 2)
+        {
+            if (rep[i].length() == 0)
+                continue;
+            for (int index = w.indexOf(rep[i]);
+                    index >= 0;
+                    index = w.indexOf(rep[i], index + 1))
+            {
+                candidates.add(w.substring(0, index) + rep[i + 1]
+                    + w.substring(index + rep[i].length()));
+            }
+        }
+        for (int i = 0; i <= len; i++)
+        {
+            for (int j = 0; j < tryChars.length(); j++)
+                candidates.add(
+                    w.substring(0, i) + tryChars.charAt(j) + w.substring(i));
+        }
+        for (int i = 0; i < len - 1; i++)
+        {
+            candidates.add(w.substring(0, i) + w.charAt(i + 1) + w.charAt(i)
+                + w.substring(i + 2));
+        }
+        for (int i = 0; i < len; i++)
+            candidates.add(w.substring(0, i) + w.substring(i + 1));
+        for (int i = 0; i < len; i++)
+        {
+            for (int j = 0; j < tryChars.length(); j++)
+            {
+                char c = tryChars.charAt(j);
+                if (c != w.charAt(i))
+                    candidates.add(
+                        w.substring(0, i) + c + w.substring(i + 1));
+            }
+        }
+
+        for (String candidate : candidates)
+        {
+            if (suggestions.size() >= max)
+                return;
+            if (candidate.length() != 0
+                && !candidate.equals(w)
+                && isKnown(candidate))
+                addSuggestion(suggestions, candidate, capType);
+        }
+
+        for (int i = 1; i < len && suggestions.size() < max; i++)
+        {
+            String first = w.substring(0, i);
+            String second = w.substring(i);
+            if (isKnown(first) && isKnown(second))
+                addSuggestion(suggestions, first + " " + second, capType);
+        }
+    }
+
+    /**
+     * Adds to suggestions the words of about the same length as a word which
+     * share the most substrings of up to {@link #NGRAM} bytes with it. All
+     * the mapped words are scanned but only the best <tt>max</tt> ones are
+     * kept, so the memory it takes does not depend on the size of the
+     * dictionary.
+     *
+     * @param w the word.
+     * @param capType the capitalization to give to the suggestions.
+     * @param suggestions the suggestions.
+     * @param max the maximum number of suggestions.
+     */
+    private void suggestByNgram(String w, int capType,
+        List<String> suggestions, int max)
+    {
+        int count = max - suggestions.size();
+        if (count <= 0)
+            return;
+
+        byte[] word = w.getBytes(UTF8);
+        // the words sharing less than half the substrings are not suggested
+        int threshold = (ngram(word, word, word.length) + 1) / 2;
+        int[] best = new int[count];
+        int[] bestScores = new int[count];
+        int found = 0;
+        ByteBuffer mapped = words.duplicate();
+        byte[] candidate
+            = new byte[word.length + MAX_NGRAM_LENGTH_DIFF];
+
+        for (int i = 0; i < wordCount; i++)
+        {
+            int start = dataStart + mapped.getInt(4 * i);
+            int length = dataStart + mapped.getInt(4 * (i + 1)) - start;
+
+            if (Math.abs(length - word.length) > MAX_NGRAM_LENGTH_DIFF)
+                continue;
+
+            mapped.position(start);
+            mapped.get(candidate, 0, length);
+
+            int score = ngram(word, candidate, length);
+            if (score < threshold
+                || (found == count && score <= bestScores[count - 1]))
+                continue;
+
+            // insert it after the words with the same score
+            int j = (found < count) ? found++ : count - 1;
+            for (; j > 0 && bestScores[j - 1] < score; j--)
+            {
+                best[j] = best[j - 1];
+                bestScores[j] = bestScores[j - 1];
+            }
+            best[j] = i;
+            bestScores[j] = score;
+        }
+
+        for (int i = 0; i < found; i++)
+            addSuggestion(suggestions, getWord(best[i]), capType);
+    }
+
+    /**
+     * Scores a word by the substrings of up to {@link #NGRAM} bytes of a
+     * misspelled word it contains, less the difference of their lengths.
+     *
+     * @param word the misspelled word.
+     * @param candidate the bytes of the scored word.
+     * @param length the number of bytes of the scored word.
+     * @return the score of the word.
+     */
+    private static int ngram(byte[] word, byte[] candidate, int length)
+    {
+        int score = 0;
+
+        for (int n = 1; n <= NGRAM; n++)
+        {
+            for (int i = 0; i + n <= word.length; i++)
+            {
+                if (indexOf(candidate, length, word, i, n) >= 0)
+                    score++;
+            }
+        }
+        return score - Math.abs(length - word.length);
+    }
+
+    /**
+     * Finds a substring of a word in another.
+     *
+     * @param in the bytes of the word to search.
+     * @param length the number of bytes of the word to search.
+     * @param word the word holding the searched substring.
+     * @param offset the position of the substring in <tt>word</tt>.
+     * @param n the length of the substring.
+     * @return the position of the substring in <tt>in</tt> or <tt>-1</tt>.
+     */
+    private static int indexOf(byte[] in, int length, byte[] word, int offset,
+        int n)
+    {
+        for (int i = 0; i + n <= length; i++)
+        {
+            int j = 0;
+
+            while (j < n && in[i + j] == word[offset + j])
+                j++;
+            if (j == n)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a mapped word.
+     *
+     * @param index the index of the word.
+     * @return the word.
+     */
+    private String getWord(int index)
+    {
+        ByteBuffer mapped = words.duplicate();
+        int start = dataStart + mapped.getInt(4 * index);
+        byte[] word = new byte[dataStart + mapped.getInt(4 * (index + 1))
+            - start];
+
+        mapped.position(start);
+        mapped.get(word);
+        return new String(word, UTF8);
+    }
+
+    /**
+     * Adds a suggestion with the capitalization of the misspelled word.
+     *
+     * @param suggestions the suggestions.
+     * @param suggestion the suggestion to add, in lower case if the
+     * misspelled word is capitalized.
+     * @param capType the capitalization of the misspelled word.
+     */
+    private static void addSuggestion(List<String> suggestions,
+        String suggestion, int capType)
+    {
+        if (capType == ALLCAP)
+            suggestion = suggestion.toUpperCase();
+        else if (capType == INITCAP)
+            suggestion = capitalize(suggestion);
+
+        if (!suggestions.contains(suggestion))
+            suggestions.add(suggestion);
+    }
+
+    /**
+     * Determines whether a word, as is, is in the dictionary or has been
+     * added by the user.
+     *
+     * @param word the word.
+     * @return <tt>true</tt> if the word is known.
+     */
+    private boolean isKnown(String word)
+    {
+        synchronized (personalWords)
+        {
+            if (personalWords.contains(word))
+                return true;
+        }
+        return contains(word.getBytes(UTF8));
+    }
+
+    /**
+     * Looks up a word in the mapped words.
+     *
+     * @param word the UTF-8 bytes of the word.
+     * @return <tt>true</tt> if the word is in the dictionary.
+     */
+    private boolean contains(byte[] word)
+    {
+        int low = 0;
+        int high = wordCount - 1;
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int start = dataStart + words.getInt(4 * mid);
+            int end = dataStart + words.getInt(4 * (mid + 1));
+            int cmp = compare(start, end, word);
+
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compares a mapped word to a word.
+     *
+     * @param start the position of the first byte of the mapped word.
+     * @param end the position after the last byte of the mapped word.
+     * @param word the UTF-8 bytes of the word.
+     * @return a negative number, zero or a positive number if the mapped
+     * word is respectively before, equal to or after <tt>word</tt>.
+     */
+    private int compare(int start, int end, byte[] word)
+    {
+        int len = Math.min(end - start, word.length);
+
+        for (int i = 0; i < len; i++)
+        {
+            int diff = (words.get(start + i) & 0xff) - (word[i] & 0xff);
+            if (diff != 0)
+                return diff;
+        }
+        return (end - start) - word.length;
+    }
+
+    /**
+     * Determines whether a string contains a letter.
+     *
+     * @param word the string.
+     * @return <tt>true</tt> if <tt>word</tt> contains a letter.
+     */
+    private static boolean hasLetter(String word)
+    {
+        for (int i = 0; i < word.length(); i++)
+            if (Character.isLetter(word.charAt(i)))
+                return true;
+        return false;
+    }
+
+    /**
+     * Determines the capitalization of a word.
+     *
+     * @param word the word.
+     * @return {@link #NOCAP}, {@link #INITCAP}, {@link #ALLCAP} or
+     * {@link #HUHCAP}.
+     */
+    private static int getCapType(String word)
+    {
+        int upper = 0;
+        int letters = 0;
+
+        for (int i = 0; i < word.length(); i++)
+        {
+            char c = word.charAt(i);
+            if (Character.isLetter(c))
+            {
+                letters++;
+                if (Character.isUpperCase(c))
+                    upper++;
+            }
+        }
+
+        if (upper == 0)
+            return NOCAP;
+        if (upper == letters)
+            return ALLCAP;
+        if (upper == 1 && Character.isUpperCase(word.charAt(0)))
+            return INITCAP;
+        return HUHCAP;
+    }
+
+    /**
+     * Upper cases the first character of a word.
+     *
+     * @param word the word.
+     * @return <tt>word</tt> with its first character in upper case.
+     */
+    private static String capitalize(String word)
+    {
+        return (word.length() == 0)
+            ? word
+            : Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Determines whether a compact dictionary file is newer than the
+     * dictionary zip it was generated from.
+     *
+     * @param compact the compact dictionary file.
+     * @param zip the dictionary zip.
+     * @return <tt>true</tt> if <tt>compact</tt> exists and is newer than
+     * <tt>zip</tt>.
+     */
+    static boolean isUpToDate(File compact, File zip)
+    {
+        return compact.exists() && compact.lastModified() >= zip.lastModified();
+    }
+
+    /**
+     * Generates a compact dictionary file from a MySpell dictionary zip.
+     *
+     * @param zip the dictionary zip holding a <tt>.aff</tt> and a
+     * <tt>.dic</tt> file.
+     * @param dest the compact dictionary file to write.
+     * @return <tt>false</tt> if the dictionary uses features the compact
+     * format cannot represent, in which case nothing is written.
+     * @throws IOException if the zip cannot be read or the file cannot be
+     * written.
+     */
+    public static boolean generate(File zip, File dest)
+        throws IOException
+    {
+        long start = System.currentTimeMillis();
+        ZipFile zipFile = new ZipFile(zip);
+        AffixTable affixes;
+        Set<String> expanded;
+
+        try
+        {
+            ZipEntry affEntry = null;
+            ZipEntry dicEntry = null;
+
+            for (Enumeration<? extends ZipEntry> e = zipFile.entries();
+                    e.hasMoreElements();)
+            {
+                ZipEntry entry = e.nextElement();
+                if (entry.getName().endsWith(".aff"))
+                    affEntry = entry;
+                else if (entry.getName().endsWith(".dic"))
+                    dicEntry = entry;
+            }
+            if (affEntry == null || dicEntry == null)
+                throw new IOException("No .aff or .dic file in " + zip);
+
+            affixes = new AffixTable(zipFile, affEntry);
+            if (affixes.unsupportedFeature != null)
+            {
+                if (logger.isInfoEnabled())
+                    logger.info("Cannot make a compact dictionary of " + zip
+                        + " since it uses " + affixes.unsupportedFeature);
+                return false;
+            }
+
+            expanded = affixes.expand(zipFile.getInputStream(dicEntry));
+        }
+        finally
+        {
+            zipFile.close();
+        }
+
+        byte[][] sorted = new byte[expanded.size()][];
+        int i = 0;
+        for (String word : expanded)
+            sorted[i++] = word.getBytes(UTF8);
+        expanded = null;
+        Arrays.sort(sorted, new Comparator<byte[]>()
+        {
+            public int compare(byte[] a, byte[] b)
+            {
+                int len = Math.min(a.length, b.length);
+                for (int i = 0; i < len; i++)
+                {
+                    int diff = (a[i] & 0xff) - (b[i] & 0xff);
+                    if (diff != 0)
+                        return diff;
+                }
+                return a.length - b.length;
+            }
+        });
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeUTF(affixes.encoding);
+        headerOut.writeUTF(affixes.tryChars);
+        headerOut.writeInt(affixes.rep.size() / 2);
+        for (String s : affixes.rep)
+            headerOut.writeUTF(s);
+        headerOut.flush();
+
+        File tmp = new File(dest.getPath() + ".tmp");
+        DataOutputStream out
+            = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(header.size());
+            header.writeTo(out);
+            out.writeInt(sorted.length);
+
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] word : sorted)
+            {
+                offset += word.length;
+                out.writeInt(offset);
+            }
+            for (byte[] word : sorted)
+                out.write(word);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if ((dest.exists() && !dest.delete()) || !tmp.renameTo(dest))
+            throw new IOException("Cannot write " + dest);
+
+        if (logger.isInfoEnabled())
+            logger.info("Generated compact dictionary " + dest + " of "
+                + sorted.length + " words in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return true;
+    }
+
+    /**
+     * The affix rules and tables of a MySpell <tt>.aff</tt> file.
+     */
+    private static class AffixTable
+    {
+        /**
+         * The encoding of the <tt>.aff</tt> and <tt>.dic</tt> files.
+         */
+        String encoding = "ISO-8859-1";
+
+        /**
+         * The characters tried in suggestions.
+         */
+        String tryChars = DEFAULT_TRY;
+
+        /**
+         * The replacement table, as pairs of patterns and replacements.
+         */
+        final List<String> rep = new ArrayList<String>();
+
+        /**
+         * The first unsupported feature found or <tt>null</tt>.
+         */
+        String unsupportedFeature;
+
+        /**
+         * The flag of the words which may only appear in compounds or
+         * <tt>0</tt>.
+         */
+        char onlyInCompound;
+
+        /**
+         * The affix rules by flag.
+         */
+        final Map<Character, List<AffixRule>> rules
+            = new HashMap<Character, List<AffixRule>>();
+
+        /**
+         * Reads an <tt>.aff</tt> file.
+         *
+         * @param zipFile the dictionary zip.
+         * @param entry the <tt>.aff</tt> file.
+         * @throws IOException if the file cannot be read.
+         */
+        AffixTable(ZipFile zipFile, ZipEntry entry)
+            throws IOException
+        {
+            // the encoding is declared in the file itself
+            BufferedReader reader
+                = new BufferedReader(
+                    new InputStreamReader(
+                        zipFile.getInputStream(entry), "ISO-8859-1"));
+            try
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (line.startsWith("SET "))
+                    {
+                        encoding = toCharsetName(line.substring(4).trim());
+                        break;
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+
+            reader
+                = new BufferedReader(
+                    new InputStreamReader(
+                        zipFile.getInputStream(entry), encoding));
+            try
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    String[] fields = line.trim().split("\\s+");
+                    String keyword = fields[0];
+
+                    if (UNSUPPORTED_AFFIX_FEATURES.contains(keyword))
+                    {
+                        if (unsupportedFeature == null)
+                            unsupportedFeature = keyword;
+                    }
+                    else if (keyword.equals("TRY") && fields.length > 1)
+                        tryChars = fields[1];
+                    else if (keyword.equals("REP") && fields.length > 2)
+                    {
+                        rep.add(fields[1]);
+                        rep.add(fields[2]);
+                    }
+                    else if (keyword.equals("ONLYINCOMPOUND")
+                        && fields.length > 1)
+                        onlyInCompound = fields[1].charAt(0);
+                    else if ((keyword.equals("PFX") || keyword.equals("SFX"))
+                        && fields.length > 3
+                        && fields[1].length() == 1)
+                    {
+                        readRules(reader, fields);
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+
+        /**
+         * Reads the rules of a flag.
+         *
+         * @param reader the reader of the <tt>.aff</tt> file.
+         * @param header the fields of the header of the rules:
+         * <tt>PFX|SFX flag cross count</tt>.
+         * @throws IOException if the file cannot be read.
+         */
+        private void readRules(BufferedReader reader, String[] header)
+            throws IOException
+        {
+            boolean prefix = header[0].equals("PFX");
+            char flag = header[1].charAt(0);
+            boolean cross = header[2].equals("Y");
+            int count;
+
+            try
+            {
+                count = Integer.parseInt(header[3]);
+            }
+            catch (NumberFormatException e)
+            {
+                return;
+            }
+
+            List<AffixRule> flagRules = rules.get(flag);
+            if (flagRules == null)
+            {
+                flagRules = new ArrayList<AffixRule>(count);
+                rules.put(flag, flagRules);
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                String line = reader.readLine();
+                if (line == null)
+                    return;
+
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 4)
+                    continue;
+
+                String append = fields[3];
+                int slash = append.indexOf('/');
+                if (slash >= 0)
+                    append = append.substring(0, slash);
+
+                flagRules.add(
+                    new AffixRule(
+                        prefix,
+                        cross,
+                        fields[2].equals("0") ? "" : fields[2],
+                        append.equals("0") ? "" : append,
+                        (fields.length > 4) ? fields[4] : "."));
+            }
+        }
+
+        /**
+         * Reads a <tt>.dic</tt> file and expands each of its words with its
+         * affixes.
+         *
+         * @param dic the <tt>.dic</tt> file.
+         * @return the words of the dictionary.
+         * @throws IOException if the file cannot be read.
+         */
+        Set<String> expand(InputStream dic)
+            throws IOException
+        {
+            BufferedReader reader
+                = new BufferedReader(new InputStreamReader(dic, encoding));
+            Set<String> words = new HashSet<String>();
+
+            try
+            {
+                // the first line is the number of words
+                String line = reader.readLine();
+                List<String> suffixed = new ArrayList<String>();
+
+                while ((line = reader.readLine()) != null)
+                {
+                    line = line.trim();
+                    int end = 0;
+                    while (end < line.length()
+                        && !Character.isWhitespace(line.charAt(end)))
+                        end++;
+                    line = line.substring(0, end);
+
+                    int slash = line.indexOf('/');
+                    String root
+                        = (slash < 0) ? line : line.substring(0, slash);
+                    String flags
+                        = (slash < 0) ? "" : line.substring(slash + 1);
+
+                    if (root.length() == 0
+                        || (onlyInCompound != 0
+                            && flags.indexOf(onlyInCompound) >= 0))
+                        continue;
+
+                    words.add(root);
+
+                    // suffixes first so that prefixes may be crossed with
+                    // them
+                    suffixed.clear();
+                    for (int i = 0; i < flags.length(); i++)
+                    {
+                        List<AffixRule> flagRules = rules.get(flags.charAt(i));
+                        if (flagRules == null)
+                            continue;
+                        for (AffixRule rule : flagRules)
+                        {
+                            if (rule.prefix)
+                                continue;
+                            String word = rule.apply(root);
+                            if (word != null)
+                            {
+                                words.add(word);
+                                if (rule.cross)
+                                    suffixed.add(word);
+                            }
+                        }
+                    }
+                    for (int i = 0; i < flags.length(); i++)
+                    {
+                        List<AffixRule> flagRules = rules.get(flags.charAt(i));
+                        if (flagRules == null)
+                            continue;
+                        for (AffixRule rule : flagRules)
+                        {
+                            if (!rule.prefix)
+                                continue;
+                            String word = rule.apply(root);
+                            if (word == null)
+                                continue;
+                            words.add(word);
+                            if (!rule.cross)
+                                continue;
+                            for (String s : suffixed)
+                            {
+                                word = rule.apply(s);
+                                if (word != null)
+                                    words.add(word);
+                            }
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+            return words;
+        }
+
+        /**
+         * Converts the name of an encoding as written in <tt>.aff</tt>
+         * files (e.g. <tt>ISO8859-1</tt>) to a Java charset name.
+         *
+         * @param name the name of the encoding.
+         * @return the Java charset name, <tt>ISO-8859-1</tt> if the encoding
+         * is not supported.
+         */
+        private static String toCharsetName(String name)
+        {
+            if (name.startsWith("ISO8859-"))
+                name = "ISO-8859-" + name.substring(8);
+
+            try
+            {
+                if (Charset.isSupported(name))
+                    return name;
+            }
+            catch (IllegalCharsetNameException e)
+            {
+            }
+            return "ISO-8859-1";
+        }
+    }
+
+    /**
+     * A prefix or suffix rule of an <tt>.aff</tt> file.
+     */
+    private static class AffixRule
+    {
+        /**
+         * Whether the rule adds a prefix rather than a suffix.
+         */
+        final boolean prefix;
+
+        /**
+         * Whether the rule may be combined with a rule of the other kind.
+         */
+        final boolean cross;
+
+        /**
+         * The characters removed from the word.
+         */
+        final String strip;
+
+        /**
+         * The characters added to the word.
+         */
+        final String append;
+
+        /**
+         * The characters allowed at each position of the condition, from the
+         * start of the word for a prefix and up to its end for a suffix.
+         * <tt>null</tt> allows any character.
+         */
+        final String[] conditions;
+
+        /**
+         * Whether the characters of the condition at each position are the
+         * forbidden rather than the allowed ones.
+         */
+        final boolean[] negated;
+
+        /**
+         * Creates a rule.
+         *
+         * @param prefix whether the rule adds a prefix.
+         * @param cross whether the rule may be combined with a rule of the
+         * other kind.
+         * @param strip the characters removed from the word.
+         * @param append the characters added to the word.
+         * @param condition the condition on the word, e.g. <tt>[^aeiou]y</tt>.
+         */
+        AffixRule(boolean prefix, boolean cross, String strip, String append,
+            String condition)
+        {
+            this.prefix = prefix;
+            this.cross = cross;
+            this.strip = strip;
+            this.append = append;
+
+            List<String> conditionList = new ArrayList<String>();
+            List<Boolean> negatedList = new ArrayList<Boolean>();
+            int i = 0;
+
+            while (i < condition.length())
+            {
+                char c = condition.charAt(i);
+
+                if (c == '.')
+                {
+                    conditionList.add(null);
+                    negatedList.add(false);
+                    i++;
+                }
+                else if (c == '[')
+                {
+                    int end = condition.indexOf(']', i);
+                    if (end < 0)
+                        end = condition.length();
+                    boolean negate
+                        = (i + 1 < end) && (condition.charAt(i + 1) == '^');
+                    conditionList.add(
+                        condition.substring(negate ? i + 2 : i + 1, end));
+                    negatedList.add(negate);
+                    i = end + 1;
+                }
+                else
+                {
+                    conditionList.add(String.valueOf(c));
+                    negatedList.add(false);
+                    i++;
+                }
+            }
+
+            conditions = conditionList.toArray(new String[conditionList.size()]);
+            negated = new boolean[negatedList.size()];
+            for (int j = 0; j < negated.length; j++)
+                negated[j] = negatedList.get(j);
+        }
+
+        /**
+         * Applies the rule to a word.
+         *
+         * @param word the word.
+         * @return the word with the affix or <tt>null</tt> if the rule does
+         * not apply to <tt>word</tt>.
+         */
+        String apply(String word)
+        {
+            int len = word.length();
+
+            if (len < conditions.length
+                || len <= strip.length()
+                || (prefix ? !word.startsWith(strip) : !word.endsWith(strip)))
+                return null;
+
+            int offset = prefix ? 0 : len - conditions.length;
+            for (int i = 0; i < conditions.length; i++)
+            {
+                if (conditions[i] == null)
+                    continue;
+                boolean found
+                    = conditions[i].indexOf(word.charAt(offset + i)) >= 0;
+                if (found == negated[i])
+                    return null;
+            }
+
+            return prefix
+                ? append + word.substring(strip.length())
+                : word.substring(0, len - strip.length()) + append;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license. See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.plugin.spellcheck;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.dts.spell.dictionary.*;
+
+/**
+ * The <tt>SpellDictionary</tt> shared by all the chats, standing for the
+ * dictionary of the current locale while it is being loaded in the
+ * background. Until a dictionary is set, all the words are considered
+ * correct and the words added by the user are kept to be added to it.
+ * <p>
+ * The suggestions for the misspelled words found by {@link #isCorrect(String)}
+ * are computed in the background and cached, so that the context menu of a
+ * misspelled word does not have to wait for them.
+ * </p>
+ */
+public class LazySpellDictionary
+    implements SpellDictionary
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>LazySpellDictionary</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(LazySpellDictionary.class);
+
+    /**
+     * The maximum number of misspelled words whose suggestions are cached.
+     */
+    private static final int MAX_CACHED_SUGGESTIONS = 256;
+
+    /**
+     * The dictionary of the current locale or <tt>null</tt> while it is
+     * being loaded.
+     */
+    private volatile SpellDictionary dictionary;
+
+    /**
+     * The suggestions of the most recently misspelled words.
+     */
+    private final Map<String, List<String>> suggestionCache
+        = new LinkedHashMap<String, List<String>>(16, 0.75f, true)
+        {
+            /**
+             * Serial version UID.
+             */
+            private static final long serialVersionUID = 0L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, List<String>> eldest)
+            {
+                return size() > MAX_CACHED_SUGGESTIONS;
+            }
+        };
+
+    /**
+     * The words added by the user before the dictionary has been set.
+     */
+    private final List<String> pendingWords = new ArrayList<String>();
+
+    /**
+     * The words whose suggestions are being computed in the background.
+     */
+    private final Set<String> pendingSuggestions = new HashSet<String>();
+
+    /**
+     * Computes the suggestions of misspelled words in the background.
+     */
+    private final ExecutorService suggestionExecutor
+        = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "SpellCheckerSuggestions");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+    /**
+     * Sets the dictionary of the current locale and adds to it the words
+     * added by the user while it was being loaded.
+     *
+     * @param dictionary the loaded dictionary.
+     */
+    public void setDictionary(SpellDictionary dictionary)
+    {
+        List<String> words;
+
+        synchronized (suggestionCache)
+        {
+            this.dictionary = dictionary;
+            suggestionCache.clear();
+            words = new ArrayList<String>(pendingWords);
+            pendingWords.clear();
+        }
+
+        for (String word : words)
+        {
+            try
+            {
+                dictionary.addWord(word);
+            }
+            catch (SpellDictionaryException e)
+            {
+                logger.error("Failed to add word " + word, e);
+            }
+        }
+    }
+
+    /**
+     * Determines whether the dictionary of the current locale has been set.
+     *
+     * @return <tt>true</tt> if the dictionary has been set.
+     */
+    public boolean isLoaded()
+    {
+        return dictionary != null;
+    }
+
+    public void addWord(String word)
+        throws SpellDictionaryException
+    {
+        SpellDictionary dictionary;
+
+        synchronized (suggestionCache)
+        {
+            dictionary = this.dictionary;
+            if (dictionary == null)
+            {
+                pendingWords.add(word);
+                return;
+            }
+        }
+
+        dictionary.addWord(word);
+        synchronized (suggestionCache)
+        {
+            suggestionCache.remove(word);
+        }
+    }
+
+    public boolean isCorrect(String word)
+    {
+        SpellDictionary dictionary = this.dictionary;
+        if (dictionary == null)
+            return true;
+
+        boolean correct = dictionary.isCorrect(word);
+        if (!correct)
+            precomputeSuggestions(dictionary, word);
+        return correct;
+    }
+
+    public List<String> getSuggestions(String word)
+    {
+        SpellDictionary dictionary = this.dictionary;
+        if (dictionary == null)
+            return new ArrayList<String>();
+
+        synchronized (suggestionCache)
+        {
+            List<String> suggestions = suggestionCache.get(word);
+            if (suggestions != null)
+                return new ArrayList<String>(suggestions);
+        }
+
+        List<String> suggestions = dictionary.getSuggestions(word);
+        cacheSuggestions(dictionary, word, suggestions);
+        return new ArrayList<String>(suggestions);
+    }
+
+    public List<String> getSuggestions(String word, int maxSuggestions)
+    {
+        SpellDictionary dictionary = this.dictionary;
+        if (dictionary == null)
+            return new ArrayList<String>();
+
+        return dictionary.getSuggestions(word, maxSuggestions);
+    }
+
+    /**
+     * Computes the suggestions of a misspelled word in the background unless
+     * they are cached or already being computed.
+     *
+     * @param dictionary the dictionary to get the suggestions from.
+     * @param word the misspelled word.
+     */
+    private void precomputeSuggestions(final SpellDictionary dictionary,
+        final String word)
+    {
+        synchronized (suggestionCache)
+        {
+            if (suggestionCache.containsKey(word)
+                || !pendingSuggestions.add(word))
+                return;
+        }
+
+        suggestionExecutor.execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    cacheSuggestions(
+                        dictionary, word, dictionary.getSuggestions(word));
+                }
+                catch (Exception e)
+                {
+                    logger.warn("Failed to compute suggestions for " + word,
+                        e);
+                }
+                finally
+                {
+                    synchronized (suggestionCache)
+                    {
+                        pendingSuggestions.remove(word);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Caches the suggestions of a misspelled word if they come from the
+     * current dictionary.
+     *
+     * @param dictionary the dictionary the suggestions come from.
+     * @param word the misspelled word.
+     * @param suggestions the suggestions.
+     */
+    private void cacheSuggestions(SpellDictionary dictionary, String word,
+        List<String> suggestions)
+    {
+        synchronized (suggestionCache)
+        {
+            if (dictionary == this.dictionary)
+                suggestionCache.put(
+                    word,
+                    Collections.unmodifiableList(
+                        new ArrayList<String>(suggestions)));
+        }
+    }
+}
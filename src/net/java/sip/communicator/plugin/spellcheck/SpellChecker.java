@@ -51,6 +51,9 @@ class SpellChecker
     // filename of custom dictionary (added words)
     private static final String PERSONAL_DICT_NAME = "custom.per";
 
+    // extension of the compact dictionaries generated from the zip ones
+    private static final String COMPACT_DICT_EXT = ".cdict";
+
     /*-
      * Dictionary resources.
      * Note: Dictionary needs to be created with input streams that AREN'T CLOSED
@@ -61,7 +64,10 @@ class SpellChecker
 
     private File dictLocation;
 
-    private SpellDictionary dict;
+    /**
+     * The dictionary shared by all the chats, loaded in the background.
+     */
+    private final LazySpellDictionary dict = new LazySpellDictionary();
 
     private Parameters.Locale locale; // dictionary locale
 
@@ -161,6 +167,8 @@ class SpellChecker
                 + localeIso);
         this.locale = tmp; // needed for synchronization lock
 
+        loadDictionary(tmp);
+
         SwingUtilities.invokeLater(new Runnable()
         {
             public void run()
@@ -228,8 +236,7 @@ class SpellChecker
     {
         synchronized (attachedChats)
         {
-            if (getChatAttachments(chat) == null
-                && this.dict != null)
+            if (getChatAttachments(chat) == null)
             {
                 ChatAttachments wrapper = new ChatAttachments(chat, this.dict);
 
@@ -327,11 +334,12 @@ class SpellChecker
                 // resets dictionary being used to include changes
                 synchronized (this.attachedChats)
                 {
-                    InputStream dictInput =
-                        new FileInputStream(this.dictLocation);
-                    this.dict =
-                        new OpenOfficeSpellDictionary(dictInput,
-                            this.personalDictLocation);
+                    // the dictionary being loaded will read the new words
+                    if (this.dictLocation == null)
+                        return;
+
+                    this.dict.setDictionary(
+                        createDictionary(this.dictLocation));
 
                     // updates chats
                     for (ChatAttachments chat : this.attachedChats)
@@ -363,7 +371,8 @@ class SpellChecker
     /**
      * Resets spell checker to use a different locale's dictionary. This uses
      * the local copy of the dictionary if available, otherwise it's downloaded
-     * and saved for future use.
+     * and saved for future use. The dictionary is loaded in the background
+     * and the one of the previous locale is used until it is.
      *
      * @param locale locale of dictionary to be used
      * @throws Exception problem occurring in utilizing locale's dictionary
@@ -389,31 +398,21 @@ class SpellChecker
             if (!dictLocation.exists())
                 copyDictionary(locale.getDictUrl().openStream(), dictLocation);
 
-            // resets dictionary being used to include changes
+            Parameters.Locale oldLocale;
+
             synchronized (this.attachedChats)
             {
-                InputStream dictInput = new FileInputStream(dictLocation);
-
-                SpellDictionary dict =
-                    new OpenOfficeSpellDictionary(dictInput,
-                        this.personalDictLocation);
-
-                this.dict = dict;
-                this.dictLocation = dictLocation;
-                Parameters.Locale oldLocale = this.locale;
+                oldLocale = this.locale;
                 this.locale = locale;
+            }
 
-                // saves locale choice to configuration properties
-                SpellCheckActivator.getConfigService().setProperty(
-                    LOCALE_CONFIG_PARAM, locale.getIsoCode());
+            // saves locale choice to configuration properties
+            SpellCheckActivator.getConfigService().setProperty(
+                LOCALE_CONFIG_PARAM, locale.getIsoCode());
 
-                // updates chats
-                for (ChatAttachments chat : this.attachedChats)
-                    chat.setDictionary(this.dict);
+            loadDictionary(locale);
 
-                firePropertyChangedEvent(
-                    LOCALE_CHANGED_PROP, oldLocale, this.locale);
-            }
+            firePropertyChangedEvent(LOCALE_CHANGED_PROP, oldLocale, locale);
         }
     }
 
@@ -440,6 +439,11 @@ class SpellChecker
             if (dictLocation.exists())
                 dictLocation.delete();
 
+            File compactLocation
+                = new File(dictLocation.getPath() + COMPACT_DICT_EXT);
+            if (compactLocation.exists())
+                compactLocation.delete();
+
             String localeIso = Parameters.getDefault(Parameters.Default.LOCALE);
             Parameters.Locale loc = Parameters.getLocale(localeIso);
             setLocale(loc);
@@ -494,6 +498,96 @@ class SpellChecker
         }
     }
 
+    /**
+     * Loads the dictionary of a locale in the background, so that neither the
+     * start of the plugin, the change of the locale nor the chats wait for
+     * it. Until it is loaded, words are considered correct or checked with
+     * the dictionary of the previous locale.
+     *
+     * @param locale the locale whose dictionary is to be loaded
+     */
+    private void loadDictionary(final Parameters.Locale locale)
+    {
+        Thread loader = new Thread("SpellCheckerLoader")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    String path = locale.getDictUrl().getFile();
+                    String filename
+                        = path.substring(path.lastIndexOf('/') + 1);
+
+                    File dictLocation =
+                        SpellCheckActivator.getFileAccessService()
+                            .getPrivatePersistentFile(DICT_DIR + filename,
+                                FileCategory.CACHE);
+
+                    if (!dictLocation.exists())
+                        copyDictionary(
+                            locale.getDictUrl().openStream(), dictLocation);
+
+                    long start = System.currentTimeMillis();
+                    SpellDictionary loaded = createDictionary(dictLocation);
+
+                    synchronized (attachedChats)
+                    {
+                        // another locale may have been chosen meanwhile
+                        if (!locale.equals(SpellChecker.this.locale))
+                            return;
+
+                        SpellChecker.this.dictLocation = dictLocation;
+                        dict.setDictionary(loaded);
+
+                        for (ChatAttachments chat : attachedChats)
+                            chat.setDictionary(dict);
+                    }
+
+                    if (logger.isInfoEnabled())
+                        logger.info("Spell checker dictionary " + filename
+                            + " loaded in "
+                            + (System.currentTimeMillis() - start) + " ms");
+                }
+                catch (Exception exc)
+                {
+                    logger.error("Unable to load spell checker dictionary for "
+                        + locale, exc);
+                }
+            }
+        };
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Creates the dictionary of a dictionary zip. A memory-mapped compact
+     * dictionary is generated from it the first time unless it uses features
+     * the compact format cannot represent, in which case it is loaded in the
+     * heap.
+     *
+     * @param dictLocation the dictionary zip
+     * @return the dictionary
+     * @throws IOException if the dictionary cannot be read
+     */
+    private SpellDictionary createDictionary(File dictLocation)
+        throws IOException
+    {
+        File compactLocation
+            = new File(dictLocation.getPath() + COMPACT_DICT_EXT);
+
+        if (CompactSpellDictionary.isUpToDate(compactLocation, dictLocation)
+            || CompactSpellDictionary.generate(dictLocation, compactLocation))
+        {
+            return new CompactSpellDictionary(compactLocation,
+                this.personalDictLocation);
+        }
+
+        InputStream dictInput = new FileInputStream(dictLocation);
+        return new OpenOfficeSpellDictionary(dictInput,
+            this.personalDictLocation);
+    }
+
     // copies dictionary to appropriate location, closing the stream afterward
     private void copyDictionary(InputStream input, File dest)
         throws IOException,
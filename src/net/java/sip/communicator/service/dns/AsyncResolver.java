@@ -0,0 +1,110 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.dns;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.util.SRVRecord;
+
+/**
+ * Performs the DNS lookups of <tt>NetworkUtils</tt> in the background so that
+ * independent lookups (i.e. the SRV records of every transport of a domain,
+ * the A and AAAA records of a host or of all the targets of a SRV lookup) can
+ * be issued in parallel rather than one round trip after the other.
+ * <p>
+ * The returned <tt>Future</tt>s fail with an <tt>ExecutionException</tt>
+ * wrapping the <tt>ParseException</tt> or <tt>DnssecException</tt> the
+ * blocking lookup would have thrown. Use
+ * {@link net.java.sip.communicator.util.NetworkUtils#getDnsResult(Future)} to
+ * wait for a result and get these exceptions back.
+ * </p>
+ */
+public interface AsyncResolver
+{
+    /**
+     * The number of milliseconds {@link #resolveFirstUsable(String, int)}
+     * waits for the records of the preferred address family once the records
+     * of the other family are known (the "resolution delay" of RFC 6555).
+     */
+    public static final long RESOLUTION_DELAY = 50;
+
+    /**
+     * Starts a NAPTR lookup.
+     *
+     * @param domain the name of the domain we'd like to resolve.
+     * @return the pending result of
+     * {@link net.java.sip.communicator.util.NetworkUtils#getNAPTRRecords(
+     * String)}
+     */
+    public Future<String[][]> resolveNAPTR(String domain);
+
+    /**
+     * Starts a SRV lookup.
+     *
+     * @param domain the name of the domain we'd like to resolve (_proto._tcp
+     * included).
+     * @return the pending result of
+     * {@link net.java.sip.communicator.util.NetworkUtils#getSRVRecords(
+     * String)}
+     */
+    public Future<SRVRecord[]> resolveSRV(String domain);
+
+    /**
+     * Starts a SRV lookup.
+     *
+     * @param service the service that we are trying to get records for.
+     * @param proto the protocol that we'd like <tt>service</tt> on.
+     * @param domain the name of the domain we'd like to resolve.
+     * @return the pending result of
+     * {@link net.java.sip.communicator.util.NetworkUtils#getSRVRecords(
+     * String, String, String)}
+     */
+    public Future<SRVRecord[]> resolveSRV(String service, String proto,
+        String domain);
+
+    /**
+     * Starts the A and AAAA lookups of <tt>domain</tt> in parallel. The
+     * result contains the addresses of both families in the same order as
+     * {@link net.java.sip.communicator.util.NetworkUtils#getAandAAAARecords(
+     * String, int)}.
+     *
+     * @param domain the name of the domain we'd like to resolve.
+     * @param port the port number of the returned <tt>InetSocketAddress</tt>
+     * @return the pending addresses of <tt>domain</tt>
+     */
+    public Future<InetSocketAddress[]> resolveAandAAAA(String domain,
+        int port);
+
+    /**
+     * Starts the A and AAAA lookups of <tt>domain</tt> in parallel and
+     * completes as soon as a usable address is known, in the manner of
+     * "happy eyeballs": the records of the preferred family are returned as
+     * soon as they arrive; the records of the other family are returned if
+     * the preferred ones are empty or do not arrive within
+     * {@link #RESOLUTION_DELAY} of them.
+     *
+     * @param domain the name of the domain we'd like to resolve.
+     * @param port the port number of the returned <tt>InetSocketAddress</tt>
+     * @return the pending addresses of <tt>domain</tt>, possibly of only one
+     * address family
+     */
+    public Future<InetSocketAddress[]> resolveFirstUsable(String domain,
+        int port);
+
+    /**
+     * Starts the A and AAAA lookups of all the targets of <tt>records</tt>
+     * at once.
+     *
+     * @param records the SRV records whose targets are to be resolved.
+     * @return the pending addresses of each target, in the order of
+     * <tt>records</tt>
+     */
+    public List<Future<InetSocketAddress[]>> resolveTargets(
+        SRVRecord[] records);
+}
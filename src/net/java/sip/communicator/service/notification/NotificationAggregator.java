@@ -0,0 +1,352 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.notification;
+
+import java.util.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Collapses bursts of notifications of the same event type and source into a
+ * single summarized notification. The source of a notification is the tag of
+ * its popup message, i.e. the contact or chat room a chat notification is
+ * about; notifications without a source and looping notifications, such as
+ * the ringing of incoming calls, are never collapsed.
+ * <p>
+ * The first notification of a burst is fired immediately and opens a window
+ * of {@link #AGGREGATION_WINDOW_PNAME} milliseconds. The notifications of the
+ * same event type and source fired within the window are held back and, when
+ * the window closes, the last of them is fired with the number of collapsed
+ * notifications in its title. The window stays open as long as notifications
+ * keep coming, so that a flood results in one notification a window.
+ * </p>
+ */
+public class NotificationAggregator
+{
+    /**
+     * The name of the configuration property which defines the length in
+     * milliseconds of the window within which notifications are collapsed.
+     * Notifications are not collapsed if it is not positive.
+     */
+    static final String AGGREGATION_WINDOW_PNAME
+        = "net.java.sip.communicator.service.notification.AGGREGATION_WINDOW";
+
+    /**
+     * The default length in milliseconds of the aggregation window.
+     */
+    private static final long DEFAULT_AGGREGATION_WINDOW = 1500;
+
+    /**
+     * The open windows by event type and source.
+     */
+    private final Map<BurstKey, Burst> bursts = new HashMap<BurstKey, Burst>();
+
+    /**
+     * The notification service which fires the summarized notifications.
+     */
+    private final NotificationServiceImpl notificationService;
+
+    /**
+     * The timer which closes the windows.
+     */
+    private Timer timer;
+
+    /**
+     * The length in milliseconds of the aggregation window.
+     */
+    private final long window;
+
+    /**
+     * Creates an aggregator of the notifications of
+     * <tt>notificationService</tt>.
+     *
+     * @param notificationService the notification service which fires the
+     * summarized notifications.
+     * @param window the length in milliseconds of the aggregation window.
+     */
+    protected NotificationAggregator(
+            NotificationServiceImpl notificationService,
+            long window)
+    {
+        this.notificationService = notificationService;
+        this.window = window;
+    }
+
+    /**
+     * Returns the length in milliseconds of the aggregation window defined in
+     * the configuration.
+     *
+     * @param configService the configuration service.
+     * @return the length in milliseconds of the aggregation window.
+     */
+    static long getWindow(ConfigurationService configService)
+    {
+        return (configService == null)
+            ? DEFAULT_AGGREGATION_WINDOW
+            : configService.getLong(
+                    AGGREGATION_WINDOW_PNAME,
+                    DEFAULT_AGGREGATION_WINDOW);
+    }
+
+    /**
+     * Determines whether a notification loops its sound until it is stopped.
+     *
+     * @param data the notification.
+     * @return <tt>true</tt> if <tt>data</tt> loops its sound.
+     */
+    static boolean isLooping(NotificationData data)
+    {
+        return data.getExtra(
+                    NotificationData
+                        .SOUND_NOTIFICATION_HANDLER_LOOP_CONDITION_EXTRA)
+                != null;
+    }
+
+    /**
+     * Returns the source of a notification, i.e. the tag of its popup message.
+     *
+     * @param data the notification.
+     * @return the source of <tt>data</tt> or <tt>null</tt> if it has none.
+     */
+    static Object getSource(NotificationData data)
+    {
+        return data.getExtra(NotificationData.POPUP_MESSAGE_HANDLER_TAG_EXTRA);
+    }
+
+    /**
+     * Offers a notification to the aggregator.
+     *
+     * @param data the notification.
+     * @return <tt>true</tt> if the notification is to be fired now;
+     * <tt>false</tt> if it has been collapsed into the burst of a window.
+     */
+    public boolean offer(NotificationData data)
+    {
+        if (window <= 0 || isLooping(data))
+            return true;
+
+        Object source = getSource(data);
+
+        if (source == null)
+            return true;
+
+        BurstKey key = new BurstKey(data.getEventType(), source);
+
+        synchronized (bursts)
+        {
+            Burst burst = bursts.get(key);
+
+            if (burst == null)
+            {
+                burst = new Burst(key);
+                bursts.put(key, burst);
+                schedule(burst);
+                return true;
+            }
+
+            burst.collapsed++;
+            burst.last = data;
+            burst.actionTypes = getEnabledActionTypes(data.getEventType());
+            return false;
+        }
+    }
+
+    /**
+     * Closes the window of a burst: fires the summary of the notifications
+     * collapsed within it, if any, and keeps the window open for another
+     * period or forgets the burst.
+     *
+     * @param burst the burst.
+     */
+    private void close(Burst burst)
+    {
+        NotificationData summary = null;
+        Set<String> actionTypes = null;
+
+        synchronized (bursts)
+        {
+            if (bursts.get(burst.key) != burst)
+                return;
+
+            if (burst.collapsed == 0)
+            {
+                bursts.remove(burst.key);
+            }
+            else
+            {
+                NotificationData last = burst.last;
+                String title = last.getTitle();
+
+                title
+                    = ((title == null) ? "" : title + " ")
+                        + "(+" + burst.collapsed + ")";
+                summary
+                    = new NotificationData(
+                            last.getEventType(),
+                            title,
+                            last.getMessage(),
+                            last.getIcon(),
+                            last.getExtras());
+                actionTypes = burst.actionTypes;
+
+                burst.collapsed = 0;
+                burst.last = null;
+                burst.actionTypes = null;
+                schedule(burst);
+            }
+        }
+
+        if (summary != null)
+            fireSummary(summary, actionTypes);
+    }
+
+    /**
+     * Returns the types of the actions of an event type which are currently
+     * enabled.
+     *
+     * @param eventType the event type.
+     * @return the types of the enabled actions of <tt>eventType</tt>.
+     */
+    protected Set<String> getEnabledActionTypes(String eventType)
+    {
+        return notificationService.getEnabledActionTypes(eventType);
+    }
+
+    /**
+     * Fires the summary of a burst of notifications.
+     *
+     * @param summary the summary of the burst.
+     * @param actionTypes the types of the actions to execute.
+     */
+    protected void fireSummary(NotificationData summary, Set<String> actionTypes)
+    {
+        notificationService.fireSummary(summary, actionTypes);
+    }
+
+    /**
+     * Schedules the closing of the window of a burst.
+     *
+     * @param burst the burst.
+     */
+    private void schedule(final Burst burst)
+    {
+        if (timer == null)
+            timer = new Timer("NotificationAggregator", true);
+
+        timer.schedule(
+                new TimerTask()
+                {
+                    @Override
+                    public void run()
+                    {
+                        close(burst);
+                    }
+                },
+                window);
+    }
+
+    /**
+     * Drops the open windows and stops the timer.
+     */
+    public void dispose()
+    {
+        synchronized (bursts)
+        {
+            bursts.clear();
+            if (timer != null)
+            {
+                timer.cancel();
+                timer = null;
+            }
+        }
+    }
+
+    /**
+     * The notifications of an event type and source collapsed within a
+     * window.
+     */
+    private static class Burst
+    {
+        /**
+         * The event type and source of the burst.
+         */
+        final BurstKey key;
+
+        /**
+         * The number of notifications collapsed within the current window.
+         */
+        int collapsed;
+
+        /**
+         * The last notification collapsed within the current window.
+         */
+        NotificationData last;
+
+        /**
+         * The types of the actions which were enabled when <tt>last</tt> was
+         * fired, so that the summary does not show a popup the caller
+         * suppressed, e.g. for a focused chat.
+         */
+        Set<String> actionTypes;
+
+        /**
+         * Creates a burst.
+         *
+         * @param key the event type and source of the burst.
+         */
+        Burst(BurstKey key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The event type and source of a burst.
+     */
+    private static class BurstKey
+    {
+        /**
+         * The event type.
+         */
+        private final String eventType;
+
+        /**
+         * The source of the notifications.
+         */
+        private final Object source;
+
+        /**
+         * Creates the key of a burst.
+         *
+         * @param eventType the event type.
+         * @param source the source of the notifications.
+         */
+        BurstKey(String eventType, Object source)
+        {
+            this.eventType = eventType;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof BurstKey))
+                return false;
+
+            BurstKey other = (BurstKey) obj;
+
+            return eventType.equals(other.eventType)
+                && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return eventType.hashCode() * 31 + source.hashCode();
+        }
+    }
+}
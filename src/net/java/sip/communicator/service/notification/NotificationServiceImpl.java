@@ -64,6 +64,38 @@ class NotificationServiceImpl
     private final Logger logger
         = Logger.getLogger(NotificationServiceImpl.class);
 
+    /**
+     * The prefix of the names of the configuration properties which define
+     * the number of invocations a second allowed to the handler of an action
+     * type for each event type, e.g. <tt>...RATE_LIMIT.PopupMessageAction</tt>.
+     * A handler is not limited if its rate is not positive.
+     */
+    private static final String RATE_LIMIT_PNAME_PREFIX
+        = "net.java.sip.communicator.service.notification.RATE_LIMIT.";
+
+    /**
+     * The prefix of the names of the configuration properties which define
+     * the number of invocations allowed at once to the handler of an action
+     * type when it has not been invoked for a while.
+     */
+    private static final String RATE_BURST_PNAME_PREFIX
+        = "net.java.sip.communicator.service.notification.RATE_BURST.";
+
+    /**
+     * Collapses the bursts of notifications of the same event type and source.
+     */
+    private final NotificationAggregator aggregator
+        = new NotificationAggregator(
+                this,
+                NotificationAggregator.getWindow(configService));
+
+    /**
+     * The rate limits of the handlers by event type and action type. An
+     * action type maps to <tt>null</tt> if its handler is not limited.
+     */
+    private final Map<String, Map<String, TokenBucket>> rateLimits
+        = new HashMap<String, Map<String, TokenBucket>>();
+
     /**
      * Queue to cache fired notifications before all handlers are registered.
      */
@@ -215,24 +247,62 @@ class NotificationServiceImpl
      * @param data The notification data to act upon.
      */
     private void fireNotification(NotificationData data)
+    {
+        fireNotification(data, null, true);
+    }
+
+    /**
+     * Executes a notification data object on the handlers of some of the
+     * actions of its event type.
+     *
+     * @param data The notification data to act upon.
+     * @param actionTypes the types of the actions to execute or <tt>null</tt>
+     * to execute all the enabled ones.
+     * @param rateLimited whether the rate limits of the handlers apply.
+     */
+    private void fireNotification(
+            NotificationData data,
+            Set<String> actionTypes,
+            boolean rateLimited)
     {
         Notification notification = notifications.get(data.getEventType());
 
         if((notification == null) || !notification.isActive())
             return;
 
+        /*
+         * Only the notifications which have a source, i.e. the ones of chat
+         * messages, are limited. The notifications of calls, including their
+         * looping sounds and DTMF tones, must not be dropped.
+         */
+        boolean limited
+            = rateLimited
+                && !NotificationAggregator.isLooping(data)
+                && (NotificationAggregator.getSource(data) != null);
+
         for(NotificationAction action : notification.getActions().values())
         {
             String actionType = action.getActionType();
 
             if(!action.isEnabled())
                 continue;
+            if((actionTypes != null) && !actionTypes.contains(actionType))
+                continue;
 
             NotificationHandler handler = handlers.get(actionType);
 
             if (handler == null)
                 continue;
 
+            if (limited
+                    && !acquireRateLimit(data.getEventType(), actionType))
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Rate limit of " + actionType
+                        + " reached, dropping " + data.getEventType());
+                continue;
+            }
+
             if (actionType.equals(ACTION_POPUP_MESSAGE))
             {
                 ((PopupMessageNotificationHandler) handler).popupMessage(
@@ -363,12 +433,154 @@ class NotificationServiceImpl
         //cache the notification when the handlers are not yet ready
         if (notificationCache != null)
             notificationCache.add(data);
-        else
+        else if (aggregator.offer(data))
             fireNotification(data);
 
         return data;
     }
 
+    /**
+     * Fires the summary of a burst of notifications collapsed by the
+     * <tt>NotificationAggregator</tt>. The summary is not subject to the rate
+     * limits of the handlers since it already stands for many notifications.
+     *
+     * @param summary the summary of the burst.
+     * @param actionTypes the types of the actions which were enabled when the
+     * last notification of the burst was fired.
+     */
+    void fireSummary(NotificationData summary, Set<String> actionTypes)
+    {
+        fireNotification(summary, actionTypes, false);
+    }
+
+    /**
+     * Returns the types of the actions of an event type which are currently
+     * enabled.
+     *
+     * @param eventType the event type.
+     * @return the types of the enabled actions of <tt>eventType</tt>.
+     */
+    Set<String> getEnabledActionTypes(String eventType)
+    {
+        Set<String> actionTypes = new HashSet<String>();
+        Notification notification = notifications.get(eventType);
+
+        if (notification != null)
+        {
+            for (NotificationAction action
+                    : notification.getActions().values())
+            {
+                if (action.isEnabled())
+                    actionTypes.add(action.getActionType());
+            }
+        }
+        return actionTypes;
+    }
+
+    /**
+     * Takes a token from the rate limit of the handler of an action type for
+     * an event type, so that a flood of one event type does not silence the
+     * others.
+     *
+     * @param eventType the event type.
+     * @param actionType the action type.
+     * @return <tt>true</tt> if the handler may be invoked; <tt>false</tt> if
+     * its rate limit has been reached.
+     */
+    private boolean acquireRateLimit(String eventType, String actionType)
+    {
+        TokenBucket rateLimit;
+
+        synchronized (rateLimits)
+        {
+            Map<String, TokenBucket> eventRateLimits
+                = rateLimits.get(eventType);
+
+            if (eventRateLimits == null)
+            {
+                eventRateLimits = new HashMap<String, TokenBucket>();
+                rateLimits.put(eventType, eventRateLimits);
+            }
+            if (eventRateLimits.containsKey(actionType))
+            {
+                rateLimit = eventRateLimits.get(actionType);
+            }
+            else
+            {
+                rateLimit = createRateLimit(actionType);
+                eventRateLimits.put(actionType, rateLimit);
+            }
+        }
+        return (rateLimit == null) || rateLimit.tryAcquire();
+    }
+
+    /**
+     * Creates the rate limit of the handler of an action type for an event
+     * type from the configuration. By default the popups and the sounds are
+     * limited so that a flood of messages cannot pile them up.
+     *
+     * @param actionType the action type.
+     * @return the rate limit of the handler or <tt>null</tt> if it is not
+     * limited.
+     */
+    private TokenBucket createRateLimit(String actionType)
+    {
+        double defaultRate;
+        int defaultBurst;
+
+        if (ACTION_POPUP_MESSAGE.equals(actionType))
+        {
+            defaultRate = 1;
+            defaultBurst = 5;
+        }
+        else if (ACTION_SOUND.equals(actionType))
+        {
+            defaultRate = 2;
+            defaultBurst = 4;
+        }
+        else
+        {
+            defaultRate = 0;
+            defaultBurst = 0;
+        }
+
+        double rate = defaultRate;
+        int burst = defaultBurst;
+
+        if (configService != null)
+        {
+            String rateValue
+                = configService.getString(RATE_LIMIT_PNAME_PREFIX + actionType);
+
+            if (rateValue != null)
+            {
+                try
+                {
+                    rate = Double.parseDouble(rateValue);
+                }
+                catch (NumberFormatException ex)
+                {
+                    logger.warn("Invalid rate limit of " + actionType + ": "
+                        + rateValue);
+                }
+            }
+            burst
+                = configService.getInt(
+                        RATE_BURST_PNAME_PREFIX + actionType,
+                        defaultBurst);
+        }
+
+        return (rate > 0) ? new TokenBucket(rate, burst) : null;
+    }
+
+    /**
+     * Releases the resources of this service when it is unregistered.
+     */
+    void dispose()
+    {
+        aggregator.dispose();
+    }
+
     /**
      * Notifies all registered <tt>NotificationChangeListener</tt>s that a
      * <tt>NotificationActionTypeEvent</tt> has occurred.
@@ -0,0 +1,71 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.notification;
+
+/**
+ * Limits the rate at which a <tt>NotificationHandler</tt> is invoked. The
+ * bucket holds up to <tt>burst</tt> tokens and is refilled with
+ * <tt>rate</tt> tokens a second; every invocation of the handler takes a
+ * token and is dropped when there is none left.
+ */
+public class TokenBucket
+{
+    /**
+     * The maximum number of tokens of the bucket.
+     */
+    private final double burst;
+
+    /**
+     * The number of tokens added to the bucket a second.
+     */
+    private final double rate;
+
+    /**
+     * The number of tokens currently in the bucket.
+     */
+    private double tokens;
+
+    /**
+     * The time in milliseconds at which the bucket was last refilled.
+     */
+    private long lastRefill;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param rate the number of tokens added to the bucket a second.
+     * @param burst the maximum number of tokens of the bucket.
+     */
+    public TokenBucket(double rate, int burst)
+    {
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    /**
+     * Takes a token from the bucket if there is one.
+     *
+     * @return <tt>true</tt> if a token was taken; <tt>false</tt> if the bucket
+     * is empty.
+     */
+    public synchronized boolean tryAcquire()
+    {
+        long now = System.currentTimeMillis();
+
+        if (now > lastRefill)
+        {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1000);
+            lastRefill = now;
+        }
+        if (tokens < 1)
+            return false;
+        tokens--;
+        return true;
+    }
+}
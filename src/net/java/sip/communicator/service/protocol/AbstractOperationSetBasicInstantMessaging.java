@@ -31,6 +31,43 @@ public abstract class AbstractOperationSetBasicInstantMessaging
     private static final Logger logger
         = Logger.getLogger(AbstractOperationSetBasicInstantMessaging.class);
 
+    /**
+     * Delivers the message events to the method of the
+     * <tt>MessageListener</tt>s which corresponds to their type.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <MessageListener, EventObject>
+        MESSAGE_EVENT
+            = new ProtocolEventDispatcher.Delivery
+                    <MessageListener, EventObject>()
+            {
+                public void deliver(
+                        MessageListener listener,
+                        EventObject event)
+                {
+                    if (event instanceof MessageDeliveredEvent)
+                    {
+                        listener.messageDelivered(
+                                (MessageDeliveredEvent) event);
+                    }
+                    else if (event instanceof MessageDeliveryFailedEvent)
+                    {
+                        listener.messageDeliveryFailed(
+                                (MessageDeliveryFailedEvent) event);
+                    }
+                    else if (event instanceof MessageReceivedEvent)
+                    {
+                        listener.messageReceived((MessageReceivedEvent) event);
+                    }
+                }
+            };
+
+    /**
+     * Delivers the message events to the listeners.
+     */
+    private final ProtocolEventDispatcher eventDispatcher
+        = new ProtocolEventDispatcher("message");
+
     /**
      * A list of listeners registered for message events.
      */
@@ -185,27 +222,19 @@ public abstract class AbstractOperationSetBasicInstantMessaging
             if (evt == null)
                 return;
 
-            for (MessageListener listener : listeners)
+            switch (eventType)
             {
-                switch (eventType)
-                {
-                case MessageDelivered:
-                    listener.messageDelivered((MessageDeliveredEvent) evt);
-                    break;
-                case MessageDeliveryFailed:
-                    listener.messageDeliveryFailed(
-                            (MessageDeliveryFailedEvent)evt);
-                    break;
-                case MessageReceived:
-                    listener.messageReceived((MessageReceivedEvent) evt);
-                    break;
-                default:
-                    /*
-                     * We either have nothing to do or we do not know what to
-                     * do. Anyway, we'll silence the compiler.
-                     */
-                    break;
-                }
+            case MessageDelivered:
+            case MessageDeliveryFailed:
+            case MessageReceived:
+                eventDispatcher.fire(listeners, evt, MESSAGE_EVENT);
+                break;
+            default:
+                /*
+                 * We either have nothing to do or we do not know what to
+                 * do. Anyway, we'll silence the compiler.
+                 */
+                break;
             }
         }
         catch (Throwable e)
@@ -240,6 +269,18 @@ public abstract class AbstractOperationSetBasicInstantMessaging
         {
             messageListeners.remove(listener);
         }
+        eventDispatcher.removeListener(listener);
+    }
+
+    /**
+     * Returns the dispatcher which delivers the message events to the
+     * listeners.
+     *
+     * @return the dispatcher of the message events.
+     */
+    public ProtocolEventDispatcher getEventDispatcher()
+    {
+        return eventDispatcher;
     }
 
     public MessageDeliveredEvent messageDeliveryPendingTransform(
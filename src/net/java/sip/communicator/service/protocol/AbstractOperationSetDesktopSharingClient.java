@@ -51,6 +51,7 @@ public abstract class AbstractOperationSetDesktopSharingClient
             {
                 removesNullAndRevokedControlPeer(peer.getPeerID());
                 removeRemoteControlListener(getListener(peer));
+                callPeerEnded(peer);
             }
         }
     };
@@ -238,6 +239,19 @@ public abstract class AbstractOperationSetDesktopSharingClient
         }
     }
 
+    /**
+     * Notifies this instance that a <tt>CallPeer</tt> which has a
+     * <tt>RemoteControlListener</tt> has been disconnected or has failed, so
+     * that implementations may release the resources they keep for it. Does
+     * nothing by default.
+     *
+     * @param callPeer the <tt>CallPeer</tt> which has been disconnected or
+     * has failed
+     */
+    protected void callPeerEnded(CallPeer callPeer)
+    {
+    }
+
     /**
      * Removes null and the peer corresponding to the revokedPeerID from the
      * granted control peer list.
@@ -30,6 +30,158 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
     private static final Logger logger =
         Logger.getLogger(AbstractOperationSetPersistentPresence.class);
 
+    /**
+     * Delivers <tt>ContactPresenceStatusChangeEvent</tt>s.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <ContactPresenceStatusListener, ContactPresenceStatusChangeEvent>
+        CONTACT_PRESENCE_STATUS_CHANGED
+            = new ProtocolEventDispatcher.Delivery
+                    <ContactPresenceStatusListener,
+                        ContactPresenceStatusChangeEvent>()
+            {
+                public void deliver(
+                        ContactPresenceStatusListener listener,
+                        ContactPresenceStatusChangeEvent event)
+                {
+                    listener.contactPresenceStatusChanged(event);
+                }
+            };
+
+    /**
+     * Delivers <tt>ContactPropertyChangeEvent</tt>s.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <SubscriptionListener, ContactPropertyChangeEvent>
+        CONTACT_MODIFIED
+            = new ProtocolEventDispatcher.Delivery
+                    <SubscriptionListener, ContactPropertyChangeEvent>()
+            {
+                public void deliver(
+                        SubscriptionListener listener,
+                        ContactPropertyChangeEvent event)
+                {
+                    listener.contactModified(event);
+                }
+            };
+
+    /**
+     * Delivers <tt>ProviderPresenceStatusChangeEvent</tt>s.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <ProviderPresenceStatusListener, ProviderPresenceStatusChangeEvent>
+        PROVIDER_STATUS_CHANGED
+            = new ProtocolEventDispatcher.Delivery
+                    <ProviderPresenceStatusListener,
+                        ProviderPresenceStatusChangeEvent>()
+            {
+                public void deliver(
+                        ProviderPresenceStatusListener listener,
+                        ProviderPresenceStatusChangeEvent event)
+                {
+                    listener.providerStatusChanged(event);
+                }
+            };
+
+    /**
+     * Delivers the changes of the status message of the provider.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <ProviderPresenceStatusListener, PropertyChangeEvent>
+        PROVIDER_STATUS_MESSAGE_CHANGED
+            = new ProtocolEventDispatcher.Delivery
+                    <ProviderPresenceStatusListener, PropertyChangeEvent>()
+            {
+                public void deliver(
+                        ProviderPresenceStatusListener listener,
+                        PropertyChangeEvent event)
+                {
+                    listener.providerStatusMessageChanged(event);
+                }
+            };
+
+    /**
+     * Delivers <tt>ServerStoredGroupEvent</tt>s.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <ServerStoredGroupListener, ServerStoredGroupEvent>
+        SERVER_STORED_GROUP_EVENT
+            = new ProtocolEventDispatcher.Delivery
+                    <ServerStoredGroupListener, ServerStoredGroupEvent>()
+            {
+                public void deliver(
+                        ServerStoredGroupListener listener,
+                        ServerStoredGroupEvent event)
+                {
+                    switch (event.getEventID())
+                    {
+                    case ServerStoredGroupEvent.GROUP_CREATED_EVENT:
+                        listener.groupCreated(event);
+                        break;
+                    case ServerStoredGroupEvent.GROUP_RENAMED_EVENT:
+                        listener.groupNameChanged(event);
+                        break;
+                    case ServerStoredGroupEvent.GROUP_REMOVED_EVENT:
+                        listener.groupRemoved(event);
+                        break;
+                    }
+                }
+            };
+
+    /**
+     * Delivers <tt>SubscriptionEvent</tt>s.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <SubscriptionListener, SubscriptionEvent>
+        SUBSCRIPTION_EVENT
+            = new ProtocolEventDispatcher.Delivery
+                    <SubscriptionListener, SubscriptionEvent>()
+            {
+                public void deliver(
+                        SubscriptionListener listener,
+                        SubscriptionEvent event)
+                {
+                    switch (event.getEventID())
+                    {
+                    case SubscriptionEvent.SUBSCRIPTION_CREATED:
+                        listener.subscriptionCreated(event);
+                        break;
+                    case SubscriptionEvent.SUBSCRIPTION_FAILED:
+                        listener.subscriptionFailed(event);
+                        break;
+                    case SubscriptionEvent.SUBSCRIPTION_REMOVED:
+                        listener.subscriptionRemoved(event);
+                        break;
+                    case SubscriptionEvent.SUBSCRIPTION_RESOLVED:
+                        listener.subscriptionResolved(event);
+                        break;
+                    }
+                }
+            };
+
+    /**
+     * Delivers <tt>SubscriptionMovedEvent</tt>s.
+     */
+    private static final ProtocolEventDispatcher.Delivery
+            <SubscriptionListener, SubscriptionMovedEvent>
+        SUBSCRIPTION_MOVED
+            = new ProtocolEventDispatcher.Delivery
+                    <SubscriptionListener, SubscriptionMovedEvent>()
+            {
+                public void deliver(
+                        SubscriptionListener listener,
+                        SubscriptionMovedEvent event)
+                {
+                    listener.subscriptionMoved(event);
+                }
+            };
+
+    /**
+     * Delivers the events of this operation set to its listeners.
+     */
+    private final ProtocolEventDispatcher eventDispatcher
+        = new ProtocolEventDispatcher("presence");
+
     /**
      * A list of listeners registered for
      * <tt>ContactPresenceStatusChangeEvent</tt>s.
@@ -198,8 +350,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
             "Dispatching Contact Status Change. Listeners=" + listeners.size()
                 + " evt=" + evt);
 
-        for (ContactPresenceStatusListener listener : listeners)
-            listener.contactPresenceStatusChanged(evt);
+        eventDispatcher.fire(listeners, evt, CONTACT_PRESENCE_STATUS_CHANGED);
     }
 
     /**
@@ -235,8 +386,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
             logger.debug("Dispatching a Contact Property Change Event to"
             + listeners.size() + " listeners. Evt=" + evt);
 
-        for (SubscriptionListener listener : listeners)
-            listener.contactModified(evt);
+        eventDispatcher.fire(listeners, evt, CONTACT_MODIFIED);
     }
 
     /**
@@ -282,8 +432,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
                 + listeners.size()
                 + " evt=" + evt);
 
-        for (ProviderPresenceStatusListener listener : listeners)
-            listener.providerStatusChanged(evt);
+        eventDispatcher.fire(listeners, evt, PROVIDER_STATUS_CHANGED);
 
         if (logger.isDebugEnabled())
             logger.debug("status dispatching done.");
@@ -323,8 +472,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
                 + listeners.size()
                 + " evt=" + evt);
 
-        for (ProviderPresenceStatusListener listener : listeners)
-            listener.providerStatusMessageChanged(evt);
+        eventDispatcher.fire(listeners, evt, PROVIDER_STATUS_MESSAGE_CHANGED);
     }
 
     /**
@@ -353,19 +501,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
                         serverStoredGroupListeners);
         }
 
-        for (ServerStoredGroupListener listener : listeners)
-            switch (eventID)
-            {
-            case ServerStoredGroupEvent.GROUP_CREATED_EVENT:
-                listener.groupCreated(evt);
-                break;
-            case ServerStoredGroupEvent.GROUP_RENAMED_EVENT:
-                listener.groupNameChanged(evt);
-                break;
-            case ServerStoredGroupEvent.GROUP_REMOVED_EVENT:
-                listener.groupRemoved(evt);
-                break;
-            }
+        eventDispatcher.fire(listeners, evt, SERVER_STORED_GROUP_EVENT);
     }
 
     /**
@@ -405,22 +541,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
             logger.debug("Dispatching a Subscription Event to" + listeners.size()
             + " listeners. Evt=" + evt);
 
-        for (SubscriptionListener listener : listeners)
-            switch (eventID)
-            {
-            case SubscriptionEvent.SUBSCRIPTION_CREATED:
-                listener.subscriptionCreated(evt);
-                break;
-            case SubscriptionEvent.SUBSCRIPTION_FAILED:
-                listener.subscriptionFailed(evt);
-                break;
-            case SubscriptionEvent.SUBSCRIPTION_REMOVED:
-                listener.subscriptionRemoved(evt);
-                break;
-            case SubscriptionEvent.SUBSCRIPTION_RESOLVED:
-                listener.subscriptionResolved(evt);
-                break;
-            }
+        eventDispatcher.fire(listeners, evt, SUBSCRIPTION_EVENT);
     }
 
     /**
@@ -449,8 +570,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
             logger.debug("Dispatching a Subscription Event to" + listeners.size()
             + " listeners. Evt=" + evt);
 
-        for (SubscriptionListener listener : listeners)
-            listener.subscriptionMoved(evt);
+        eventDispatcher.fire(listeners, evt, SUBSCRIPTION_MOVED);
     }
 
     /**
@@ -466,6 +586,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
         {
             contactPresenceStatusListeners.remove(listener);
         }
+        eventDispatcher.removeListener(listener);
     }
 
     /**
@@ -482,6 +603,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
         {
             providerPresenceStatusListeners.remove(listener);
         }
+        eventDispatcher.removeListener(listener);
     }
 
     /**
@@ -497,6 +619,7 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
         {
             serverStoredGroupListeners.remove(listener);
         }
+        eventDispatcher.removeListener(listener);
     }
 
     /**
@@ -510,6 +633,18 @@ public abstract class AbstractOperationSetPersistentPresence<T extends ProtocolP
         {
             subscriptionListeners.remove(listener);
         }
+        eventDispatcher.removeListener(listener);
+    }
+
+    /**
+     * Returns the dispatcher which delivers the events of this operation set
+     * to its listeners.
+     *
+     * @return the dispatcher of the events of this operation set.
+     */
+    public ProtocolEventDispatcher getEventDispatcher()
+    {
+        return eventDispatcher;
     }
 
     /**
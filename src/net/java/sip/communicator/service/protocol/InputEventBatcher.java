@@ -0,0 +1,260 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.protocol;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Batches the input events a desktop sharing client sends to the peers which
+ * share their desktop, so that a drag of the mouse does not result in a
+ * signaling message per pixel. The events queued for a <tt>CallPeer</tt> are
+ * sent together once every {@link #BATCH_INTERVAL_PNAME} milliseconds, and a
+ * mouse move queued right after another one replaces it since only the last
+ * position matters.
+ *
+ * @param <E> the protocol-specific representation of the events
+ */
+public abstract class InputEventBatcher<E>
+{
+    /**
+     * The name of the configuration property which defines the interval in
+     * milliseconds at which the queued events are sent. The events are sent as
+     * soon as they are queued if it is not positive.
+     */
+    public static final String BATCH_INTERVAL_PNAME
+        = "net.java.sip.communicator.service.protocol.InputEventBatcher"
+            + ".BATCH_INTERVAL";
+
+    /**
+     * The default interval in milliseconds at which the queued events are
+     * sent.
+     */
+    private static final long DEFAULT_BATCH_INTERVAL = 30;
+
+    /**
+     * The maximum number of events sent in a single batch.
+     */
+    public static final int MAX_BATCH_SIZE = 64;
+
+    /**
+     * The thread which sends the batches of all the instances.
+     */
+    private static ScheduledExecutorService executor;
+
+    /**
+     * The events queued for each <tt>CallPeer</tt>.
+     */
+    private final Map<CallPeer, Batch<E>> batches
+        = new LinkedHashMap<CallPeer, Batch<E>>();
+
+    /**
+     * The interval in milliseconds at which the queued events are sent.
+     */
+    private final long interval;
+
+    /**
+     * Whether the sending of the queued events has been scheduled.
+     */
+    private boolean scheduled = false;
+
+    /**
+     * Sends the queued events.
+     */
+    private final Runnable flush
+        = new Runnable()
+        {
+            public void run()
+            {
+                flush();
+            }
+        };
+
+    /**
+     * Initializes a new batcher with the interval defined in the
+     * configuration.
+     */
+    protected InputEventBatcher()
+    {
+        this(getConfiguredInterval());
+    }
+
+    /**
+     * Initializes a new batcher with a specific interval.
+     *
+     * @param interval the interval in milliseconds at which the queued events
+     * are sent or a non-positive value to send them as soon as they are
+     * queued.
+     */
+    protected InputEventBatcher(long interval)
+    {
+        this.interval = interval;
+    }
+
+    /**
+     * Returns the interval in milliseconds at which the queued events are sent
+     * as defined in the configuration.
+     *
+     * @return the interval in milliseconds at which the queued events are
+     * sent.
+     */
+    private static long getConfiguredInterval()
+    {
+        long interval = DEFAULT_BATCH_INTERVAL;
+
+        if (ProtocolProviderActivator.getBundleContext() != null)
+        {
+            interval
+                = ProtocolProviderActivator.getConfigurationService().getLong(
+                        BATCH_INTERVAL_PNAME,
+                        interval);
+        }
+        return interval;
+    }
+
+    /**
+     * Returns the thread which sends the batches, creating it if necessary.
+     *
+     * @return the thread which sends the batches.
+     */
+    private static synchronized ScheduledExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor
+                = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactory()
+                        {
+                            public Thread newThread(Runnable r)
+                            {
+                                Thread t
+                                    = new Thread(r, "InputEventBatcher");
+
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+        }
+        return executor;
+    }
+
+    /**
+     * Queues an event to be sent to a <tt>CallPeer</tt>.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to send the event to.
+     * @param event the event.
+     * @param move <tt>true</tt> if the event is a mouse move, which replaces
+     * the previous event if it is a mouse move as well.
+     */
+    public void add(CallPeer callPeer, E event, boolean move)
+    {
+        if (interval <= 0)
+        {
+            send(callPeer, Collections.singletonList(event));
+            return;
+        }
+
+        synchronized (batches)
+        {
+            Batch<E> batch = batches.get(callPeer);
+
+            if (batch == null)
+            {
+                batch = new Batch<E>();
+                batches.put(callPeer, batch);
+            }
+
+            int size = batch.events.size();
+
+            if (move && batch.lastIsMove && (size != 0))
+                batch.events.set(size - 1, event);
+            else
+                batch.events.add(event);
+            batch.lastIsMove = move;
+
+            if (!scheduled)
+            {
+                scheduled = true;
+                getExecutor().schedule(
+                        flush,
+                        interval,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Sends the queued events.
+     */
+    public void flush()
+    {
+        Map<CallPeer, Batch<E>> batches;
+
+        synchronized (this.batches)
+        {
+            scheduled = false;
+            if (this.batches.isEmpty())
+                return;
+            batches = new LinkedHashMap<CallPeer, Batch<E>>(this.batches);
+            this.batches.clear();
+        }
+
+        for (Map.Entry<CallPeer, Batch<E>> e : batches.entrySet())
+        {
+            List<E> events = e.getValue().events;
+
+            for (int i = 0; i < events.size(); i += MAX_BATCH_SIZE)
+            {
+                send(
+                        e.getKey(),
+                        events.subList(
+                                i,
+                                Math.min(events.size(), i + MAX_BATCH_SIZE)));
+            }
+        }
+    }
+
+    /**
+     * Drops the events queued for a <tt>CallPeer</tt>, e.g. because it has
+     * left the call.
+     *
+     * @param callPeer the <tt>CallPeer</tt>.
+     */
+    public void remove(CallPeer callPeer)
+    {
+        synchronized (batches)
+        {
+            batches.remove(callPeer);
+        }
+    }
+
+    /**
+     * Sends a batch of events to a <tt>CallPeer</tt> in a single message.
+     *
+     * @param callPeer the <tt>CallPeer</tt> to send the events to.
+     * @param events the events in the order they occurred.
+     */
+    protected abstract void send(CallPeer callPeer, List<E> events);
+
+    /**
+     * The events queued for a <tt>CallPeer</tt>.
+     *
+     * @param <E> the protocol-specific representation of the events
+     */
+    private static class Batch<E>
+    {
+        /**
+         * The events in the order they occurred.
+         */
+        final List<E> events = new ArrayList<E>();
+
+        /**
+         * Whether the last event of {@link #events} is a mouse move.
+         */
+        boolean lastIsMove;
+    }
+}
@@ -0,0 +1,594 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license. See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.service.protocol;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.util.*;
+
+import org.jitsi.service.configuration.*;
+
+/**
+ * Delivers the events of an operation set to its listeners.
+ * <p>
+ * By default the events are delivered synchronously, on the thread which
+ * fires them, as they always were. When {@link #ASYNC_DISPATCH_PNAME} is
+ * <tt>true</tt>, each listener instead receives its events in order on a
+ * small pool of threads shared by all the operation sets, so that a slow
+ * listener does not stall the network thread of the protocol stack nor the
+ * other listeners.
+ * </p>
+ * <p>
+ * The dispatcher warns about the listeners which take longer than
+ * {@link #SLOW_LISTENER_THRESHOLD_PNAME} milliseconds to handle an event.
+ * </p>
+ */
+public class ProtocolEventDispatcher
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>ProtocolEventDispatcher</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(ProtocolEventDispatcher.class);
+
+    /**
+     * The name of the property which indicates whether the events are
+     * delivered asynchronously.
+     */
+    public static final String ASYNC_DISPATCH_PNAME
+        = "net.java.sip.communicator.service.protocol.ASYNC_EVENT_DISPATCH";
+
+    /**
+     * The name of the property which defines the number of milliseconds a
+     * listener may take to handle an event before it is reported as slow.
+     */
+    public static final String SLOW_LISTENER_THRESHOLD_PNAME
+        = "net.java.sip.communicator.service.protocol"
+            + ".SLOW_EVENT_LISTENER_THRESHOLD";
+
+    /**
+     * The name of the property which defines the number of threads the
+     * events are delivered on when they are delivered asynchronously.
+     */
+    public static final String DISPATCH_THREADS_PNAME
+        = "net.java.sip.communicator.service.protocol.EVENT_DISPATCH_THREADS";
+
+    /**
+     * The default value of {@link #SLOW_LISTENER_THRESHOLD_PNAME}.
+     */
+    private static final long DEFAULT_SLOW_LISTENER_THRESHOLD = 500;
+
+    /**
+     * The default value of {@link #DISPATCH_THREADS_PNAME}.
+     */
+    private static final int DEFAULT_DISPATCH_THREADS = 2;
+
+    /**
+     * The number of events which may wait for a listener. The threads firing
+     * more events wait for the listener to catch up.
+     */
+    private static final int MAX_QUEUE_DEPTH = 1000;
+
+    /**
+     * The maximum number of events delivered to a listener before the thread
+     * is given to the other listeners.
+     */
+    private static final int MAX_BATCH = 64;
+
+    /**
+     * The minimum number of milliseconds between two warnings about the same
+     * slow listener.
+     */
+    private static final long SLOW_LISTENER_WARNING_INTERVAL = 60000;
+
+    /**
+     * The threads the events are delivered on or <tt>null</tt> if they have
+     * not been needed yet.
+     */
+    private static ExecutorService executor;
+
+    /**
+     * Whether the current thread is one the events are delivered on.
+     */
+    private static final ThreadLocal<Boolean> inDispatchThread
+        = new ThreadLocal<Boolean>();
+
+    /**
+     * The name of this dispatcher used in the logs.
+     */
+    private final String name;
+
+    /**
+     * Whether the events are delivered asynchronously.
+     */
+    private final boolean async;
+
+    /**
+     * The number of nanoseconds a listener may take to handle an event before
+     * it is reported as slow.
+     */
+    private final long slowListenerThreshold;
+
+    /**
+     * The channels of the listeners.
+     */
+    private final Map<Object, Channel> channels
+        = new IdentityHashMap<Object, Channel>();
+
+    /**
+     * Creates a dispatcher configured by the <tt>ConfigurationService</tt>.
+     *
+     * @param name the name of the dispatcher used in the logs.
+     */
+    public ProtocolEventDispatcher(String name)
+    {
+        this.name = name;
+
+        ConfigurationService cfg
+            = (ProtocolProviderActivator.getBundleContext() == null)
+                ? null
+                : ProtocolProviderActivator.getConfigurationService();
+
+        if (cfg == null)
+        {
+            async = false;
+            slowListenerThreshold
+                = TimeUnit.MILLISECONDS.toNanos(
+                        DEFAULT_SLOW_LISTENER_THRESHOLD);
+        }
+        else
+        {
+            async = cfg.getBoolean(ASYNC_DISPATCH_PNAME, false);
+            slowListenerThreshold
+                = TimeUnit.MILLISECONDS.toNanos(
+                        cfg.getLong(
+                                SLOW_LISTENER_THRESHOLD_PNAME,
+                                DEFAULT_SLOW_LISTENER_THRESHOLD));
+        }
+    }
+
+    /**
+     * Returns the threads the events are delivered on, creating them if
+     * necessary.
+     *
+     * @return the threads the events are delivered on.
+     */
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            int threads = DEFAULT_DISPATCH_THREADS;
+
+            if (ProtocolProviderActivator.getBundleContext() != null)
+            {
+                threads
+                    = ProtocolProviderActivator.getConfigurationService()
+                        .getInt(DISPATCH_THREADS_PNAME, threads);
+            }
+
+            ThreadPoolExecutor pool
+                = new ThreadPoolExecutor(
+                        Math.max(1, threads), Math.max(1, threads),
+                        60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(),
+                        new ThreadFactory()
+                        {
+                            private int count = 0;
+
+                            public synchronized Thread newThread(Runnable r)
+                            {
+                                Thread t
+                                    = new Thread(
+                                            r,
+                                            "ProtocolEventDispatcher-"
+                                                + (++count));
+
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Determines whether the events are delivered asynchronously.
+     *
+     * @return <tt>true</tt> if the events are delivered asynchronously.
+     */
+    public boolean isAsynchronous()
+    {
+        return async;
+    }
+
+    /**
+     * Delivers an event to listeners.
+     *
+     * @param <L> the type of the listeners.
+     * @param <E> the type of the event.
+     * @param listeners the listeners to deliver the event to.
+     * @param event the event to deliver.
+     * @param delivery the method of the listeners the event is delivered
+     * with.
+     */
+    public <L, E> void fire(
+            Iterable<L> listeners,
+            E event,
+            Delivery<L, E> delivery)
+    {
+        for (L listener : listeners)
+            fire(listener, event, delivery);
+    }
+
+    /**
+     * Delivers an event to a listener.
+     *
+     * @param <L> the type of the listener.
+     * @param <E> the type of the event.
+     * @param listener the listener to deliver the event to.
+     * @param event the event to deliver.
+     * @param delivery the method of the listener the event is delivered
+     * with.
+     */
+    public <L, E> void fire(L listener, E event, Delivery<L, E> delivery)
+    {
+        Channel channel = getChannel(listener);
+
+        if (async)
+            channel.enqueue(new Pending<L, E>(listener, event, delivery));
+        else
+            channel.deliver(listener, event, delivery);
+    }
+
+    /**
+     * Forgets a listener which has been removed from the operation set. A
+     * listener with events still queued is forgotten once they have been
+     * delivered, so that a listener added again in the meantime gets its
+     * events in order.
+     *
+     * @param listener the listener which has been removed.
+     */
+    public void removeListener(Object listener)
+    {
+        synchronized (channels)
+        {
+            Channel channel = channels.get(listener);
+
+            if (channel != null)
+            {
+                if (channel.isIdle())
+                    channels.remove(listener);
+                else
+                    channel.removed = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the channel of a listener, creating it if necessary.
+     *
+     * @param listener the listener.
+     * @return the channel of the listener.
+     */
+    private Channel getChannel(Object listener)
+    {
+        synchronized (channels)
+        {
+            Channel channel = channels.get(listener);
+
+            if (channel == null)
+            {
+                channel = new Channel(listener);
+                channels.put(listener, channel);
+            }
+            else
+                channel.removed = false;
+            return channel;
+        }
+    }
+
+    /**
+     * Calls the method of a listener which handles a type of events.
+     *
+     * @param <L> the type of the listener.
+     * @param <E> the type of the events.
+     */
+    public interface Delivery<L, E>
+    {
+        /**
+         * Delivers an event to a listener.
+         *
+         * @param listener the listener.
+         * @param event the event.
+         */
+        public void deliver(L listener, E event);
+    }
+
+    /**
+     * An event waiting to be delivered to a listener.
+     *
+     * @param <L> the type of the listener.
+     * @param <E> the type of the event.
+     */
+    private static class Pending<L, E>
+    {
+        /**
+         * The listener.
+         */
+        final L listener;
+
+        /**
+         * The event.
+         */
+        final E event;
+
+        /**
+         * The method of the listener the event is delivered with.
+         */
+        final Delivery<L, E> delivery;
+
+        /**
+         * Creates an event waiting to be delivered.
+         *
+         * @param listener the listener.
+         * @param event the event.
+         * @param delivery the method of the listener the event is delivered
+         * with.
+         */
+        Pending(L listener, E event, Delivery<L, E> delivery)
+        {
+            this.listener = listener;
+            this.event = event;
+            this.delivery = delivery;
+        }
+
+        /**
+         * Delivers the event through <tt>channel</tt>.
+         *
+         * @param channel the channel of the listener.
+         */
+        void deliver(Channel channel)
+        {
+            channel.deliver(listener, event, delivery);
+        }
+    }
+
+    /**
+     * Delivers the events of a listener in order.
+     */
+    private class Channel
+        implements Runnable
+    {
+        /**
+         * The listener.
+         */
+        private final Object listener;
+
+        /**
+         * The name of the class of the listener.
+         */
+        private final String listenerName;
+
+        /**
+         * Whether the listener has been removed while events were queued for
+         * it. Guarded by {@link ProtocolEventDispatcher#channels}.
+         */
+        boolean removed = false;
+
+        /**
+         * The events waiting for the listener.
+         */
+        private final LinkedList<Pending<?, ?>> queue
+            = new LinkedList<Pending<?, ?>>();
+
+        /**
+         * Whether a thread has been asked to deliver the queued events.
+         */
+        private boolean scheduled = false;
+
+        /**
+         * The last time the listener was reported as slow.
+         */
+        private long lastSlowWarning;
+
+        /**
+         * Creates the channel of a listener.
+         *
+         * @param listener the listener.
+         */
+        Channel(Object listener)
+        {
+            this.listener = listener;
+            this.listenerName = listener.getClass().getName();
+        }
+
+        /**
+         * Queues an event for the listener, waiting for the listener to catch
+         * up if too many are already queued.
+         *
+         * @param pending the event.
+         */
+        void enqueue(Pending<?, ?> pending)
+        {
+            boolean schedule = false;
+
+            synchronized (this)
+            {
+                // The dispatching threads must not wait for themselves.
+                boolean wait = !Boolean.TRUE.equals(inDispatchThread.get());
+                boolean interrupted = false;
+
+                while (wait && queue.size() >= MAX_QUEUE_DEPTH)
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+
+                queue.add(pending);
+                if (!scheduled)
+                {
+                    scheduled = true;
+                    schedule = true;
+                }
+            }
+
+            if (schedule)
+                getExecutor().execute(this);
+        }
+
+        /**
+         * Determines whether no event is queued or being delivered
+         * asynchronously.
+         *
+         * @return <tt>true</tt> if no event is queued or being delivered
+         * asynchronously.
+         */
+        synchronized boolean isIdle()
+        {
+            return !scheduled;
+        }
+
+        /**
+         * Delivers the queued events, giving the thread back after
+         * {@link #MAX_BATCH} events.
+         */
+        public void run()
+        {
+            inDispatchThread.set(Boolean.TRUE);
+            try
+            {
+                for (int i = 0; i < MAX_BATCH; i++)
+                {
+                    Pending<?, ?> pending;
+
+                    synchronized (this)
+                    {
+                        pending = queue.poll();
+                        if (pending == null)
+                            scheduled = false;
+                        else
+                            notifyAll();
+                    }
+                    if (pending == null)
+                    {
+                        forgetIfRemoved();
+                        return;
+                    }
+
+                    try
+                    {
+                        pending.deliver(this);
+                    }
+                    catch (Throwable t)
+                    {
+                        if (t instanceof ThreadDeath)
+                            throw (ThreadDeath) t;
+                        logger.error(
+                            "Error delivering " + name + " event to "
+                                + listenerName,
+                            t);
+                    }
+                }
+
+                // Let the other listeners have the thread.
+                getExecutor().execute(this);
+            }
+            finally
+            {
+                inDispatchThread.remove();
+            }
+        }
+
+        /**
+         * Forgets the listener if it has been removed and its queued events
+         * have all been delivered.
+         */
+        private void forgetIfRemoved()
+        {
+            synchronized (channels)
+            {
+                if (removed
+                        && (channels.get(listener) == this)
+                        && isIdle())
+                    channels.remove(listener);
+            }
+        }
+
+        /**
+         * Delivers an event to the listener and warns if the listener took
+         * too long to handle it.
+         *
+         * @param <L> the type of the listener.
+         * @param <E> the type of the event.
+         * @param listener the listener.
+         * @param event the event.
+         * @param delivery the method of the listener the event is delivered
+         * with.
+         */
+        <L, E> void deliver(L listener, E event, Delivery<L, E> delivery)
+        {
+            long start = System.nanoTime();
+
+            try
+            {
+                delivery.deliver(listener, event);
+            }
+            finally
+            {
+                delivered(System.nanoTime() - start, event);
+            }
+        }
+
+        /**
+         * Warns if the listener took too long to handle an event.
+         *
+         * @param duration the time the listener took to handle the event in
+         * nanoseconds.
+         * @param event the event.
+         */
+        private void delivered(long duration, Object event)
+        {
+            boolean warn = false;
+
+            if (duration <= slowListenerThreshold)
+                return;
+
+            synchronized (this)
+            {
+                long now = System.currentTimeMillis();
+
+                if (now - lastSlowWarning >= SLOW_LISTENER_WARNING_INTERVAL)
+                {
+                    lastSlowWarning = now;
+                    warn = true;
+                }
+            }
+
+            if (warn)
+            {
+                logger.warn(
+                    listenerName + " took "
+                        + TimeUnit.NANOSECONDS.toMillis(duration)
+                        + " ms to handle a " + name + " event "
+                        + event.getClass().getSimpleName()
+                        + (async ? "" : " on " + Thread.currentThread()));
+            }
+        }
+    }
+}
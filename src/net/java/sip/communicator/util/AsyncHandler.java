@@ -0,0 +1,322 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * A logging <tt>Handler</tt> which hands the records over to a thread of its
+ * own that formats and writes them with a target <tt>Handler</tt>, so that
+ * the logging threads neither wait for the disk nor contend for the lock of
+ * the target.
+ * <p>
+ * The records wait for the writing thread in a bounded buffer. When it is
+ * full, the records below <tt>WARNING</tt> are dropped and counted, and the
+ * number of dropped records is written as soon as there is room again. The
+ * warnings and errors are never dropped, the threads logging them wait for
+ * room instead.
+ * </p>
+ * <p>
+ * The handler is configured through the following <tt>LogManager</tt>
+ * properties, prefixed with the name of this class:
+ * <ul>
+ * <li><tt>target</tt> the class of the target <tt>Handler</tt> which is
+ * configured by its own properties. Defaults to our <tt>FileHandler</tt>.</li>
+ * <li><tt>capacity</tt> the number of records the buffer holds. Defaults to
+ * {@link #DEFAULT_CAPACITY}.</li>
+ * <li><tt>level</tt> the level of this handler. Defaults to
+ * <tt>ALL</tt>, the level of the target applies as well.</li>
+ * </ul>
+ * </p>
+ */
+public class AsyncHandler
+    extends Handler
+{
+    /**
+     * The default number of records the buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The handler which formats and writes the records.
+     */
+    private final Handler target;
+
+    /**
+     * The records waiting to be written.
+     */
+    private final BlockingQueue<LogRecord> buffer;
+
+    /**
+     * The number of records dropped since this handler was created.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The number of dropped records which has last been written.
+     */
+    private long reportedDropped = 0;
+
+    /**
+     * The thread writing the records.
+     */
+    private final Thread writer;
+
+    /**
+     * Whether this handler has been closed.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a handler configured by the <tt>LogManager</tt> properties.
+     *
+     * @throws Exception if the target handler cannot be created.
+     */
+    public AsyncHandler()
+        throws Exception
+    {
+        this(createTarget(), getCapacity());
+
+        String level = getProperty("level");
+
+        if (level != null)
+        {
+            try
+            {
+                setLevel(Level.parse(level));
+            }
+            catch (IllegalArgumentException ex)
+            {
+                reportError("Bad level " + level, ex,
+                    ErrorManager.GENERIC_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Creates a handler which writes the records with <tt>target</tt>.
+     *
+     * @param target the handler which formats and writes the records.
+     * @param capacity the number of records the buffer holds.
+     */
+    public AsyncHandler(Handler target, int capacity)
+    {
+        this.target = target;
+        this.buffer = new ArrayBlockingQueue<LogRecord>(Math.max(1, capacity));
+
+        writer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                runInWriter();
+            }
+        }, "AsyncLogWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record to be written by the target handler.
+     *
+     * @param record the record to write.
+     */
+    @Override
+    public void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record) || !target.isLoggable(record))
+            return;
+
+        // The caller of the records created by others than our Logger can
+        // only be inferred from the stack of the logging thread.
+        if (!(record instanceof ScLogRecord))
+            record.getSourceClassName();
+
+        if (record.getLevel().intValue() >= Level.WARNING.intValue())
+        {
+            try
+            {
+                buffer.put(record);
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+            }
+        }
+        else if (!buffer.offer(record))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * Flushes the target handler. The records still waiting in the buffer
+     * are not written.
+     */
+    @Override
+    public void flush()
+    {
+        target.flush();
+    }
+
+    /**
+     * Writes the records waiting in the buffer and closes the target
+     * handler.
+     */
+    @Override
+    public void close()
+        throws SecurityException
+    {
+        if (closed)
+            return;
+        closed = true;
+
+        writer.interrupt();
+        try
+        {
+            writer.join(5000);
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        // Write what the writer left behind.
+        LogRecord record;
+
+        while ((record = buffer.poll()) != null)
+            target.publish(record);
+        publishDropped();
+        target.close();
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full
+     * since this handler was created.
+     *
+     * @return the number of records dropped.
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the number of records dropped since it was last written, if
+     * any.
+     */
+    private synchronized void publishDropped()
+    {
+        long total = dropped.get();
+        long count = total - reportedDropped;
+
+        if (count > 0)
+        {
+            reportedDropped = total;
+
+            LogRecord record
+                = new LogRecord(
+                        Level.WARNING,
+                        "Dropped " + count + " log records, " + total
+                            + " in total");
+
+            record.setLoggerName(AsyncHandler.class.getName());
+            record.setSourceClassName(AsyncHandler.class.getName());
+            record.setSourceMethodName(null);
+            target.publish(record);
+        }
+    }
+
+    /**
+     * Writes the records as they arrive until this handler is closed.
+     */
+    private void runInWriter()
+    {
+        while (!closed)
+        {
+            LogRecord record;
+
+            try
+            {
+                record = buffer.take();
+            }
+            catch (InterruptedException ie)
+            {
+                break;
+            }
+
+            try
+            {
+                target.publish(record);
+                publishDropped();
+            }
+            catch (RuntimeException ex)
+            {
+                reportError(null, ex, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Gets a <tt>LogManager</tt> property of this handler.
+     *
+     * @param name the name of the property without the prefix.
+     * @return the trimmed value of the property or <tt>null</tt>.
+     */
+    private static String getProperty(String name)
+    {
+        String value
+            = LogManager.getLogManager().getProperty(
+                    AsyncHandler.class.getName() + "." + name);
+
+        return (value == null) ? null : value.trim();
+    }
+
+    /**
+     * Gets the number of records the buffer holds from the
+     * <tt>LogManager</tt> properties.
+     *
+     * @return the number of records the buffer holds.
+     */
+    private static int getCapacity()
+    {
+        String capacity = getProperty("capacity");
+
+        if (capacity != null)
+        {
+            try
+            {
+                return Integer.parseInt(capacity);
+            }
+            catch (NumberFormatException ex)
+            {
+            }
+        }
+        return DEFAULT_CAPACITY;
+    }
+
+    /**
+     * Creates the target handler from the <tt>LogManager</tt> properties.
+     * The class is loaded by the system class loader as the
+     * <tt>LogManager</tt> does.
+     *
+     * @return the target handler.
+     * @throws Exception if the target handler cannot be created.
+     */
+    private static Handler createTarget()
+        throws Exception
+    {
+        String className = getProperty("target");
+
+        if (className == null || className.length() == 0)
+            return new FileHandler();
+
+        return (Handler)
+            ClassLoader.getSystemClassLoader().loadClass(className)
+                .newInstance();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.util.*;
+
+import org.osgi.framework.*;
+import org.osgi.service.startlevel.*;
+
+/**
+ * Starts the non-essential bundles only once the user interface has been
+ * loaded, so that they do not delay the main window.
+ * <p>
+ * The non-essential bundles are given start levels above the beginning start
+ * level of the framework, <tt>org.osgi.framework.startlevel.beginning</tt>,
+ * and up to the level defined by the {@link #START_LEVEL_PNAME} framework
+ * property. When the framework has started the bundles of its beginning
+ * level, this class waits for the {@link StartupProfiler#UI_LOADED}
+ * milestone, or for {@link #TIMEOUT_PNAME} milliseconds when there is no user
+ * interface to load, then raises the start level of the framework so that
+ * it starts the deferred bundles in the background.
+ * </p>
+ */
+public class DeferredActivation
+    implements FrameworkListener,
+               StartupProfiler.MilestoneListener
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>DeferredActivation</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(DeferredActivation.class);
+
+    /**
+     * The name of the framework property which defines the start level the
+     * framework is raised to once the user interface has been loaded. No
+     * bundle is deferred if it is not above the beginning start level.
+     */
+    public static final String START_LEVEL_PNAME
+        = "net.java.sip.communicator.util.DeferredActivation.START_LEVEL";
+
+    /**
+     * The name of the framework property which defines the time in
+     * milliseconds to wait for the user interface before starting the
+     * deferred bundles anyway.
+     */
+    public static final String TIMEOUT_PNAME
+        = "net.java.sip.communicator.util.DeferredActivation.TIMEOUT";
+
+    /**
+     * The default time in milliseconds to wait for the user interface.
+     */
+    private static final long DEFAULT_TIMEOUT = 30000;
+
+    /**
+     * The context of the util bundle.
+     */
+    private final BundleContext bundleContext;
+
+    /**
+     * The timer which starts the deferred bundles if the user interface
+     * takes too long to load.
+     */
+    private Timer timeoutTimer;
+
+    /**
+     * Whether the start level of the framework has been raised.
+     */
+    private boolean raised = false;
+
+    /**
+     * Creates the deferred activation of the framework of
+     * <tt>bundleContext</tt>.
+     *
+     * @param bundleContext the context of the util bundle.
+     */
+    DeferredActivation(BundleContext bundleContext)
+    {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Returns the start level the framework is to be raised to once the user
+     * interface has been loaded.
+     *
+     * @param bundleContext a bundle context of the framework.
+     * @return the start level of the deferred bundles or <tt>-1</tt> if none
+     * is defined.
+     */
+    static int getDeferredStartLevel(BundleContext bundleContext)
+    {
+        String startLevel = bundleContext.getProperty(START_LEVEL_PNAME);
+
+        if (startLevel != null)
+        {
+            try
+            {
+                return Integer.parseInt(startLevel.trim());
+            }
+            catch (NumberFormatException ex)
+            {
+                logger.warn("Invalid " + START_LEVEL_PNAME + ": "
+                    + startLevel);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether there are deferred bundles which the framework has
+     * not started yet.
+     *
+     * @param bundleContext a bundle context of the framework.
+     * @return <tt>true</tt> if the start level of the framework is below the
+     * deferred start level.
+     */
+    static boolean isPending(BundleContext bundleContext)
+    {
+        StartLevel startLevel = getStartLevel(bundleContext);
+
+        return (startLevel != null)
+            && (startLevel.getStartLevel()
+                    < getDeferredStartLevel(bundleContext));
+    }
+
+    /**
+     * Returns the start level of a bundle.
+     *
+     * @param bundleContext a bundle context of the framework.
+     * @param bundle the bundle.
+     * @return the start level of <tt>bundle</tt> or <tt>-1</tt> if it is
+     * unknown.
+     */
+    static int getBundleStartLevel(BundleContext bundleContext, Bundle bundle)
+    {
+        StartLevel startLevel = getStartLevel(bundleContext);
+
+        if (startLevel != null)
+        {
+            try
+            {
+                return startLevel.getBundleStartLevel(bundle);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                // The bundle has been uninstalled.
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the start level service of the framework.
+     *
+     * @param bundleContext a bundle context of the framework.
+     * @return the start level service or <tt>null</tt> if it is not
+     * available.
+     */
+    private static StartLevel getStartLevel(BundleContext bundleContext)
+    {
+        return ServiceUtils.getService(bundleContext, StartLevel.class);
+    }
+
+    /**
+     * Starts waiting for the framework to start the bundles of its beginning
+     * start level.
+     */
+    void start()
+    {
+        bundleContext.addFrameworkListener(this);
+    }
+
+    /**
+     * Stops waiting for the user interface.
+     */
+    synchronized void stop()
+    {
+        bundleContext.removeFrameworkListener(this);
+        StartupProfiler.removeMilestoneListener(this);
+        if (timeoutTimer != null)
+        {
+            timeoutTimer.cancel();
+            timeoutTimer = null;
+        }
+    }
+
+    /**
+     * Waits for the user interface once the framework has started the
+     * bundles of its beginning start level and marks
+     * {@link StartupProfiler#DEFERRED_STARTED} once it has started the
+     * deferred ones.
+     *
+     * @param evt the event of the framework.
+     */
+    public void frameworkEvent(FrameworkEvent evt)
+    {
+        switch (evt.getType())
+        {
+        case FrameworkEvent.STARTED:
+            if (isPending(bundleContext))
+                waitForUserInterface();
+            break;
+        case FrameworkEvent.STARTLEVEL_CHANGED:
+            if (raised && !isPending(bundleContext))
+                StartupProfiler.mark(StartupProfiler.DEFERRED_STARTED);
+            break;
+        }
+    }
+
+    /**
+     * Starts the deferred bundles once the user interface has been loaded.
+     *
+     * @param milestone the milestone reached.
+     */
+    public void milestoneReached(String milestone)
+    {
+        if (StartupProfiler.UI_LOADED.equals(milestone))
+            raiseStartLevel();
+    }
+
+    /**
+     * Waits for the user interface to be loaded, or for the timeout, before
+     * starting the deferred bundles.
+     */
+    private synchronized void waitForUserInterface()
+    {
+        StartupProfiler.addMilestoneListener(this);
+        if (StartupProfiler.isReached(StartupProfiler.UI_LOADED))
+        {
+            raiseStartLevel();
+            return;
+        }
+
+        long timeout = DEFAULT_TIMEOUT;
+        String timeoutValue = bundleContext.getProperty(TIMEOUT_PNAME);
+
+        if (timeoutValue != null)
+        {
+            try
+            {
+                timeout = Long.parseLong(timeoutValue.trim());
+            }
+            catch (NumberFormatException ex)
+            {
+                logger.warn("Invalid " + TIMEOUT_PNAME + ": " + timeoutValue);
+            }
+        }
+
+        timeoutTimer = new Timer("DeferredActivationTimeout", true);
+        timeoutTimer.schedule(
+                new TimerTask()
+                {
+                    @Override
+                    public void run()
+                    {
+                        logger.warn("The user interface has not been loaded"
+                            + " in time, starting the deferred bundles.");
+                        raiseStartLevel();
+                    }
+                },
+                timeout);
+    }
+
+    /**
+     * Raises the start level of the framework to the deferred start level.
+     * The framework starts the deferred bundles asynchronously.
+     */
+    private synchronized void raiseStartLevel()
+    {
+        if (raised)
+            return;
+        raised = true;
+
+        StartupProfiler.removeMilestoneListener(this);
+        if (timeoutTimer != null)
+        {
+            timeoutTimer.cancel();
+            timeoutTimer = null;
+        }
+
+        StartLevel startLevel = getStartLevel(bundleContext);
+        int deferredStartLevel = getDeferredStartLevel(bundleContext);
+
+        if (startLevel == null)
+        {
+            logger.error("No start level service, the deferred bundles"
+                + " will not be started.");
+            return;
+        }
+
+        if (logger.isInfoEnabled())
+            logger.info("Starting the deferred bundles up to start level "
+                + deferredStartLevel);
+        startLevel.setStartLevel(deferredStartLevel);
+    }
+}
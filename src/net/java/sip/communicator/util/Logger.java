@@ -15,6 +15,21 @@ import java.util.logging.*;
  */
 public class Logger
 {
+    /**
+     * The name of the <tt>LogManager</tt> property which indicates whether
+     * the class, method and line each message is logged from are found out.
+     * Doing so walks the stack of the logging thread for each message, so it
+     * may be turned off when debug logging is enabled under load.
+     */
+    public static final String CAPTURE_CALLER_PNAME
+        = "net.java.sip.communicator.util.Logger.captureCaller";
+
+    /**
+     * Whether the class, method and line each message is logged from are
+     * found out.
+     */
+    private static volatile boolean captureCaller = readCaptureCaller();
+
     /**
      * The java.util.Logger that would actually be doing the logging.
      */
@@ -81,7 +96,7 @@ public class Logger
     {
         if (loggerDelegate.isLoggable(Level.FINEST)) {
             StackTraceElement caller = new Throwable().getStackTrace()[1];
-            loggerDelegate.log(Level.FINEST, "[entry] " + caller.getMethodName());
+            log(Level.FINEST, "[entry] " + caller.getMethodName(), null);
         }
     }
 
@@ -92,7 +107,7 @@ public class Logger
     {
         if (loggerDelegate.isLoggable(Level.FINEST)) {
             StackTraceElement caller = new Throwable().getStackTrace()[1];
-            loggerDelegate.log(Level.FINEST, "[exit] " + caller.getMethodName());
+            log(Level.FINEST, "[exit] " + caller.getMethodName(), null);
         }
     }
 
@@ -118,7 +133,7 @@ public class Logger
      */
     public void trace(Object msg)
     {
-        loggerDelegate.finer(msg!=null?msg.toString():"null");
+        log(Level.FINER, msg, null);
     }
 
     /**
@@ -129,7 +144,7 @@ public class Logger
      */
     public void trace(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.FINER, msg!=null?msg.toString():"null", t);
+        log(Level.FINER, msg, t);
     }
 
     /**
@@ -154,7 +169,7 @@ public class Logger
      */
     public void debug(Object msg)
     {
-        loggerDelegate.fine(msg!=null?msg.toString():"null");
+        log(Level.FINE, msg, null);
     }
 
     /**
@@ -165,7 +180,7 @@ public class Logger
      */
     public void debug(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.FINE, msg!=null?msg.toString():"null", t);
+        log(Level.FINE, msg, t);
     }
 
     /**
@@ -190,7 +205,7 @@ public class Logger
      */
     public void info(Object msg)
     {
-        loggerDelegate.info(msg!=null?msg.toString():"null");
+        log(Level.INFO, msg, null);
     }
 
     /**
@@ -201,7 +216,7 @@ public class Logger
      */
     public void info(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.INFO, msg!=null?msg.toString():"null", t);
+        log(Level.INFO, msg, t);
     }
 
     /**
@@ -215,7 +230,7 @@ public class Logger
      */
     public void warn(Object msg)
     {
-        loggerDelegate.warning(msg!=null?msg.toString():"null");
+        log(Level.WARNING, msg, null);
     }
 
     /**
@@ -226,7 +241,7 @@ public class Logger
      */
     public void warn(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.WARNING, msg!=null?msg.toString():"null", t);
+        log(Level.WARNING, msg, t);
     }
 
     /**
@@ -240,7 +255,7 @@ public class Logger
      */
     public void error(Object msg)
     {
-        loggerDelegate.severe(msg!=null?msg.toString():"null");
+        log(Level.SEVERE, msg, null);
     }
 
     /**
@@ -251,7 +266,7 @@ public class Logger
      */
     public void error(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.SEVERE, msg!=null?msg.toString():"null", t);
+        log(Level.SEVERE, msg, t);
     }
 
     /**
@@ -265,7 +280,7 @@ public class Logger
      */
     public void fatal(Object msg)
     {
-        loggerDelegate.severe(msg!=null?msg.toString():"null");
+        log(Level.SEVERE, msg, null);
     }
 
     /**
@@ -276,7 +291,7 @@ public class Logger
      */
     public void fatal(Object msg, Throwable t)
     {
-        loggerDelegate.log(Level.SEVERE, msg!=null?msg.toString():"null", t);
+        log(Level.SEVERE, msg, t);
     }
 
     /**
@@ -343,6 +358,43 @@ public class Logger
         setLevel(Level.OFF);
     }
 
+    /**
+     * Logs a message if the given level is currently enabled. The message is
+     * turned into a string and its caller found out only in this case.
+     *
+     * @param level the level of the message.
+     * @param msg the message to log.
+     * @param t the <tt>Throwable</tt> to log with the message or
+     * <tt>null</tt>.
+     */
+    private void log(Level level, Object msg, Throwable t)
+    {
+        if (!loggerDelegate.isLoggable(level))
+            return;
+
+        loggerDelegate.log(
+            new ScLogRecord(
+                    level,
+                    (msg != null) ? msg.toString() : "null",
+                    loggerDelegate.getName(),
+                    t,
+                    captureCaller));
+    }
+
+    /**
+     * Reads the value of {@link #CAPTURE_CALLER_PNAME}, which defaults to
+     * <tt>true</tt>.
+     *
+     * @return whether the callers of the messages are to be found out.
+     */
+    private static boolean readCaptureCaller()
+    {
+        String value
+            = LogManager.getLogManager().getProperty(CAPTURE_CALLER_PNAME);
+
+        return (value == null) || Boolean.parseBoolean(value.trim());
+    }
+
     /**
      * Set logging level for all handlers to <tt>level</tt>
      *
@@ -371,6 +423,7 @@ public class Logger
             FileHandler.pattern = null;
             LogManager.getLogManager().reset();
             LogManager.getLogManager().readConfiguration();
+            captureCaller = readCaptureCaller();
         }
         catch (Exception e)
         {
@@ -9,6 +9,7 @@ package net.java.sip.communicator.util;
 import java.net.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.java.sip.communicator.service.dns.*;
 
@@ -943,51 +944,7 @@ public class NetworkUtils
 
         for(int i = 0; i < 2; i++)
         {
-            Lookup lookup;
-            try
-            {
-                lookup = createLookup(domain, v6lookup ? Type.AAAA : Type.A);
-            }
-            catch (TextParseException tpe)
-            {
-                logger.error("Failed to parse domain <" + domain + ">", tpe);
-                throw new ParseException(tpe.getMessage(), 0);
-            }
-            Record[] records = null;
-            try
-            {
-                records = lookup.run();
-            }
-            catch(DnssecRuntimeException e)
-            {
-                throw new DnssecException(e);
-            }
-            if(records != null)
-            {
-                for(Record r : records)
-                {
-                    try
-                    {
-                        addresses.add(
-                            new InetSocketAddress(
-                                // create a new InetAddress filled with the
-                                // domain name to avoid PTR queries
-                                InetAddress.getByAddress(
-                                    domain,
-                                    v6lookup
-                                      ? ((AAAARecord)r).getAddress().getAddress()
-                                      : ((ARecord)r).getAddress().getAddress()
-                                ),
-                                port
-                            )
-                        );
-                    }
-                    catch (UnknownHostException e)
-                    {
-                        logger.error("Invalid record returned from DNS", e);
-                    }
-                }
-            }
+            addresses.addAll(getAddressRecords(domain, port, v6lookup));
             v6lookup = !v6lookup;
         }
         if(logger.isTraceEnabled())
@@ -995,6 +952,121 @@ public class NetworkUtils
         return addresses.toArray(new InetSocketAddress[0]);
     }
 
+    /**
+     * Returns the hosts from either the A or the AAAA records of the specified
+     * domain, without checking whether <tt>domain</tt> is an IP address
+     * literal. This allows the two lookups of
+     * {@link #getAandAAAARecords(String, int)} to be performed in parallel.
+     *
+     * @param domain the name of the domain we'd like to resolve.
+     * @param port the port number of the returned <tt>InetSocketAddress</tt>
+     * @param v6lookup <tt>true</tt> to look AAAA records up, <tt>false</tt>
+     * for A records.
+     * @return the list of addresses returned by the DNS server, possibly
+     * empty.
+     * @throws ParseException if <tt>domain</tt> is not a valid domain name.
+     * @throws DnssecException when a DNSSEC validation failure occurred.
+     */
+    public static List<InetSocketAddress> getAddressRecords(
+            String domain, int port, boolean v6lookup)
+        throws ParseException, DnssecException
+    {
+        List<InetSocketAddress> addresses = new LinkedList<InetSocketAddress>();
+        Lookup lookup;
+        try
+        {
+            lookup = createLookup(domain, v6lookup ? Type.AAAA : Type.A);
+        }
+        catch (TextParseException tpe)
+        {
+            logger.error("Failed to parse domain <" + domain + ">", tpe);
+            throw new ParseException(tpe.getMessage(), 0);
+        }
+        Record[] records = null;
+        try
+        {
+            records = lookup.run();
+        }
+        catch(DnssecRuntimeException e)
+        {
+            throw new DnssecException(e);
+        }
+        if(records != null)
+        {
+            for(Record r : records)
+            {
+                try
+                {
+                    addresses.add(
+                        new InetSocketAddress(
+                            // create a new InetAddress filled with the
+                            // domain name to avoid PTR queries
+                            InetAddress.getByAddress(
+                                domain,
+                                v6lookup
+                                  ? ((AAAARecord)r).getAddress().getAddress()
+                                  : ((ARecord)r).getAddress().getAddress()
+                            ),
+                            port
+                        )
+                    );
+                }
+                catch (UnknownHostException e)
+                {
+                    logger.error("Invalid record returned from DNS", e);
+                }
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Waits for the result of a lookup started with an
+     * <tt>AsyncResolver</tt> and returns it, throwing the exceptions the
+     * corresponding blocking lookup of this class would have thrown. Stops
+     * waiting when the current thread is interrupted, and keeps its
+     * interrupted status.
+     *
+     * @param future the pending result of the lookup.
+     * @param <T> the type of the result
+     * @return the result of the lookup or <tt>null</tt> if the lookup has
+     * been cancelled or the current thread has been interrupted.
+     * @throws ParseException if the looked up name is not a valid domain name.
+     * @throws DnssecException when a DNSSEC validation failure occurred.
+     */
+    public static <T> T getDnsResult(Future<T> future)
+        throws ParseException, DnssecException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch(ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if(cause instanceof ParseException)
+                throw (ParseException) cause;
+            if(cause instanceof DnssecException)
+                throw (DnssecException) cause;
+            if(cause instanceof DnssecRuntimeException)
+                throw new DnssecException((DnssecRuntimeException) cause);
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+        catch(CancellationException e)
+        {
+            return null;
+        }
+    }
+
     /**
      * Returns array of hosts from the A record of the specified domain.
      * The records are ordered against the A record priority
@@ -7,7 +7,6 @@
 package net.java.sip.communicator.util;
 
 import java.io.*;
-import java.text.*;
 import java.util.*;
 import java.util.logging.*;
 
@@ -15,6 +14,12 @@ import java.util.logging.*;
  * Print a brief summary of the LogRecord in a human readable. The summary will
  * typically be on a single line (unless it's too long :) ... what I meant to
  * say is that we don't add any line breaks).
+ * <p>
+ * The formatter holds no lock: each thread formats into its own buffer,
+ * which is reused by the following records. The caller of a
+ * <tt>ScLogRecord</tt> is the one it captured when it was logged, the caller
+ * of other records is inferred from the stack of the formatting thread.
+ * </p>
  *
  * @author Emil Ivov
  */
@@ -25,8 +30,38 @@ public class ScLogFormatter
     static long startTime = System.currentTimeMillis();
 
     private static String lineSeparator = System.getProperty("line.separator");
-    private static DecimalFormat twoDigFmt = new DecimalFormat("00");
-    private static DecimalFormat threeDigFmt = new DecimalFormat("000");
+
+    /**
+     * The capacity above which the buffer of a thread is not kept for the
+     * following records.
+     */
+    private static final int MAX_KEPT_BUFFER_CAPACITY = 16 * 1024;
+
+    /**
+     * The buffer each thread formats its records into.
+     */
+    private static final ThreadLocal<StringBuilder> buffers
+        = new ThreadLocal<StringBuilder>()
+        {
+            @Override
+            protected StringBuilder initialValue()
+            {
+                return new StringBuilder(256);
+            }
+        };
+
+    /**
+     * The calendar each thread computes the times of its records with.
+     */
+    private static final ThreadLocal<Calendar> calendars
+        = new ThreadLocal<Calendar>()
+        {
+            @Override
+            protected Calendar initialValue()
+            {
+                return Calendar.getInstance();
+            }
+        };
 
     /**
      * Format the given LogRecord.
@@ -34,31 +69,38 @@ public class ScLogFormatter
      * @return a formatted log record
      */
     @Override
-    public synchronized String format(LogRecord record)
+    public String format(LogRecord record)
     {
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = buffers.get();
+
+        if (sb.capacity() > MAX_KEPT_BUFFER_CAPACITY)
+        {
+            sb = new StringBuilder(256);
+            buffers.set(sb);
+        }
+        sb.setLength(0);
 
         //current time
-        Calendar cal = Calendar.getInstance();
-        int hour = cal.get(Calendar.HOUR_OF_DAY);
-        int minutes = cal.get(Calendar.MINUTE);
-        int seconds = cal.get(Calendar.SECOND);
-        int millis = cal.get(Calendar.MILLISECOND);
+        Calendar cal = calendars.get();
+        cal.setTimeInMillis(record.getMillis());
 
-        sb.append(twoDigFmt.format(hour)).append(':');
-        sb.append(twoDigFmt.format(minutes)).append(':');
-        sb.append(twoDigFmt.format(seconds)).append('.');
-        sb.append(threeDigFmt.format(millis)).append(' ');
+        appendPadded(sb, cal.get(Calendar.HOUR_OF_DAY), 2).append(':');
+        appendPadded(sb, cal.get(Calendar.MINUTE), 2).append(':');
+        appendPadded(sb, cal.get(Calendar.SECOND), 2).append('.');
+        appendPadded(sb, cal.get(Calendar.MILLISECOND), 3).append(' ');
 
         //log level
         sb.append(record.getLevel().getLocalizedName());
         sb.append(": ");
 
         // Thread ID
-        sb.append("[" + record.getThreadID() + "] ");
+        sb.append('[').append(record.getThreadID()).append("] ");
 
         //caller method
-        int lineNumber = inferCaller(record);
+        int lineNumber
+            = (record instanceof ScLogRecord)
+                ? ((ScLogRecord) record).getLineNumber()
+                : inferCaller(record);
         String loggerName = record.getLoggerName();
 
         if(loggerName == null)
@@ -66,8 +108,8 @@ public class ScLogFormatter
 
         if(loggerName.startsWith("net.java.sip.communicator."))
         {
-            sb.append(loggerName.substring("net.java.sip.communicator."
-                                           .length()));
+            sb.append(loggerName, "net.java.sip.communicator.".length(),
+                loggerName.length());
         }
         else
             sb.append(record.getLoggerName());
@@ -79,7 +121,7 @@ public class ScLogFormatter
 
             //include the line number if we have it.
             if(lineNumber != -1)
-                sb.append("().").append(Integer.toString(lineNumber));
+                sb.append("().").append(lineNumber);
             else
                 sb.append("()");
         }
@@ -103,6 +145,27 @@ public class ScLogFormatter
         return sb.toString();
     }
 
+    /**
+     * Appends a number padded with leading zeros.
+     *
+     * @param sb the buffer to append to.
+     * @param value the positive number to append.
+     * @param digits the minimum number of digits to append.
+     * @return <tt>sb</tt>
+     */
+    private static StringBuilder appendPadded(
+            StringBuilder sb,
+            int value,
+            int digits)
+    {
+        for (int limit = 10; --digits > 0; limit *= 10)
+        {
+            if (value < limit)
+                sb.append('0');
+        }
+        return sb.append(value);
+    }
+
     /**
      * Try to extract the name of the class and method that called the current
      * log statement.
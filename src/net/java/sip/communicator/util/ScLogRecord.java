@@ -0,0 +1,107 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.util.logging.*;
+
+/**
+ * A <tt>LogRecord</tt> created by our <tt>Logger</tt> which knows its caller
+ * as soon as it is created, so that it can be formatted by any thread and
+ * outside of the lock of the handler which writes it.
+ * <p>
+ * When the caller is not captured, the name of the logger stands for the
+ * source class and no source method is reported.
+ * </p>
+ */
+public class ScLogRecord
+    extends LogRecord
+{
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 0L;
+
+    /**
+     * The name of our <tt>Logger</tt> class which is skipped when looking
+     * for the caller.
+     */
+    private static final String LOGGER_CLASS_NAME = Logger.class.getName();
+
+    /**
+     * The line the caller logged this record from or <tt>-1</tt> if unknown.
+     */
+    private int lineNumber = -1;
+
+    /**
+     * Creates a record.
+     *
+     * @param level the level of the record.
+     * @param msg the message of the record.
+     * @param loggerName the name of the logger the record is logged with.
+     * @param thrown the <tt>Throwable</tt> of the record or <tt>null</tt>.
+     * @param captureCaller whether the class, method and line the record is
+     * logged from are to be found out.
+     */
+    ScLogRecord(
+            Level level,
+            String msg,
+            String loggerName,
+            Throwable thrown,
+            boolean captureCaller)
+    {
+        super(level, msg);
+
+        setLoggerName(loggerName);
+        setThrown(thrown);
+
+        if (captureCaller)
+            captureCaller();
+        else
+        {
+            // Keep LogRecord from walking the stack when asked for the source.
+            setSourceClassName(loggerName);
+            setSourceMethodName(null);
+        }
+    }
+
+    /**
+     * Returns the line the caller logged this record from.
+     *
+     * @return the line the caller logged this record from or <tt>-1</tt> if
+     * unknown.
+     */
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * Finds out the first frame out of our <tt>Logger</tt> in the stack of
+     * the current thread.
+     */
+    private void captureCaller()
+    {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        boolean inLogger = false;
+
+        for (StackTraceElement frame : stack)
+        {
+            if (LOGGER_CLASS_NAME.equals(frame.getClassName()))
+                inLogger = true;
+            else if (inLogger)
+            {
+                setSourceClassName(frame.getClassName());
+                setSourceMethodName(frame.getMethodName());
+                lineNumber = frame.getLineNumber();
+                return;
+            }
+        }
+
+        setSourceClassName(getLoggerName());
+        setSourceMethodName(null);
+    }
+}
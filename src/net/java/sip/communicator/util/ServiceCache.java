@@ -0,0 +1,357 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.osgi.framework.*;
+import org.osgi.util.tracker.*;
+
+/**
+ * Keeps an up to date snapshot of the services registered under a given
+ * interface. The snapshot is rebuilt by a <tt>ServiceTracker</tt> each time a
+ * service is registered, modified or unregistered and is published through a
+ * volatile field, so that reading it is as cheap as reading a field and never
+ * hits the registry of the framework. Code which looks the services up for
+ * each message or each paint should use it instead of
+ * <tt>getServiceReferences</tt>.
+ * <p>
+ * The services are ordered by decreasing ranking. When a key property is
+ * given, they are also mapped by the value of that property.
+ * </p>
+ *
+ * @param <T> the interface of the services.
+ */
+public class ServiceCache<T>
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>ServiceCache</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(ServiceCache.class);
+
+    /**
+     * The interface of the services.
+     */
+    private final Class<T> clazz;
+
+    /**
+     * The name of the property the services are mapped by or <tt>null</tt>.
+     */
+    private final String keyProperty;
+
+    /**
+     * The tracked services.
+     */
+    private final Map<ServiceReference, T> tracked
+        = new HashMap<ServiceReference, T>();
+
+    /**
+     * The listeners notified when the services change.
+     */
+    private final List<ServiceCacheListener<T>> listeners
+        = new CopyOnWriteArrayList<ServiceCacheListener<T>>();
+
+    /**
+     * The current snapshot of the services.
+     */
+    private volatile Snapshot<T> snapshot = Snapshot.empty();
+
+    /**
+     * The tracker keeping the snapshot up to date or <tt>null</tt> if this
+     * cache is not open.
+     */
+    private ServiceTracker tracker;
+
+    /**
+     * Creates a cache of the services registered under <tt>clazz</tt>.
+     *
+     * @param clazz the interface of the services.
+     */
+    public ServiceCache(Class<T> clazz)
+    {
+        this(clazz, null);
+    }
+
+    /**
+     * Creates a cache of the services registered under <tt>clazz</tt> which
+     * also maps them by the value of their <tt>keyProperty</tt> property.
+     *
+     * @param clazz the interface of the services.
+     * @param keyProperty the name of the property to map the services by or
+     * <tt>null</tt>.
+     */
+    public ServiceCache(Class<T> clazz, String keyProperty)
+    {
+        this.clazz = clazz;
+        this.keyProperty = keyProperty;
+    }
+
+    /**
+     * Starts tracking the services. Must be called when the bundle using the
+     * cache starts.
+     *
+     * @param bundleContext the context of the bundle using the cache.
+     */
+    public synchronized void open(BundleContext bundleContext)
+    {
+        if (tracker != null)
+            return;
+
+        tracker
+            = new ServiceTracker(
+                    bundleContext,
+                    clazz.getName(),
+                    new Customizer(bundleContext));
+        tracker.open();
+    }
+
+    /**
+     * Stops tracking the services and releases them. Should be called when
+     * the bundle using the cache stops.
+     */
+    public synchronized void close()
+    {
+        if (tracker == null)
+            return;
+
+        tracker.close();
+        tracker = null;
+    }
+
+    /**
+     * Returns the services currently registered, by decreasing ranking.
+     *
+     * @return an unmodifiable list of the services.
+     */
+    public List<T> getServices()
+    {
+        return snapshot.services;
+    }
+
+    /**
+     * Returns the service with the highest ranking.
+     *
+     * @return the service with the highest ranking or <tt>null</tt> if none
+     * is registered.
+     */
+    public T getService()
+    {
+        List<T> services = snapshot.services;
+
+        return services.isEmpty() ? null : services.get(0);
+    }
+
+    /**
+     * Returns the services currently registered mapped by the value of the
+     * key property given to the constructor. The services without this
+     * property are left out.
+     *
+     * @return an unmodifiable map of the services.
+     */
+    public Map<String, T> getServiceMap()
+    {
+        return snapshot.serviceMap;
+    }
+
+    /**
+     * Adds a listener to be notified when the services change.
+     *
+     * @param listener the listener to add.
+     */
+    public void addServiceCacheListener(ServiceCacheListener<T> listener)
+    {
+        if (!listeners.contains(listener))
+            listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener notified when the services change.
+     *
+     * @param listener the listener to remove.
+     */
+    public void removeServiceCacheListener(ServiceCacheListener<T> listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Rebuilds the snapshot from the tracked services and notifies the
+     * listeners.
+     */
+    private void update()
+    {
+        synchronized (tracked)
+        {
+            List<ServiceReference> refs
+                = new ArrayList<ServiceReference>(tracked.keySet());
+            List<T> services = new ArrayList<T>(refs.size());
+            Map<String, T> serviceMap = new LinkedHashMap<String, T>();
+
+            // ServiceReference orders by increasing ranking.
+            Collections.sort(refs, Collections.reverseOrder());
+            for (ServiceReference ref : refs)
+            {
+                T service = tracked.get(ref);
+
+                services.add(service);
+                if (keyProperty != null)
+                {
+                    // The first service with a given key wins.
+                    Object key = ref.getProperty(keyProperty);
+
+                    if (key != null && !serviceMap.containsKey(key.toString()))
+                        serviceMap.put(key.toString(), service);
+                }
+            }
+
+            snapshot = new Snapshot<T>(services, serviceMap);
+        }
+
+        for (ServiceCacheListener<T> listener : listeners)
+        {
+            try
+            {
+                listener.servicesChanged(this);
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+                logger.error("Failed to notify a listener of " + clazz, t);
+            }
+        }
+    }
+
+    /**
+     * Receives the changes of the services of a <tt>ServiceCache</tt>.
+     *
+     * @param <T> the interface of the services.
+     */
+    public interface ServiceCacheListener<T>
+    {
+        /**
+         * Indicates that a service was registered, modified or unregistered.
+         * The new services are available through <tt>cache</tt>.
+         *
+         * @param cache the cache whose services changed.
+         */
+        public void servicesChanged(ServiceCache<T> cache);
+    }
+
+    /**
+     * An immutable snapshot of the services.
+     *
+     * @param <T> the interface of the services.
+     */
+    private static class Snapshot<T>
+    {
+        /**
+         * The snapshot without any service.
+         */
+        @SuppressWarnings("rawtypes")
+        private static final Snapshot EMPTY
+            = new Snapshot<Object>(
+                    Collections.emptyList(),
+                    Collections.<String, Object>emptyMap());
+
+        /**
+         * The services by decreasing ranking.
+         */
+        final List<T> services;
+
+        /**
+         * The services mapped by the value of the key property.
+         */
+        final Map<String, T> serviceMap;
+
+        /**
+         * Returns the snapshot without any service.
+         *
+         * @param <T> the interface of the services.
+         * @return the snapshot without any service.
+         */
+        @SuppressWarnings("unchecked")
+        static <T> Snapshot<T> empty()
+        {
+            return EMPTY;
+        }
+
+        /**
+         * Creates a snapshot.
+         *
+         * @param services the services by decreasing ranking.
+         * @param serviceMap the services mapped by the value of the key
+         * property.
+         */
+        Snapshot(List<T> services, Map<String, T> serviceMap)
+        {
+            this.services = Collections.unmodifiableList(services);
+            this.serviceMap = Collections.unmodifiableMap(serviceMap);
+        }
+    }
+
+    /**
+     * Keeps the tracked services and the snapshot in sync with the
+     * registry.
+     */
+    private class Customizer
+        implements ServiceTrackerCustomizer
+    {
+        /**
+         * The context of the bundle using the cache.
+         */
+        private final BundleContext bundleContext;
+
+        /**
+         * Creates a customizer getting the services through
+         * <tt>bundleContext</tt>.
+         *
+         * @param bundleContext the context of the bundle using the cache.
+         */
+        Customizer(BundleContext bundleContext)
+        {
+            this.bundleContext = bundleContext;
+        }
+
+        public Object addingService(ServiceReference ref)
+        {
+            Object service = bundleContext.getService(ref);
+
+            if (!clazz.isInstance(service))
+            {
+                if (service != null)
+                    bundleContext.ungetService(ref);
+                return null;
+            }
+
+            synchronized (tracked)
+            {
+                tracked.put(ref, clazz.cast(service));
+            }
+            update();
+            return service;
+        }
+
+        public void modifiedService(ServiceReference ref, Object service)
+        {
+            // The ranking and the key property may have changed.
+            update();
+        }
+
+        public void removedService(ServiceReference ref, Object service)
+        {
+            synchronized (tracked)
+            {
+                tracked.remove(ref);
+            }
+            update();
+            bundleContext.ungetService(ref);
+        }
+    }
+}
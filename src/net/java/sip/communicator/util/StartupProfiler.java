@@ -0,0 +1,618 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.util;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.java.sip.communicator.service.protocol.*;
+import net.java.sip.communicator.service.protocol.event.*;
+
+import org.osgi.framework.*;
+
+/**
+ * Records the startup timeline of the application: when each bundle starts,
+ * how long its activator takes, when the services it registers become
+ * available and when the milestones of the startup, such as the main window
+ * being shown or the first account being registered, are reached. The
+ * timeline is logged once the framework has started all of its bundles,
+ * including the deferred ones.
+ * <p>
+ * The services a bundle registers after its activator has returned are
+ * reported with the time they took to appear, which is the time the bundle
+ * spent waiting for other services or for a background initialization
+ * before becoming available.
+ * </p>
+ * <p>
+ * The timeline is recorded unless the {@link #ENABLED_PNAME} framework or
+ * system property is <tt>false</tt>, and is also written to the file named
+ * by the {@link #REPORT_FILE_PNAME} property, if any. All times are relative
+ * to the start of the JVM.
+ * </p>
+ */
+public class StartupProfiler
+    implements SynchronousBundleListener,
+               ServiceListener,
+               FrameworkListener
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>StartupProfiler</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(StartupProfiler.class);
+
+    /**
+     * The name of the property which disables the profiler when
+     * <tt>false</tt>.
+     */
+    public static final String ENABLED_PNAME
+        = "net.java.sip.communicator.util.StartupProfiler.ENABLED";
+
+    /**
+     * The name of the property which defines a file the timeline is written
+     * to besides the log.
+     */
+    public static final String REPORT_FILE_PNAME
+        = "net.java.sip.communicator.util.StartupProfiler.REPORT_FILE";
+
+    /**
+     * The milestone reached when the framework has started the bundles of its
+     * beginning start level.
+     */
+    public static final String FRAMEWORK_STARTED = "framework.started";
+
+    /**
+     * The milestone reached when the user interface has been loaded, whether
+     * its main window is shown or not.
+     */
+    public static final String UI_LOADED = "ui.loaded";
+
+    /**
+     * The milestone reached when the main window is first shown.
+     */
+    public static final String MAIN_WINDOW_SHOWN = "ui.mainWindowShown";
+
+    /**
+     * The milestone reached when the first account is registered.
+     */
+    public static final String ACCOUNT_REGISTERED = "account.registered";
+
+    /**
+     * The milestone reached when the bundles of the deferred start levels
+     * have been started.
+     */
+    public static final String DEFERRED_STARTED = "deferred.started";
+
+    /**
+     * The time the JVM started at in milliseconds, which all times are
+     * relative to.
+     */
+    private static final long JVM_START_TIME = getJvmStartTime();
+
+    /**
+     * The milestones reached so far, with the time they were first reached
+     * at, in the order they were reached.
+     */
+    private static final Map<String, Long> milestones
+        = new LinkedHashMap<String, Long>();
+
+    /**
+     * The listeners notified of the milestones.
+     */
+    private static final List<MilestoneListener> milestoneListeners
+        = new CopyOnWriteArrayList<MilestoneListener>();
+
+    /**
+     * The context of the util bundle.
+     */
+    private final BundleContext bundleContext;
+
+    /**
+     * The timelines of the bundles by ID.
+     */
+    private final Map<Long, BundleTimeline> bundles
+        = new HashMap<Long, BundleTimeline>();
+
+    /**
+     * The listener which marks {@link #ACCOUNT_REGISTERED}.
+     */
+    private final RegistrationStateChangeListener registrationListener
+        = new RegistrationStateChangeListener()
+        {
+            public void registrationStateChanged(
+                    RegistrationStateChangeEvent evt)
+            {
+                if (RegistrationState.REGISTERED.equals(evt.getNewState()))
+                {
+                    mark(ACCOUNT_REGISTERED);
+                    evt.getProvider().removeRegistrationStateChangeListener(
+                            this);
+                }
+            }
+        };
+
+    /**
+     * Whether the timeline has been reported.
+     */
+    private boolean reported = false;
+
+    /**
+     * Creates a profiler for the framework of <tt>bundleContext</tt>.
+     *
+     * @param bundleContext the context of the util bundle.
+     */
+    StartupProfiler(BundleContext bundleContext)
+    {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Determines whether the profiler is enabled by the framework or system
+     * properties.
+     *
+     * @param bundleContext the context of the util bundle.
+     * @return <tt>true</tt> unless {@link #ENABLED_PNAME} is <tt>false</tt>.
+     */
+    static boolean isEnabled(BundleContext bundleContext)
+    {
+        String enabled = bundleContext.getProperty(ENABLED_PNAME);
+
+        return (enabled == null) || Boolean.parseBoolean(enabled);
+    }
+
+    /**
+     * Starts recording the timeline. The bundles which have started before
+     * are only reported with their start level.
+     */
+    void start()
+    {
+        synchronized (bundles)
+        {
+            for (Bundle bundle : bundleContext.getBundles())
+                getTimeline(bundle);
+        }
+
+        bundleContext.addBundleListener(this);
+        bundleContext.addFrameworkListener(this);
+        bundleContext.addServiceListener(this);
+    }
+
+    /**
+     * Stops recording the timeline.
+     */
+    void stop()
+    {
+        bundleContext.removeServiceListener(this);
+        bundleContext.removeFrameworkListener(this);
+        bundleContext.removeBundleListener(this);
+    }
+
+    /**
+     * Records that a milestone of the startup has been reached. Only the
+     * first time a milestone is reached is recorded.
+     *
+     * @param milestone the name of the milestone.
+     */
+    public static void mark(String milestone)
+    {
+        long time = System.currentTimeMillis() - JVM_START_TIME;
+
+        synchronized (milestones)
+        {
+            if (milestones.containsKey(milestone))
+                return;
+            milestones.put(milestone, time);
+        }
+
+        if (logger.isInfoEnabled())
+            logger.info("Startup milestone " + milestone + " at " + time
+                + " ms");
+
+        for (MilestoneListener listener : milestoneListeners)
+            listener.milestoneReached(milestone);
+    }
+
+    /**
+     * Determines whether a milestone has been reached.
+     *
+     * @param milestone the name of the milestone.
+     * @return <tt>true</tt> if <tt>milestone</tt> has been reached.
+     */
+    public static boolean isReached(String milestone)
+    {
+        synchronized (milestones)
+        {
+            return milestones.containsKey(milestone);
+        }
+    }
+
+    /**
+     * Adds a listener to be notified of the milestones reached from now on.
+     *
+     * @param listener the listener to add.
+     */
+    public static void addMilestoneListener(MilestoneListener listener)
+    {
+        milestoneListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener of the milestones.
+     *
+     * @param listener the listener to remove.
+     */
+    public static void removeMilestoneListener(MilestoneListener listener)
+    {
+        milestoneListeners.remove(listener);
+    }
+
+    /**
+     * Records the start of the bundles.
+     *
+     * @param evt the event of the bundle.
+     */
+    public void bundleChanged(BundleEvent evt)
+    {
+        int type = evt.getType();
+
+        if (type != BundleEvent.STARTING && type != BundleEvent.STARTED)
+            return;
+
+        long time = System.currentTimeMillis() - JVM_START_TIME;
+
+        synchronized (bundles)
+        {
+            BundleTimeline timeline = getTimeline(evt.getBundle());
+
+            if (type == BundleEvent.STARTING)
+                timeline.starting = time;
+            else
+                timeline.started = time;
+        }
+    }
+
+    /**
+     * Records the registration of the services and tracks the registration
+     * state of the protocol providers.
+     *
+     * @param evt the event of the service.
+     */
+    public void serviceChanged(ServiceEvent evt)
+    {
+        if (evt.getType() != ServiceEvent.REGISTERED)
+            return;
+
+        ServiceReference ref = evt.getServiceReference();
+        String[] classes = (String[]) ref.getProperty(Constants.OBJECTCLASS);
+
+        if (classes == null)
+            return;
+
+        serviceRegistered(ref, classes);
+
+        if (!isReached(ACCOUNT_REGISTERED)
+                && Arrays.asList(classes).contains(
+                        ProtocolProviderService.class.getName()))
+        {
+            Object service = bundleContext.getService(ref);
+
+            if (service instanceof ProtocolProviderService)
+            {
+                ProtocolProviderService provider
+                    = (ProtocolProviderService) service;
+
+                provider.addRegistrationStateChangeListener(
+                        registrationListener);
+                if (provider.isRegistered())
+                    mark(ACCOUNT_REGISTERED);
+            }
+            bundleContext.ungetService(ref);
+        }
+    }
+
+    /**
+     * Records the registration of a service by a bundle.
+     *
+     * @param ref the reference of the registered service.
+     * @param classes the names of the classes the service is registered
+     * under.
+     */
+    private void serviceRegistered(ServiceReference ref, String[] classes)
+    {
+        Bundle bundle = ref.getBundle();
+
+        if (bundle == null)
+            return;
+
+        long time = System.currentTimeMillis() - JVM_START_TIME;
+
+        synchronized (bundles)
+        {
+            BundleTimeline timeline = getTimeline(bundle);
+
+            // Only the registrations after the activator has returned mean
+            // that the bundle has waited for something.
+            if (timeline.started >= 0)
+            {
+                for (String className : classes)
+                {
+                    if (!timeline.services.containsKey(className))
+                        timeline.services.put(className, time);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks {@link #FRAMEWORK_STARTED} and reports the timeline once the
+     * framework has reached its final start level.
+     *
+     * @param evt the event of the framework.
+     */
+    public void frameworkEvent(FrameworkEvent evt)
+    {
+        int type = evt.getType();
+
+        if (type == FrameworkEvent.STARTED)
+        {
+            mark(FRAMEWORK_STARTED);
+            if (!DeferredActivation.isPending(bundleContext))
+                report();
+        }
+        else if (type == FrameworkEvent.STARTLEVEL_CHANGED
+                && isReached(FRAMEWORK_STARTED)
+                && !DeferredActivation.isPending(bundleContext))
+        {
+            report();
+        }
+    }
+
+    /**
+     * Logs the timeline and writes it to the report file, if any. The
+     * timeline is only reported once.
+     */
+    synchronized void report()
+    {
+        if (reported)
+            return;
+        reported = true;
+
+        String report = createReport();
+
+        if (logger.isInfoEnabled())
+            logger.info(report);
+
+        String fileName = bundleContext.getProperty(REPORT_FILE_PNAME);
+
+        if (fileName != null && fileName.length() != 0)
+        {
+            try
+            {
+                Writer writer
+                    = new OutputStreamWriter(
+                            new FileOutputStream(fileName),
+                            "UTF-8");
+
+                try
+                {
+                    writer.write(report);
+                }
+                finally
+                {
+                    writer.close();
+                }
+            }
+            catch (IOException ex)
+            {
+                logger.error("Failed to write the startup timeline to "
+                    + fileName, ex);
+            }
+        }
+    }
+
+    /**
+     * Formats the timeline: the milestones, then the bundles in the order
+     * they started with the duration of their activators and the time their
+     * late services took to appear.
+     *
+     * @return the formatted timeline.
+     */
+    String createReport()
+    {
+        List<BundleTimeline> timelines;
+
+        synchronized (bundles)
+        {
+            timelines = new ArrayList<BundleTimeline>(bundles.values());
+        }
+        Collections.sort(timelines);
+
+        StringBuilder report = new StringBuilder();
+        String lineSeparator = System.getProperty("line.separator");
+
+        report.append("Startup timeline (ms since the start of the JVM):")
+            .append(lineSeparator);
+        synchronized (milestones)
+        {
+            for (Map.Entry<String, Long> milestone : milestones.entrySet())
+            {
+                report.append(String.format(
+                        "%8d  milestone %s",
+                        milestone.getValue(),
+                        milestone.getKey()));
+                report.append(lineSeparator);
+            }
+        }
+
+        long totalActivation = 0;
+
+        for (BundleTimeline timeline : timelines)
+        {
+            if (timeline.starting < 0)
+                continue;
+
+            long activation = timeline.getActivationTime();
+
+            totalActivation += Math.max(0, activation);
+            report.append(String.format(
+                    "%8d  level %3d  %-50s activator %5d",
+                    timeline.starting,
+                    timeline.startLevel,
+                    timeline.name,
+                    activation));
+            for (Map.Entry<String, Long> service
+                    : timeline.services.entrySet())
+            {
+                report.append(lineSeparator);
+                report.append(String.format(
+                        "%8d                service %s waited %d",
+                        service.getValue(),
+                        service.getKey(),
+                        service.getValue() - timeline.started));
+            }
+            report.append(lineSeparator);
+        }
+        report.append("Total activator time: ").append(totalActivation)
+            .append(" ms");
+        return report.toString();
+    }
+
+    /**
+     * Returns the timeline of a bundle, creating it if necessary. Must be
+     * called with the lock of {@link #bundles}.
+     *
+     * @param bundle the bundle.
+     * @return the timeline of the bundle.
+     */
+    private BundleTimeline getTimeline(Bundle bundle)
+    {
+        Long id = bundle.getBundleId();
+        BundleTimeline timeline = bundles.get(id);
+
+        if (timeline == null)
+        {
+            timeline
+                = new BundleTimeline(
+                        bundle,
+                        DeferredActivation.getBundleStartLevel(
+                                bundleContext,
+                                bundle));
+            bundles.put(id, timeline);
+        }
+        return timeline;
+    }
+
+    /**
+     * Returns the time the JVM started at.
+     *
+     * @return the time the JVM started at in milliseconds.
+     */
+    private static long getJvmStartTime()
+    {
+        try
+        {
+            return ManagementFactory.getRuntimeMXBean().getStartTime();
+        }
+        catch (Throwable t)
+        {
+            // Not every JVM has the management beans.
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A listener of the milestones of the startup.
+     */
+    public interface MilestoneListener
+    {
+        /**
+         * Notifies this listener that a milestone has been reached for the
+         * first time.
+         *
+         * @param milestone the name of the milestone.
+         */
+        public void milestoneReached(String milestone);
+    }
+
+    /**
+     * The startup timeline of a bundle.
+     */
+    private static class BundleTimeline
+        implements Comparable<BundleTimeline>
+    {
+        /**
+         * The symbolic name or location of the bundle.
+         */
+        final String name;
+
+        /**
+         * The start level of the bundle.
+         */
+        final int startLevel;
+
+        /**
+         * The time the activator of the bundle was called or <tt>-1</tt>.
+         */
+        long starting = -1;
+
+        /**
+         * The time the activator of the bundle returned or <tt>-1</tt>.
+         */
+        long started = -1;
+
+        /**
+         * The time each service registered by the bundle after its activator
+         * returned first appeared.
+         */
+        final Map<String, Long> services = new LinkedHashMap<String, Long>();
+
+        /**
+         * Creates the timeline of a bundle.
+         *
+         * @param bundle the bundle.
+         * @param startLevel the start level of the bundle.
+         */
+        BundleTimeline(Bundle bundle, int startLevel)
+        {
+            String name
+                = (String) bundle.getHeaders().get(Constants.BUNDLE_NAME);
+
+            if (name == null)
+                name = bundle.getLocation();
+            this.name = name;
+            this.startLevel = startLevel;
+        }
+
+        /**
+         * Returns the time the activator of the bundle took.
+         *
+         * @return the time the activator took in milliseconds or <tt>-1</tt>
+         * if it is unknown.
+         */
+        long getActivationTime()
+        {
+            return (starting >= 0 && started >= 0) ? started - starting : -1;
+        }
+
+        /**
+         * Orders the timelines by the time the bundles started.
+         *
+         * @param other the timeline to compare to.
+         * @return a negative number, zero or a positive number if this
+         * bundle started before, at the same time or after <tt>other</tt>.
+         */
+        public int compareTo(BundleTimeline other)
+        {
+            return (starting < other.starting)
+                ? -1
+                : ((starting == other.starting) ? 0 : 1);
+        }
+    }
+}
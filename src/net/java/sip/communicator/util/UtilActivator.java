@@ -55,7 +55,18 @@ public class UtilActivator
     private static AlertUIService alertUIService;
 
     /**
-     * Calls <tt>Thread.setUncaughtExceptionHandler()</tt>
+     * The profiler of the startup or <tt>null</tt> if it is disabled.
+     */
+    private StartupProfiler startupProfiler;
+
+    /**
+     * The activation of the bundles deferred after the user interface.
+     */
+    private DeferredActivation deferredActivation;
+
+    /**
+     * Calls <tt>Thread.setUncaughtExceptionHandler()</tt> and starts the
+     * startup profiler and the deferred activation.
      *
      * @param context The execution context of the bundle being started
      * (unused).
@@ -75,6 +86,14 @@ public class UtilActivator
         if (logger.isTraceEnabled())
             logger.trace("Setting default uncaught exception handler.");
         Thread.setDefaultUncaughtExceptionHandler(this);
+
+        if (StartupProfiler.isEnabled(context))
+        {
+            startupProfiler = new StartupProfiler(context);
+            startupProfiler.start();
+        }
+        deferredActivation = new DeferredActivation(context);
+        deferredActivation.start();
     }
 
     /**
@@ -113,7 +132,7 @@ public class UtilActivator
     }
 
     /**
-     * Doesn't do anything.
+     * Stops the startup profiler and the deferred activation.
      *
      * @param context The execution context of the bundle being stopped.
      * @throws Exception If this method throws an exception, the bundle is
@@ -124,6 +143,16 @@ public class UtilActivator
     public void stop(BundleContext context)
         throws Exception
     {
+        if (deferredActivation != null)
+        {
+            deferredActivation.stop();
+            deferredActivation = null;
+        }
+        if (startupProfiler != null)
+        {
+            startupProfiler.stop();
+            startupProfiler = null;
+        }
     }
 
     /**
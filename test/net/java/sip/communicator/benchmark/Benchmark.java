@@ -0,0 +1,99 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.benchmark;
+
+import java.util.*;
+
+/**
+ * A benchmark measured by the <tt>BenchmarkRunner</tt>: an operation which is
+ * run again and again for a fixed time after the benchmark has been set up.
+ */
+public abstract class Benchmark
+{
+    /**
+     * The name of the benchmark.
+     */
+    private final String name;
+
+    /**
+     * The parameters of the benchmark, such as the size of its data, which
+     * are written with its results.
+     */
+    private final Map<String, String> parameters
+        = new LinkedHashMap<String, String>();
+
+    /**
+     * Creates a benchmark.
+     *
+     * @param name the name of the benchmark.
+     */
+    protected Benchmark(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the benchmark.
+     *
+     * @return the name of the benchmark.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the parameters of the benchmark.
+     *
+     * @return the parameters of the benchmark.
+     */
+    public Map<String, String> getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * Adds a parameter to write with the results of the benchmark.
+     *
+     * @param name the name of the parameter.
+     * @param value the value of the parameter.
+     */
+    protected void addParameter(String name, Object value)
+    {
+        parameters.put(name, String.valueOf(value));
+    }
+
+    /**
+     * Prepares the data of the benchmark. Not measured.
+     *
+     * @throws Exception if the benchmark cannot be set up.
+     */
+    public void setUp()
+        throws Exception
+    {
+    }
+
+    /**
+     * Runs the measured operation once.
+     *
+     * @return the result of the operation, consumed by the runner so that
+     * the operation is not optimized away.
+     * @throws Exception if the operation fails.
+     */
+    public abstract Object run()
+        throws Exception;
+
+    /**
+     * Releases the data of the benchmark. Not measured.
+     *
+     * @throws Exception if the benchmark cannot be torn down.
+     */
+    public void tearDown()
+        throws Exception
+    {
+    }
+}
@@ -0,0 +1,529 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.benchmark;
+
+import java.io.*;
+import java.util.*;
+
+import net.java.sip.communicator.impl.protocol.mock.*;
+import net.java.sip.communicator.service.contactlist.*;
+import net.java.sip.communicator.service.history.*;
+import net.java.sip.communicator.service.protocol.*;
+import net.java.sip.communicator.util.*;
+
+import org.osgi.framework.*;
+
+/**
+ * Runs the benchmarks of the history, the meta contact list and the message
+ * rendering hot paths against synthetic data once the services they measure
+ * are started, writes the results as JSON and stops the framework.
+ * <p>
+ * Besides the properties of the <tt>BenchmarkRunner</tt>, the size of the
+ * data is configured by the {@link #CONTACT_COUNT_PNAME} and
+ * {@link #HISTORY_RECORD_COUNT_PNAME} system properties and the file the
+ * results are written to by {@link #OUTPUT_FILE_PNAME}. The contact list
+ * benchmarks run under the background load of the <tt>MockLoadProfile</tt>
+ * system properties, if any, e.g. presence changes or message floods.
+ * </p>
+ */
+public class BenchmarkActivator
+    implements BundleActivator
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>BenchmarkActivator</tt> class and
+     * its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(BenchmarkActivator.class);
+
+    /**
+     * The name of the system property which defines the number of contacts
+     * of the generated contact list.
+     */
+    public static final String CONTACT_COUNT_PNAME
+        = "net.java.sip.communicator.benchmark.CONTACT_COUNT";
+
+    /**
+     * The name of the system property which defines the number of records of
+     * the generated history.
+     */
+    public static final String HISTORY_RECORD_COUNT_PNAME
+        = "net.java.sip.communicator.benchmark.HISTORY_RECORD_COUNT";
+
+    /**
+     * The name of the system property which defines the file the results are
+     * written to.
+     */
+    public static final String OUTPUT_FILE_PNAME
+        = "net.java.sip.communicator.benchmark.OUTPUT_FILE";
+
+    /**
+     * The seed of the generated data.
+     */
+    private static final long SEED = 0x5EEDL;
+
+    /**
+     * The context of this bundle.
+     */
+    private BundleContext bundleContext;
+
+    /**
+     * The registration of the mock provider which fills the meta contact
+     * list.
+     */
+    private ServiceRegistration providerRegistration;
+
+    /**
+     * The generator of the contact list of the mock provider and of its
+     * background load.
+     */
+    private MockLoadGenerator loadGenerator;
+
+    /**
+     * Starts the benchmarks in a thread of their own so that the framework
+     * can go on starting.
+     *
+     * @param bundleContext the context of this bundle.
+     */
+    public void start(BundleContext bundleContext)
+    {
+        this.bundleContext = bundleContext;
+
+        Thread thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                runBenchmarks();
+            }
+        }, "BenchmarkRunner");
+
+        thread.start();
+    }
+
+    /**
+     * Stops the load generator and unregisters the mock provider.
+     *
+     * @param bundleContext the context of this bundle.
+     */
+    public void stop(BundleContext bundleContext)
+    {
+        unregisterContactList();
+    }
+
+    /**
+     * Runs the selected benchmarks, writes their results and stops the
+     * framework.
+     */
+    private void runBenchmarks()
+    {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        List<BenchmarkRunner.Result> results
+            = new ArrayList<BenchmarkRunner.Result>();
+
+        try
+        {
+            createBenchmarks(benchmarks);
+
+            for (Benchmark benchmark : benchmarks)
+            {
+                if (runner.isSelected(benchmark.getName()))
+                    results.add(runner.run(benchmark));
+            }
+
+            File output
+                = new File(
+                        System.getProperty(
+                                OUTPUT_FILE_PNAME,
+                                "test-reports/benchmarks.json"));
+
+            runner.writeJson(results, output);
+            logger.info("Benchmark results written to "
+                + output.getAbsolutePath());
+        }
+        catch (Throwable t)
+        {
+            logger.error("Failed to run the benchmarks", t);
+        }
+        finally
+        {
+            try
+            {
+                bundleContext.getBundle(0).stop();
+            }
+            catch (BundleException ex)
+            {
+                logger.error("Failed to stop the framework", ex);
+            }
+        }
+    }
+
+    /**
+     * Creates the benchmarks.
+     *
+     * @param benchmarks the list to add the benchmarks to.
+     */
+    private void createBenchmarks(List<Benchmark> benchmarks)
+    {
+        int contactCount = Integer.getInteger(CONTACT_COUNT_PNAME, 10000);
+        int historyRecordCount
+            = Integer.getInteger(HISTORY_RECORD_COUNT_PNAME, 100000);
+
+        benchmarks.add(new HistoryAddRecord());
+        benchmarks.add(new HistoryFindLast(historyRecordCount));
+        benchmarks.add(new HistoryFindByKeywords(historyRecordCount));
+        benchmarks.add(new FindMetaContactByContact(contactCount));
+        benchmarks.add(new RenameMetaContact(contactCount));
+        benchmarks.add(new ExtractText());
+    }
+
+    /**
+     * Returns the <tt>HistoryService</tt>.
+     *
+     * @return the <tt>HistoryService</tt>.
+     */
+    private HistoryService getHistoryService()
+    {
+        return ServiceUtils.getService(bundleContext, HistoryService.class);
+    }
+
+    /**
+     * Returns the <tt>MetaContactListService</tt>.
+     *
+     * @return the <tt>MetaContactListService</tt>.
+     */
+    private MetaContactListService getMetaContactListService()
+    {
+        return
+            ServiceUtils.getService(
+                    bundleContext,
+                    MetaContactListService.class);
+    }
+
+    /**
+     * Generates a contact list and registers it with the meta contact list,
+     * which loads it while the provider is being registered. The load of the
+     * <tt>MockLoadProfile</tt> system properties, if any, is then generated
+     * in the background while the benchmark runs.
+     *
+     * @param contactCount the number of contacts of the contact list.
+     * @return the provider of the contact list.
+     */
+    private MockProvider registerContactList(int contactCount)
+    {
+        unregisterContactList();
+
+        MockLoadProfile profile = MockLoadProfile.fromSystemProperties();
+
+        profile.setContactCount(contactCount);
+        profile.setGroupCount(Math.max(1, contactCount / 100));
+        profile.setSeed(SEED);
+
+        MockProvider provider = new MockProvider("BenchmarkUser");
+
+        loadGenerator = new MockLoadGenerator(provider, profile);
+        loadGenerator.populateContactList();
+
+        // Keep the meta contact list from loading any other provider, as the
+        // meta contact list SLICK does.
+        System.setProperty(MetaContactListService.PROVIDER_MASK_PROPERTY, "1");
+
+        Hashtable<String, String> properties = new Hashtable<String, String>();
+
+        properties.put(MetaContactListService.PROVIDER_MASK_PROPERTY, "1");
+        providerRegistration
+            = bundleContext.registerService(
+                    ProtocolProviderService.class.getName(),
+                    provider,
+                    properties);
+
+        loadGenerator.start();
+        return provider;
+    }
+
+    /**
+     * Stops the load generator and unregisters the mock provider, if any.
+     */
+    private void unregisterContactList()
+    {
+        if (loadGenerator != null)
+        {
+            loadGenerator.stop();
+            loadGenerator = null;
+        }
+        if (providerRegistration != null)
+        {
+            providerRegistration.unregister();
+            providerRegistration = null;
+        }
+    }
+
+    /**
+     * Measures the writing of a record to a history.
+     */
+    private class HistoryAddRecord
+        extends Benchmark
+    {
+        private final SyntheticData data = new SyntheticData(SEED);
+
+        private HistoryWriter writer;
+
+        private String[] record;
+
+        HistoryAddRecord()
+        {
+            super("history.addRecord");
+        }
+
+        @Override
+        public void setUp()
+            throws Exception
+        {
+            writer
+                = data.createHistory(
+                        getHistoryService(),
+                        new String[] { "benchmark", "addRecord" },
+                        0)
+                    .getWriter();
+            record = data.nextHistoryRecord();
+        }
+
+        @Override
+        public Object run()
+            throws Exception
+        {
+            writer.addRecord(record);
+            return record;
+        }
+    }
+
+    /**
+     * Measures the reading of the last records of a history.
+     */
+    private class HistoryFindLast
+        extends Benchmark
+    {
+        private final int recordCount;
+
+        private HistoryReader reader;
+
+        HistoryFindLast(int recordCount)
+        {
+            super("history.findLast");
+            this.recordCount = recordCount;
+            addParameter("records", recordCount);
+            addParameter("count", 20);
+        }
+
+        @Override
+        public void setUp()
+            throws Exception
+        {
+            reader
+                = new SyntheticData(SEED).createHistory(
+                        getHistoryService(),
+                        new String[] { "benchmark", "read" },
+                        recordCount)
+                    .getReader();
+        }
+
+        @Override
+        public Object run()
+        {
+            return reader.findLast(20).next();
+        }
+    }
+
+    /**
+     * Measures the search of a history for keywords.
+     */
+    private class HistoryFindByKeywords
+        extends Benchmark
+    {
+        private final int recordCount;
+
+        private final String[] keywords = { "conference", "video" };
+
+        private HistoryReader reader;
+
+        HistoryFindByKeywords(int recordCount)
+        {
+            super("history.findByKeywords");
+            this.recordCount = recordCount;
+            addParameter("records", recordCount);
+            addParameter("keywords", Arrays.toString(keywords));
+        }
+
+        @Override
+        public void setUp()
+            throws Exception
+        {
+            HistoryService historyService = getHistoryService();
+            HistoryID id
+                = HistoryID.createFromRawID(
+                        new String[] { "benchmark", "read" });
+
+            // Share the history of the findLast benchmark when it has been
+            // generated.
+            reader
+                = (historyService.isHistoryExisting(id)
+                        ? historyService.getHistory(id)
+                        : new SyntheticData(SEED).createHistory(
+                                historyService,
+                                new String[] { "benchmark", "read" },
+                                recordCount))
+                    .getReader();
+        }
+
+        @Override
+        public Object run()
+        {
+            return reader.findByKeywords(keywords, "msg", false);
+        }
+    }
+
+    /**
+     * Measures the lookup of the meta contact of a protocol contact.
+     */
+    private class FindMetaContactByContact
+        extends Benchmark
+    {
+        private final int contactCount;
+
+        private MetaContactListService metaContactListService;
+
+        private Contact[] contacts;
+
+        private int next = 0;
+
+        FindMetaContactByContact(int contactCount)
+        {
+            super("contactlist.findMetaContactByContact");
+            this.contactCount = contactCount;
+            addParameter("contacts", contactCount);
+        }
+
+        @Override
+        public void setUp()
+        {
+            metaContactListService = getMetaContactListService();
+
+            MockProvider provider = registerContactList(contactCount);
+            OperationSetPresence presence
+                = provider.getOperationSet(OperationSetPresence.class);
+            Random random = new Random(SEED);
+
+            contacts = new Contact[1024];
+            for (int i = 0; i < contacts.length; i++)
+            {
+                contacts[i]
+                    = presence.findContactByID(
+                            MockLoadGenerator.getContactAddress(
+                                    random.nextInt(contactCount)));
+            }
+        }
+
+        @Override
+        public Object run()
+        {
+            return
+                metaContactListService.findMetaContactByContact(
+                        contacts[next++ & (contacts.length - 1)]);
+        }
+    }
+
+    /**
+     * Measures the renaming of a meta contact, which updates the stored
+     * contact list.
+     */
+    private class RenameMetaContact
+        extends Benchmark
+    {
+        private final int contactCount;
+
+        private MetaContactListService metaContactListService;
+
+        private MetaContact[] metaContacts;
+
+        private int next = 0;
+
+        RenameMetaContact(int contactCount)
+        {
+            super("contactlist.renameMetaContact");
+            this.contactCount = contactCount;
+            addParameter("contacts", contactCount);
+        }
+
+        @Override
+        public void setUp()
+        {
+            metaContactListService = getMetaContactListService();
+
+            MockProvider provider = registerContactList(contactCount);
+            OperationSetPresence presence
+                = provider.getOperationSet(OperationSetPresence.class);
+            Random random = new Random(SEED);
+
+            metaContacts = new MetaContact[1024];
+            for (int i = 0; i < metaContacts.length; i++)
+            {
+                metaContacts[i]
+                    = metaContactListService.findMetaContactByContact(
+                            presence.findContactByID(
+                                    MockLoadGenerator.getContactAddress(
+                                            random.nextInt(contactCount))));
+            }
+        }
+
+        @Override
+        public Object run()
+        {
+            MetaContact metaContact
+                = metaContacts[next & (metaContacts.length - 1)];
+
+            metaContactListService.renameMetaContact(
+                    metaContact,
+                    "renamed" + next++);
+            return metaContact;
+        }
+    }
+
+    /**
+     * Measures the extraction of the text of HTML messages.
+     */
+    private static class ExtractText
+        extends Benchmark
+    {
+        private String[] messages;
+
+        private int next = 0;
+
+        ExtractText()
+        {
+            super("message.extractText");
+            addParameter("words", 64);
+        }
+
+        @Override
+        public void setUp()
+        {
+            SyntheticData data = new SyntheticData(SEED);
+
+            messages = new String[256];
+            for (int i = 0; i < messages.length; i++)
+                messages[i] = data.nextHtml(64);
+        }
+
+        @Override
+        public Object run()
+        {
+            return
+                Html2Text.extractText(
+                        messages[next++ & (messages.length - 1)]);
+        }
+    }
+}
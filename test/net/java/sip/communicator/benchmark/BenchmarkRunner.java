@@ -0,0 +1,454 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.benchmark;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.util.regex.*;
+
+import net.java.sip.communicator.util.*;
+
+/**
+ * Measures <tt>Benchmark</tt>s the way JMH does in average time mode: each
+ * benchmark runs for a number of warmup iterations, whose results are
+ * discarded, then for a number of measurement iterations of a fixed duration.
+ * The score is the mean time per operation over the measurement iterations
+ * and the error its standard deviation. The results are written as JSON so
+ * that they can be compared run over run.
+ * <p>
+ * The runner is configured by the following system properties:
+ * <ul>
+ * <li>{@link #WARMUP_ITERATIONS_PNAME}, defaults to 3;</li>
+ * <li>{@link #MEASUREMENT_ITERATIONS_PNAME}, defaults to 5;</li>
+ * <li>{@link #ITERATION_TIME_PNAME} in milliseconds, defaults to 1000;</li>
+ * <li>{@link #FILTER_PNAME} a regular expression the names of the benchmarks
+ * to run must contain, all are run by default.</li>
+ * </ul>
+ * </p>
+ */
+public class BenchmarkRunner
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>BenchmarkRunner</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(BenchmarkRunner.class);
+
+    /**
+     * The name of the system property which defines the number of warmup
+     * iterations.
+     */
+    public static final String WARMUP_ITERATIONS_PNAME
+        = "net.java.sip.communicator.benchmark.WARMUP_ITERATIONS";
+
+    /**
+     * The name of the system property which defines the number of
+     * measurement iterations.
+     */
+    public static final String MEASUREMENT_ITERATIONS_PNAME
+        = "net.java.sip.communicator.benchmark.MEASUREMENT_ITERATIONS";
+
+    /**
+     * The name of the system property which defines the duration of an
+     * iteration in milliseconds.
+     */
+    public static final String ITERATION_TIME_PNAME
+        = "net.java.sip.communicator.benchmark.ITERATION_TIME";
+
+    /**
+     * The name of the system property which defines a regular expression the
+     * names of the benchmarks to run must contain.
+     */
+    public static final String FILTER_PNAME
+        = "net.java.sip.communicator.benchmark.FILTER";
+
+    /**
+     * The number of warmup iterations.
+     */
+    private final int warmupIterations
+        = Integer.getInteger(WARMUP_ITERATIONS_PNAME, 3);
+
+    /**
+     * The number of measurement iterations.
+     */
+    private final int measurementIterations
+        = Math.max(1, Integer.getInteger(MEASUREMENT_ITERATIONS_PNAME, 5));
+
+    /**
+     * The duration of an iteration in nanoseconds.
+     */
+    private final long iterationTime
+        = Long.getLong(ITERATION_TIME_PNAME, 1000) * 1000000L;
+
+    /**
+     * The filter of the names of the benchmarks to run or <tt>null</tt>.
+     */
+    private final Pattern filter;
+
+    /**
+     * Consumes the results of the operations so that they are not optimized
+     * away.
+     */
+    private volatile int sink;
+
+    /**
+     * Creates a runner configured by the system properties.
+     */
+    public BenchmarkRunner()
+    {
+        String filter = System.getProperty(FILTER_PNAME);
+
+        this.filter
+            = (filter == null || filter.length() == 0)
+                ? null
+                : Pattern.compile(filter);
+    }
+
+    /**
+     * Determines whether a benchmark is selected by {@link #FILTER_PNAME}.
+     *
+     * @param name the name of the benchmark.
+     * @return <tt>true</tt> if the benchmark is to be run.
+     */
+    public boolean isSelected(String name)
+    {
+        return (filter == null) || filter.matcher(name).find();
+    }
+
+    /**
+     * Sets up, measures and tears down a benchmark.
+     *
+     * @param benchmark the benchmark.
+     * @return the result of the benchmark.
+     * @throws Exception if the benchmark fails.
+     */
+    public Result run(Benchmark benchmark)
+        throws Exception
+    {
+        logger.info("Running benchmark " + benchmark.getName());
+
+        benchmark.setUp();
+        try
+        {
+            for (int i = 0; i < warmupIterations; i++)
+                iterate(benchmark);
+
+            double[] scores = new double[measurementIterations];
+            long operations = 0;
+
+            for (int i = 0; i < measurementIterations; i++)
+            {
+                long[] iteration = iterate(benchmark);
+
+                operations += iteration[0];
+                scores[i] = iteration[1] / (double) iteration[0];
+            }
+
+            Result result = new Result(benchmark, scores, operations);
+
+            logger.info(result);
+            return result;
+        }
+        finally
+        {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * Runs the operation of a benchmark for an iteration.
+     *
+     * @param benchmark the benchmark.
+     * @return the number of operations run and the time they took in
+     * nanoseconds.
+     * @throws Exception if the operation fails.
+     */
+    private long[] iterate(Benchmark benchmark)
+        throws Exception
+    {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        int sink = 0;
+
+        do
+        {
+            Object result = benchmark.run();
+
+            if (result != null)
+                sink += result.hashCode();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        }
+        while (elapsed < iterationTime);
+
+        this.sink += sink;
+        return new long[] { operations, elapsed };
+    }
+
+    /**
+     * Writes results as JSON.
+     *
+     * @param results the results to write.
+     * @param file the file to write them to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeJson(List<Result> results, File file)
+        throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+
+        SimpleDateFormat dateFormat
+            = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\n");
+        json.append("  \"date\": ")
+            .append(quote(dateFormat.format(new Date()))).append(",\n");
+        json.append("  \"jvm\": ")
+            .append(quote(
+                    System.getProperty("java.vm.name") + " "
+                        + System.getProperty("java.version")))
+            .append(",\n");
+        json.append("  \"os\": ")
+            .append(quote(
+                    System.getProperty("os.name") + " "
+                        + System.getProperty("os.arch")))
+            .append(",\n");
+        json.append("  \"processors\": ")
+            .append(Runtime.getRuntime().availableProcessors())
+            .append(",\n");
+        json.append("  \"warmupIterations\": ").append(warmupIterations)
+            .append(",\n");
+        json.append("  \"measurementIterations\": ")
+            .append(measurementIterations).append(",\n");
+        json.append("  \"iterationTimeMs\": ")
+            .append(iterationTime / 1000000L).append(",\n");
+        json.append("  \"benchmarks\": [");
+        for (int i = 0; i < results.size(); i++)
+        {
+            if (i != 0)
+                json.append(',');
+            json.append("\n");
+            results.get(i).appendJson(json);
+        }
+        json.append("\n  ]\n}\n");
+
+        Writer writer
+            = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+        try
+        {
+            writer.write(json.toString());
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Quotes a string for JSON.
+     *
+     * @param s the string to quote.
+     * @return the quoted string.
+     */
+    static String quote(String s)
+    {
+        StringBuilder quoted = new StringBuilder(s.length() + 2);
+
+        quoted.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+
+            switch (c)
+            {
+            case '"':
+                quoted.append("\\\"");
+                break;
+            case '\\':
+                quoted.append("\\\\");
+                break;
+            case '\n':
+                quoted.append("\\n");
+                break;
+            case '\r':
+                quoted.append("\\r");
+                break;
+            case '\t':
+                quoted.append("\\t");
+                break;
+            default:
+                if (c < 0x20)
+                    quoted.append(String.format("\\u%04x", (int) c));
+                else
+                    quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Formats a number for JSON.
+     *
+     * @param d the number.
+     * @return the number with three decimals.
+     */
+    private static String number(double d)
+    {
+        return String.format(Locale.US, "%.3f", d);
+    }
+
+    /**
+     * The result of a benchmark.
+     */
+    public static class Result
+    {
+        /**
+         * The name of the benchmark.
+         */
+        private final String name;
+
+        /**
+         * The parameters of the benchmark.
+         */
+        private final Map<String, String> parameters;
+
+        /**
+         * The mean time per operation of each measurement iteration in
+         * nanoseconds.
+         */
+        private final double[] scores;
+
+        /**
+         * The number of operations run during the measurement iterations.
+         */
+        private final long operations;
+
+        /**
+         * Creates the result of a benchmark.
+         *
+         * @param benchmark the benchmark.
+         * @param scores the mean time per operation of each measurement
+         * iteration in nanoseconds.
+         * @param operations the number of operations run during the
+         * measurement iterations.
+         */
+        Result(Benchmark benchmark, double[] scores, long operations)
+        {
+            this.name = benchmark.getName();
+            this.parameters
+                = new LinkedHashMap<String, String>(benchmark.getParameters());
+            this.scores = scores;
+            this.operations = operations;
+        }
+
+        /**
+         * Returns the mean time per operation in nanoseconds.
+         *
+         * @return the mean time per operation in nanoseconds.
+         */
+        public double getScore()
+        {
+            double sum = 0;
+
+            for (double score : scores)
+                sum += score;
+            return sum / scores.length;
+        }
+
+        /**
+         * Returns the standard deviation of the time per operation of the
+         * measurement iterations in nanoseconds.
+         *
+         * @return the standard deviation in nanoseconds.
+         */
+        public double getError()
+        {
+            if (scores.length < 2)
+                return 0;
+
+            double mean = getScore();
+            double sum = 0;
+
+            for (double score : scores)
+                sum += (score - mean) * (score - mean);
+            return Math.sqrt(sum / (scores.length - 1));
+        }
+
+        /**
+         * Appends this result as a JSON object.
+         *
+         * @param json the buffer to append to.
+         */
+        void appendJson(StringBuilder json)
+        {
+            double min = Double.MAX_VALUE;
+            double max = 0;
+
+            for (double score : scores)
+            {
+                min = Math.min(min, score);
+                max = Math.max(max, score);
+            }
+
+            json.append("    {\n");
+            json.append("      \"benchmark\": ").append(quote(name))
+                .append(",\n");
+            json.append("      \"mode\": \"avgt\",\n");
+            json.append("      \"params\": {");
+            boolean first = true;
+            for (Map.Entry<String, String> e : parameters.entrySet())
+            {
+                if (!first)
+                    json.append(", ");
+                first = false;
+                json.append(quote(e.getKey())).append(": ")
+                    .append(quote(e.getValue()));
+            }
+            json.append("},\n");
+            json.append("      \"primaryMetric\": {\n");
+            json.append("        \"score\": ").append(number(getScore()))
+                .append(",\n");
+            json.append("        \"scoreError\": ").append(number(getError()))
+                .append(",\n");
+            json.append("        \"scoreUnit\": \"ns/op\",\n");
+            json.append("        \"min\": ").append(number(min)).append(",\n");
+            json.append("        \"max\": ").append(number(max)).append(",\n");
+            json.append("        \"rawData\": [");
+            for (int i = 0; i < scores.length; i++)
+            {
+                if (i != 0)
+                    json.append(", ");
+                json.append(number(scores[i]));
+            }
+            json.append("]\n");
+            json.append("      },\n");
+            json.append("      \"operations\": ").append(operations)
+                .append("\n");
+            json.append("    }");
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + " " + parameters + ": "
+                + String.format(
+                        Locale.US,
+                        "%.1f +- %.1f ns/op",
+                        getScore(),
+                        getError())
+                + " (" + operations + " ops)";
+        }
+    }
+}
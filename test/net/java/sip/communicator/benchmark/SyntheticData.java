@@ -0,0 +1,183 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.benchmark;
+
+import java.util.*;
+
+import net.java.sip.communicator.service.history.*;
+import net.java.sip.communicator.service.history.records.*;
+
+/**
+ * Generates the data the benchmarks run against: messages and histories of a
+ * given size. The data is generated from a seeded <tt>Random</tt> so that
+ * every run measures the same data. The contact lists are generated by the
+ * <tt>MockLoadGenerator</tt> of the mock protocol.
+ */
+public class SyntheticData
+{
+    /**
+     * The words the generated messages are made of.
+     */
+    private static final String[] VOCABULARY
+        = {
+            "hello", "meeting", "tomorrow", "call", "conference", "video",
+            "audio", "screen", "share", "file", "transfer", "please", "thanks",
+            "project", "release", "build", "test", "review", "later", "today",
+            "morning", "evening", "weekend", "jitsi", "sip", "jabber", "chat",
+            "message", "contact", "group", "presence", "online", "away",
+            "busy", "status", "history", "search", "network", "server",
+            "client"
+        };
+
+    /**
+     * The property names of the records of the generated histories.
+     */
+    public static final String[] HISTORY_STRUCTURE
+        = { "dir", "msg", "msgTyp", "enc", "uid", "sub" };
+
+    /**
+     * The generator of the data.
+     */
+    private final Random random;
+
+    /**
+     * Creates a generator of data.
+     *
+     * @param seed the seed of the generator.
+     */
+    public SyntheticData(long seed)
+    {
+        random = new Random(seed);
+    }
+
+    /**
+     * Returns a random word of the vocabulary.
+     *
+     * @return a random word of the vocabulary.
+     */
+    public String nextWord()
+    {
+        return VOCABULARY[random.nextInt(VOCABULARY.length)];
+    }
+
+    /**
+     * Generates a plain text message.
+     *
+     * @param words the number of words of the message.
+     * @return the generated message.
+     */
+    public String nextText(int words)
+    {
+        StringBuilder text = new StringBuilder(words * 8);
+
+        for (int i = 0; i < words; i++)
+        {
+            if (i != 0)
+                text.append(' ');
+            text.append(nextWord());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generates an HTML message such as the chat window displays: a few
+     * paragraphs with formatted words, links and entities.
+     *
+     * @param words the number of words of the message.
+     * @return the generated message.
+     */
+    public String nextHtml(int words)
+    {
+        StringBuilder html = new StringBuilder(words * 16);
+
+        html.append("<html><body><p>");
+        for (int i = 0; i < words; i++)
+        {
+            String word = nextWord();
+
+            switch (random.nextInt(16))
+            {
+            case 0:
+                html.append("<b>").append(word).append("</b>");
+                break;
+            case 1:
+                html.append("<i>").append(word).append("</i>");
+                break;
+            case 2:
+                html.append("<a href=\"http://example.org/").append(word)
+                    .append("\">").append(word).append("</a>");
+                break;
+            case 3:
+                html.append(word).append(" &amp;");
+                break;
+            case 4:
+                html.append("</p><p>").append(word);
+                break;
+            default:
+                html.append(word);
+            }
+            html.append(' ');
+        }
+        html.append("</p></body></html>");
+        return html.toString();
+    }
+
+    /**
+     * Creates a history filled with <tt>recordCount</tt> message records, one
+     * a minute up to now.
+     *
+     * @param historyService the service to create the history with.
+     * @param id the raw ID of the history.
+     * @param recordCount the number of records.
+     * @return the created history.
+     * @throws Exception if the history cannot be created or written.
+     */
+    public History createHistory(
+            HistoryService historyService,
+            String[] id,
+            int recordCount)
+        throws Exception
+    {
+        HistoryID historyID = HistoryID.createFromRawID(id);
+
+        if (historyService.isHistoryExisting(historyID))
+            historyService.purgeLocallyStoredHistory(historyID);
+
+        History history
+            = historyService.createHistory(
+                    historyID,
+                    new HistoryRecordStructure(HISTORY_STRUCTURE));
+        HistoryWriter writer = history.getWriter();
+        long timestamp = System.currentTimeMillis() - recordCount * 60000L;
+
+        for (int i = 0; i < recordCount; i++)
+        {
+            writer.addRecord(nextHistoryRecord(), new Date(timestamp));
+            timestamp += 60000L;
+        }
+        return history;
+    }
+
+    /**
+     * Generates the property values of a message history record.
+     *
+     * @return the property values of a message history record.
+     */
+    public String[] nextHistoryRecord()
+    {
+        return
+            new String[]
+                    {
+                        random.nextBoolean() ? "in" : "out",
+                        nextText(4 + random.nextInt(12)),
+                        "text/plain",
+                        "UTF-8",
+                        Long.toHexString(random.nextLong()),
+                        ""
+                    };
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.impl.dns;
+
+import java.lang.reflect.*;
+import java.lang.reflect.Proxy;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.dns.*;
+
+import org.xbill.DNS.*;
+import org.xbill.DNS.Type;
+
+/**
+ * Tests that the backup resolvers of <tt>ParallelResolverImpl</tt> answer
+ * while the primary resolver does not.
+ */
+public class TestParallelResolverImpl
+    extends TestCase
+{
+    /**
+     * The number of questions asked at the same time, more than the threads
+     * which send the queries to either resolver.
+     */
+    private static final int QUERY_COUNT = 40;
+
+    /**
+     * The number of milliseconds the resolver waits for the primary resolver
+     * before it queries the backup resolvers.
+     */
+    private static final long DNS_PATIENCE = 100;
+
+    /**
+     * The address the backup resolver answers with.
+     */
+    private static final byte[] ADDRESS = { 10, 0, 0, 1 };
+
+    /**
+     * Holds the queries to the primary resolver until the test is over.
+     */
+    private final CountDownLatch primaryReleased = new CountDownLatch(1);
+
+    /**
+     * Creates a <tt>TestParallelResolverImpl</tt> wrapper over the test with
+     * the specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestParallelResolverImpl(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Lets the queries to the primary resolver return.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        primaryReleased.countDown();
+
+        super.tearDown();
+    }
+
+    /**
+     * Answers from the backup resolver the questions asked while the primary
+     * resolver does not answer, even when there are more of them than
+     * threads.
+     *
+     * @throws Exception if a question is not answered.
+     */
+    public void testBackupAnswersWhilePrimaryHangs()
+        throws Exception
+    {
+        final ParallelResolverImpl resolver
+            = new ParallelResolverImpl(
+                    newResolver(
+                            new InvocationHandler()
+                            {
+                                public Object invoke(
+                                        Object proxy,
+                                        Method method,
+                                        Object[] args)
+                                    throws Exception
+                                {
+                                    primaryReleased.await();
+                                    throw new SocketTimeoutException();
+                                }
+                            }),
+                    newResolver(
+                            new InvocationHandler()
+                            {
+                                public Object invoke(
+                                        Object proxy,
+                                        Method method,
+                                        Object[] args)
+                                    throws Exception
+                                {
+                                    return newResponse((Message) args[0]);
+                                }
+                            }),
+                    DNS_PATIENCE);
+        ExecutorService clients = Executors.newFixedThreadPool(QUERY_COUNT);
+
+        try
+        {
+            List<Future<Message>> responses = new ArrayList<Future<Message>>();
+
+            for (int i = 0; i < QUERY_COUNT; i++)
+            {
+                final Name name = Name.fromString("host" + i + ".example.org.");
+
+                responses.add(
+                        clients.submit(
+                                new Callable<Message>()
+                                {
+                                    public Message call()
+                                        throws Exception
+                                    {
+                                        return resolver.send(
+                                                Message.newQuery(
+                                                        Record.newRecord(
+                                                                name,
+                                                                Type.A,
+                                                                DClass.IN)));
+                                    }
+                                }));
+            }
+            for (Future<Message> response : responses)
+            {
+                Record[] answers
+                    = response.get(10, TimeUnit.SECONDS)
+                        .getSectionArray(Section.ANSWER);
+
+                assertEquals(1, answers.length);
+                assertTrue(
+                        Arrays.equals(
+                                ADDRESS,
+                                ((ARecord) answers[0]).getAddress()
+                                    .getAddress()));
+            }
+        }
+        finally
+        {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a response which answers the question of a query with
+     * {@link #ADDRESS}.
+     *
+     * @param query the query.
+     * @return the response.
+     * @throws UnknownHostException never.
+     */
+    private static Message newResponse(Message query)
+        throws UnknownHostException
+    {
+        Record question = query.getQuestion();
+        Message response = new Message(query.getHeader().getID());
+
+        response.getHeader().setFlag(Flags.QR);
+        response.addRecord(question, Section.QUESTION);
+        response.addRecord(
+                new ARecord(
+                        question.getName(),
+                        DClass.IN,
+                        60,
+                        InetAddress.getByAddress(ADDRESS)),
+                Section.ANSWER);
+        return response;
+    }
+
+    /**
+     * Creates a <tt>Resolver</tt> which sends its queries through a specific
+     * <tt>InvocationHandler</tt>.
+     *
+     * @param send the <tt>InvocationHandler</tt> which sends the queries.
+     * @return the <tt>Resolver</tt>.
+     */
+    private static Resolver newResolver(final InvocationHandler send)
+    {
+        InvocationHandler handler
+            = new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable
+                {
+                    String name = method.getName();
+
+                    if (name.equals("send"))
+                        return send.invoke(proxy, method, args);
+                    else if (name.equals("equals"))
+                        return proxy == args[0];
+                    else if (name.equals("hashCode"))
+                        return System.identityHashCode(proxy);
+                    else if (name.equals("toString"))
+                        return "Resolver@" + System.identityHashCode(proxy);
+                    else
+                        throw new UnsupportedOperationException(name);
+                }
+            };
+
+        return
+            (Resolver)
+                Proxy.newProxyInstance(
+                        Resolver.class.getClassLoader(),
+                        new Class<?>[] { Resolver.class },
+                        handler);
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.impl.gui.main.contactlist.contactsource;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.regex.*;
+
+import junit.framework.*;
+
+import net.java.sip.communicator.impl.gui.main.contactlist.contactsource.*;
+import net.java.sip.communicator.service.contactlist.*;
+import net.java.sip.communicator.service.protocol.*;
+
+/**
+ * Tests that the <tt>MetaContactSearchIndex</tt> finds the same contacts as
+ * a walk of the whole contact list and is kept up to date by the changes of
+ * the contact list.
+ */
+public class TestMetaContactSearchIndex
+    extends TestCase
+{
+    /**
+     * The root group of the contact list.
+     */
+    private TestGroup root;
+
+    /**
+     * A subgroup of {@link #root}.
+     */
+    private TestGroup friends;
+
+    /**
+     * Creates a <tt>TestMetaContactSearchIndex</tt> wrapper over the test
+     * with the specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestMetaContactSearchIndex(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates a contact list with contacts in the root group and in a
+     * subgroup.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        root = new TestGroup();
+        friends = new TestGroup();
+        root.subgroups.add(friends.proxy);
+
+        root.contacts.add(
+            newMetaContact("John Doe", "jdoe@example.org", "Johnny"));
+        root.contacts.add(
+            newMetaContact("Jane Roe", "jane@example.com", "JR"));
+        root.contacts.add(
+            newMetaContact(
+                "\u00C6r\u00F8sk\u00F8bing Ferry",
+                "ferry@example.dk",
+                null));
+        friends.contacts.add(
+            newMetaContact("STRASSE", "strasse@example.de", "Stra\u00DFe"));
+        friends.contacts.add(
+            newMetaContact("Mary-Ann O'Hara", "mary.ann@example.net", null));
+        friends.contacts.add(
+            newMetaContact("Bob", "sip:bob@10.0.0.1", "bob (work)"));
+    }
+
+    /**
+     * Finds the same contacts from the candidates of the index as by checking
+     * all the contacts, whether or not the searched strings refine one
+     * another.
+     */
+    public void testMatchesFullWalk()
+    {
+        String[] queries
+            = {
+                "jo", "joh", "john", "OHN", "doe", "example", "example.org",
+                "\u00C6R\u00D8", "sk\u00F8", "strasse", "STRA", "o'h", "(work)",
+                "10.0.0",
+                "nobody", "", "a", "ann", "mary-ann", "@example.", "jane r"
+            };
+        MetaContactSearchIndex shared = new MetaContactSearchIndex();
+
+        for (String query : queries)
+        {
+            Pattern pattern = newPattern(query);
+            Set<MetaContact> expected = walk(pattern);
+
+            assertEquals(
+                query,
+                expected,
+                new HashSet<MetaContact>(
+                    new MetaContactSearchIndex().match(pattern, root.proxy)));
+            assertEquals(
+                query,
+                expected,
+                new HashSet<MetaContact>(shared.match(pattern, root.proxy)));
+        }
+    }
+
+    /**
+     * Walks the contact list only to build the index and for the strings too
+     * short to be indexed.
+     */
+    public void testCandidatesDoNotWalk()
+    {
+        MetaContactSearchIndex index = new MetaContactSearchIndex();
+
+        assertEquals(1, index.match(newPattern("john"), root.proxy).size());
+        assertEquals(1, root.walks);
+        assertEquals(1, friends.walks);
+
+        assertEquals(1, index.match(newPattern("bob"), root.proxy).size());
+        assertEquals(
+            2,
+            index.match(newPattern("example.d"), root.proxy).size());
+        assertEquals(1, root.walks);
+        assertEquals(1, friends.walks);
+
+        assertEquals(1, index.match(newPattern("jo"), root.proxy).size());
+        assertEquals(2, root.walks);
+        assertEquals(2, friends.walks);
+    }
+
+    /**
+     * Only checks the contacts found by the last search when the searched
+     * string contains the last searched one and the contact list has not
+     * changed since.
+     */
+    public void testRefinementChecksLastMatches()
+    {
+        MetaContactSearchIndex index = new MetaContactSearchIndex();
+        TestMetaContact strasse
+            = getTestMetaContact(friends.contacts.get(0));
+
+        assertEquals(
+            getContacts("John Doe", "Jane Roe"),
+            new HashSet<MetaContact>(
+                index.match(newPattern("j"), root.proxy)));
+
+        // A change the index is not told about is not seen by a refinement
+        // of the last search.
+        strasse.displayName = "Jo Strasse";
+        assertEquals(
+            getContacts("John Doe"),
+            new HashSet<MetaContact>(
+                index.match(newPattern("jo"), root.proxy)));
+
+        // The change is seen once the index is told about it.
+        index.update(friends.contacts.get(0));
+        assertEquals(
+            getContacts("John Doe", "Jo Strasse"),
+            new HashSet<MetaContact>(
+                index.match(newPattern("jo"), root.proxy)));
+
+        // A string which does not refine the last one is not answered from
+        // the last matches.
+        assertEquals(
+            getContacts("Jane Roe"),
+            new HashSet<MetaContact>(
+                index.match(newPattern("roe"), root.proxy)));
+    }
+
+    /**
+     * Indexes a renamed contact by its new name, drops a removed contact and
+     * indexes the contacts of a new group once invalidated.
+     */
+    public void testUpdateOnRenameAndRemove()
+    {
+        MetaContactSearchIndex index = new MetaContactSearchIndex();
+        MetaContact jane = root.contacts.get(1);
+
+        assertEquals(1, index.match(newPattern("jane"), root.proxy).size());
+
+        getTestMetaContact(jane).displayName = "Janet Poe";
+        getTestMetaContact(jane).contacts.clear();
+        index.update(jane);
+        assertTrue(index.match(newPattern("roe"), root.proxy).isEmpty());
+        assertEquals(
+            Arrays.asList(jane),
+            index.match(newPattern("poe"), root.proxy));
+
+        // The index does not find a removed contact even if it is still in
+        // the group it walked.
+        index.remove(jane);
+        assertTrue(index.match(newPattern("janet"), root.proxy).isEmpty());
+        assertTrue(index.match(newPattern("poe"), root.proxy).isEmpty());
+
+        TestGroup colleagues = new TestGroup();
+
+        colleagues.contacts.add(newMetaContact("Janet Poe", null, null));
+        root.subgroups.add(colleagues.proxy);
+        assertTrue(index.match(newPattern("janet"), root.proxy).isEmpty());
+        index.invalidate();
+        assertEquals(2, index.match(newPattern("janet"), root.proxy).size());
+    }
+
+    /**
+     * Creates the pattern <tt>SearchFilter</tt> creates for a searched
+     * string.
+     *
+     * @param query the searched string.
+     * @return the pattern.
+     */
+    private static Pattern newPattern(String query)
+    {
+        return
+            Pattern.compile(
+                    Pattern.quote(query),
+                    Pattern.MULTILINE
+                        | Pattern.CASE_INSENSITIVE
+                        | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Checks all the contacts of the contact list against a pattern.
+     *
+     * @param pattern the pattern.
+     * @return the contacts which match <tt>pattern</tt>.
+     */
+    private Set<MetaContact> walk(Pattern pattern)
+    {
+        Set<MetaContact> matches = new HashSet<MetaContact>();
+
+        for (TestGroup group : new TestGroup[] { root, friends })
+        {
+            for (MetaContact metaContact : group.contacts)
+            {
+                if (MetaContactSearchIndex.isMatching(pattern, metaContact))
+                    matches.add(metaContact);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the contacts of the contact list with specific display names.
+     *
+     * @param displayNames the display names.
+     * @return the contacts with the display names.
+     */
+    private Set<MetaContact> getContacts(String... displayNames)
+    {
+        List<String> names = Arrays.asList(displayNames);
+        Set<MetaContact> contacts = new HashSet<MetaContact>();
+
+        for (TestGroup group : new TestGroup[] { root, friends })
+        {
+            for (MetaContact metaContact : group.contacts)
+            {
+                if (names.contains(metaContact.getDisplayName()))
+                    contacts.add(metaContact);
+            }
+        }
+        assertEquals(names.size(), contacts.size());
+        return contacts;
+    }
+
+    /**
+     * Creates a <tt>MetaContact</tt> with a single protocol contact.
+     *
+     * @param displayName the display name of the <tt>MetaContact</tt>.
+     * @param address the address of the protocol contact or <tt>null</tt> for
+     * a <tt>MetaContact</tt> without protocol contacts.
+     * @param contactDisplayName the display name of the protocol contact or
+     * <tt>null</tt> to use <tt>address</tt>.
+     * @return the <tt>MetaContact</tt>.
+     */
+    private static MetaContact newMetaContact(
+            String displayName,
+            String address,
+            String contactDisplayName)
+    {
+        TestMetaContact metaContact = new TestMetaContact(displayName);
+
+        if (address != null)
+        {
+            Map<String, Object> contact = new HashMap<String, Object>();
+
+            contact.put("getAddress", address);
+            contact.put(
+                "getDisplayName",
+                (contactDisplayName == null) ? address : contactDisplayName);
+            metaContact.contacts.add(newProxy(Contact.class, contact));
+        }
+        return metaContact.proxy;
+    }
+
+    /**
+     * Returns the <tt>TestMetaContact</tt> behind a <tt>MetaContact</tt>.
+     *
+     * @param metaContact the <tt>MetaContact</tt>.
+     * @return the <tt>TestMetaContact</tt> behind <tt>metaContact</tt>.
+     */
+    private static TestMetaContact getTestMetaContact(MetaContact metaContact)
+    {
+        return (TestMetaContact) Proxy.getInvocationHandler(metaContact);
+    }
+
+    /**
+     * Creates an implementation of an interface which answers the methods
+     * without arguments with fixed values.
+     *
+     * @param type the interface.
+     * @param values the values by method name.
+     * @return the implementation of <tt>type</tt>.
+     */
+    private static <T> T newProxy(
+            Class<T> type,
+            final Map<String, Object> values)
+    {
+        return
+            type.cast(
+                Proxy.newProxyInstance(
+                        type.getClassLoader(),
+                        new Class<?>[] { type },
+                        new InvocationHandler()
+                        {
+                            public Object invoke(
+                                    Object proxy,
+                                    Method method,
+                                    Object[] args)
+                            {
+                                return
+                                    invokeObjectMethod(
+                                            proxy,
+                                            method,
+                                            args,
+                                            values);
+                            }
+                        }));
+    }
+
+    /**
+     * Answers the methods of <tt>Object</tt> by identity and the other
+     * methods with fixed values.
+     *
+     * @param proxy the proxy the method is invoked on.
+     * @param method the method.
+     * @param args the arguments of the method.
+     * @param values the values of the other methods by name.
+     * @return the result of the method.
+     */
+    private static Object invokeObjectMethod(
+            Object proxy,
+            Method method,
+            Object[] args,
+            Map<String, Object> values)
+    {
+        String name = method.getName();
+
+        if (name.equals("equals"))
+            return proxy == args[0];
+        else if (name.equals("hashCode"))
+            return System.identityHashCode(proxy);
+        else if (values.containsKey(name))
+            return values.get(name);
+        else if (name.equals("toString"))
+            return String.valueOf(values);
+        else
+            throw new UnsupportedOperationException(name);
+    }
+
+    /**
+     * A <tt>MetaContact</tt> whose display name and protocol contacts may be
+     * changed.
+     */
+    private static class TestMetaContact
+        implements InvocationHandler
+    {
+        /**
+         * The display name.
+         */
+        String displayName;
+
+        /**
+         * The protocol contacts.
+         */
+        final List<Contact> contacts = new ArrayList<Contact>();
+
+        /**
+         * The <tt>MetaContact</tt>.
+         */
+        final MetaContact proxy;
+
+        /**
+         * Creates a <tt>TestMetaContact</tt>.
+         *
+         * @param displayName the display name.
+         */
+        TestMetaContact(String displayName)
+        {
+            this.displayName = displayName;
+            proxy
+                = (MetaContact)
+                    Proxy.newProxyInstance(
+                            MetaContact.class.getClassLoader(),
+                            new Class<?>[] { MetaContact.class },
+                            this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            Map<String, Object> values = new HashMap<String, Object>();
+
+            values.put("getDisplayName", displayName);
+            values.put(
+                "getContacts",
+                new ArrayList<Contact>(contacts).iterator());
+            values.put("toString", displayName);
+            return invokeObjectMethod(proxy, method, args, values);
+        }
+    }
+
+    /**
+     * A <tt>MetaContactGroup</tt> which counts the walks of its contacts.
+     */
+    private static class TestGroup
+        implements InvocationHandler
+    {
+        /**
+         * The contacts.
+         */
+        final List<MetaContact> contacts = new ArrayList<MetaContact>();
+
+        /**
+         * The subgroups.
+         */
+        final List<MetaContactGroup> subgroups
+            = new ArrayList<MetaContactGroup>();
+
+        /**
+         * The number of times the contacts have been walked.
+         */
+        int walks = 0;
+
+        /**
+         * The <tt>MetaContactGroup</tt>.
+         */
+        final MetaContactGroup proxy
+            = (MetaContactGroup)
+                Proxy.newProxyInstance(
+                        MetaContactGroup.class.getClassLoader(),
+                        new Class<?>[] { MetaContactGroup.class },
+                        this);
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            Map<String, Object> values = new HashMap<String, Object>();
+            String name = method.getName();
+
+            if (name.equals("getChildContacts"))
+            {
+                walks++;
+                values.put(
+                    name,
+                    new ArrayList<MetaContact>(contacts).iterator());
+            }
+            else if (name.equals("getSubgroups"))
+            {
+                values.put(
+                    name,
+                    new ArrayList<MetaContactGroup>(subgroups).iterator());
+            }
+            return invokeObjectMethod(proxy, method, args, values);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.impl.ldap;
+
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.ldap.*;
+
+/**
+ * Tests the matching of the LDAP substring filter values the
+ * <tt>LdapSearchResultCache</tt> narrows cached results with.
+ */
+public class TestLdapSearchResultCache
+    extends TestCase
+{
+    /**
+     * The search scope of the queries.
+     */
+    private static final String SCOPE = "2";
+
+    /**
+     * Creates a <tt>TestLdapSearchResultCache</tt> wrapper over the test with
+     * the specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestLdapSearchResultCache(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Matches the values against patterns with wildcards at the start, in
+     * the middle and at the end.
+     */
+    public void testMatchesSubstring()
+    {
+        assertTrue(LdapSearchResultCache.matchesSubstring("*", ""));
+        assertTrue(LdapSearchResultCache.matchesSubstring("*", "john"));
+
+        assertTrue(
+            LdapSearchResultCache.matchesSubstring("*john d*", "john doe"));
+        assertTrue(
+            LdapSearchResultCache.matchesSubstring(
+                    "*john d*",
+                    "mr john doe"));
+        assertFalse(
+            LdapSearchResultCache.matchesSubstring("*john d*", "john"));
+        assertFalse(
+            LdapSearchResultCache.matchesSubstring("*john d*", "doe john"));
+
+        assertTrue(LdapSearchResultCache.matchesSubstring("d*john", "djohn"));
+        assertTrue(
+            LdapSearchResultCache.matchesSubstring("d*john", "doe john"));
+        assertFalse(
+            LdapSearchResultCache.matchesSubstring("d*john", "doe johnny"));
+        assertFalse(
+            LdapSearchResultCache.matchesSubstring("d*john", "john doe"));
+
+        assertTrue(LdapSearchResultCache.matchesSubstring("jo*", "john"));
+        assertFalse(LdapSearchResultCache.matchesSubstring("jo*", "mojo"));
+        assertTrue(LdapSearchResultCache.matchesSubstring("*hn", "john"));
+        assertFalse(LdapSearchResultCache.matchesSubstring("*hn", "hnjo"));
+
+        assertTrue(LdapSearchResultCache.matchesSubstring("a*b*c", "abc"));
+        assertTrue(
+            LdapSearchResultCache.matchesSubstring("a*b*c", "axxbyyc"));
+        assertFalse(LdapSearchResultCache.matchesSubstring("a*b*c", "acb"));
+        assertTrue(LdapSearchResultCache.matchesSubstring("a**c", "ac"));
+    }
+
+    /**
+     * Does not let the parts of a pattern around a wildcard overlap in the
+     * value.
+     */
+    public void testMatchesSubstringWithoutOverlap()
+    {
+        assertFalse(LdapSearchResultCache.matchesSubstring("ab*bc", "abc"));
+        assertTrue(LdapSearchResultCache.matchesSubstring("ab*bc", "abbc"));
+        assertFalse(LdapSearchResultCache.matchesSubstring("j*john", "john"));
+        assertFalse(
+            LdapSearchResultCache.matchesSubstring("*oh*oh*", "xohx"));
+        assertTrue(
+            LdapSearchResultCache.matchesSubstring("*oh*oh*", "xohoh"));
+    }
+
+    /**
+     * Matches a pattern without wildcard only against the very same value.
+     */
+    public void testMatchesSubstringWithoutWildcard()
+    {
+        assertTrue(LdapSearchResultCache.matchesSubstring("john", "john"));
+        assertFalse(LdapSearchResultCache.matchesSubstring("john", "johnny"));
+        assertFalse(LdapSearchResultCache.matchesSubstring("john", "jo"));
+        assertTrue(LdapSearchResultCache.matchesSubstring("", ""));
+        assertFalse(LdapSearchResultCache.matchesSubstring("", "john"));
+    }
+
+    /**
+     * Answers a longer query by narrowing the complete result of a shorter
+     * one with the patterns of the longer query, but not a truncated one.
+     */
+    public void testLookupNarrowsCompleteResult()
+    {
+        LdapSearchResultCache cache = new LdapSearchResultCache();
+        List<LdapSearchResultCache.Record> records
+            = Arrays.asList(newRecord("john doe"), newRecord("johnny"),
+                    newRecord("jane"));
+
+        cache.put(SCOPE, "jo", records, true);
+        cache.put(SCOPE + "x", "jo", records, false);
+
+        List<LdapSearchResultCache.Record> narrowed
+            = cache.lookup(SCOPE, "john d", new String[] { "*john d*" });
+
+        assertNotNull(narrowed);
+        assertEquals(1, narrowed.size());
+        assertEquals("john doe", narrowed.get(0).dn);
+        assertEquals(1, cache.getNarrowedHits());
+
+        assertSame(
+            narrowed,
+            cache.lookup(SCOPE, "john d", new String[] { "*john d*" }));
+        assertEquals(1, cache.getExactHits());
+
+        assertNull(
+            cache.lookup(SCOPE + "x", "john", new String[] { "*john*" }));
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Creates a record with a single searchable value, which is also its
+     * distinguished name.
+     *
+     * @param value the searchable value
+     * @return the record
+     */
+    private static LdapSearchResultCache.Record newRecord(String value)
+    {
+        return
+            new LdapSearchResultCache.Record(
+                    value,
+                    new HashMap<String, Set<String>>(),
+                    Collections.singletonList(value));
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.impl.protocol.jabber.extensions.caps;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.jabber.extensions.caps.*;
+
+import org.jitsi.service.configuration.*;
+import org.jivesoftware.smackx.packet.*;
+
+/**
+ * Tests the <tt>EntityCapsStore</tt> and the moving of the entity
+ * capabilities persisted in the <tt>ConfigurationService</tt> by previous
+ * versions to it.
+ */
+public class TestEntityCapsStore
+    extends TestCase
+{
+    /**
+     * The prefix of the names of the properties in which previous versions
+     * persisted the entity capabilities.
+     */
+    private static final String CAPS_PROPERTY_NAME_PREFIX
+        = "net.java.sip.communicator.impl.protocol.jabber.extensions.caps."
+            + "EntityCapsManager.CAPS.";
+
+    /**
+     * The node of the capabilities of the example of XEP-0115.
+     */
+    private static final String NODE = "http://code.google.com/p/exodus";
+
+    /**
+     * The ver of the capabilities of the example of XEP-0115.
+     */
+    private static final String VER = "QgayPKawpkPSDYmwT/WM94uAlu0=";
+
+    /**
+     * The features of the example of XEP-0115.
+     */
+    private static final String[] FEATURES
+        = {
+            "http://jabber.org/protocol/caps",
+            "http://jabber.org/protocol/disco#info",
+            "http://jabber.org/protocol/disco#items",
+            "http://jabber.org/protocol/muc"
+        };
+
+    /**
+     * The file of the store under test.
+     */
+    private File file;
+
+    /**
+     * Creates a <tt>TestEntityCapsStore</tt> wrapper over the test with the
+     * specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestEntityCapsStore(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates the file of the store.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        file = File.createTempFile("caps", ".bin");
+        file.delete();
+    }
+
+    /**
+     * Deletes the file of the store.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Stores the capabilities in binary and in XML form and reads them back
+     * through a new store.
+     */
+    public void testPutGet()
+    {
+        EntityCapsStore store = new EntityCapsStore(file, 10, 10);
+        EntityCapsManager.Caps caps = newCaps(1);
+        EntityCapsManager.Caps xmlCaps = newCaps(2);
+        DiscoverInfo xmlInfo = newDiscoverInfo(xmlCaps, "XML");
+
+        xmlInfo.addExtension(new DataForm("result"));
+        store.put(caps, newDiscoverInfo(caps, "Name"));
+        store.put(xmlCaps, xmlInfo);
+        store.close();
+
+        store = new EntityCapsStore(file, 10, 10);
+        assertDiscoverInfo(caps, "Name", store.get(caps));
+        assertDiscoverInfo(xmlCaps, "XML", store.get(xmlCaps));
+        assertNull(store.get(newCaps(3)));
+        store.close();
+    }
+
+    /**
+     * Drops a record which has not been fully written and keeps the ones
+     * before it.
+     *
+     * @throws IOException if truncating the file fails.
+     */
+    public void testTruncatedRecord()
+        throws IOException
+    {
+        EntityCapsStore store = new EntityCapsStore(file, 10, 10);
+
+        store.put(newCaps(1), newDiscoverInfo(newCaps(1), null));
+        store.put(newCaps(2), newDiscoverInfo(newCaps(2), null));
+        store.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try
+        {
+            raf.setLength(raf.length() - 3);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        store = new EntityCapsStore(file, 10, 10);
+        assertDiscoverInfo(newCaps(1), null, store.get(newCaps(1)));
+        assertNull(store.get(newCaps(2)));
+
+        store.put(newCaps(3), newDiscoverInfo(newCaps(3), null));
+        store.close();
+
+        store = new EntityCapsStore(file, 10, 10);
+        assertDiscoverInfo(newCaps(3), null, store.get(newCaps(3)));
+        store.close();
+    }
+
+    /**
+     * Keeps the newest records when the store is opened with more records
+     * than allowed.
+     */
+    public void testCompact()
+    {
+        EntityCapsStore store = new EntityCapsStore(file, 10, 10);
+
+        for (int i = 1; i <= 3; i++)
+            store.put(newCaps(i), newDiscoverInfo(newCaps(i), null));
+        store.close();
+
+        store = new EntityCapsStore(file, 10, 2);
+        assertNull(store.get(newCaps(1)));
+        assertDiscoverInfo(newCaps(2), null, store.get(newCaps(2)));
+        assertDiscoverInfo(newCaps(3), null, store.get(newCaps(3)));
+        store.close();
+    }
+
+    /**
+     * Moves the valid capabilities from the <tt>ConfigurationService</tt> to
+     * the store and removes all the legacy properties with a single write of
+     * the configuration.
+     */
+    public void testMoveCapsProperties()
+    {
+        Map<String, String> properties = new HashMap<String, String>();
+        String valid
+            = CAPS_PROPERTY_NAME_PREFIX + NODE + "#sha-1#" + VER;
+        String invalid
+            = CAPS_PROPERTY_NAME_PREFIX + NODE + "#sha-1#invalid";
+
+        properties.put(valid, getDiscoverInfoXML());
+        properties.put(invalid, getDiscoverInfoXML());
+        properties.put(CAPS_PROPERTY_NAME_PREFIX + "malformed", "");
+
+        List<String> calls = new ArrayList<String>();
+        EntityCapsStore store = new EntityCapsStore(file, 10, 10);
+
+        EntityCapsManager.moveCapsProperties(
+                newConfigurationService(properties, calls),
+                store);
+        store.close();
+
+        assertEquals(Arrays.asList("setProperties"), calls);
+        assertTrue(properties.isEmpty());
+
+        store = new EntityCapsStore(file, 10, 10);
+        assertNotNull(
+                store.get(
+                        new EntityCapsManager.Caps(NODE, "sha-1", VER, null)));
+        assertNull(
+                store.get(
+                        new EntityCapsManager.Caps(
+                                NODE,
+                                "sha-1",
+                                "invalid",
+                                null)));
+        store.close();
+    }
+
+    /**
+     * Leaves the legacy properties in place when the store cannot persist
+     * them.
+     */
+    public void testMoveCapsPropertiesWithoutFile()
+    {
+        Map<String, String> properties = new HashMap<String, String>();
+
+        properties.put(
+                CAPS_PROPERTY_NAME_PREFIX + NODE + "#sha-1#" + VER,
+                getDiscoverInfoXML());
+
+        List<String> calls = new ArrayList<String>();
+
+        EntityCapsManager.moveCapsProperties(
+                newConfigurationService(properties, calls),
+                new EntityCapsStore(null, 10, 10));
+
+        assertTrue(calls.isEmpty());
+        assertEquals(1, properties.size());
+    }
+
+    /**
+     * Creates capabilities which are distinguished by a number.
+     *
+     * @param i the number.
+     * @return the capabilities.
+     */
+    private static EntityCapsManager.Caps newCaps(int i)
+    {
+        return new EntityCapsManager.Caps(NODE, "sha-1", "ver" + i, null);
+    }
+
+    /**
+     * Creates the <tt>DiscoverInfo</tt> of the example of XEP-0115 for
+     * specific capabilities.
+     *
+     * @param caps the capabilities.
+     * @param name the name of the identity or <tt>null</tt>.
+     * @return the <tt>DiscoverInfo</tt>.
+     */
+    private static DiscoverInfo newDiscoverInfo(
+            EntityCapsManager.Caps caps,
+            String name)
+    {
+        DiscoverInfo info = new DiscoverInfo();
+        DiscoverInfo.Identity identity
+            = new DiscoverInfo.Identity("client", name);
+
+        identity.setType("pc");
+        info.addIdentity(identity);
+        for (String feature : FEATURES)
+            info.addFeature(feature);
+        info.setNode(caps.getNodeVer());
+        return info;
+    }
+
+    /**
+     * Gets the XML of the <tt>DiscoverInfo</tt> of the example of XEP-0115
+     * as persisted by previous versions.
+     *
+     * @return the XML of the <tt>DiscoverInfo</tt>.
+     */
+    private static String getDiscoverInfoXML()
+    {
+        DiscoverInfo info
+            = newDiscoverInfo(
+                    new EntityCapsManager.Caps(NODE, "sha-1", VER, null),
+                    "Exodus 0.9.1");
+
+        return info.getChildElementXML();
+    }
+
+    /**
+     * Asserts that a <tt>DiscoverInfo</tt> read from the store is the one
+     * created by {@link #newDiscoverInfo(EntityCapsManager.Caps, String)}.
+     *
+     * @param caps the capabilities.
+     * @param name the name of the identity or <tt>null</tt>.
+     * @param info the <tt>DiscoverInfo</tt>.
+     */
+    private static void assertDiscoverInfo(
+            EntityCapsManager.Caps caps,
+            String name,
+            DiscoverInfo info)
+    {
+        assertNotNull(info);
+        assertEquals(caps.getNodeVer(), info.getNode());
+
+        Iterator<DiscoverInfo.Identity> identities = info.getIdentities();
+        DiscoverInfo.Identity identity = identities.next();
+
+        assertEquals("client", identity.getCategory());
+        assertEquals("pc", identity.getType());
+        assertEquals(name, identity.getName());
+        assertFalse(identities.hasNext());
+
+        for (String feature : FEATURES)
+            assertTrue(feature, info.containsFeature(feature));
+    }
+
+    /**
+     * Creates a <tt>ConfigurationService</tt> backed by a <tt>Map</tt> which
+     * records the calls which change it.
+     *
+     * @param properties the properties.
+     * @param calls the list to add the names of the methods which change the
+     * properties to.
+     * @return the <tt>ConfigurationService</tt>.
+     */
+    private static ConfigurationService newConfigurationService(
+            final Map<String, String> properties,
+            final List<String> calls)
+    {
+        InvocationHandler handler
+            = new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+
+                    if (name.equals("getPropertyNamesByPrefix"))
+                    {
+                        List<String> names = new ArrayList<String>();
+
+                        for (String key : properties.keySet())
+                        {
+                            if (key.startsWith((String) args[0]))
+                                names.add(key);
+                        }
+                        return names;
+                    }
+                    else if (name.equals("getString")
+                            && (args.length == 1))
+                    {
+                        return properties.get(args[0]);
+                    }
+                    else if (name.equals("setProperties"))
+                    {
+                        calls.add(name);
+                        for (Map.Entry<?, ?> e
+                                : ((Map<?, ?>) args[0]).entrySet())
+                        {
+                            if (e.getValue() == null)
+                                properties.remove(e.getKey());
+                            else
+                                properties.put(
+                                        (String) e.getKey(),
+                                        e.getValue().toString());
+                        }
+                        return null;
+                    }
+                    else
+                    {
+                        calls.add(name);
+                        return null;
+                    }
+                }
+            };
+
+        return
+            (ConfigurationService)
+                Proxy.newProxyInstance(
+                        ConfigurationService.class.getClassLoader(),
+                        new Class<?>[] { ConfigurationService.class },
+                        handler);
+    }
+}
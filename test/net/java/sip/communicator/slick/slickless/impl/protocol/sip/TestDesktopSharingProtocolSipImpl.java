@@ -0,0 +1,218 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.impl.protocol.sip;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+import javax.xml.parsers.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.impl.protocol.sip.*;
+
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+/**
+ * Tests the remote-control NOTIFY messages built by
+ * <tt>DesktopSharingProtocolSipImpl</tt> for batches of input events.
+ */
+public class TestDesktopSharingProtocolSipImpl
+    extends TestCase
+{
+    /**
+     * The names of the elements of the events in the order the parsers which
+     * predate the batching of the events process them.
+     */
+    private static final List<String> LEGACY_PARSE_ORDER
+        = Arrays.asList(
+                "mouse-press",
+                "mouse-release",
+                "mouse-move",
+                "mouse-wheel",
+                "key-press",
+                "key-release",
+                "key-type");
+
+    /**
+     * Creates a <tt>TestDesktopSharingProtocolSipImpl</tt> wrapper over the
+     * test with the specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestDesktopSharingProtocolSipImpl(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Builds a single message for events which a legacy parser processes in
+     * the order they occurred.
+     *
+     * @throws Exception if parsing a message fails.
+     */
+    public void testBatchInLegacyOrder()
+        throws Exception
+    {
+        List<String> elements
+            = Arrays.asList(
+                    DesktopSharingProtocolSipImpl.getMousePressedElement(16),
+                    DesktopSharingProtocolSipImpl.getMouseReleasedElement(16),
+                    DesktopSharingProtocolSipImpl.getMouseMovedElement(
+                            0.25,
+                            0.5),
+                    DesktopSharingProtocolSipImpl.getKeyPressedElement(65));
+        List<String> messages
+            = DesktopSharingProtocolSipImpl.getBatchXML(elements);
+
+        assertEquals(1, messages.size());
+        assertEquals(
+                Arrays.asList(
+                        "mouse-press",
+                        "mouse-release",
+                        "mouse-move",
+                        "key-press"),
+                getElementNames(parse(messages.get(0))));
+    }
+
+    /**
+     * Splits the events into as few messages as needed for a legacy parser
+     * to process them in the order they occurred.
+     *
+     * @throws Exception if parsing a message fails.
+     */
+    public void testBatchSplitForLegacyParsers()
+        throws Exception
+    {
+        List<String> elements
+            = Arrays.asList(
+                    DesktopSharingProtocolSipImpl.getKeyPressedElement(65),
+                    DesktopSharingProtocolSipImpl.getKeyTypedElement(97),
+                    DesktopSharingProtocolSipImpl.getKeyReleasedElement(65),
+                    DesktopSharingProtocolSipImpl.getMouseMovedElement(0, 0),
+                    DesktopSharingProtocolSipImpl.getMousePressedElement(16),
+                    DesktopSharingProtocolSipImpl.getMouseWheelElement(-1));
+        List<String> messages
+            = DesktopSharingProtocolSipImpl.getBatchXML(elements);
+
+        assertEquals(4, messages.size());
+
+        List<String> legacyOrder = new ArrayList<String>();
+
+        for (String message : messages)
+        {
+            assertTrue(message.startsWith("<?xml"));
+
+            Element root = parse(message);
+
+            assertEquals("remote-control", root.getTagName());
+            for (String name : LEGACY_PARSE_ORDER)
+            {
+                NodeList nodes = root.getElementsByTagName(name);
+
+                for (int i = 0; i < nodes.getLength(); i++)
+                    legacyOrder.add(name);
+            }
+        }
+        assertEquals(
+                Arrays.asList(
+                        "key-press",
+                        "key-type",
+                        "key-release",
+                        "mouse-move",
+                        "mouse-press",
+                        "mouse-wheel"),
+                legacyOrder);
+    }
+
+    /**
+     * Parses the events of a batch in the order they occurred.
+     *
+     * @throws Exception if parsing a message fails.
+     */
+    public void testParseBatch()
+        throws Exception
+    {
+        List<String> elements
+            = Arrays.asList(
+                    DesktopSharingProtocolSipImpl.getMouseMovedElement(
+                            0.5,
+                            0.25),
+                    DesktopSharingProtocolSipImpl.getMousePressedElement(16),
+                    DesktopSharingProtocolSipImpl.getMouseReleasedElement(16));
+        List<ComponentEvent> events = new ArrayList<ComponentEvent>();
+
+        for (String message
+                : DesktopSharingProtocolSipImpl.getBatchXML(elements))
+        {
+            events.addAll(
+                    DesktopSharingProtocolSipImpl.parse(
+                            parse(message),
+                            new Dimension(200, 100),
+                            new Point(10, 20)));
+        }
+
+        assertEquals(3, events.size());
+        assertEquals(MouseEvent.MOUSE_MOVED, events.get(0).getID());
+        assertEquals(110, ((MouseEvent) events.get(0)).getX());
+        assertEquals(45, ((MouseEvent) events.get(0)).getY());
+        assertEquals(MouseEvent.MOUSE_PRESSED, events.get(1).getID());
+        assertEquals(MouseEvent.MOUSE_RELEASED, events.get(2).getID());
+    }
+
+    /**
+     * Builds no message for no events.
+     */
+    public void testEmptyBatch()
+    {
+        assertTrue(
+                DesktopSharingProtocolSipImpl.getBatchXML(
+                        new ArrayList<String>()).isEmpty());
+    }
+
+    /**
+     * Parses a message.
+     *
+     * @param message the message.
+     * @return the root element of the message.
+     * @throws IOException if reading the message fails.
+     * @throws ParserConfigurationException if no parser is available.
+     * @throws SAXException if the message is not well-formed.
+     */
+    private static Element parse(String message)
+        throws IOException,
+               ParserConfigurationException,
+               SAXException
+    {
+        return
+            DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(message)))
+                    .getDocumentElement();
+    }
+
+    /**
+     * Returns the names of the child elements of an element in document
+     * order.
+     *
+     * @param root the element.
+     * @return the names of the child elements of <tt>root</tt>.
+     */
+    private static List<String> getElementNames(Element root)
+    {
+        List<String> names = new ArrayList<String>();
+
+        for (Node n = root.getFirstChild(); n != null; n = n.getNextSibling())
+        {
+            if (n.getNodeType() == Node.ELEMENT_NODE)
+                names.add(((Element) n).getTagName());
+        }
+        return names;
+    }
+}
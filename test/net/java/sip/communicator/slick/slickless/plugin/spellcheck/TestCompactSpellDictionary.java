@@ -0,0 +1,200 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.plugin.spellcheck;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.plugin.spellcheck.*;
+
+import org.dts.spell.dictionary.*;
+
+/**
+ * Compares the <tt>CompactSpellDictionary</tt> generated from the dictionaries
+ * shipped with the spell checker to the <tt>OpenOfficeSpellDictionary</tt>
+ * loaded from the same dictionaries on a fixed list of words, and checks the
+ * suggestions of the misspelled words without near misses.
+ */
+public class TestCompactSpellDictionary
+    extends TestCase
+{
+    /**
+     * The directory of the dictionaries shipped with the spell checker.
+     */
+    private static final String DICTIONARY_DIR = "resources/config/spellcheck";
+
+    /**
+     * The words the dictionaries are compared on: correct words, misspelled
+     * words with near misses and capitalized words.
+     */
+    private static final String[] WORDS
+        = {
+            "house", "maison", "teh", "helo", "bonjuor", "maisn", "Thier",
+            "THIER"
+        };
+
+    /**
+     * The maximum number of suggestions asked for.
+     */
+    private static final int MAX_SUGGESTIONS = 10;
+
+    /**
+     * The compact dictionary file generated by the test.
+     */
+    private File compact;
+
+    /**
+     * Creates a <tt>TestCompactSpellDictionary</tt> wrapper over the test
+     * with the specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestCompactSpellDictionary(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Chooses the file of the compact dictionary.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        compact = File.createTempFile("dict", ".cdict");
+        compact.delete();
+    }
+
+    /**
+     * Deletes the file of the compact dictionary.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        compact.delete();
+
+        super.tearDown();
+    }
+
+    /**
+     * Compares the dictionaries of <tt>en_US</tt>.
+     *
+     * @throws IOException if a dictionary cannot be read.
+     */
+    public void testEnglish()
+        throws IOException
+    {
+        assertSameAsOpenOffice("en_US");
+    }
+
+    /**
+     * Compares the dictionaries of <tt>fr_FR</tt>.
+     *
+     * @throws IOException if a dictionary cannot be read.
+     */
+    public void testFrench()
+        throws IOException
+    {
+        assertSameAsOpenOffice("fr_FR");
+    }
+
+    /**
+     * Suggests the words sharing the most substrings with a misspelled word
+     * which has no near miss, with its capitalization.
+     *
+     * @throws IOException if a dictionary cannot be read.
+     */
+    public void testWordsWithoutNearMiss()
+        throws IOException
+    {
+        File zip = new File(DICTIONARY_DIR, "en_US.zip");
+
+        assertTrue(CompactSpellDictionary.generate(zip, compact));
+
+        SpellDictionary dict = new CompactSpellDictionary(compact, null);
+
+        assertSuggested(dict, "accomodatoin", "accommodation");
+        assertSuggested(dict, "recieveing", "receiving");
+        assertSuggested(dict, "Accomodatoin", "Accommodation");
+        assertSuggested(dict, "ACCOMODATOIN", "ACCOMMODATION");
+        assertTrue(dict.getSuggestions("xyzzyq", MAX_SUGGESTIONS).isEmpty());
+    }
+
+    /**
+     * Asserts that a misspelled word is not correct, that its suggestions are
+     * correct words and that one of them is an expected word.
+     *
+     * @param dict the dictionary.
+     * @param word the misspelled word.
+     * @param expected the word expected among the suggestions.
+     */
+    private static void assertSuggested(SpellDictionary dict, String word,
+        String expected)
+    {
+        assertFalse(word, dict.isCorrect(word));
+
+        List<String> suggestions = dict.getSuggestions(word, MAX_SUGGESTIONS);
+
+        assertTrue(word, suggestions.size() <= MAX_SUGGESTIONS);
+        assertTrue(word + ": " + suggestions, suggestions.contains(expected));
+        for (String suggestion : suggestions)
+            assertTrue(suggestion, dict.isCorrect(suggestion));
+    }
+
+    /**
+     * Asserts that the <tt>CompactSpellDictionary</tt> of a locale finds the
+     * same words correct and makes the same suggestions as its
+     * <tt>OpenOfficeSpellDictionary</tt>.
+     *
+     * @param locale the locale of the dictionaries.
+     * @throws IOException if a dictionary cannot be read.
+     */
+    private void assertSameAsOpenOffice(String locale)
+        throws IOException
+    {
+        File zip = new File(DICTIONARY_DIR, locale + ".zip");
+
+        assertTrue(CompactSpellDictionary.generate(zip, compact));
+
+        SpellDictionary compactDict
+            = new CompactSpellDictionary(compact, null);
+        SpellDictionary openOfficeDict;
+        InputStream in = new FileInputStream(zip);
+
+        try
+        {
+            openOfficeDict
+                = new OpenOfficeSpellDictionary(in, (File) null, false);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        for (String word : WORDS)
+        {
+            String message = locale + ": " + word;
+
+            assertEquals(
+                message,
+                openOfficeDict.isCorrect(word),
+                compactDict.isCorrect(word));
+            assertEquals(
+                message,
+                openOfficeDict.getSuggestions(word, MAX_SUGGESTIONS),
+                compactDict.getSuggestions(word, MAX_SUGGESTIONS));
+        }
+    }
+}
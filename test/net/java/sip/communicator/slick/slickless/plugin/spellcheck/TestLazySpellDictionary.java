@@ -0,0 +1,95 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.plugin.spellcheck;
+
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.plugin.spellcheck.*;
+
+import org.dts.spell.dictionary.*;
+
+/**
+ * Tests the <tt>LazySpellDictionary</tt> standing for a dictionary while it
+ * is being loaded.
+ */
+public class TestLazySpellDictionary
+    extends TestCase
+{
+    /**
+     * Creates a <tt>TestLazySpellDictionary</tt> wrapper over the test with
+     * the specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestLazySpellDictionary(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Considers all the words correct until the dictionary is set and adds
+     * the words added meanwhile to it once it is.
+     *
+     * @throws SpellDictionaryException if adding a word fails.
+     */
+    public void testAddWordBeforeLoad()
+        throws SpellDictionaryException
+    {
+        LazySpellDictionary lazy = new LazySpellDictionary();
+
+        assertFalse(lazy.isLoaded());
+        assertTrue(lazy.isCorrect("jitsi"));
+        assertTrue(lazy.getSuggestions("jitsi").isEmpty());
+
+        lazy.addWord("jitsi");
+
+        WordSetDictionary dictionary = new WordSetDictionary();
+
+        lazy.setDictionary(dictionary);
+        assertTrue(lazy.isLoaded());
+        assertEquals(Arrays.asList("jitsi"), dictionary.added);
+        assertTrue(lazy.isCorrect("jitsi"));
+        assertFalse(lazy.isCorrect("jitsy"));
+
+        lazy.addWord("jitsy");
+        assertEquals(Arrays.asList("jitsi", "jitsy"), dictionary.added);
+        assertTrue(lazy.isCorrect("jitsy"));
+    }
+
+    /**
+     * A <tt>SpellDictionary</tt> knowing only the words added to it.
+     */
+    private static class WordSetDictionary
+        implements SpellDictionary
+    {
+        /**
+         * The words added to the dictionary in the order they were added.
+         */
+        final List<String> added = new ArrayList<String>();
+
+        public synchronized void addWord(String word)
+        {
+            added.add(word);
+        }
+
+        public synchronized boolean isCorrect(String word)
+        {
+            return added.contains(word);
+        }
+
+        public List<String> getSuggestions(String word)
+        {
+            return new ArrayList<String>();
+        }
+
+        public List<String> getSuggestions(String word, int maxSuggestions)
+        {
+            return new ArrayList<String>();
+        }
+    }
+}
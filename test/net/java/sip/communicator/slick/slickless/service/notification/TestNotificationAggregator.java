@@ -0,0 +1,219 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.service.notification;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.service.notification.*;
+
+/**
+ * Tests the collapsing of bursts of notifications by the
+ * <tt>NotificationAggregator</tt>.
+ */
+public class TestNotificationAggregator
+    extends TestCase
+{
+    /**
+     * The length in milliseconds of the aggregation window under test.
+     */
+    private static final long WINDOW = 200;
+
+    /**
+     * The aggregator under test.
+     */
+    private RecordingAggregator aggregator;
+
+    /**
+     * Creates a <tt>TestNotificationAggregator</tt> wrapper over the test
+     * with the specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestNotificationAggregator(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Creates the aggregator under test.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        aggregator = new RecordingAggregator(WINDOW);
+    }
+
+    /**
+     * Stops the aggregator under test.
+     *
+     * @throws Exception if anything goes wrong.
+     */
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        aggregator.dispose();
+
+        super.tearDown();
+    }
+
+    /**
+     * Fires the first notification of a burst at once and the last of the
+     * collapsed ones as a summary when the window closes.
+     *
+     * @throws InterruptedException if the test is interrupted.
+     */
+    public void testCollapse()
+        throws InterruptedException
+    {
+        assertTrue(aggregator.offer(newData("Message", "alice", "1")));
+        assertFalse(aggregator.offer(newData("Message", "alice", "2")));
+        assertFalse(aggregator.offer(newData("Message", "alice", "3")));
+
+        NotificationData summary
+            = aggregator.summaries.poll(WINDOW * 10, TimeUnit.MILLISECONDS);
+
+        assertNotNull(summary);
+        assertEquals("Message", summary.getEventType());
+        assertEquals("title (+2)", summary.getTitle());
+        assertEquals("3", summary.getMessage());
+        assertEquals(
+                Collections.singleton("Message/enabled"),
+                aggregator.actionTypes.poll());
+
+        // The window of a quiet burst closes without a summary.
+        Thread.sleep(WINDOW * 3);
+        assertTrue(aggregator.summaries.isEmpty());
+        assertTrue(aggregator.offer(newData("Message", "alice", "4")));
+    }
+
+    /**
+     * Keeps a burst per event type and source.
+     */
+    public void testSeparateBursts()
+    {
+        assertTrue(aggregator.offer(newData("Message", "alice", "1")));
+        assertTrue(aggregator.offer(newData("Message", "bob", "1")));
+        assertTrue(aggregator.offer(newData("Status", "alice", "1")));
+        assertFalse(aggregator.offer(newData("Message", "bob", "2")));
+    }
+
+    /**
+     * Never collapses the notifications which have no source or which loop
+     * their sound.
+     */
+    public void testExempt()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            assertTrue(aggregator.offer(newData("Dtmf", null, "1")));
+
+            Map<String, Object> extras = new HashMap<String, Object>();
+
+            extras.put(
+                    NotificationData.POPUP_MESSAGE_HANDLER_TAG_EXTRA,
+                    "alice");
+            extras.put(
+                    NotificationData
+                        .SOUND_NOTIFICATION_HANDLER_LOOP_CONDITION_EXTRA,
+                    Boolean.TRUE);
+            assertTrue(
+                    aggregator.offer(
+                            new NotificationData(
+                                    "Call",
+                                    "title",
+                                    "1",
+                                    null,
+                                    extras)));
+        }
+    }
+
+    /**
+     * Does not collapse notifications when the window is not positive.
+     */
+    public void testDisabled()
+    {
+        NotificationAggregator disabled = new RecordingAggregator(0);
+
+        assertTrue(disabled.offer(newData("Message", "alice", "1")));
+        assertTrue(disabled.offer(newData("Message", "alice", "2")));
+    }
+
+    /**
+     * Creates a notification.
+     *
+     * @param eventType the event type.
+     * @param source the source or <tt>null</tt>.
+     * @param message the message.
+     * @return the notification.
+     */
+    private static NotificationData newData(
+            String eventType,
+            Object source,
+            String message)
+    {
+        Map<String, Object> extras = new HashMap<String, Object>();
+
+        if (source != null)
+        {
+            extras.put(
+                    NotificationData.POPUP_MESSAGE_HANDLER_TAG_EXTRA,
+                    source);
+        }
+        return new NotificationData(eventType, "title", message, null, extras);
+    }
+
+    /**
+     * Records the summaries instead of firing them through a notification
+     * service.
+     */
+    private static class RecordingAggregator
+        extends NotificationAggregator
+    {
+        /**
+         * The fired summaries.
+         */
+        final BlockingQueue<NotificationData> summaries
+            = new LinkedBlockingQueue<NotificationData>();
+
+        /**
+         * The action types of the fired summaries.
+         */
+        final Queue<Set<String>> actionTypes
+            = new ConcurrentLinkedQueue<Set<String>>();
+
+        /**
+         * Creates an aggregator without a notification service.
+         *
+         * @param window the length in milliseconds of the aggregation window.
+         */
+        RecordingAggregator(long window)
+        {
+            super(null, window);
+        }
+
+        @Override
+        protected Set<String> getEnabledActionTypes(String eventType)
+        {
+            return Collections.singleton(eventType + "/enabled");
+        }
+
+        @Override
+        protected void fireSummary(NotificationData summary, Set<String> actionTypes)
+        {
+            this.actionTypes.add(actionTypes);
+            summaries.add(summary);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.service.notification;
+
+import junit.framework.*;
+import net.java.sip.communicator.service.notification.*;
+
+/**
+ * Tests the <tt>TokenBucket</tt> which limits the rate of the notification
+ * handlers.
+ */
+public class TestTokenBucket
+    extends TestCase
+{
+    /**
+     * Creates a <tt>TestTokenBucket</tt> wrapper over the test with the
+     * specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestTokenBucket(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Allows a burst of invocations and drops the ones which follow it.
+     */
+    public void testBurst()
+    {
+        TokenBucket bucket = new TokenBucket(0.001, 3);
+
+        for (int i = 0; i < 3; i++)
+            assertTrue("invocation " + i, bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    /**
+     * Allows at least one invocation even if the burst is not positive.
+     */
+    public void testMinimumBurst()
+    {
+        TokenBucket bucket = new TokenBucket(0.001, 0);
+
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    /**
+     * Refills the bucket with time, up to its burst.
+     *
+     * @throws InterruptedException if the test is interrupted.
+     */
+    public void testRefill()
+        throws InterruptedException
+    {
+        TokenBucket bucket = new TokenBucket(20, 2);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        Thread.sleep(500);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+}
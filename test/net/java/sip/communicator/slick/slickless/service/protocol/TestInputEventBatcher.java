@@ -0,0 +1,234 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package net.java.sip.communicator.slick.slickless.service.protocol;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import net.java.sip.communicator.service.protocol.*;
+
+/**
+ * Tests the batching of the input events a desktop sharing client sends by
+ * <tt>InputEventBatcher</tt>.
+ */
+public class TestInputEventBatcher
+    extends TestCase
+{
+    /**
+     * An interval long enough for the queued events to only be sent by the
+     * explicit calls to {@link InputEventBatcher#flush()} of the tests.
+     */
+    private static final long MANUAL_INTERVAL = 60 * 60 * 1000;
+
+    /**
+     * Creates a <tt>TestInputEventBatcher</tt> wrapper over the test with the
+     * specified name.
+     *
+     * @param name the name of the test to run
+     */
+    public TestInputEventBatcher(String name)
+    {
+        super(name);
+    }
+
+    /**
+     * Sends the queued events together, a mouse move replacing the mouse move
+     * queued right before it only.
+     */
+    public void testMovesAreCoalesced()
+    {
+        RecordingBatcher batcher = new RecordingBatcher(MANUAL_INTERVAL);
+        CallPeer peer = newCallPeer();
+
+        batcher.add(peer, "press", false);
+        batcher.add(peer, "move1", true);
+        batcher.add(peer, "move2", true);
+        batcher.add(peer, "release", false);
+        batcher.add(peer, "move3", true);
+        assertTrue(batcher.sent.isEmpty());
+
+        batcher.flush();
+        assertEquals(1, batcher.sent.size());
+        assertSame(peer, batcher.peers.get(0));
+        assertEquals(
+                Arrays.asList("press", "move2", "release", "move3"),
+                batcher.sent.get(0));
+
+        batcher.flush();
+        assertEquals(1, batcher.sent.size());
+    }
+
+    /**
+     * Sends the events of each peer separately and in batches of at most
+     * {@link InputEventBatcher#MAX_BATCH_SIZE} events.
+     */
+    public void testBatchesArePerPeerAndBounded()
+    {
+        RecordingBatcher batcher = new RecordingBatcher(MANUAL_INTERVAL);
+        CallPeer peer1 = newCallPeer();
+        CallPeer peer2 = newCallPeer();
+        int count = 2 * InputEventBatcher.MAX_BATCH_SIZE + 1;
+
+        for (int i = 0; i < count; i++)
+        {
+            batcher.add(peer1, "key" + i, false);
+            if (i == 0)
+                batcher.add(peer2, "other", false);
+        }
+        batcher.flush();
+
+        assertEquals(
+                Arrays.asList(peer1, peer1, peer1, peer2),
+                batcher.peers);
+        assertEquals(
+                InputEventBatcher.MAX_BATCH_SIZE,
+                batcher.sent.get(0).size());
+        assertEquals(
+                InputEventBatcher.MAX_BATCH_SIZE,
+                batcher.sent.get(1).size());
+        assertEquals(Arrays.asList("key" + (count - 1)), batcher.sent.get(2));
+        assertEquals(Arrays.asList("other"), batcher.sent.get(3));
+        assertEquals("key0", batcher.sent.get(0).get(0));
+        assertEquals(
+                "key" + InputEventBatcher.MAX_BATCH_SIZE,
+                batcher.sent.get(1).get(0));
+    }
+
+    /**
+     * Drops the events queued for a peer which is removed.
+     */
+    public void testRemoveDropsQueuedEvents()
+    {
+        RecordingBatcher batcher = new RecordingBatcher(MANUAL_INTERVAL);
+        CallPeer peer1 = newCallPeer();
+        CallPeer peer2 = newCallPeer();
+
+        batcher.add(peer1, "gone", false);
+        batcher.add(peer2, "kept", false);
+        batcher.remove(peer1);
+        batcher.flush();
+
+        assertEquals(Arrays.asList(peer2), batcher.peers);
+        assertEquals(Arrays.asList("kept"), batcher.sent.get(0));
+    }
+
+    /**
+     * Sends an event as soon as it is queued if the interval is not
+     * positive.
+     */
+    public void testNoInterval()
+    {
+        RecordingBatcher batcher = new RecordingBatcher(0);
+        CallPeer peer = newCallPeer();
+
+        batcher.add(peer, "move1", true);
+        batcher.add(peer, "move2", true);
+
+        assertEquals(2, batcher.sent.size());
+        assertEquals(Arrays.asList("move1"), batcher.sent.get(0));
+        assertEquals(Arrays.asList("move2"), batcher.sent.get(1));
+    }
+
+    /**
+     * Sends the queued events once the interval has elapsed.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void testScheduledFlush()
+        throws InterruptedException
+    {
+        RecordingBatcher batcher = new RecordingBatcher(10);
+        CallPeer peer = newCallPeer();
+
+        batcher.add(peer, "press", false);
+        synchronized (batcher)
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (batcher.sent.isEmpty())
+            {
+                long timeout = deadline - System.currentTimeMillis();
+
+                if (timeout <= 0)
+                    break;
+                batcher.wait(timeout);
+            }
+            assertEquals(Arrays.asList("press"), batcher.sent.get(0));
+        }
+    }
+
+    /**
+     * Creates a <tt>CallPeer</tt> which only supports the methods of
+     * <tt>Object</tt>.
+     *
+     * @return the <tt>CallPeer</tt>.
+     */
+    private static CallPeer newCallPeer()
+    {
+        InvocationHandler handler
+            = new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+
+                    if (name.equals("equals"))
+                        return proxy == args[0];
+                    else if (name.equals("hashCode"))
+                        return System.identityHashCode(proxy);
+                    else if (name.equals("toString"))
+                        return "CallPeer@" + System.identityHashCode(proxy);
+                    else
+                        throw new UnsupportedOperationException(name);
+                }
+            };
+
+        return
+            (CallPeer)
+                Proxy.newProxyInstance(
+                        CallPeer.class.getClassLoader(),
+                        new Class<?>[] { CallPeer.class },
+                        handler);
+    }
+
+    /**
+     * An <tt>InputEventBatcher</tt> which records the batches it sends.
+     */
+    private static class RecordingBatcher
+        extends InputEventBatcher<String>
+    {
+        /**
+         * The peers the batches have been sent to.
+         */
+        final List<CallPeer> peers = new ArrayList<CallPeer>();
+
+        /**
+         * The batches sent.
+         */
+        final List<List<String>> sent = new ArrayList<List<String>>();
+
+        /**
+         * Initializes a new <tt>RecordingBatcher</tt>.
+         *
+         * @param interval the interval in milliseconds at which the queued
+         * events are sent.
+         */
+        RecordingBatcher(long interval)
+        {
+            super(interval);
+        }
+
+        @Override
+        protected synchronized void send(CallPeer callPeer, List<String> events)
+        {
+            peers.add(callPeer);
+            sent.add(new ArrayList<String>(events));
+            notifyAll();
+        }
+    }
+}